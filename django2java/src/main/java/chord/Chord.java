@@ -59,13 +59,27 @@ public interface Chord extends ToneCollection{
 	Set<Interval> getRelatedIntervals(NoteConsonanceRecordRequest relatedNotesRequest);
 	
 	/**
-	 * Get a list of chords between the current chord and the destination chord
-	 * using only chord types in the request and limit the number of chords between to
-	 * changeDepth or lower
+	 * Get every shortest sequence of chords from the current chord to the
+	 * destination chord using only chord changes in the request and at most
+	 * depth changes.
 	 * @param destinationChord the chord that we are targeting
 	 * @param request request to filter the chordTypes and ratings we desire
-	 * @param depth the depth of the recursive algorithm to limit the number of results
-	 * @return a list of chord sequences fitting the request
+	 * @param depth the maximum number of chord changes in a sequence
+	 * @return the shortest chord sequences fitting the request, each starting with
+	 * this chord and ending with the destination chord, empty if there are none
 	 */
 	List<List<Chord>> getPathToChord(Chord destinationChord,ChordChangeConsonanceRecordRequest request, int depth);
+
+	/**
+	 * Get the shortest sequences of chords from the current chord to the
+	 * destination chord that don't repeat a chord, shortest first, using only
+	 * chord changes in the request and at most depth changes.
+	 * @param destinationChord the chord that we are targeting
+	 * @param request request to filter the chordTypes and ratings we desire
+	 * @param depth the maximum number of chord changes in a sequence
+	 * @param numberOfPaths the maximum number of sequences returned
+	 * @return the chord sequences fitting the request, each starting with this
+	 * chord and ending with the destination chord
+	 */
+	List<List<Chord>> getPathsToChord(Chord destinationChord,ChordChangeConsonanceRecordRequest request, int depth, int numberOfPaths);
 }
@@ -40,7 +40,7 @@ public class MIDIPlayer {
 
 	private static MIDIPlayer instance;
 
-	public static MIDIPlayer getInstance() throws GenericMIDIException {
+	public static synchronized MIDIPlayer getInstance() throws GenericMIDIException {
 		if(instance == null) {
 			instance = new MIDIPlayer();
 		}
@@ -49,31 +49,40 @@ public class MIDIPlayer {
 
 	private final ChordLibrary cLib;
 	private final ScaleLibrary sLib;
-	private final Sequencer sequencer;
+	//opened on the first playback, opening it takes a while and isn't
+	//needed to start the program
+	private Sequencer sequencer;
 	private int chordTrackInstrument = DEFAULT_CHORD_TRACK_INSTRUMENT;
 
 	/**
 	 * Create a basic MIDIPlayer that only produces sequences
-	 * for ConsonanceRecords.
-	 * @throws MidiUnavailableException
+	 * for ConsonanceRecords. The sequencer is opened when
+	 * the first sequence is played.
 	 */
 	private MIDIPlayer() throws GenericMIDIException {
 		cLib = ChordLibrary.getInstance();
 		sLib = ScaleLibrary.getInstance();
+	}
 
-		try {
-			sequencer = MidiSystem.getSequencer();
-			sequencer.open();
-			sequencer.setTempoInBPM(DEFAULT_TEMPO_IN_BPM);
-		}catch(MidiUnavailableException e) {
-			throw new GenericMIDIException("MIDI is not available on this system.",e);
+	private synchronized Sequencer openSequencer() throws GenericMIDIException {
+		if(sequencer == null) {
+			try {
+				Sequencer newSequencer = MidiSystem.getSequencer();
+				newSequencer.open();
+				newSequencer.setTempoInBPM(DEFAULT_TEMPO_IN_BPM);
+				sequencer = newSequencer;
+			}catch(MidiUnavailableException e) {
+				throw new GenericMIDIException("MIDI is not available on this system.",e);
+			}
 		}
+		return sequencer;
 	}
 
-	public void dispose() {
-		if(sequencer.isOpen()) {
+	public synchronized void dispose() {
+		if(sequencer != null && sequencer.isOpen()) {
 			sequencer.close();
 		}
+		sequencer = null;
 	}
 
 	public int getChordTrackInstrument() {
@@ -92,16 +101,17 @@ public class MIDIPlayer {
 			throw new NullPointerException("sequence may not be null");
 		}
 
-		if(sequencer.isRunning()) {
-			sequencer.stop();
+		Sequencer openedSequencer = openSequencer();
+		if(openedSequencer.isRunning()) {
+			openedSequencer.stop();
 		}
 
 		try {
-			sequencer.setSequence(sequence);
+			openedSequencer.setSequence(sequence);
 		}catch(InvalidMidiDataException e) {
 			throw new GenericMIDIException("Error setting sequence", e);
 		}
-		sequencer.start();
+		openedSequencer.start();
 	}
 
 	private void changeInstrumentOfTrack(Track track, int channelNumber, int instrument) throws GenericMIDIException {
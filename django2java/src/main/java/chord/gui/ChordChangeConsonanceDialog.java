@@ -4,14 +4,14 @@ import javax.swing.JFrame;
 
 import chord.gui.components.ChordChangeConsonanceRecordPanel;
 import chord.gui.controller.ChordChangeConsonanceController;
-import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.ChordChangeRatingModel;
 import chord.relations.record.ChordChangeConsonanceRecord;
 import chord.relations.request.ChordChangeConsonanceRecordRequest;
 
 public class ChordChangeConsonanceDialog extends 
 	RatingDialog<ChordChangeConsonanceRecord,
 	ChordChangeConsonanceRecordRequest,
-	ChordChangeConsonanceModel,
+	ChordChangeRatingModel,
 	ChordChangeConsonanceController,
 	ChordChangeConsonanceRecordPanel> {
 
@@ -17,9 +17,9 @@ import chord.gui.components.CustomGridBagConstraints;
 import chord.gui.controller.ChordChangeConsonanceController;
 import chord.gui.controller.NoteConsonanceController;
 import chord.gui.controller.ScaleConsonanceController;
-import chord.relations.ChordChangeConsonanceModel;
 import chord.relations.NoteConsonanceModel;
 import chord.relations.ScaleConsonanceModel;
+import chord.relations.VersionedChordChangeConsonanceModel;
 import chord.relations.persist.PersistenceException;
 import chord.relations.persist.file.ChordChangeConsonanceFilePersister;
 import chord.relations.persist.file.FileStrategyConfig;
@@ -170,16 +170,16 @@ public class MainChordRatingsPopulationFrame extends JFrame implements ActionLis
 	 * @throws PersistenceException 
 	 */
 	private void launchChordChangeConsonanceRatingDialog(FileStrategyConfig fileStrategyConfig) throws PersistenceException {
-		ChordChangeConsonanceModel cccModel;
+		VersionedChordChangeConsonanceModel cccModel;
 		ChordChangeConsonanceController cccController;
 		if(fileStrategyConfig == null) {
-			cccModel = new ChordChangeConsonanceModel();
+			cccModel = new VersionedChordChangeConsonanceModel();
 		}else {
 			ChordChangeConsonanceFilePersister chordChangePersister = 
 					new ChordChangeConsonanceFilePersister(
 							fileStrategyConfig, 
 							ChordChangeConsonanceRecordRequest.allPossibleRecords());
-			cccModel = chordChangePersister.load();
+			cccModel = new VersionedChordChangeConsonanceModel(chordChangePersister.load());
 		}
 
 		cccController = new ChordChangeConsonanceController(cccModel);
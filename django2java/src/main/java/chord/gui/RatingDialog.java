@@ -17,6 +17,7 @@ import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
 import org.apache.logging.log4j.LogManager;
@@ -33,7 +34,7 @@ import chord.gui.components.RecordPanel;
 import chord.gui.controller.RatingModelController;
 import chord.gui.controller.StateChangeListener;
 import chord.relations.RatingModel;
-import chord.relations.persist.PersistenceException;
+import chord.relations.request.AbstractRecordRequest;
 
 /**
  * Abstract class used to rate "musical combinations".
@@ -51,7 +52,7 @@ import chord.relations.persist.PersistenceException;
  */
 public abstract class RatingDialog<
 RECORD,
-REQUEST,
+REQUEST extends AbstractRecordRequest,
 MODEL extends RatingModel<RECORD,REQUEST>,
 CONTROLLER extends RatingModelController<RECORD,REQUEST,MODEL>,
 RECORDPANEL extends RecordPanel<RECORD>> extends JDialog 
@@ -334,12 +335,16 @@ implements ActionListener,KeyListener,StateChangeListener<RECORD>,RatingDialogAc
 			return;
 		}else if(returnVal == JFileChooser.APPROVE_OPTION) {
 			File destinationFile = jfc.getSelectedFile();
-			try {
-				controller.saveFile(destinationFile);
-			} catch (PersistenceException e1) {
-				JOptionPane.showMessageDialog(this, e1.getMessage(),
-						"Error Saving File", JOptionPane.ERROR_MESSAGE);
-			}
+			//write the file in the background so the dialog stays responsive
+			controller.saveFileAsync(destinationFile).whenComplete((saved, error) -> {
+				if(error == null) {
+					return;
+				}
+				logger.error("Error Saving File", error);
+				SwingUtilities.invokeLater(() -> 
+					JOptionPane.showMessageDialog(this, error.getMessage(),
+							"Error Saving File", JOptionPane.ERROR_MESSAGE));
+			});
 		}else if(returnVal == JFileChooser.ERROR_OPTION) {
 			JOptionPane.showMessageDialog(this, "JFileChooser Error",
 					"Error Saving File", JOptionPane.ERROR_MESSAGE);
@@ -11,8 +11,7 @@ import chord.exceptions.ChordToneBuildingException;
 import chord.exceptions.GenericMIDIException;
 import chord.exceptions.InvalidMIDIValueException;
 import chord.exceptions.InvalidNoteRegisterException;
-import chord.relations.ChordChangeConsonanceModel;
-import chord.relations.persist.PersistenceException;
+import chord.relations.ChordChangeRatingModel;
 import chord.relations.persist.file.ChordChangeConsonanceFilePersister;
 import chord.relations.persist.file.FileStrategyConfig;
 import chord.relations.record.ChordChangeConsonanceRecord;
@@ -22,9 +21,9 @@ public class ChordChangeConsonanceController extends
 RatingModelController<
 ChordChangeConsonanceRecord, 
 ChordChangeConsonanceRecordRequest , 
-ChordChangeConsonanceModel>{
+ChordChangeRatingModel>{
 
-	public ChordChangeConsonanceController(ChordChangeConsonanceModel model,
+	public ChordChangeConsonanceController(ChordChangeRatingModel model,
 			StateChangeListener<ChordChangeConsonanceRecord>... listeners) {
 		super(model, listeners);
 	}
@@ -37,17 +36,10 @@ ChordChangeConsonanceModel>{
 	}
 
 	@Override
-	public void saveFile(File destinationFile) throws PersistenceException {
-		ChordChangeConsonanceRecordRequest request = 
-				ChordChangeConsonanceRecordRequest.allPossibleRecords();
-		FileStrategyConfig fileConfig = new FileStrategyConfig(destinationFile);
-		
-		ChordChangeConsonanceFilePersister chordChangeConsonancePersister = 
-				new ChordChangeConsonanceFilePersister(
-						fileConfig, 
-						request);
-
-		chordChangeConsonancePersister.save(model);
+	protected ChordChangeConsonanceFilePersister createFilePersister(File destinationFile) {
+		return new ChordChangeConsonanceFilePersister(
+				new FileStrategyConfig(destinationFile), 
+				ChordChangeConsonanceRecordRequest.allPossibleRecords());
 	}
 
 	@Override
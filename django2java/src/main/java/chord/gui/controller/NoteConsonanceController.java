@@ -6,7 +6,6 @@ import chord.ConsonanceRating;
 import chord.MIDIPlayer;
 import chord.exceptions.GenericMIDIException;
 import chord.relations.NoteConsonanceModel;
-import chord.relations.persist.PersistenceException;
 import chord.relations.persist.file.FileStrategyConfig;
 import chord.relations.persist.file.NoteConsonanceFilePersister;
 import chord.relations.record.NoteConsonanceRecord;
@@ -49,17 +48,10 @@ NoteConsonanceModel> {
 	}
 
 	@Override
-	public void saveFile(File destinationFile) throws PersistenceException {
-		NoteConsonanceRecordRequest request = 
-				NoteConsonanceRecordRequest.allPossibleRecords();
-		FileStrategyConfig fileConfig = new FileStrategyConfig(destinationFile);
-		
-		NoteConsonanceFilePersister noteConsonancePersister = 
-				new NoteConsonanceFilePersister(
-						fileConfig, 
-						request);
-
-		noteConsonancePersister.save(model);
+	protected NoteConsonanceFilePersister createFilePersister(File destinationFile) {
+		return new NoteConsonanceFilePersister(
+				new FileStrategyConfig(destinationFile), 
+				NoteConsonanceRecordRequest.allPossibleRecords());
 	}
 
 	@Override
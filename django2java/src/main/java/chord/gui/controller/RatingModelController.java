@@ -3,17 +3,26 @@ package chord.gui.controller;
 import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import chord.ConsonanceRating;
 import chord.exceptions.ChordToneBuildingException;
 import chord.exceptions.GenericMIDIException;
 import chord.exceptions.InvalidMIDIValueException;
 import chord.exceptions.InvalidNoteRegisterException;
 import chord.relations.RatingModel;
+import chord.relations.persist.AsyncModelPersister;
+import chord.relations.persist.PersistModelStrategy;
 import chord.relations.persist.PersistenceException;
+import chord.relations.persist.RatingJournal;
+import chord.relations.persist.file.FileStrategyConfig;
+import chord.relations.request.AbstractRecordRequest;
 
 /**
  * This class is used as a mediator between the gui and 
@@ -27,7 +36,9 @@ import chord.relations.persist.PersistenceException;
  * @param <REQUEST> type used for record requests
  * @param <MODEL> the model we are using
  */
-public abstract class RatingModelController<RECORD, REQUEST, MODEL extends RatingModel<RECORD,REQUEST>> {
+public abstract class RatingModelController<RECORD, REQUEST extends AbstractRecordRequest, MODEL extends RatingModel<RECORD,REQUEST>> {
+
+	private static final Logger logger = LogManager.getLogger();
 
 	/**
 	 * Data model for controller
@@ -44,6 +55,18 @@ public abstract class RatingModelController<RECORD, REQUEST, MODEL extends Ratin
 	 */
 	private List<StateChangeListener<RECORD>> stateChangeListeners;
 
+	/**
+	 * Journal told about every rating saved or erased, null if none.
+	 */
+	private RatingJournal<RECORD> ratingJournal;
+
+	/**
+	 * Persister used by saveFileAsync and the file it saves to, null
+	 * until the first save in the background.
+	 */
+	private AsyncModelPersister<RECORD,REQUEST,?> asyncPersister;
+	private File asyncDestinationFile;
+
 	/**
 	 * Create the controller using the given initialized model and 
 	 * state change listeners.
@@ -92,6 +115,42 @@ public abstract class RatingModelController<RECORD, REQUEST, MODEL extends Ratin
 		stateChangeListeners.add(listener);
 	}
 
+	/**
+	 * Set the journal that every rating saved or erased is written to
+	 * as soon as it is made.
+	 * 
+	 * If the journal fails the error is logged and journaling stops, the
+	 * ratings are still in the model and can be saved with saveFile.
+	 * @param ratingJournal journal to write to, null to stop journaling
+	 */
+	public void setRatingJournal(RatingJournal<RECORD> ratingJournal) {
+		this.ratingJournal = ratingJournal;
+	}
+
+	/**
+	 * Test if the ratings are being journaled.
+	 * @return true if a journal is set and has not failed
+	 */
+	public boolean isJournaling() {
+		return ratingJournal != null;
+	}
+
+	private void journalRating(RECORD record, boolean added) {
+		if(ratingJournal == null) {
+			return;
+		}
+		try {
+			if(added) {
+				ratingJournal.ratingAdded(record);
+			}else {
+				ratingJournal.ratingRemoved(record);
+			}
+		}catch(PersistenceException e) {
+			logger.error("Error journaling rating, journaling stopped. Save the ratings to file.", e);
+			ratingJournal = null;
+		}
+	}
+
 	/**
 	 * Update the current ChordSignature/Interval being rated and notify
 	 * all listeners.
@@ -120,6 +179,7 @@ public abstract class RatingModelController<RECORD, REQUEST, MODEL extends Ratin
 		}
 		RECORD recordToSave = createRecordToSave(rating);
 		model.addRating(recordToSave);
+		journalRating(recordToSave, true);
 
 		if(model.isFull()) {
 			updateCurrentRecordBeingRated(null);
@@ -143,6 +203,7 @@ public abstract class RatingModelController<RECORD, REQUEST, MODEL extends Ratin
 		lastRecordRated = model.getLastRecordRated();
 
 		model.removeRating(lastRecordRated);
+		journalRating(lastRecordRated, false);
 
 		nextRecordToBeRated = model.getNextRecordToBeRated();
 
@@ -152,9 +213,53 @@ public abstract class RatingModelController<RECORD, REQUEST, MODEL extends Ratin
 	public abstract void play() throws GenericMIDIException;
 	
 	/**
-	 * Take the model and save it to file.
+	 * Take a snapshot of the model and save it to file.
+	 * 
+	 * Saving a snapshot keeps ratings added while the file is written 
+	 * from ending up half saved. Freezing a versioned model only pins
+	 * its current version.
+	 * @param destinationFile file to save to
+	 * @throws PersistenceException if the file can't be written
+	 */
+	public void saveFile(File destinationFile) throws PersistenceException {
+		if(destinationFile == null) {
+			throw new NullPointerException("destination file may not be null");
+		}
+		createFilePersister(destinationFile).save(model.freeze());
+	}
+
+	/**
+	 * Take a snapshot of the model and save it to file on a background
+	 * thread, so that the gui isn't blocked while the file is written.
+	 * 
+	 * Saves to the same file requested while an earlier one is still
+	 * waiting to start are written once, with the newest ratings.
+	 * @param destinationFile file to save to
+	 * @return future completed when the file is saved, or completed
+	 * exceptionally with the PersistenceException if it can't be written.
+	 * It completes on the background thread.
+	 */
+	public CompletableFuture<Void> saveFileAsync(File destinationFile) {
+		if(destinationFile == null) {
+			throw new NullPointerException("destination file may not be null");
+		}
+		if(asyncPersister == null || !destinationFile.equals(asyncDestinationFile)) {
+			if(asyncPersister != null) {
+				//saves already requested to the old file still finish
+				asyncPersister.close();
+			}
+			asyncPersister = new AsyncModelPersister<>(createFilePersister(destinationFile));
+			asyncDestinationFile = destinationFile;
+		}
+		return asyncPersister.save(model);
+	}
+
+	/**
+	 * Create the persister used to save the model to file.
+	 * @param destinationFile file to save to
+	 * @return persister configured to save every record to the file
 	 */
-	public abstract void saveFile(File destinationFile) throws PersistenceException;
+	protected abstract PersistModelStrategy<RECORD,REQUEST,FileStrategyConfig,?> createFilePersister(File destinationFile);
 
 	/**
 	 * Take the current record being rated and save it to the model
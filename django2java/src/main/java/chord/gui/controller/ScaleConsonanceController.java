@@ -6,7 +6,6 @@ import chord.ConsonanceRating;
 import chord.MIDIPlayer;
 import chord.exceptions.GenericMIDIException;
 import chord.relations.ScaleConsonanceModel;
-import chord.relations.persist.PersistenceException;
 import chord.relations.persist.file.FileStrategyConfig;
 import chord.relations.persist.file.ScaleConsonanceFilePersister;
 import chord.relations.record.ScaleConsonanceRecord;
@@ -31,17 +30,10 @@ ScaleConsonanceModel>{
 	}
 
 	@Override
-	public void saveFile(File destinationFile) throws PersistenceException {
-		ScaleConsonanceRecordRequest request = 
-				ScaleConsonanceRecordRequest.allPossibleRecords();
-		FileStrategyConfig fileConfig = new FileStrategyConfig(destinationFile);
-		
-		ScaleConsonanceFilePersister scaleConsonancePersister = 
-				new ScaleConsonanceFilePersister(
-						fileConfig, 
-						request);
-
-		scaleConsonancePersister.save(model);
+	protected ScaleConsonanceFilePersister createFilePersister(File destinationFile) {
+		return new ScaleConsonanceFilePersister(
+				new FileStrategyConfig(destinationFile), 
+				ScaleConsonanceRecordRequest.allPossibleRecords());
 	}
 
 	@Override
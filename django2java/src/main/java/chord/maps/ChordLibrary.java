@@ -1,10 +1,15 @@
 package chord.maps;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,12 +21,11 @@ import chord.Scale;
 import chord.ident.ChordSignature;
 import chord.ident.ScaleSignature;
 import chord.progression.CircularLinkedList;
-import chord.relations.ChordChangeConsonanceModel;
-import chord.relations.NoteConsonanceModel;
-import chord.relations.ScaleConsonanceModel;
-import chord.relations.record.ChordChangeConsonanceRecord;
-import chord.relations.record.NoteConsonanceRecord;
-import chord.relations.record.ScaleConsonanceRecord;
+import chord.progression.ProgressionScorer;
+import chord.progression.RankedProgression;
+import chord.relations.ChordChangeRatingModel;
+import chord.relations.NoteRatingModel;
+import chord.relations.ScaleRatingModel;
 import chord.relations.request.ChordChangeConsonanceRecordRequest;
 import chord.relations.request.NoteConsonanceRecordRequest;
 import chord.relations.request.ScaleConsonanceRecordRequest;
@@ -49,14 +53,17 @@ public class ChordLibrary {
 
 	/**
 	 * Initialize the ChordLibrary instance with the given models.
+	 * 
+	 * The library holds frozen snapshots of the models so later changes
+	 * to the models are not seen until they are published with publishModels.
 	 * @param cccModel non-null and full
 	 * @param scModel non-null and full
 	 * @param ncModel non-null and full
 	 */
 	public static void initializeChordLibraryInstance(
-			ChordChangeConsonanceModel cccModel, 
-			ScaleConsonanceModel scModel, 
-			NoteConsonanceModel ncModel) {
+			ChordChangeRatingModel cccModel, 
+			ScaleRatingModel scModel, 
+			NoteRatingModel ncModel) {
 		logger.info("Attempting to create ChordLibrary instance.");
 
 		if( mainLibraryHasBeenInitialized ) {
@@ -86,12 +93,14 @@ public class ChordLibrary {
 
 	private final Map<ChordSignature,Map<NoteName,Chord>> chordMap;
 
-	//models to be used to find related musical entities
-	private final ChordChangeConsonanceModel cccModel;
-	private final ScaleConsonanceModel scModel;
-	private final NoteConsonanceModel ncModel;
-
-
+	//frozen models to be used to find related musical entities.
+	//The snapshots are immutable so they can be read by any number
+	//of threads, volatile so that newly published snapshots are seen.
+	//The chord change model is only read through the transition graphs
+	//built from it, which are shared by every chord change query
+	private volatile ChordTransitionGraphCache transitionGraphs;
+	private volatile ScaleRatingModel scModel;
+	private volatile NoteRatingModel ncModel;
 
 	/**
 	 * Create an chord instance for every chord signature and rootNote
@@ -100,23 +109,15 @@ public class ChordLibrary {
 	 * All model parameters must be initialized when added.
 	 * 
 	 * 
-	 * @param cccModel ChordChangeConsonanceModel containing relations between chords.
-	 * @param scModel ScaleConsonanceModel containing relations between chords and scales.
-	 * @param ncModel NoteConsonanceModel containing relations between chords and intervals.
+	 * @param cccModel model containing relations between chords.
+	 * @param scModel model containing relations between chords and scales.
+	 * @param ncModel model containing relations between chords and intervals.
 	 */
 	private ChordLibrary(
-			ChordChangeConsonanceModel cccModel, 
-			ScaleConsonanceModel scModel, 
-			NoteConsonanceModel ncModel) {
-		if(cccModel == null || scModel == null || ncModel == null) {
-			throw new NullPointerException("models may not be null");
-		}
-		if( !cccModel.isFull() || !scModel.isFull() || !ncModel.isFull()) {
-			logger.warn("models added to ChordLibrary instance are not complete.");
-		}
-		this.cccModel = cccModel;
-		this.scModel = scModel;
-		this.ncModel = ncModel;
+			ChordChangeRatingModel cccModel, 
+			ScaleRatingModel scModel, 
+			NoteRatingModel ncModel) {
+		publishModels(cccModel, scModel, ncModel);
 
 		Map<ChordSignature,Map<NoteName,Chord>> tempChordMap = 
 				new EnumMap<>(ChordSignature.class);
@@ -138,6 +139,40 @@ public class ChordLibrary {
 		chordMap = Collections.unmodifiableMap(tempChordMap);
 	}
 
+	/**
+	 * Replace the models used to find related chords, scales and notes
+	 * with frozen snapshots of the given models.
+	 * 
+	 * Queries that are already running finish using the previous snapshots.
+	 * The chord change graphs cached for the previous chord change model
+	 * are dropped and built again from the new one as they are used.
+	 * Freezing a VersionedChordChangeConsonanceModel only pins its current
+	 * version so the models may be republished while they are still being rated.
+	 * A MappedChordChangeConsonanceModel is its own snapshot so it is used as
+	 * is without reading the mapped file.
+	 * @param cccModel model containing relations between chords.
+	 * @param scModel model containing relations between chords and scales.
+	 * @param ncModel model containing relations between chords and intervals.
+	 */
+	public void publishModels(
+			ChordChangeRatingModel cccModel, 
+			ScaleRatingModel scModel, 
+			NoteRatingModel ncModel) {
+		if(cccModel == null || scModel == null || ncModel == null) {
+			throw new NullPointerException("models may not be null");
+		}
+		if( !cccModel.isFull() || !scModel.isFull() || !ncModel.isFull()) {
+			logger.warn("models added to ChordLibrary instance are not complete.");
+		}
+		ChordChangeRatingModel frozenCCCModel = cccModel.freeze();
+		ScaleRatingModel frozenSCModel = scModel.freeze();
+		NoteRatingModel frozenNCModel = ncModel.freeze();
+
+		this.transitionGraphs = new ChordTransitionGraphCache(frozenCCCModel, ChordTransitionGraphCache.DEFAULT_CAPACITY);
+		this.scModel = frozenSCModel;
+		this.ncModel = frozenNCModel;
+	}
+
 	/**
 	 * Retrieve a chord from the library with the given rootNote and chord signature.
 	 * @param root root note of the chord
@@ -167,20 +202,51 @@ public class ChordLibrary {
 			throw new IllegalArgumentException("There must only be one reference chord within the request.");
 		}
 
-		Set<ChordChangeConsonanceRecord> matchingChordRelations = cccModel.getRecords(chordChangeRequest);
+		ChordTransitionGraph graph = transitionGraphs.get(chordChangeRequest);
+		int referenceChordOrdinal = chordChangeRequest.compile().nextReferenceChord(0);
 
+		//the changes of the reference chord are nodes relative to its root
 		Set<Chord> relatedChords = new HashSet<>();
-		for(ChordChangeConsonanceRecord chordRelationRecord : matchingChordRelations) {
-			NoteName rootNoteOfRelatedChord = 
-					rootNote.getNoteByInterval(chordRelationRecord.intervalBetweenRoots());
-			ChordSignature chordSignatureOfRelatedChord = chordRelationRecord.endChordSignature();
-
-			relatedChords.add(this.getChord(rootNoteOfRelatedChord, chordSignatureOfRelatedChord));
+		for(int i = graph.firstTransition(referenceChordOrdinal); i < graph.endOfTransitions(referenceChordOrdinal); i++) {
+			relatedChords.add(ChordTransitionGraph.chordOfNode(this::getChord, rootNote, graph.transition(i)));
 		}
 
 		return relatedChords;
 	}
 
+	/**
+	 * Get all chords leading into the single target chord in the chordChangeRequest using the given root note.
+	 * @param rootNote rootNote of the target chord
+	 * @param chordChangeRequest request containing a single targetChordSignature, and the reference chords defined
+	 * by the other parameters of the request
+	 * @return set of chords whose change into the target chord is defined by the chordChangeRequest
+	 */
+	public Set<Chord> getChordsLeadingTo(NoteName rootNote,ChordChangeConsonanceRecordRequest chordChangeRequest){
+		if(rootNote == null) {
+			throw new NullPointerException("rootNote may not be null");
+		}
+		if(chordChangeRequest == null) {
+			throw new NullPointerException("chordChangeRequest may not be null.");
+		}
+		//Make sure that there is only one target chord we are looking for in the request.
+		if(chordChangeRequest.getNumberOfTargetChordsRequested() != 1) {
+			throw new IllegalArgumentException("There must only be one target chord within the request.");
+		}
+
+		ChordTransitionGraph graph = transitionGraphs.get(chordChangeRequest);
+		int targetChordOrdinal = chordChangeRequest.compile().nextTarget(0);
+		int targetNode = ChordTransitionGraph.node(targetChordOrdinal, 0);
+
+		//going back along a change goes down the interval from the target root
+		Set<Chord> leadingChords = new HashSet<>();
+		for(int i = graph.firstTransitionInto(targetChordOrdinal); i < graph.endOfTransitionsInto(targetChordOrdinal); i++) {
+			int leadingNode = ChordTransitionGraph.source(targetNode, graph.transitionInto(i));
+			leadingChords.add(ChordTransitionGraph.chordOfNode(this::getChord, rootNote, leadingNode));
+		}
+
+		return leadingChords;
+	}
+
 	/**
 	 * Get all of the scales defined by the ScaleConsonanceRecordRequest.
 	 * The request must have a SINGLE REFERENCE CHORD, and the scales/ratings
@@ -225,15 +291,10 @@ public class ChordLibrary {
 			throw new IllegalArgumentException("There must only be one reference chord within the request.");
 		}
 
-		Set<ScaleConsonanceRecord> relatedScaleRecords = scModel.getRecords(scaleConsonanceRequest);
+		Set<ScaleSignature> relatedScaleSignatures = EnumSet.noneOf(ScaleSignature.class);
 
-		Set<ScaleSignature> relatedScaleSignatures = new HashSet<>();
-
-		for(ScaleConsonanceRecord relatedScaleRecord : relatedScaleRecords) {
-			ScaleSignature relatedScaleSignature = relatedScaleRecord.scaleSignature();
-
-			relatedScaleSignatures.add(relatedScaleSignature);
-		}
+		scModel.forEachRating(scaleConsonanceRequest, 
+				(chordSig, relatedScaleSignature, rating) -> relatedScaleSignatures.add(relatedScaleSignature));
 		return relatedScaleSignatures;
 	}
 
@@ -272,14 +333,10 @@ public class ChordLibrary {
 	public Set<Interval> getRelatedIntervals(NoteConsonanceRecordRequest noteConsonanceRequest){
 		validateNoteConsonanceRequest(noteConsonanceRequest);
 
-		Set<NoteConsonanceRecord> relatedNoteConsonanceRecords =
-				ncModel.getRecords(noteConsonanceRequest);
-
-		Set<Interval> relatedIntervals = new HashSet<>();
-		for(NoteConsonanceRecord relatedNoteConsonanceRecord : relatedNoteConsonanceRecords) {
-			Interval relatedInterval = relatedNoteConsonanceRecord.interval();
-			relatedIntervals.add(relatedInterval);
-		}
+		Set<Interval> relatedIntervals = EnumSet.noneOf(Interval.class);
+		
+		ncModel.forEachRating(noteConsonanceRequest, 
+				(chordSig, relatedInterval, rating) -> relatedIntervals.add(relatedInterval));
 
 		return relatedIntervals;
 	}
@@ -291,30 +348,72 @@ public class ChordLibrary {
 	 * These progressions are referred to as primitive progressions since there
 	 * are no progressions(cycles) contained within.
 	 * 
+	 * Every chord change of a progression, including the change from the last
+	 * chord back to the start chord, is a rated change matching the request.
+	 * The search runs on the common ForkJoinPool, use searchChordProgressions
+	 * to run it on a pool of another size or to be able to cancel it.
 	 * @param startChord the chord that will be used as the start of the chord
 	 * progression
 	 * @param request request used to filter the progression to the desired chord types,
 	 * intervals, and ratings
-	 * @param depth the depth of the recursive search algorithm
-	 * @return a set of unique chord progressions based on the 
+	 * @param depth the maximum number of chords in a progression
+	 * @return a set of unique chord progressions starting with the start chord
 	 */
 	public Set<CircularLinkedList<Chord>> getChordProgressions(
 			Chord startChord, 
 			ChordChangeConsonanceRecordRequest request, 
 			int depth){
+		return searchChordProgressions(startChord, request, depth, ForkJoinPool.commonPool()).join();
+	}
 
-		//TODO:IMPLEMENT METHOD
-		
-		return null;
+	/**
+	 * Start searching the chord progressions of getChordProgressions on the
+	 * given pool, split into tasks that run on as many threads as the 
+	 * parallelism of the pool.
+	 * @param startChord the chord that will be used as the start of the chord
+	 * progression
+	 * @param request request used to filter the progression to the desired chord types,
+	 * intervals, and ratings
+	 * @param depth the maximum number of chords in a progression
+	 * @param pool pool running the search
+	 * @return the running search, joined to get the progressions
+	 */
+	public ProgressionSearch<Chord> searchChordProgressions(
+			Chord startChord, 
+			ChordChangeConsonanceRecordRequest request, 
+			int depth,
+			ForkJoinPool pool){
+		if(startChord == null) {
+			throw new NullPointerException("startChord may not be null");
+		}
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+
+		ProgressionCycleEnumerator enumerator = new ProgressionCycleEnumerator(
+				transitionGraphs.get(request), 
+				startChord.getSignature(), 
+				depth);
+		return new ProgressionSearch<>(
+				enumerator, 
+				enumerator.chordProgressions(this::getChord, startChord.getRoot()), 
+				pool);
 	}
 	
 	/**
 	 * Get a list of all generic chord progressions based on the given start signature.
 	 * 
+	 * The roots of the chords are followed through the progression, so a
+	 * progression only closes when it comes back to the start signature on
+	 * the root it started from. Progressions of the same signatures that only
+	 * differ by their roots, or that are rotations of each other, are returned 
+	 * once starting with the start signature.
+	 * The search runs on the common ForkJoinPool, use searchGenericChordProgressions
+	 * to run it on a pool of another size or to be able to cancel it.
 	 * @param startChordSignature chord signature used as the base for the progression
 	 * @param request restrictions on the types of chords,intervals,and ratings used to generate
 	 * the progression.
-	 * @param depth recursive depth of the algorithm
+	 * @param depth the maximum number of chords in a progression
  	 * @return a set of unique chord progressions matching the parameters stored in a circular
  	 * linked list.
 	 */
@@ -322,9 +421,214 @@ public class ChordLibrary {
 			ChordSignature startChordSignature, 
 			ChordChangeConsonanceRecordRequest request,
 			int depth){
+		return searchGenericChordProgressions(startChordSignature, request, depth, ForkJoinPool.commonPool()).join();
+	}
+
+	/**
+	 * Start searching the generic chord progressions of getGenericChordProgressions
+	 * on the given pool, split into tasks that run on as many threads as the 
+	 * parallelism of the pool.
+	 * @param startChordSignature chord signature used as the base for the progression
+	 * @param request restrictions on the types of chords,intervals,and ratings used to generate
+	 * the progression.
+	 * @param depth the maximum number of chords in a progression
+	 * @param pool pool running the search
+	 * @return the running search, joined to get the progressions
+	 */
+	public ProgressionSearch<ChordSignature> searchGenericChordProgressions( 
+			ChordSignature startChordSignature, 
+			ChordChangeConsonanceRecordRequest request,
+			int depth,
+			ForkJoinPool pool){
+		if(startChordSignature == null) {
+			throw new NullPointerException("startChordSignature may not be null");
+		}
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+
+		ProgressionCycleEnumerator enumerator = new ProgressionCycleEnumerator(
+				transitionGraphs.get(request), 
+				startChordSignature, 
+				depth);
+		return new ProgressionSearch<>(enumerator, enumerator.signatureProgressions(), pool);
+	}
+
+	/**
+	 * Get every shortest path of chord changes from the source chord to the
+	 * destination chord, every change a rated change matching the request.
+	 *
+	 * The paths are found with a breadth first search from both ends that
+	 * stops at the first length where the two searches meet, so only the
+	 * chords close to the shortest paths are ever looked at.
+	 * @param sourceChord chord the paths start from
+	 * @param destinationChord chord the paths end on
+	 * @param request request used to filter the changes to the desired chord types,
+	 * intervals, and ratings
+	 * @param depth the maximum number of chord changes in a path
+	 * @return the paths, each one the chords from the source chord to the destination
+	 * chord, empty if there is no path of at most depth changes
+	 */
+	public List<List<Chord>> getShortestPaths(
+			Chord sourceChord,
+			Chord destinationChord,
+			ChordChangeConsonanceRecordRequest request,
+			int depth){
+		validatePathRequest(sourceChord, destinationChord, request, depth);
+
+		NoteName sourceRoot = sourceChord.getRoot();
+		ChordPathFinder pathFinder = new ChordPathFinder(transitionGraphs.get(request));
+		return toChordPaths(
+				pathFinder.shortestPaths(
+						ChordTransitionGraph.node(sourceRoot, sourceChord),
+						ChordTransitionGraph.node(sourceRoot, destinationChord),
+						depth),
+				sourceRoot);
+	}
+
+	/**
+	 * Get the shortest paths of chord changes from the source chord to the
+	 * destination chord that don't go through a chord twice, shortest first
+	 * (Yen's k shortest paths). Every change is a rated change matching the
+	 * request.
+	 * @param sourceChord chord the paths start from
+	 * @param destinationChord chord the paths end on
+	 * @param request request used to filter the changes to the desired chord types,
+	 * intervals, and ratings
+	 * @param depth the maximum number of chord changes in a path
+	 * @param numberOfPaths the maximum number of paths returned
+	 * @return the paths, each one the chords from the source chord to the destination
+	 * chord
+	 */
+	public List<List<Chord>> getKShortestPaths(
+			Chord sourceChord,
+			Chord destinationChord,
+			ChordChangeConsonanceRecordRequest request,
+			int depth,
+			int numberOfPaths){
+		validatePathRequest(sourceChord, destinationChord, request, depth);
+		if(numberOfPaths < 1) {
+			throw new IllegalArgumentException("numberOfPaths must be at least 1");
+		}
+
+		NoteName sourceRoot = sourceChord.getRoot();
+		ChordPathFinder pathFinder = new ChordPathFinder(transitionGraphs.get(request));
+		return toChordPaths(
+				pathFinder.kShortestPaths(
+						ChordTransitionGraph.node(sourceRoot, sourceChord),
+						ChordTransitionGraph.node(sourceRoot, destinationChord),
+						depth,
+						numberOfPaths),
+				sourceRoot);
+	}
+
+	/**
+	 * Get the best scoring chord progressions of a fixed number of chords,
+	 * best first.
+	 *
+	 * Every chord change of a progression is a rated change matching the
+	 * request, and the scorer scores a progression from the ratings of its
+	 * changes. Only the best progressions found so far are kept and changes
+	 * that can't lead to a better progression are skipped, so a search for
+	 * a few of the best progressions looks at far fewer progressions than
+	 * there are.
+	 *
+	 * A progression never goes through a chord twice, except that it may
+	 * end on its start chord when that is also the end chord asked for.
+	 * Without a start chord a progression may start on any chord. Without 
+	 * a start or end chord the progressions only differing by their roots 
+	 * are returned once, starting on a chord with the root C.
+	 * Progressions with the same score are in the order they were found.
+	 * @param startChord the first chord of the progressions, null for any
+	 * @param endChord the last chord of the progressions, null for any
+	 * @param request request used to filter the progression to the desired chord types,
+	 * intervals, and ratings
+	 * @param length the number of chords in a progression
+	 * @param numberOfProgressions the maximum number of progressions returned
+	 * @param scorer scores the progressions, ProgressionScorer.sum or min or
+	 * a scorer of your own
+	 * @return the best progressions, best first
+	 */
+	public List<RankedProgression> getBestChordProgressions(
+			Chord startChord,
+			Chord endChord,
+			ChordChangeConsonanceRecordRequest request,
+			int length,
+			int numberOfProgressions,
+			ProgressionScorer scorer){
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		if(scorer == null) {
+			throw new NullPointerException("scorer may not be null");
+		}
+
+		//the nodes of the graph are relative to the root of a chord the progressions go through
+		NoteName root;
+		if(startChord != null) {
+			root = startChord.getRoot();
+		}else if(endChord != null) {
+			root = endChord.getRoot();
+		}else {
+			root = NoteName.C;
+		}
 
-		//TODO:IMPLEMENT METHOD
-		return null;
+		int[] startNodes;
+		if(startChord != null) {
+			startNodes = new int[] {ChordTransitionGraph.node(root, startChord)};
+		}else if(endChord != null) {
+			startNodes = IntStream.range(0, ChordTransitionGraph.NUMBER_OF_NODES).toArray();
+		}else {
+			startNodes = IntStream.range(0, ChordSignature.values().length)
+					.map(signatureOrdinal -> ChordTransitionGraph.node(signatureOrdinal, 0))
+					.toArray();
+		}
+		int endNode = endChord == null ? RankedProgressionSearch.NO_NODE : ChordTransitionGraph.node(root, endChord);
+
+		RankedProgressionSearch search = new RankedProgressionSearch(
+				transitionGraphs.get(request), 
+				scorer, 
+				length, 
+				numberOfProgressions, 
+				endNode);
+
+		List<RankedProgression> progressions = new ArrayList<>();
+		for(RankedProgressionSearch.RankedNodes rankedNodes : search.find(startNodes)) {
+			List<Chord> chords = new ArrayList<>(length);
+			for(int node : rankedNodes.nodes()) {
+				chords.add(ChordTransitionGraph.chordOfNode(this::getChord, root, node));
+			}
+			progressions.add(new RankedProgression(chords, rankedNodes.score()));
+		}
+		return progressions;
+	}
+
+	private void validatePathRequest(
+			Chord sourceChord,
+			Chord destinationChord,
+			ChordChangeConsonanceRecordRequest request,
+			int depth) {
+		if(sourceChord == null || destinationChord == null) {
+			throw new NullPointerException("chords may not be null");
+		}
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		if(depth < 0) {
+			throw new IllegalArgumentException("depth may not be negative");
+		}
+	}
+
+	private List<List<Chord>> toChordPaths(List<int[]> paths, NoteName sourceRoot){
+		List<List<Chord>> chordPaths = new ArrayList<>(paths.size());
+		for(int[] path : paths) {
+			List<Chord> chordPath = new ArrayList<>(path.length);
+			for(int node : path) {
+				chordPath.add(ChordTransitionGraph.chordOfNode(this::getChord, sourceRoot, node));
+			}
+			chordPaths.add(chordPath);
+		}
+		return chordPaths;
 	}
 
 	/**
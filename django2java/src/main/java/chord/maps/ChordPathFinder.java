@@ -0,0 +1,319 @@
+package chord.maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds paths of chord changes between two chords in a ChordTransitionGraph.
+ *
+ * shortestPaths finds every shortest path with a bidirectional breadth
+ * first search. The search goes forward from the source and backward from
+ * the destination a level at a time, always growing the smaller frontier,
+ * until the two meet. Every shortest path goes through one of the nodes
+ * where they met, so the paths are put together from the shortest paths
+ * to those nodes from both sides.
+ *
+ * kShortestPaths finds the shortest paths without repeated chords in
+ * order of length with Yen's algorithm. Every change counts the same.
+ * @author DAD
+ *
+ */
+final class ChordPathFinder {
+
+	private static final int NUMBER_OF_NODES = ChordTransitionGraph.NUMBER_OF_NODES;
+	private static final int UNREACHABLE = ChordTransitionGraph.UNREACHABLE;
+
+	private final ChordTransitionGraph graph;
+
+	ChordPathFinder(ChordTransitionGraph graph) {
+		if(graph == null) {
+			throw new NullPointerException("graph may not be null");
+		}
+		this.graph = graph;
+	}
+
+	/**
+	 * Find every shortest path from the source to the destination.
+	 * @param source node the paths start from
+	 * @param destination node the paths end on
+	 * @param maximumChanges maximum number of changes in a path
+	 * @return the paths, each one the nodes from the source to the destination,
+	 * empty if there is no path of at most maximumChanges changes
+	 */
+	List<int[]> shortestPaths(int source, int destination, int maximumChanges) {
+		if(source == destination) {
+			return List.of(new int[] {source});
+		}
+		return new BidirectionalSearch(source, destination).findPaths(maximumChanges);
+	}
+
+	/**
+	 * Find the shortest paths from the source to the destination that don't
+	 * repeat a chord, shortest first. Paths of the same length are returned
+	 * in the order they were found.
+	 * @param source node the paths start from
+	 * @param destination node the paths end on
+	 * @param maximumChanges maximum number of changes in a path
+	 * @param numberOfPaths maximum number of paths to return
+	 * @return the paths, each one the nodes from the source to the destination
+	 */
+	List<int[]> kShortestPaths(int source, int destination, int maximumChanges, int numberOfPaths) {
+		List<int[]> paths = new ArrayList<>();
+		boolean[] blockedNodes = new boolean[NUMBER_OF_NODES];
+		boolean[] blockedFirstSteps = new boolean[NUMBER_OF_NODES];
+
+		int[] shortestPath = shortestPath(source, destination, maximumChanges, blockedNodes, blockedFirstSteps);
+		if(shortestPath == null) {
+			return paths;
+		}
+		paths.add(shortestPath);
+
+		//candidates ordered by length then by the order they were found in
+		PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+				Comparator.comparingInt((Candidate candidate) -> candidate.nodes().length)
+				.thenComparingLong(Candidate::sequence));
+		Set<List<Integer>> pathsFound = new HashSet<>();
+		pathsFound.add(asList(shortestPath));
+		long sequence = 0;
+
+		while(paths.size() < numberOfPaths) {
+			int[] previousPath = paths.get(paths.size() - 1);
+			for(int spur = 0; spur < previousPath.length - 1; spur++) {
+				//changes already taken from the same root path can't be taken again
+				Arrays.fill(blockedFirstSteps, false);
+				for(int[] path : paths) {
+					if(path.length > spur + 1 && Arrays.equals(path, 0, spur + 1, previousPath, 0, spur + 1)) {
+						blockedFirstSteps[path[spur + 1]] = true;
+					}
+				}
+				//the spur path may not go back through the root path
+				Arrays.fill(blockedNodes, false);
+				for(int i = 0; i < spur; i++) {
+					blockedNodes[previousPath[i]] = true;
+				}
+
+				int[] spurPath = shortestPath(
+						previousPath[spur], destination, maximumChanges - spur, blockedNodes, blockedFirstSteps);
+				if(spurPath == null) {
+					continue;
+				}
+				int[] path = new int[spur + spurPath.length];
+				System.arraycopy(previousPath, 0, path, 0, spur);
+				System.arraycopy(spurPath, 0, path, spur, spurPath.length);
+				if(pathsFound.add(asList(path))) {
+					candidates.add(new Candidate(path, sequence++));
+				}
+			}
+			if(candidates.isEmpty()) {
+				break;
+			}
+			paths.add(candidates.poll().nodes());
+		}
+		return paths;
+	}
+
+	/**
+	 * Breadth first search for one shortest path avoiding the blocked nodes,
+	 * whose first change doesn't go to a blocked first step.
+	 * @return the path or null if there is none within maximumChanges changes
+	 */
+	private int[] shortestPath(int source, int destination, int maximumChanges, boolean[] blockedNodes, boolean[] blockedFirstSteps) {
+		if(source == destination) {
+			return new int[] {source};
+		}
+		int[] distances = new int[NUMBER_OF_NODES];
+		int[] previous = new int[NUMBER_OF_NODES];
+		Arrays.fill(distances, UNREACHABLE);
+		int[] queue = new int[NUMBER_OF_NODES];
+		int head = 0;
+		int tail = 0;
+
+		distances[source] = 0;
+		queue[tail++] = source;
+		while(head < tail) {
+			int node = queue[head++];
+			if(distances[node] == maximumChanges) {
+				break;
+			}
+			int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+			for(int i = graph.firstTransition(signatureOrdinal); i < graph.endOfTransitions(signatureOrdinal); i++) {
+				int next = ChordTransitionGraph.target(node, graph.transition(i));
+				if(distances[next] != UNREACHABLE || blockedNodes[next] || (node == source && blockedFirstSteps[next])) {
+					continue;
+				}
+				distances[next] = distances[node] + 1;
+				previous[next] = node;
+				if(next == destination) {
+					int[] path = new int[distances[next] + 1];
+					for(int position = path.length - 1, current = next; position >= 0; position--) {
+						path[position] = current;
+						current = previous[current];
+					}
+					return path;
+				}
+				queue[tail++] = next;
+			}
+		}
+		return null;
+	}
+
+	private static List<Integer> asList(int[] path) {
+		return Arrays.stream(path).boxed().toList();
+	}
+
+	/**
+	 * Path waiting to be taken as the next shortest path.
+	 */
+	private record Candidate(int[] nodes, long sequence) {
+	}
+
+	/**
+	 * State of one bidirectional search.
+	 */
+	private final class BidirectionalSearch {
+
+		private final int source;
+		private final int destination;
+
+		private final int[] forwardDistances = new int[NUMBER_OF_NODES];
+		private final int[] backwardDistances = new int[NUMBER_OF_NODES];
+
+		BidirectionalSearch(int source, int destination) {
+			this.source = source;
+			this.destination = destination;
+			Arrays.fill(forwardDistances, UNREACHABLE);
+			Arrays.fill(backwardDistances, UNREACHABLE);
+		}
+
+		List<int[]> findPaths(int maximumChanges) {
+			int[] forwardFrontier = new int[NUMBER_OF_NODES];
+			int[] backwardFrontier = new int[NUMBER_OF_NODES];
+			int[] nextFrontier = new int[NUMBER_OF_NODES];
+			int forwardSize = 1;
+			int backwardSize = 1;
+			int forwardDepth = 0;
+			int backwardDepth = 0;
+
+			forwardFrontier[0] = source;
+			backwardFrontier[0] = destination;
+			forwardDistances[source] = 0;
+			backwardDistances[destination] = 0;
+
+			int length = UNREACHABLE;
+			boolean lastLevelForward = true;
+			int lastLevelSize = 0;
+			while(length == UNREACHABLE && forwardDepth + backwardDepth < maximumChanges && forwardSize > 0 && backwardSize > 0) {
+				lastLevelForward = forwardSize <= backwardSize;
+				int nextSize = 0;
+				if(lastLevelForward) {
+					for(int f = 0; f < forwardSize; f++) {
+						int node = forwardFrontier[f];
+						int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+						for(int i = graph.firstTransition(signatureOrdinal); i < graph.endOfTransitions(signatureOrdinal); i++) {
+							int next = ChordTransitionGraph.target(node, graph.transition(i));
+							if(forwardDistances[next] == UNREACHABLE) {
+								forwardDistances[next] = forwardDepth + 1;
+								nextFrontier[nextSize++] = next;
+								if(backwardDistances[next] != UNREACHABLE) {
+									length = Math.min(length, forwardDepth + 1 + backwardDistances[next]);
+								}
+							}
+						}
+					}
+					forwardDepth++;
+					int[] frontier = forwardFrontier;
+					forwardFrontier = nextFrontier;
+					nextFrontier = frontier;
+					forwardSize = nextSize;
+				}else {
+					for(int b = 0; b < backwardSize; b++) {
+						int node = backwardFrontier[b];
+						int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+						for(int i = graph.firstTransitionInto(signatureOrdinal); i < graph.endOfTransitionsInto(signatureOrdinal); i++) {
+							int previous = ChordTransitionGraph.source(node, graph.transitionInto(i));
+							if(backwardDistances[previous] == UNREACHABLE) {
+								backwardDistances[previous] = backwardDepth + 1;
+								nextFrontier[nextSize++] = previous;
+								if(forwardDistances[previous] != UNREACHABLE) {
+									length = Math.min(length, backwardDepth + 1 + forwardDistances[previous]);
+								}
+							}
+						}
+					}
+					backwardDepth++;
+					int[] frontier = backwardFrontier;
+					backwardFrontier = nextFrontier;
+					nextFrontier = frontier;
+					backwardSize = nextSize;
+				}
+				lastLevelSize = nextSize;
+			}
+
+			List<int[]> paths = new ArrayList<>();
+			if(length == UNREACHABLE) {
+				return paths;
+			}
+			//every shortest path goes through one node of the last level where both distances add up to the length
+			int[] lastLevel = lastLevelForward ? forwardFrontier : backwardFrontier;
+			int[] path = new int[length + 1];
+			for(int m = 0; m < lastLevelSize; m++) {
+				int meetingNode = lastLevel[m];
+				if(backwardDistances[meetingNode] == UNREACHABLE || forwardDistances[meetingNode] == UNREACHABLE ||
+						forwardDistances[meetingNode] + backwardDistances[meetingNode] != length) {
+					continue;
+				}
+				int meetingPosition = forwardDistances[meetingNode];
+				path[meetingPosition] = meetingNode;
+				addPathsBack(path, meetingPosition, meetingPosition, paths);
+			}
+			return paths;
+		}
+
+		/**
+		 * Fill the path back from the position to the source with every
+		 * choice of nodes one change closer to the source, then fill the
+		 * rest of it from the meeting position.
+		 */
+		private void addPathsBack(int[] path, int position, int meetingPosition, List<int[]> paths) {
+			if(position == 0) {
+				addPathsForward(path, meetingPosition, paths);
+				return;
+			}
+			int node = path[position];
+			int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+			for(int i = graph.firstTransitionInto(signatureOrdinal); i < graph.endOfTransitionsInto(signatureOrdinal); i++) {
+				int previous = ChordTransitionGraph.source(node, graph.transitionInto(i));
+				if(forwardDistances[previous] == position - 1) {
+					path[position - 1] = previous;
+					addPathsBack(path, position - 1, meetingPosition, paths);
+				}
+			}
+		}
+
+		/**
+		 * Fill the path forward from the position to the destination with
+		 * every choice of nodes one change closer to the destination.
+		 */
+		private void addPathsForward(int[] path, int position, List<int[]> paths) {
+			int last = path.length - 1;
+			if(position == last) {
+				paths.add(path.clone());
+				return;
+			}
+			int node = path[position];
+			int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+			for(int i = graph.firstTransition(signatureOrdinal); i < graph.endOfTransitions(signatureOrdinal); i++) {
+				int next = ChordTransitionGraph.target(node, graph.transition(i));
+				if(backwardDistances[next] == last - position - 1) {
+					path[position + 1] = next;
+					addPathsForward(path, position + 1, paths);
+				}
+			}
+		}
+	}
+}
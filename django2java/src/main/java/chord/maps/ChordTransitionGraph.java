@@ -0,0 +1,284 @@
+package chord.maps;
+
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+import chord.Chord;
+import chord.ConsonanceRating;
+import chord.NoteName;
+import chord.ident.ChordSignature;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeRatingModel;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * The chord changes of a model that match a request, stored in int arrays
+ * so that searches can walk from chord to chord without creating records
+ * or looking anything up in maps.
+ *
+ * A node is a chord relative to the chord a search starts from, its
+ * signature ordinal * NUMBER_OF_INTERVALS + the number of semitones its
+ * root is above the root of the start chord. The start chord is node
+ * signatureOrdinal * NUMBER_OF_INTERVALS.
+ *
+ * The changes are stored once per signature(compressed sparse rows), a
+ * change encoded as endOrdinal * NUMBER_OF_INTERVALS + intervalOrdinal.
+ * The changes from a node are the changes of its signature with the
+ * interval added to the root offset of the node mod 12, see target.
+ * The changes leading into every signature are stored the same way with
+ * the start ordinal, so distances back to a node can be found as well.
+ * The rating of every change is kept next to it so searches can weigh
+ * the changes they take.
+ *
+ * A graph only depends on the model and the records requested, the root
+ * of the start chord only matters when the nodes are turned into chords,
+ * so ChordLibrary builds one graph for every request and shares it
+ * between all of its chord change queries.
+ * @author DAD
+ *
+ */
+final class ChordTransitionGraph {
+
+	static final int NUMBER_OF_INTERVALS = ChordChangeCellLayout.NUMBER_OF_INTERVALS;
+
+	static final int NUMBER_OF_NODES = ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES * NUMBER_OF_INTERVALS;
+
+	/**
+	 * Distance to a node that can't be reached.
+	 */
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private static final ChordSignature[] CHORD_SIGNATURES = ChordSignature.values();
+	private static final NoteName[] NOTE_NAMES = NoteName.values();
+	private static final ConsonanceRating[] RATINGS = ConsonanceRating.values();
+
+	//changes from signature s are transitions[firstTransition[s]] up to transitions[firstTransition[s + 1]]
+	private final int[] firstTransition;
+	private final int[] transitions;
+	//ordinal of the rating of each change in transitions
+	private final byte[] transitionRatings;
+
+	//changes into signature s are transitionsInto[firstTransitionInto[s]] up to transitionsInto[firstTransitionInto[s + 1]]
+	private final int[] firstTransitionInto;
+	private final int[] transitionsInto;
+
+	private ChordTransitionGraph(int[] cells, byte[] ratings, int numberOfCells) {
+		firstTransition = new int[ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES + 1];
+		firstTransitionInto = new int[ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES + 1];
+		transitions = new int[numberOfCells];
+		transitionRatings = new byte[numberOfCells];
+		transitionsInto = new int[numberOfCells];
+
+		for(int i = 0; i < numberOfCells; i++) {
+			firstTransition[ChordChangeCellLayout.startOrdinal(cells[i]) + 1]++;
+			firstTransitionInto[ChordChangeCellLayout.endOrdinal(cells[i]) + 1]++;
+		}
+		for(int signature = 0; signature < ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES; signature++) {
+			firstTransition[signature + 1] += firstTransition[signature];
+			firstTransitionInto[signature + 1] += firstTransitionInto[signature];
+		}
+
+		int[] nextTransition = Arrays.copyOf(firstTransition, ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES);
+		int[] nextTransitionInto = Arrays.copyOf(firstTransitionInto, ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES);
+		for(int i = 0; i < numberOfCells; i++) {
+			int cell = cells[i];
+			int startOrdinal = ChordChangeCellLayout.startOrdinal(cell);
+			int endOrdinal = ChordChangeCellLayout.endOrdinal(cell);
+			int intervalOrdinal = ChordChangeCellLayout.intervalOrdinal(cell);
+
+			transitionRatings[nextTransition[startOrdinal]] = ratings[i];
+			transitions[nextTransition[startOrdinal]++] = node(endOrdinal, intervalOrdinal);
+			transitionsInto[nextTransitionInto[endOrdinal]++] = node(startOrdinal, intervalOrdinal);
+		}
+	}
+
+	/**
+	 * Build the graph of the chord changes matching the request.
+	 * @param model model holding the ratings of the chord changes
+	 * @param request chord changes to add to the graph
+	 * @return graph of the rated chord changes matching the request
+	 */
+	static ChordTransitionGraph build(ChordChangeRatingModel model, ChordChangeConsonanceRecordRequest request) {
+		int[][] cells = {new int[64]};
+		byte[][] ratings = {new byte[64]};
+		int[] numberOfCells = {0};
+		model.forEachRating(request, (startChordSig, endChordSig, intervalBetweenRoots, rating) -> {
+			if(numberOfCells[0] == cells[0].length) {
+				cells[0] = Arrays.copyOf(cells[0], cells[0].length * 2);
+				ratings[0] = Arrays.copyOf(ratings[0], ratings[0].length * 2);
+			}
+			ratings[0][numberOfCells[0]] = (byte)rating.ordinal();
+			cells[0][numberOfCells[0]++] = ChordChangeCellLayout.cellIndex(startChordSig, endChordSig, intervalBetweenRoots);
+		});
+		return new ChordTransitionGraph(cells[0], ratings[0], numberOfCells[0]);
+	}
+
+	/**
+	 * Get the node of a chord.
+	 * @param signatureOrdinal ordinal of the signature of the chord
+	 * @param rootOffset semitones from the root of the start chord to the root of the chord, 0 to 11
+	 * @return the node
+	 */
+	static int node(int signatureOrdinal, int rootOffset) {
+		return signatureOrdinal * NUMBER_OF_INTERVALS + rootOffset;
+	}
+
+	static int signatureOrdinal(int node) {
+		return node / NUMBER_OF_INTERVALS;
+	}
+
+	static int rootOffset(int node) {
+		return node % NUMBER_OF_INTERVALS;
+	}
+
+	/**
+	 * Get the node reached by taking the chord change from the node.
+	 * @param node node the change starts from
+	 * @param transition change as stored in the graph
+	 * @return node of the chord the change leads to
+	 */
+	static int target(int node, int transition) {
+		int intervalOrdinal = transition % NUMBER_OF_INTERVALS;
+		return transition - intervalOrdinal + (intervalOrdinal + rootOffset(node)) % NUMBER_OF_INTERVALS;
+	}
+
+	/**
+	 * Get the node reached by going back along a chord change leading into
+	 * the node.
+	 * @param node node the change leads to
+	 * @param transitionInto change as stored in the changes leading into the signature of the node
+	 * @return node of the chord the change starts from
+	 */
+	static int source(int node, int transitionInto) {
+		//the root of the chord leading in is the interval below the root of the node
+		int intervalOrdinal = rootOffset(transitionInto);
+		return transitionInto - intervalOrdinal
+				+ (rootOffset(node) - intervalOrdinal + NUMBER_OF_INTERVALS) % NUMBER_OF_INTERVALS;
+	}
+
+	/**
+	 * Get the node of a chord in a search starting from a chord with the given root.
+	 * @param startRoot root of the chord the search starts from
+	 * @param chord chord to find the node of
+	 * @return the node of the chord
+	 */
+	static int node(NoteName startRoot, Chord chord) {
+		int rootOffset = (chord.getRoot().ordinal() - startRoot.ordinal() + NUMBER_OF_INTERVALS) % NUMBER_OF_INTERVALS;
+		return node(chord.getSignature().ordinal(), rootOffset);
+	}
+
+	/**
+	 * Get the chord of every node in a search starting from a chord with 
+	 * the given root.
+	 * @param chordLookup gives the chord with a root and signature, usually
+	 * ChordLibrary.getChord
+	 * @param startRoot root of the chord the search starts from
+	 * @return the chords indexed by node
+	 */
+	static Chord[] chordsOfNodes(BiFunction<NoteName, ChordSignature, Chord> chordLookup, NoteName startRoot) {
+		Chord[] chords = new Chord[NUMBER_OF_NODES];
+		for(int node = 0; node < NUMBER_OF_NODES; node++) {
+			chords[node] = chordOfNode(chordLookup, startRoot, node);
+		}
+		return chords;
+	}
+
+	/**
+	 * Get the chord of a node in a search starting from a chord with the
+	 * given root.
+	 * @param chordLookup gives the chord with a root and signature, usually
+	 * ChordLibrary.getChord
+	 * @param startRoot root of the chord the search starts from
+	 * @param node node to get the chord of
+	 * @return the chord of the node
+	 */
+	static Chord chordOfNode(BiFunction<NoteName, ChordSignature, Chord> chordLookup, NoteName startRoot, int node) {
+		//note names go up a semitone at a time so the root is found by its ordinal
+		return chordLookup.apply(
+				NOTE_NAMES[(startRoot.ordinal() + rootOffset(node)) % NUMBER_OF_INTERVALS],
+				CHORD_SIGNATURES[signatureOrdinal(node)]);
+	}
+
+	/**
+	 * Get the index of the first change from the signature.
+	 */
+	int firstTransition(int signatureOrdinal) {
+		return firstTransition[signatureOrdinal];
+	}
+
+	/**
+	 * Get the index after the last change from the signature.
+	 */
+	int endOfTransitions(int signatureOrdinal) {
+		return firstTransition[signatureOrdinal + 1];
+	}
+
+	int transition(int index) {
+		return transitions[index];
+	}
+
+	/**
+	 * Get the rating of a change from a signature.
+	 * @param index index of the change, the same as for transition
+	 * @return rating of the change
+	 */
+	ConsonanceRating rating(int index) {
+		return RATINGS[transitionRatings[index]];
+	}
+
+	/**
+	 * Get the index of the first change leading into the signature.
+	 */
+	int firstTransitionInto(int signatureOrdinal) {
+		return firstTransitionInto[signatureOrdinal];
+	}
+
+	/**
+	 * Get the index after the last change leading into the signature.
+	 */
+	int endOfTransitionsInto(int signatureOrdinal) {
+		return firstTransitionInto[signatureOrdinal + 1];
+	}
+
+	int transitionInto(int index) {
+		return transitionsInto[index];
+	}
+
+	/**
+	 * Get the number of chord changes in the graph.
+	 * @return number of chord changes between signatures
+	 */
+	int numberOfTransitions() {
+		return transitions.length;
+	}
+
+	/**
+	 * Find the least number of changes from every node to the given node,
+	 * searching backwards along the changes leading into each node.
+	 * @param node node the distances are measured to
+	 * @return distance of every node, 0 for the node itself and
+	 * UNREACHABLE for nodes that can't reach it
+	 */
+	int[] distancesTo(int node) {
+		int[] distances = new int[NUMBER_OF_NODES];
+		Arrays.fill(distances, UNREACHABLE);
+		int[] queue = new int[NUMBER_OF_NODES];
+		int head = 0;
+		int tail = 0;
+
+		distances[node] = 0;
+		queue[tail++] = node;
+		while(head < tail) {
+			int current = queue[head++];
+			int endOrdinal = signatureOrdinal(current);
+			for(int i = firstTransitionInto[endOrdinal]; i < firstTransitionInto[endOrdinal + 1]; i++) {
+				int previous = source(current, transitionsInto[i]);
+				if(distances[previous] == UNREACHABLE) {
+					distances[previous] = distances[current] + 1;
+					queue[tail++] = previous;
+				}
+			}
+		}
+		return distances;
+	}
+}
@@ -0,0 +1,100 @@
+package chord.maps;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import chord.relations.ChordChangeRatingModel;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+/**
+ * The ChordTransitionGraphs of one chord change model, built the first
+ * time a request is used and kept for the next queries with the same
+ * request.
+ *
+ * Graphs are looked up by the compiled request, so two request objects
+ * asking for the same records share a graph and a request that is changed
+ * after being used gets the graph of what it asks for now. Only the most
+ * recently used graphs are kept, the least recently used one is dropped
+ * when there are more than the capacity.
+ *
+ * The cache holds on to the model it builds from, ChordLibrary replaces
+ * the whole cache when new models are published so graphs of the old
+ * model are never used for the new one.
+ * @author DAD
+ *
+ */
+final class ChordTransitionGraphCache {
+
+	/**
+	 * Number of graphs kept by ChordLibrary, a graph of every change in the
+	 * model takes a few hundred KB.
+	 */
+	static final int DEFAULT_CAPACITY = 32;
+
+	private final ChordChangeRatingModel model;
+
+	//access ordered so the eldest entry is the least recently used graph
+	private final Map<CompiledRecordRequest, ChordTransitionGraph> graphs;
+
+	ChordTransitionGraphCache(ChordChangeRatingModel model, int capacity) {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.model = model;
+		this.graphs = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CompiledRecordRequest, ChordTransitionGraph> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Get the graph of the chord changes matching the request, building it
+	 * if it isn't in the cache.
+	 *
+	 * The graph is built without holding the lock so other queries aren't
+	 * held up, if two threads build the same graph the first one stored is
+	 * kept.
+	 * @param request chord changes in the graph
+	 * @return graph of the rated chord changes matching the request
+	 */
+	ChordTransitionGraph get(ChordChangeConsonanceRecordRequest request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		CompiledRecordRequest key = request.compile();
+		synchronized(graphs) {
+			ChordTransitionGraph graph = graphs.get(key);
+			if(graph != null) {
+				return graph;
+			}
+		}
+
+		ChordTransitionGraph graph = ChordTransitionGraph.build(model, request);
+		synchronized(graphs) {
+			ChordTransitionGraph storedGraph = graphs.putIfAbsent(key, graph);
+			return storedGraph == null ? graph : storedGraph;
+		}
+	}
+
+	/**
+	 * Get the number of graphs in the cache.
+	 */
+	int size() {
+		synchronized(graphs) {
+			return graphs.size();
+		}
+	}
+
+	ChordChangeRatingModel getModel() {
+		return model;
+	}
+}
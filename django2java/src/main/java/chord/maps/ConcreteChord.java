@@ -191,7 +191,16 @@ class ConcreteChord implements Chord{
 	@Override
 	public List<List<Chord>> getPathToChord(Chord destinationChord, ChordChangeConsonanceRecordRequest request,
 			int changeDepth) {
-		// TODO Auto-generated method stub
-		return null;
+		ChordLibrary chordLibrary = ChordLibrary.getInstance();
+
+		return chordLibrary.getShortestPaths(this, destinationChord, request, changeDepth);
+	}
+
+	@Override
+	public List<List<Chord>> getPathsToChord(Chord destinationChord, ChordChangeConsonanceRecordRequest request,
+			int changeDepth, int numberOfPaths) {
+		ChordLibrary chordLibrary = ChordLibrary.getInstance();
+
+		return chordLibrary.getKShortestPaths(this, destinationChord, request, changeDepth, numberOfPaths);
 	}
 }
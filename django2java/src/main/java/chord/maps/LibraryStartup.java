@@ -0,0 +1,181 @@
+package chord.maps;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import chord.relations.ChordChangeRatingModel;
+import chord.relations.NoteRatingModel;
+import chord.relations.ScaleRatingModel;
+import chord.relations.persist.PersistenceException;
+
+/**
+ * Starts up the libraries with the models they use.
+ *
+ * The three models are loaded at the same time, and the ScaleLibrary and
+ * MIDINoteLibrary, which don't need the models, are built alongside them.
+ * The ChordLibrary is built once every model is loaded, so the time before
+ * the first query is about that of the slowest model load rather than the
+ * sum of them. The MIDIPlayer isn't created here, it opens its sequencer
+ * on the first playback.
+ *
+ * The time each step took is logged.
+ * @author DAD
+ *
+ */
+public final class LibraryStartup {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	//three model loads and two libraries
+	private static final int NUMBER_OF_TASKS = 5;
+
+	/**
+	 * Loads a model, usually the load method of a PersistModelStrategy.
+	 * @param <MODEL> type of model loaded
+	 */
+	@FunctionalInterface
+	public interface ModelLoader<MODEL> {
+		MODEL load() throws PersistenceException;
+	}
+
+	/**
+	 * The models loaded at startup.
+	 */
+	public record LoadedModels(
+			ChordChangeRatingModel chordChangeModel,
+			ScaleRatingModel scaleModel,
+			NoteRatingModel noteModel) {
+	}
+
+	private final ModelLoader<? extends ChordChangeRatingModel> chordChangeModelLoader;
+	private final ModelLoader<? extends ScaleRatingModel> scaleModelLoader;
+	private final ModelLoader<? extends NoteRatingModel> noteModelLoader;
+
+	/**
+	 * Create a startup that loads the models with the given loaders.
+	 * @param chordChangeModelLoader loader of the chord change model
+	 * @param scaleModelLoader loader of the scale model
+	 * @param noteModelLoader loader of the note model
+	 */
+	public LibraryStartup(
+			ModelLoader<? extends ChordChangeRatingModel> chordChangeModelLoader,
+			ModelLoader<? extends ScaleRatingModel> scaleModelLoader,
+			ModelLoader<? extends NoteRatingModel> noteModelLoader) {
+		if(chordChangeModelLoader == null) {
+			throw new NullPointerException("chord change model loader may not be null");
+		}
+		if(scaleModelLoader == null) {
+			throw new NullPointerException("scale model loader may not be null");
+		}
+		if(noteModelLoader == null) {
+			throw new NullPointerException("note model loader may not be null");
+		}
+		this.chordChangeModelLoader = chordChangeModelLoader;
+		this.scaleModelLoader = scaleModelLoader;
+		this.noteModelLoader = noteModelLoader;
+	}
+
+	/**
+	 * Load the models and build the ChordLibrary with them. The
+	 * ChordLibrary can only be initialized once.
+	 * @return the ChordLibrary
+	 * @throws PersistenceException if a model could not be loaded
+	 * @throws IllegalStateException if the ChordLibrary was already initialized
+	 */
+	public ChordLibrary start() throws PersistenceException {
+		long start = System.nanoTime();
+		LoadedModels models = loadModels();
+
+		long chordLibraryStart = System.nanoTime();
+		ChordLibrary.initializeChordLibraryInstance(
+				models.chordChangeModel(),
+				models.scaleModel(),
+				models.noteModel());
+		long end = System.nanoTime();
+
+		logger.info("Chord library built in {}, startup took {}.",
+				millis(end - chordLibraryStart), millis(end - start));
+		return ChordLibrary.getInstance();
+	}
+
+	/**
+	 * Load the three models at the same time, building the ScaleLibrary
+	 * and MIDINoteLibrary while they load. If a load fails the others are
+	 * cancelled.
+	 * @return the models loaded
+	 * @throws PersistenceException if a model could not be loaded
+	 */
+	public LoadedModels loadModels() throws PersistenceException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_TASKS, runnable -> {
+			Thread thread = new Thread(runnable, "library startup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			Future<ChordChangeRatingModel> chordChangeModel = executor.submit(
+					timed("chord change model load", chordChangeModelLoader::load));
+			Future<ScaleRatingModel> scaleModel = executor.submit(
+					timed("scale model load", scaleModelLoader::load));
+			Future<NoteRatingModel> noteModel = executor.submit(
+					timed("note model load", noteModelLoader::load));
+			Future<ScaleLibrary> scaleLibrary = executor.submit(
+					timed("scale library build", ScaleLibrary::getInstance));
+			Future<MIDINoteLibrary> noteLibrary = executor.submit(
+					timed("MIDI note library build", MIDINoteLibrary::getInstance));
+
+			LoadedModels models = new LoadedModels(
+					result(chordChangeModel),
+					result(scaleModel),
+					result(noteModel));
+			result(scaleLibrary);
+			result(noteLibrary);
+
+			logger.info("Models and libraries loaded in {}.", millis(System.nanoTime() - start));
+			return models;
+		} finally {
+			//stops the other loads if one failed
+			executor.shutdownNow();
+		}
+	}
+
+	private static <T> Callable<T> timed(String step, Callable<T> task) {
+		return () -> {
+			long start = System.nanoTime();
+			T result = task.call();
+			logger.info("{} took {}.", step, millis(System.nanoTime() - start));
+			return result;
+		};
+	}
+
+	private static <T> T result(Future<T> future) throws PersistenceException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("interrupted while loading the models", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof PersistenceException persistenceException) {
+				throw persistenceException;
+			}
+			if(cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if(cause instanceof Error error) {
+				throw error;
+			}
+			throw new PersistenceException("error loading the models", cause);
+		}
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f ms", nanos / 1_000_000.0);
+	}
+}
@@ -37,7 +37,7 @@ public class MIDINoteLibrary {
 
 	private static MIDINoteLibrary noteLibrary;
 
-	public static MIDINoteLibrary getInstance() {
+	public static synchronized MIDINoteLibrary getInstance() {
 		if(noteLibrary==null) {
 			logger.debug("Creating MIDI note Library");
 			noteLibrary = new MIDINoteLibrary();
@@ -0,0 +1,287 @@
+package chord.maps;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+
+import chord.Chord;
+import chord.NoteName;
+import chord.ident.ChordSignature;
+import chord.progression.CircularLinkedList;
+
+/**
+ * Finds the chord progressions that start from a chord and come back to
+ * it, the simple cycles of a ChordTransitionGraph through the start node
+ * with at most maximumLength chords.
+ *
+ * The search is a depth first search using int arrays for the path, the
+ * chords on the path and the next change to try from every chord of the
+ * path. The root offsets of the chords add up along the path, so a
+ * progression only closes when it comes back to the start signature with
+ * the root it started on.
+ *
+ * Johnson's blocked sets don't hold once the length of the cycles is
+ * bounded, so the search is pruned with the distance of every chord back
+ * to the start chord instead. A chord is only added to the path if the
+ * progression can still come back to the start chord within maximumLength
+ * chords, so no branch is searched that can't close a cycle.
+ *
+ * The search can also start from a path instead of the start chord alone,
+ * so that ProgressionSearch can split it into tasks by the first changes.
+ * @author DAD
+ *
+ */
+final class ProgressionCycleEnumerator {
+
+	/**
+	 * Callback receiving every cycle found.
+	 */
+	@FunctionalInterface
+	interface CycleVisitor {
+
+		/**
+		 * Called once for every cycle. The array is reused for the next
+		 * cycle so it must be copied to be kept.
+		 * @param nodes nodes of the cycle, the start node first
+		 * @param length number of chords in the cycle
+		 */
+		void visit(int[] nodes, int length);
+	}
+
+	/**
+	 * Turns a cycle into the progression returned for it.
+	 */
+	@FunctionalInterface
+	interface CycleMapper<P> {
+
+		/**
+		 * @param nodes nodes of the cycle, the start node first
+		 * @param length number of chords in the cycle
+		 * @return the progression, not sharing the array
+		 */
+		P map(int[] nodes, int length);
+	}
+
+	//the cancelled flag is checked every CANCEL_CHECK_MASK + 1 steps
+	private static final int CANCEL_CHECK_MASK = 0xFFF;
+
+	private static final ChordSignature[] CHORD_SIGNATURES = ChordSignature.values();
+
+	private final ChordTransitionGraph graph;
+
+	private final int startNode;
+
+	private final int maximumLength;
+
+	private final int[] distancesToStart;
+
+	/**
+	 * Create an enumerator for the cycles through the start signature at
+	 * root offset 0.
+	 * @param graph graph of the chord changes that may be used
+	 * @param startChordSignature signature of the first chord of every cycle
+	 * @param maximumLength maximum number of chords in a cycle, at least 1
+	 */
+	ProgressionCycleEnumerator(ChordTransitionGraph graph, ChordSignature startChordSignature, int maximumLength) {
+		if(graph == null) {
+			throw new NullPointerException("graph may not be null");
+		}
+		if(startChordSignature == null) {
+			throw new NullPointerException("startChordSignature may not be null");
+		}
+		if(maximumLength < 1) {
+			throw new IllegalArgumentException("depth must be at least 1");
+		}
+		this.graph = graph;
+		this.startNode = ChordTransitionGraph.node(startChordSignature.ordinal(), 0);
+		this.maximumLength = maximumLength;
+		this.distancesToStart = graph.distancesTo(startNode);
+	}
+
+	ChordTransitionGraph getGraph() {
+		return graph;
+	}
+
+	int getStartNode() {
+		return startNode;
+	}
+
+	/**
+	 * Check if the search may go on from the path to the node, that is if
+	 * the node isn't on the path and a cycle can still come back from it
+	 * to the start node without going over maximumLength chords.
+	 * @param path nodes of the path, the start node first
+	 * @param length number of nodes on the path
+	 * @param node node the path would go on to
+	 * @return true if the node may be added to the path
+	 */
+	boolean canExtend(int[] path, int length, int node) {
+		if(distancesToStart[node] > maximumLength - length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(path[i] == node) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Pass every cycle through the start node to the visitor.
+	 * @param visitor callback receiving the cycles
+	 */
+	void forEachCycle(CycleVisitor visitor) {
+		forEachCycle(new int[] {startNode}, 1, visitor, () -> false);
+	}
+
+	/**
+	 * Pass every cycle starting with the given path to the visitor.
+	 * @param prefix path every cycle starts with, the start node first, 
+	 * each node allowed by canExtend
+	 * @param prefixLength number of nodes of the prefix
+	 * @param visitor callback receiving the cycles
+	 * @param cancelled checked every few thousand steps of the search
+	 * @throws CancellationException if the search is cancelled
+	 */
+	void forEachCycle(int[] prefix, int prefixLength, CycleVisitor visitor, BooleanSupplier cancelled) {
+		int[] path = Arrays.copyOf(prefix, maximumLength);
+		int[] nextTransition = new int[maximumLength];
+		boolean[] onPath = new boolean[ChordTransitionGraph.NUMBER_OF_NODES];
+		for(int i = 0; i < prefixLength; i++) {
+			onPath[path[i]] = true;
+		}
+
+		int length = prefixLength;
+		nextTransition[length - 1] = graph.firstTransition(ChordTransitionGraph.signatureOrdinal(path[length - 1]));
+		int steps = 0;
+
+		while(length >= prefixLength) {
+			if((++steps & CANCEL_CHECK_MASK) == 0 && cancelled.getAsBoolean()) {
+				throw new CancellationException("progression search was cancelled");
+			}
+			int top = length - 1;
+			int node = path[top];
+			if(nextTransition[top] == graph.endOfTransitions(ChordTransitionGraph.signatureOrdinal(node))) {
+				//every change from this chord was tried
+				onPath[node] = false;
+				length--;
+				continue;
+			}
+
+			int target = ChordTransitionGraph.target(node, graph.transition(nextTransition[top]++));
+			if(target == startNode) {
+				visitor.visit(path, length);
+				continue;
+			}
+			//the shortest way back from the target has to fit in what is left
+			if(onPath[target] || distancesToStart[target] > maximumLength - length) {
+				continue;
+			}
+			path[length] = target;
+			nextTransition[length] = graph.firstTransition(ChordTransitionGraph.signatureOrdinal(target));
+			onPath[target] = true;
+			length++;
+		}
+	}
+
+	/**
+	 * Collect the progressions of every cycle.
+	 * @param mapper gives the progression of a cycle
+	 * @return the progressions in the order they were found
+	 */
+	<P> Set<P> collect(CycleMapper<P> mapper) {
+		Set<P> progressions = new LinkedHashSet<>();
+		forEachCycle((nodes, length) -> progressions.add(mapper.map(nodes, length)));
+		return progressions;
+	}
+
+	/**
+	 * Find every progression of chord signatures, see signatureProgressions.
+	 * @return the progressions in the order they were found
+	 */
+	Set<CircularLinkedList<ChordSignature>> findGenericProgressions() {
+		return collect(signatureProgressions());
+	}
+
+	/**
+	 * Find every progression of chords, see chordProgressions.
+	 * @return the progressions in the order they were found
+	 */
+	Set<CircularLinkedList<Chord>> findProgressions(BiFunction<NoteName, ChordSignature, Chord> chordLookup, NoteName startRoot) {
+		return collect(chordProgressions(chordLookup, startRoot));
+	}
+
+	/**
+	 * Get the progression of chord signatures of a cycle. Cycles that only
+	 * differ by the roots of their chords give the same progression of
+	 * signatures. Rotations of a progression give the same progression,
+	 * starting with the start signature, so that collecting them in a set
+	 * returns each one once.
+	 * @return mapper that may be used by any number of threads
+	 */
+	CycleMapper<CircularLinkedList<ChordSignature>> signatureProgressions() {
+		int startOrdinal = ChordTransitionGraph.signatureOrdinal(startNode);
+		return (nodes, length) -> {
+			int[] signatureOrdinals = new int[length];
+			for(int i = 0; i < length; i++) {
+				signatureOrdinals[i] = ChordTransitionGraph.signatureOrdinal(nodes[i]);
+			}
+			int first = smallestRotation(signatureOrdinals, length, startOrdinal);
+
+			CircularLinkedList<ChordSignature> progression = new CircularLinkedList<>();
+			for(int i = 0; i < length; i++) {
+				progression.addNode(CHORD_SIGNATURES[signatureOrdinals[(first + i) % length]]);
+			}
+			return progression;
+		};
+	}
+
+	/**
+	 * Get the progression of chords of a cycle, starting with the chord
+	 * with the given root. Every cycle is a different progression of chords.
+	 * @param chordLookup gives the chord with a root and signature, usually
+	 * ChordLibrary.getChord
+	 * @param startRoot root of the first chord of the progressions
+	 * @return mapper that may be used by any number of threads
+	 */
+	CycleMapper<CircularLinkedList<Chord>> chordProgressions(BiFunction<NoteName, ChordSignature, Chord> chordLookup, NoteName startRoot) {
+		Chord[] chords = ChordTransitionGraph.chordsOfNodes(chordLookup, startRoot);
+
+		return (nodes, length) -> {
+			CircularLinkedList<Chord> progression = new CircularLinkedList<>();
+			for(int i = 0; i < length; i++) {
+				progression.addNode(chords[nodes[i]]);
+			}
+			return progression;
+		};
+	}
+
+	/**
+	 * Find the rotation of the signatures that starts with the start
+	 * signature and comes first comparing ordinals, so that all rotations of
+	 * a progression give the same one.
+	 * @return index of the first signature of the rotation
+	 */
+	private static int smallestRotation(int[] signatureOrdinals, int length, int startOrdinal) {
+		int smallest = 0;
+		for(int candidate = 1; candidate < length; candidate++) {
+			if(signatureOrdinals[candidate] != startOrdinal) {
+				continue;
+			}
+			for(int i = 1; i < length; i++) {
+				int difference = signatureOrdinals[(candidate + i) % length] - signatureOrdinals[(smallest + i) % length];
+				if(difference != 0) {
+					if(difference < 0) {
+						smallest = candidate;
+					}
+					break;
+				}
+			}
+		}
+		return smallest;
+	}
+}
@@ -0,0 +1,164 @@
+package chord.maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import chord.progression.CircularLinkedList;
+
+/**
+ * A chord progression search running on a ForkJoinPool, started with
+ * ChordLibrary.searchChordProgressions or searchGenericChordProgressions.
+ *
+ * The search is split into a task for every change from the start chord,
+ * and when there are few of those into a task for every second change as
+ * well. Each task searches the cycles starting with its changes on its
+ * own and collects their progressions in a set of its own, the sets are
+ * merged when the tasks are joined. Idle threads of the pool steal the
+ * tasks that haven't been started yet, so the threads stay busy even
+ * though some first changes lead to far more cycles than others. The
+ * parallelism of the search is the parallelism of the pool.
+ *
+ * Cancelling the search stops every task within a few thousand steps of
+ * the search.
+ * @author DAD
+ *
+ * @param <T> type of the chords of the progressions
+ */
+public final class ProgressionSearch<T> {
+
+	/**
+	 * The second changes are only split into tasks when there are fewer
+	 * first changes than this many per thread of the pool.
+	 */
+	static final int TASKS_PER_THREAD = 4;
+
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+
+	private final ForkJoinTask<Set<CircularLinkedList<T>>> task;
+
+	ProgressionSearch(
+			ProgressionCycleEnumerator enumerator,
+			ProgressionCycleEnumerator.CycleMapper<CircularLinkedList<T>> mapper,
+			ForkJoinPool pool) {
+		if(pool == null) {
+			throw new NullPointerException("pool may not be null");
+		}
+		task = pool.submit(new SearchTask<>(
+				enumerator,
+				mapper,
+				cancelled::get,
+				new int[] {enumerator.getStartNode()},
+				1,
+				true));
+	}
+
+	/**
+	 * Wait for the search to finish.
+	 * @return the progressions found
+	 * @throws CancellationException if the search was cancelled
+	 */
+	public Set<CircularLinkedList<T>> join() {
+		return task.join();
+	}
+
+	/**
+	 * Stop the search. Threads waiting in join get a CancellationException.
+	 * Has no effect on a search that is already done.
+	 */
+	public void cancel() {
+		cancelled.set(true);
+		task.cancel(false);
+	}
+
+	public boolean isDone() {
+		return task.isDone();
+	}
+
+	public boolean isCancelled() {
+		return task.isCancelled();
+	}
+
+	/**
+	 * Searches the cycles starting with a path, either on its own or split
+	 * into a task for every change from the last chord of the path.
+	 */
+	private static final class SearchTask<P> extends RecursiveTask<Set<P>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ProgressionCycleEnumerator enumerator;
+		private final ProgressionCycleEnumerator.CycleMapper<P> mapper;
+		private final BooleanSupplier cancelled;
+		private final int[] prefix;
+		private final int prefixLength;
+		private final boolean split;
+
+		SearchTask(
+				ProgressionCycleEnumerator enumerator,
+				ProgressionCycleEnumerator.CycleMapper<P> mapper,
+				BooleanSupplier cancelled,
+				int[] prefix,
+				int prefixLength,
+				boolean split) {
+			this.enumerator = enumerator;
+			this.mapper = mapper;
+			this.cancelled = cancelled;
+			this.prefix = prefix;
+			this.prefixLength = prefixLength;
+			this.split = split;
+		}
+
+		@Override
+		protected Set<P> compute() {
+			if(cancelled.getAsBoolean()) {
+				throw new CancellationException("progression search was cancelled");
+			}
+			Set<P> progressions = new LinkedHashSet<>();
+			if( !split) {
+				enumerator.forEachCycle(
+						prefix,
+						prefixLength,
+						(nodes, length) -> progressions.add(mapper.map(nodes, length)),
+						cancelled);
+				return progressions;
+			}
+
+			List<int[]> subtaskPrefixes = new ArrayList<>();
+			ChordTransitionGraph graph = enumerator.getGraph();
+			int last = prefix[prefixLength - 1];
+			int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(last);
+			for(int i = graph.firstTransition(signatureOrdinal); i < graph.endOfTransitions(signatureOrdinal); i++) {
+				int target = ChordTransitionGraph.target(last, graph.transition(i));
+				if(target == enumerator.getStartNode()) {
+					progressions.add(mapper.map(prefix, prefixLength));
+				}else if(enumerator.canExtend(prefix, prefixLength, target)) {
+					int[] subtaskPrefix = Arrays.copyOf(prefix, prefixLength + 1);
+					subtaskPrefix[prefixLength] = target;
+					subtaskPrefixes.add(subtaskPrefix);
+				}
+			}
+
+			//the second changes are only split when the first ones can't keep every thread busy
+			boolean splitSubtasks = prefixLength == 1 &&
+					subtaskPrefixes.size() < TASKS_PER_THREAD * getPool().getParallelism();
+			List<SearchTask<P>> subtasks = new ArrayList<>(subtaskPrefixes.size());
+			for(int[] subtaskPrefix : subtaskPrefixes) {
+				subtasks.add(new SearchTask<>(enumerator, mapper, cancelled, subtaskPrefix, prefixLength + 1, splitSubtasks));
+			}
+			invokeAll(subtasks);
+			for(SearchTask<P> subtask : subtasks) {
+				progressions.addAll(subtask.join());
+			}
+			return progressions;
+		}
+	}
+}
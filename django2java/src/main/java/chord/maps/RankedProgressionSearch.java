@@ -0,0 +1,190 @@
+package chord.maps;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import chord.ConsonanceRating;
+import chord.progression.ProgressionScorer;
+import chord.relations.ChordChangeCellLayout;
+
+/**
+ * Finds the best scoring progressions of a fixed number of chords in a
+ * ChordTransitionGraph, without scoring and sorting every progression.
+ *
+ * The search goes depth first from each start node and keeps only the
+ * best progressions found so far in a heap holding the worst of them on
+ * top. Once the heap is full a change is only taken when the upper bound
+ * of the scorer says the progression could still beat the worst one kept
+ * (branch and bound). The best rated changes of a chord are taken first
+ * so good progressions are found early and the bound cuts off more.
+ *
+ * Like the progressions of ProgressionCycleEnumerator a progression never
+ * goes through a chord twice, except that it may end on the chord it
+ * started from when that is the end node asked for.
+ *
+ * Progressions with the same score are ranked in the order they were
+ * found. A search is used once.
+ * @author DAD
+ *
+ */
+final class RankedProgressionSearch {
+
+	/**
+	 * End node of a search where the progressions may end on any chord.
+	 */
+	static final int NO_NODE = -1;
+
+	private static final ConsonanceRating[] RATINGS = ConsonanceRating.values();
+
+	private final ChordTransitionGraph graph;
+	private final ProgressionScorer scorer;
+	private final int length;
+	private final int numberOfProgressions;
+	private final int endNode;
+
+	//least number of changes from each node to the end node, null without an end node
+	private final int[] distancesToEnd;
+	//indices of the changes of each signature, best rated first
+	private final int[] transitionOrder;
+
+	private final int[] path;
+	private final boolean[] onPath = new boolean[ChordTransitionGraph.NUMBER_OF_NODES];
+	//worst progression kept on top, later ones are worse when the scores are the same
+	private final PriorityQueue<RankedNodes> best = new PriorityQueue<>(
+			Comparator.comparingDouble(RankedNodes::score)
+			.thenComparing(Comparator.comparingLong(RankedNodes::sequence).reversed()));
+	private long sequence = 0;
+
+	/**
+	 * Create a search.
+	 * @param graph graph of the changes a progression may take
+	 * @param scorer scores the progressions
+	 * @param length number of chords in a progression
+	 * @param numberOfProgressions maximum number of progressions found
+	 * @param endNode node the progressions end on, NO_NODE for any
+	 */
+	RankedProgressionSearch(
+			ChordTransitionGraph graph,
+			ProgressionScorer scorer,
+			int length,
+			int numberOfProgressions,
+			int endNode) {
+		if(graph == null) {
+			throw new NullPointerException("graph may not be null");
+		}
+		if(scorer == null) {
+			throw new NullPointerException("scorer may not be null");
+		}
+		if(length < 1) {
+			throw new IllegalArgumentException("length must be at least 1");
+		}
+		if(numberOfProgressions < 1) {
+			throw new IllegalArgumentException("numberOfProgressions must be at least 1");
+		}
+		if(endNode < NO_NODE || endNode >= ChordTransitionGraph.NUMBER_OF_NODES) {
+			throw new IllegalArgumentException("endNode is not a node");
+		}
+		this.graph = graph;
+		this.scorer = scorer;
+		this.length = length;
+		this.numberOfProgressions = numberOfProgressions;
+		this.endNode = endNode;
+		this.distancesToEnd = endNode == NO_NODE ? null : graph.distancesTo(endNode);
+		this.transitionOrder = bestRatedFirst(graph);
+		this.path = new int[length];
+	}
+
+	/**
+	 * Order the changes of every signature by rating, best first, keeping
+	 * the order of the graph for changes with the same rating.
+	 */
+	private static int[] bestRatedFirst(ChordTransitionGraph graph) {
+		int[] order = new int[graph.numberOfTransitions()];
+		for(int signatureOrdinal = 0; signatureOrdinal < ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES; signatureOrdinal++) {
+			int next = graph.firstTransition(signatureOrdinal);
+			for(int r = RATINGS.length - 1; r >= 0; r--) {
+				for(int i = graph.firstTransition(signatureOrdinal); i < graph.endOfTransitions(signatureOrdinal); i++) {
+					if(graph.rating(i) == RATINGS[r]) {
+						order[next++] = i;
+					}
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Search the progressions starting from each of the start nodes.
+	 * @param startNodes nodes the progressions may start from
+	 * @return the best progressions, best first
+	 */
+	List<RankedNodes> find(int[] startNodes) {
+		for(int startNode : startNodes) {
+			if(distancesToEnd != null && distancesToEnd[startNode] > length - 1) {
+				continue;
+			}
+			path[0] = startNode;
+			onPath[startNode] = true;
+			extend(0, scorer.startScore());
+			onPath[startNode] = false;
+		}
+
+		List<RankedNodes> progressions = new ArrayList<>(best);
+		progressions.sort(Comparator.comparingDouble(RankedNodes::score).reversed()
+				.thenComparingLong(RankedNodes::sequence));
+		return progressions;
+	}
+
+	private void extend(int position, double score) {
+		if(position == length - 1) {
+			if(endNode == NO_NODE || path[position] == endNode) {
+				offer(score);
+			}
+			return;
+		}
+		int node = path[position];
+		int changesLeft = length - 1 - position;
+		boolean lastChange = changesLeft == 1;
+		int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+		for(int o = graph.firstTransition(signatureOrdinal); o < graph.endOfTransitions(signatureOrdinal); o++) {
+			int i = transitionOrder[o];
+			int next = ChordTransitionGraph.target(node, graph.transition(i));
+			if(endNode != NO_NODE) {
+				//the end node can only be reached by the last change, in time
+				if(lastChange ? next != endNode : next == endNode || distancesToEnd[next] > changesLeft - 1) {
+					continue;
+				}
+			}
+			//only a progression ending where it started comes back to a chord
+			if(onPath[next] && !(lastChange && next == endNode && next == path[0])) {
+				continue;
+			}
+			double nextScore = scorer.addChange(score, graph.rating(i));
+			if(best.size() == numberOfProgressions && scorer.upperBound(nextScore, changesLeft - 1) <= best.peek().score()) {
+				continue;
+			}
+
+			path[position + 1] = next;
+			onPath[next] = true;
+			extend(position + 1, nextScore);
+			onPath[next] = false;
+		}
+	}
+
+	private void offer(double score) {
+		if(best.size() < numberOfProgressions) {
+			best.add(new RankedNodes(path.clone(), score, sequence++));
+		}else if(score > best.peek().score()) {
+			best.poll();
+			best.add(new RankedNodes(path.clone(), score, sequence++));
+		}
+	}
+
+	/**
+	 * Nodes of a progression found, its score and the order it was found in.
+	 */
+	record RankedNodes(int[] nodes, double score, long sequence) {
+	}
+}
@@ -12,7 +12,7 @@ public class ScaleLibrary {
 	
 	private static ScaleLibrary instance;
 	
-	public static ScaleLibrary getInstance() {
+	public static synchronized ScaleLibrary getInstance() {
 		if(instance == null) {
 			instance = new ScaleLibrary();
 		}
@@ -187,6 +187,14 @@ public class CircularLinkedList<T> {
 
 		CircularLinkedList<T> other = (CircularLinkedList<T>) o;
 
+		//a longer list starting with the same values is not equal
+		if(this.size() != other.size()) {
+			return false;
+		}
+		if(this.head == null) {
+			return true;
+		}
+
 		Node<T> thisCurrentNode,otherCurrentNode;
 		thisCurrentNode = this.head;
 		otherCurrentNode = other.head;
@@ -0,0 +1,107 @@
+package chord.progression;
+
+import chord.ConsonanceRating;
+
+/**
+ * Scores a chord progression from the ratings of its chord changes, used
+ * by ChordLibrary.getBestChordProgressions to rank progressions.
+ *
+ * A score is built up one change at a time, starting from startScore and
+ * adding every change of the progression in order with addChange. Higher
+ * scores are better.
+ *
+ * upperBound lets the search skip progressions that can't make it into
+ * the best ones found so far. It must never be lower than the score any
+ * progression starting with the changes already added could end up with,
+ * the default of positive infinity is always safe but means every
+ * progression is looked at.
+ * @author DAD
+ *
+ */
+public interface ProgressionScorer {
+
+	/**
+	 * Weight of a rating in the scores of sum and min, VERY_BAD is 0 and
+	 * VERY_GOOD is 4.
+	 * @param rating rating of a chord change
+	 * @return weight of the rating
+	 */
+	static int weight(ConsonanceRating rating) {
+		return rating.ordinal();
+	}
+
+	/**
+	 * Scorer adding up the weights of the ratings of the changes, so a
+	 * progression is as good as all of its changes together.
+	 * @return the scorer
+	 */
+	static ProgressionScorer sum() {
+		return new ProgressionScorer() {
+
+			@Override
+			public double startScore() {
+				return 0;
+			}
+
+			@Override
+			public double addChange(double score, ConsonanceRating rating) {
+				return score + weight(rating);
+			}
+
+			@Override
+			public double upperBound(double score, int changesLeft) {
+				return score + changesLeft * (double)weight(ConsonanceRating.VERY_GOOD);
+			}
+		};
+	}
+
+	/**
+	 * Scorer taking the lowest weight of the ratings of the changes, so a
+	 * progression is as good as its worst change.
+	 * @return the scorer
+	 */
+	static ProgressionScorer min() {
+		return new ProgressionScorer() {
+
+			@Override
+			public double startScore() {
+				return weight(ConsonanceRating.VERY_GOOD);
+			}
+
+			@Override
+			public double addChange(double score, ConsonanceRating rating) {
+				return Math.min(score, weight(rating));
+			}
+
+			@Override
+			public double upperBound(double score, int changesLeft) {
+				//the worst change can only get worse
+				return score;
+			}
+		};
+	}
+
+	/**
+	 * Get the score of a progression without any changes.
+	 * @return score before the first change
+	 */
+	double startScore();
+
+	/**
+	 * Add a chord change to the score of a progression.
+	 * @param score score of the changes before this one
+	 * @param rating rating of the change
+	 * @return score with the change added
+	 */
+	double addChange(double score, ConsonanceRating rating);
+
+	/**
+	 * Get the highest score a progression can end up with.
+	 * @param score score of the changes so far
+	 * @param changesLeft number of changes still to be added
+	 * @return a score no progression continuing from this one can beat
+	 */
+	default double upperBound(double score, int changesLeft) {
+		return Double.POSITIVE_INFINITY;
+	}
+}
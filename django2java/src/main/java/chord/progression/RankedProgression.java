@@ -0,0 +1,23 @@
+package chord.progression;
+
+import java.util.List;
+
+import chord.Chord;
+
+/**
+ * A chord progression found by ChordLibrary.getBestChordProgressions
+ * and the score it was ranked by.
+ * @author DAD
+ *
+ * @param chords chords of the progression in the order they are played
+ * @param score score of the progression given by the ProgressionScorer
+ */
+public record RankedProgression(List<Chord> chords, double score) {
+
+	public RankedProgression {
+		if(chords == null) {
+			throw new NullPointerException("chords may not be null");
+		}
+		chords = List.copyOf(chords);
+	}
+}
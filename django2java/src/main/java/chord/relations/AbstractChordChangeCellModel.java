@@ -0,0 +1,253 @@
+package chord.relations;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+/**
+ * Query methods shared by the chord change models that can read the rating
+ * code of any cell in the ChordChangeCellLayout directly.
+ *
+ * Subclasses only have to give the code stored in a cell and the first
+ * unrated cell. Every query reads each cell once so subclasses whose cells
+ * are changed by other threads never hand out a rating that was half
+ * read.
+ * @author DAD
+ *
+ */
+abstract class AbstractChordChangeCellModel implements ChordChangeRatingModel {
+
+	private static final ConsonanceRating[] RATINGS = ConsonanceRating.values();
+
+	/**
+	 * Get the rating code stored in the cell.
+	 * @param cell index of the cell in the ChordChangeCellLayout
+	 * @return code stored in the cell, PackedRatingArray.NOT_RATED if not rated
+	 */
+	abstract int getCode(int cell);
+
+	/**
+	 * Find the first cell that can be rated but has not been.
+	 * @return index of the first unrated cell, -1 if every cell is rated
+	 */
+	abstract int firstUnratedCell();
+
+	static ChordChangeConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell),
+				ChordChangeCellLayout.endChord(cell),
+				ChordChangeCellLayout.interval(cell),
+				rating);
+	}
+
+	/**
+	 * Check the request and compile it into its bit mask form.
+	 */
+	static CompiledRecordRequest compileRequest(ChordChangeConsonanceRecordRequest request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null.");
+		}
+		if( !request.isInitialized() ) {
+			throw new IllegalStateException("request is not initialized");
+		}
+		return request.compile();
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getRating(ChordChangeConsonanceRecord record) {
+		int cell = ChordChangeCellLayout.cellIndex(record);
+		int code = getCode(cell);
+
+		return code == PackedRatingArray.NOT_RATED ? null : createRecord(cell, PackedRatingArray.decode(code));
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getNextRecordToBeRated() {
+		int cell = firstUnratedCell();
+		if(cell < 0) {
+			return null;
+		}
+		return createRecord(cell, null);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getLastRecordRated() {
+		int firstUnrated = firstUnratedCell();
+		int cell = (firstUnrated < 0 ? ChordChangeCellLayout.NUMBER_OF_CELLS : firstUnrated) - 1;
+
+		//skip back over any cells that can't be rated
+		while(cell >= 0 && !ChordChangeCellLayout.isRateable(cell)) {
+			cell--;
+		}
+		if(cell < 0) {
+			return null;
+		}
+		int code = getCode(cell);
+		return code == PackedRatingArray.NOT_RATED ? null : createRecord(cell, PackedRatingArray.decode(code));
+	}
+
+	@Override
+	public void forEachRating(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+
+		for(int referenceOrdinal = compiledRequest.nextReferenceChord(0);
+				referenceOrdinal >= 0;
+				referenceOrdinal = compiledRequest.nextReferenceChord(referenceOrdinal + 1)) {
+			for(int targetOrdinal = compiledRequest.nextTarget(0);
+					targetOrdinal >= 0;
+					targetOrdinal = compiledRequest.nextTarget(targetOrdinal + 1)) {
+				visitCells(compiledRequest, ChordChangeCellLayout.cellIndex(referenceOrdinal, targetOrdinal, 0), visitor);
+			}
+		}
+	}
+
+	@Override
+	public void forEachRatingLeadingTo(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+
+		for(int targetOrdinal = compiledRequest.nextTarget(0);
+				targetOrdinal >= 0;
+				targetOrdinal = compiledRequest.nextTarget(targetOrdinal + 1)) {
+			for(int referenceOrdinal = compiledRequest.nextReferenceChord(0);
+					referenceOrdinal >= 0;
+					referenceOrdinal = compiledRequest.nextReferenceChord(referenceOrdinal + 1)) {
+				visitCells(compiledRequest, ChordChangeCellLayout.cellIndex(referenceOrdinal, targetOrdinal, 0), visitor);
+			}
+		}
+	}
+
+	/**
+	 * Visit the requested intervals of a single start chord/end chord pair.
+	 */
+	private void visitCells(CompiledRecordRequest compiledRequest, int firstCell, ChordChangeRatingVisitor visitor) {
+		for(int intervalOrdinal = 0; intervalOrdinal < ChordChangeCellLayout.NUMBER_OF_INTERVALS; intervalOrdinal++) {
+			if( !compiledRequest.containsInterval(intervalOrdinal)) {
+				continue;
+			}
+			int cell = firstCell + intervalOrdinal;
+			int code = getCode(cell);
+			if( !compiledRequest.containsRatingCode(code)) {
+				continue;
+			}
+			visitor.visit(
+					ChordChangeCellLayout.startChord(cell),
+					ChordChangeCellLayout.endChord(cell),
+					ChordChangeCellLayout.interval(cell),
+					PackedRatingArray.decode(code));
+		}
+	}
+
+	@Override
+	public void forEachTransitionFrom(ChordSignature startChordSig, ConsonanceRating minimumRating, ChordChangeRatingVisitor visitor) {
+		if(startChordSig == null) {
+			throw new NullPointerException("start chord sig may not be null");
+		}
+		if(minimumRating == null) {
+			throw new NullPointerException("minimumRating may not be null");
+		}
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		for(ChordChangeConsonanceRecord record : transitionsFrom(startChordSig, minimumRating, Integer.MAX_VALUE)) {
+			visitor.visit(
+					record.startChordSignature(),
+					record.endChordSignature(),
+					record.intervalBetweenRoots(),
+					record.rating());
+		}
+	}
+
+	@Override
+	public List<ChordChangeConsonanceRecord> getBestTransitionsFrom(ChordSignature startChordSig, int maximumNumberOfTransitions) {
+		if(startChordSig == null) {
+			throw new NullPointerException("start chord sig may not be null");
+		}
+		if(maximumNumberOfTransitions < 0) {
+			throw new IllegalArgumentException("maximumNumberOfTransitions may not be negative");
+		}
+		return transitionsFrom(startChordSig, RATINGS[0], maximumNumberOfTransitions);
+	}
+
+	/**
+	 * Read the transitions from the start chord once and order them
+	 * best rating first.
+	 */
+	private List<ChordChangeConsonanceRecord> transitionsFrom(ChordSignature startChordSig, ConsonanceRating minimumRating, int maximumNumberOfTransitions) {
+		int firstCell = ChordChangeCellLayout.cellIndex(startChordSig.ordinal(), 0, 0);
+
+		List<List<ChordChangeConsonanceRecord>> transitionsByRating = new ArrayList<>();
+		for(int i = 0; i < RATINGS.length; i++) {
+			transitionsByRating.add(new ArrayList<>());
+		}
+		for(int cell = firstCell; cell < firstCell + ChordChangeCellLayout.CELLS_PER_START_CHORD; cell++) {
+			ConsonanceRating rating = PackedRatingArray.decode(getCode(cell));
+			if(rating != null && rating.compareTo(minimumRating) >= 0) {
+				transitionsByRating.get(rating.ordinal()).add(createRecord(cell, rating));
+			}
+		}
+
+		List<ChordChangeConsonanceRecord> transitions = new ArrayList<>();
+		for(int ratingOrdinal = RATINGS.length - 1; ratingOrdinal >= 0; ratingOrdinal--) {
+			for(ChordChangeConsonanceRecord record : transitionsByRating.get(ratingOrdinal)) {
+				if(transitions.size() == maximumNumberOfTransitions) {
+					return transitions;
+				}
+				transitions.add(record);
+			}
+		}
+		return transitions;
+	}
+
+	@Override
+	public Set<ChordChangeConsonanceRecord> getRecords(ChordChangeConsonanceRecordRequest request) {
+		Set<ChordChangeConsonanceRecord> recordsRequested = new HashSet<>();
+
+		forEachRating(request,
+				(referenceChordSig, targetChordSig, interval, rating) ->
+					recordsRequested.add(
+							new ChordChangeConsonanceRecord(
+									referenceChordSig,
+									targetChordSig,
+									interval,
+									rating)));
+
+		return recordsRequested;
+	}
+
+	@Override
+	public Stream<ChordChangeConsonanceRecord> streamRecords(ChordChangeConsonanceRecordRequest request) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+
+		//read each cell once so that a rating removed between the
+		//filter and the record creation is not turned into a null record
+		return compiledRequest.referenceChordOrdinals()
+				.flatMap(referenceOrdinal -> compiledRequest.targetOrdinals()
+						.flatMap(targetOrdinal -> {
+							int firstCell = ChordChangeCellLayout.cellIndex(referenceOrdinal, targetOrdinal, 0);
+							return IntStream.range(0, ChordChangeCellLayout.NUMBER_OF_INTERVALS)
+									.filter(compiledRequest::containsInterval)
+									.map(intervalOrdinal -> firstCell + intervalOrdinal);
+						}))
+				.mapToObj(cell -> {
+					int code = getCode(cell);
+					return compiledRequest.containsRatingCode(code) ?
+							createRecord(cell, PackedRatingArray.decode(code)) : null;
+				})
+				.filter(record -> record != null);
+	}
+}
@@ -0,0 +1,131 @@
+package chord.relations;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import chord.ConsonanceRating;
+
+/**
+ * Thread safe version of the PackedRatingArray.
+ *
+ * Cells are packed the same way as the PackedRatingArray(4 bits per cell,
+ * 16 cells per long) but the longs are kept in an AtomicLongArray and
+ * every write is a compare and set loop on the long holding the cell.
+ * Writes to different cells of the same long never overwrite each other
+ * and no locks are taken.
+ * @author DAD
+ *
+ */
+public final class AtomicPackedRatingArray {
+
+	private static final int MAXIMUM_CODE = ConsonanceRating.values().length;
+
+	private final AtomicLongArray words;
+	private final int numberOfCells;
+
+	/**
+	 * Create an array with every cell unrated.
+	 * @param numberOfCells number of cells in the array, may not be negative
+	 */
+	public AtomicPackedRatingArray(int numberOfCells) {
+		if(numberOfCells < 0) {
+			throw new IllegalArgumentException("numberOfCells may not be negative");
+		}
+		this.numberOfCells = numberOfCells;
+		this.words = new AtomicLongArray(PackedRatingArray.wordsRequired(numberOfCells));
+	}
+
+	/**
+	 * Get the number of cells in the array.
+	 * @return number of cells in the array
+	 */
+	public int size() {
+		return numberOfCells;
+	}
+
+	/**
+	 * Get the rating code stored in the cell.
+	 * @param cell index of the cell
+	 * @return code stored in the cell, NOT_RATED if there is no rating
+	 */
+	public int getCode(int cell) {
+		checkCell(cell);
+		return PackedRatingArray.codeInWord(words.get(PackedRatingArray.wordIndex(cell)), cell);
+	}
+
+	/**
+	 * Atomically store the rating code in the cell.
+	 * @param cell index of the cell
+	 * @param code code to store, NOT_RATED to clear the cell
+	 * @return the code previously stored in the cell
+	 */
+	public int setCode(int cell, int code) {
+		checkCell(cell);
+		checkCode(code);
+		int wordIndex = PackedRatingArray.wordIndex(cell);
+
+		while(true) {
+			long word = words.get(wordIndex);
+			int previousCode = PackedRatingArray.codeInWord(word, cell);
+			if(previousCode == code ||
+					words.compareAndSet(wordIndex, word, PackedRatingArray.replaceCodeInWord(word, cell, code))) {
+				return previousCode;
+			}
+			//another cell in the same long was changed, try again
+		}
+	}
+
+	/**
+	 * Atomically store the code in the cell if the cell holds the expected code.
+	 * @param cell index of the cell
+	 * @param expectedCode code the cell must hold
+	 * @param code code to store
+	 * @return true if the code was stored
+	 */
+	public boolean compareAndSetCode(int cell, int expectedCode, int code) {
+		checkCell(cell);
+		checkCode(code);
+		int wordIndex = PackedRatingArray.wordIndex(cell);
+
+		while(true) {
+			long word = words.get(wordIndex);
+			if(PackedRatingArray.codeInWord(word, cell) != expectedCode) {
+				return false;
+			}
+			if(words.compareAndSet(wordIndex, word, PackedRatingArray.replaceCodeInWord(word, cell, code))) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Get the rating stored in the cell.
+	 * @param cell index of the cell
+	 * @return the rating stored in the cell, null if not rated
+	 */
+	public ConsonanceRating get(int cell) {
+		return PackedRatingArray.decode(getCode(cell));
+	}
+
+	/**
+	 * Atomically store the rating in the cell.
+	 * @param cell index of the cell
+	 * @param rating rating to store, null to clear the cell
+	 * @return the previous rating stored in the cell, null if
+	 * the cell was not rated
+	 */
+	public ConsonanceRating set(int cell, ConsonanceRating rating) {
+		return PackedRatingArray.decode(setCode(cell, PackedRatingArray.encode(rating)));
+	}
+
+	private void checkCell(int cell) {
+		if(cell < 0 || cell >= numberOfCells) {
+			throw new IndexOutOfBoundsException("cell " + cell + " is out of bounds for size " + numberOfCells);
+		}
+	}
+
+	private static void checkCode(int code) {
+		if(code < PackedRatingArray.NOT_RATED || code > MAXIMUM_CODE) {
+			throw new IllegalArgumentException("code is not a valid rating code:" + code);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package chord.relations;
+
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+
+/**
+ * Maps every start chord/end chord/interval combination of a
+ * chord change to a single integer cell index.
+ *
+ * Cells are ordered the same way ratings are entered by the raters,
+ * start chord first, then end chord, then the interval between roots
+ * (UNISON to MAJOR7). A cell whose start and end chords are the same
+ * and whose interval is UNISON represents the same chord twice, it
+ * exists in the layout but can never be rated.
+ * @author DAD
+ *
+ */
+public final class ChordChangeCellLayout {
+
+	private static final ChordSignature[] CHORD_SIGNATURES = ChordSignature.values();
+	private static final Interval[] INTERVALS = Interval.valuesInFirstOctave();
+
+	public static final int NUMBER_OF_CHORD_SIGNATURES = CHORD_SIGNATURES.length;
+	public static final int NUMBER_OF_INTERVALS = INTERVALS.length;
+
+	/**
+	 * Number of cells that share the same start chord.
+	 */
+	public static final int CELLS_PER_START_CHORD = NUMBER_OF_CHORD_SIGNATURES * NUMBER_OF_INTERVALS;
+
+	/**
+	 * Total number of cells including the ones that can't be rated.
+	 */
+	public static final int NUMBER_OF_CELLS = NUMBER_OF_CHORD_SIGNATURES * CELLS_PER_START_CHORD;
+
+	/**
+	 * Number of cells that can actually hold a rating.
+	 */
+	public static final int NUMBER_OF_RATEABLE_CELLS = NUMBER_OF_CELLS - NUMBER_OF_CHORD_SIGNATURES;
+
+	private ChordChangeCellLayout() {
+		//static methods only
+	}
+
+	/**
+	 * Get the cell index for the given ordinals. No checks are made
+	 * on the parameters.
+	 * @param startOrdinal ordinal of the start chord signature
+	 * @param endOrdinal ordinal of the end chord signature
+	 * @param intervalOrdinal ordinal of the interval between roots
+	 * @return cell index for the ordinals
+	 */
+	public static int cellIndex(int startOrdinal, int endOrdinal, int intervalOrdinal) {
+		return startOrdinal * CELLS_PER_START_CHORD + endOrdinal * NUMBER_OF_INTERVALS + intervalOrdinal;
+	}
+
+	/**
+	 * Get the cell index for the given chord change.
+	 * @param startChordSig start chord signature, may not be null
+	 * @param endChordSig end chord signature, may not be null
+	 * @param intervalBetweenRoots interval between the roots, must be in the first octave
+	 * @return cell index for the chord change
+	 */
+	public static int cellIndex(ChordSignature startChordSig, ChordSignature endChordSig, Interval intervalBetweenRoots) {
+		if(startChordSig == null) {
+			throw new NullPointerException("start chord sig may not be null");
+		}
+		if(endChordSig == null) {
+			throw new NullPointerException("end chord sig may not be null");
+		}
+		if(intervalBetweenRoots == null) {
+			throw new NullPointerException("interval between roots may not be null.");
+		}
+		if( !intervalBetweenRoots.inFirstOctave()) {
+			throw new IllegalArgumentException("Interval between roots must be between UNISON and MAJOR7 inclusive");
+		}
+		return cellIndex(startChordSig.ordinal(), endChordSig.ordinal(), intervalBetweenRoots.ordinal());
+	}
+
+	/**
+	 * Get the cell index of the chord change held by the record.
+	 * @param record record holding the chord change, may not be null
+	 * @return cell index for the chord change
+	 */
+	public static int cellIndex(ChordChangeConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		return cellIndex(record.startChordSignature(), record.endChordSignature(), record.intervalBetweenRoots());
+	}
+
+	public static int startOrdinal(int cell) {
+		return cell / CELLS_PER_START_CHORD;
+	}
+
+	public static int endOrdinal(int cell) {
+		return (cell % CELLS_PER_START_CHORD) / NUMBER_OF_INTERVALS;
+	}
+
+	public static int intervalOrdinal(int cell) {
+		return cell % NUMBER_OF_INTERVALS;
+	}
+
+	public static ChordSignature startChord(int cell) {
+		return CHORD_SIGNATURES[startOrdinal(cell)];
+	}
+
+	public static ChordSignature endChord(int cell) {
+		return CHORD_SIGNATURES[endOrdinal(cell)];
+	}
+
+	public static Interval interval(int cell) {
+		return INTERVALS[intervalOrdinal(cell)];
+	}
+
+	/**
+	 * Get the ordinal of the interval from the end chord root back to
+	 * the start chord root. UNISON stays UNISON instead of becoming PERFECT8.
+	 * @param intervalOrdinal ordinal of the interval between the roots
+	 * @return ordinal of the inverted interval within the first octave
+	 */
+	public static int invertedIntervalOrdinal(int intervalOrdinal) {
+		return (NUMBER_OF_INTERVALS - intervalOrdinal) % NUMBER_OF_INTERVALS;
+	}
+
+	/**
+	 * Get the cell for the same chord change seen from the end chord.
+	 * The start and end chords are swapped and the interval is inverted
+	 * so reversing a reversed cell gives back the original cell.
+	 * @param cell cell index
+	 * @return cell index of the reversed chord change
+	 */
+	public static int reverseCellIndex(int cell) {
+		return cellIndex(
+				endOrdinal(cell), 
+				startOrdinal(cell), 
+				invertedIntervalOrdinal(intervalOrdinal(cell)));
+	}
+
+	/**
+	 * Test to see if the cell can hold a rating.
+	 * @param cell cell index
+	 * @return false if the cell represents the same start and end chord,
+	 * true otherwise
+	 */
+	public static boolean isRateable(int cell) {
+		return intervalOrdinal(cell) != 0 || startOrdinal(cell) != endOrdinal(cell);
+	}
+}
@@ -1,5 +1,6 @@
 package chord.relations;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashSet;
@@ -7,27 +8,55 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import chord.ConsonanceRating;
 import chord.Interval;
 import chord.ident.ChordSignature;
 import chord.relations.record.ChordChangeConsonanceRecord;
 import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
 
 /**
  * Main data structure for rating chord changes.
  * @author DAD
  *
  */
-public class ChordChangeConsonanceModel implements RatingModel<ChordChangeConsonanceRecord,ChordChangeConsonanceRecordRequest>{
+public class ChordChangeConsonanceModel implements ChordChangeRatingModel, DirtyCellTracking{
 
 	private Map<ChordSignature,Map<ChordSignature,IntervalRatingMap>> chordChangeConsonanceMap;
 
+	/**
+	 * Keeps track of the rated cells so that we don't have to scan
+	 * every chord change to find the next record to be rated.
+	 */
+	private final RatedCellTracker ratedCells;
+
+	/**
+	 * Reverse index of the ratings. Every rating is stored in the
+	 * reversed cell(end chord, start chord, interval from the end root
+	 * back to the start root) so that the chords leading into a chord
+	 * can be found without scanning every start chord.
+	 */
+	private final PackedRatingArray reverseRatings;
+
+	/**
+	 * Transitions from each start chord grouped by rating so that
+	 * the well rated transitions can be found without visiting every
+	 * end chord and interval.
+	 */
+	private final ChordChangeRatingBuckets ratingBuckets;
+
 	/**
 	 * Create a new ChordChangeConsonanceModel.
 	 */
 	public ChordChangeConsonanceModel() {
 		this.chordChangeConsonanceMap = new EnumMap<>(ChordSignature.class);
+		this.ratedCells = new RatedCellTracker(
+				ChordChangeCellLayout.NUMBER_OF_CELLS, 
+				ChordChangeCellLayout::isRateable);
+		this.reverseRatings = new PackedRatingArray(ChordChangeCellLayout.NUMBER_OF_CELLS);
+		this.ratingBuckets = new ChordChangeRatingBuckets();
 	}
 
 	/**
@@ -82,7 +111,16 @@ public class ChordChangeConsonanceModel implements RatingModel<ChordChangeConson
 			startChordToEndChordRatingMap.put(endChordSig, endChordIntervalRatingMap);
 		}
 
-		return endChordIntervalRatingMap.put(intervalBetweenRoots, rating);
+		ConsonanceRating previousRating = endChordIntervalRatingMap.put(intervalBetweenRoots, rating);
+		int cell = ChordChangeCellLayout.cellIndex(
+				startChordSig.ordinal(), 
+				endChordSig.ordinal(), 
+				intervalBetweenRoots.ordinal());
+		ratedCells.markRated(cell);
+		reverseRatings.set(ChordChangeCellLayout.reverseCellIndex(cell), rating);
+		ratingBuckets.update(cell, previousRating, rating);
+
+		return previousRating;
 	}
 
 	/**
@@ -121,7 +159,17 @@ public class ChordChangeConsonanceModel implements RatingModel<ChordChangeConson
 			return null;
 		}
 
-		return chordChangeIntervalRatingMap.remove(intervalBetweenRoots);
+		ConsonanceRating removedRating = chordChangeIntervalRatingMap.remove(intervalBetweenRoots);
+		if(removedRating != null) {
+			int cell = ChordChangeCellLayout.cellIndex(
+					startChordSig.ordinal(), 
+					endChordSig.ordinal(), 
+					intervalBetweenRoots.ordinal());
+			ratedCells.markUnrated(cell);
+			reverseRatings.set(ChordChangeCellLayout.reverseCellIndex(cell), null);
+			ratingBuckets.update(cell, removedRating, null);
+		}
+		return removedRating;
 	}
 
 	/**
@@ -313,6 +361,77 @@ public class ChordChangeConsonanceModel implements RatingModel<ChordChangeConson
 		}
 	}
 
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forAdding(records, ChordChangeCellLayout::cellIndex, ChordChangeConsonanceRecord::rating));
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forRemoving(records, ChordChangeCellLayout::cellIndex));
+	}
+
+	/**
+	 * Write every entry of the batch. The entries are ordered by cell so
+	 * the maps for a start chord and end chord are only looked up once 
+	 * for all of their intervals.
+	 * @param batch checked ratings to add, or ratings to remove
+	 * @return number of cells that went from unrated to rated or back
+	 */
+	private int writeBatch(RatingBatch batch) {
+		int cellsChanged = 0;
+		int currentStartOrdinal = -1;
+		int currentEndOrdinal = -1;
+		Map<ChordSignature,IntervalRatingMap> startChordToEndChordRatingMap = null;
+		IntervalRatingMap endChordIntervalRatingMap = null;
+
+		for(int i = 0; i < batch.size(); i++) {
+			int cell = batch.cell(i);
+			ConsonanceRating rating = PackedRatingArray.decode(batch.code(i));
+
+			if(ChordChangeCellLayout.startOrdinal(cell) != currentStartOrdinal) {
+				currentStartOrdinal = ChordChangeCellLayout.startOrdinal(cell);
+				currentEndOrdinal = -1;
+				startChordToEndChordRatingMap = chordChangeConsonanceMap.get(ChordChangeCellLayout.startChord(cell));
+
+				if(startChordToEndChordRatingMap == null && rating != null) {
+					startChordToEndChordRatingMap = new EnumMap<>(ChordSignature.class);
+					chordChangeConsonanceMap.put(ChordChangeCellLayout.startChord(cell), startChordToEndChordRatingMap);
+				}
+			}
+			if(ChordChangeCellLayout.endOrdinal(cell) != currentEndOrdinal) {
+				currentEndOrdinal = ChordChangeCellLayout.endOrdinal(cell);
+				endChordIntervalRatingMap = startChordToEndChordRatingMap == null ? 
+						null : startChordToEndChordRatingMap.get(ChordChangeCellLayout.endChord(cell));
+
+				if(endChordIntervalRatingMap == null && rating != null) {
+					endChordIntervalRatingMap = new IntervalRatingMap();
+					startChordToEndChordRatingMap.put(ChordChangeCellLayout.endChord(cell), endChordIntervalRatingMap);
+				}
+			}
+
+			ConsonanceRating previousRating;
+			if(rating != null) {
+				previousRating = endChordIntervalRatingMap.put(ChordChangeCellLayout.interval(cell), rating);
+				ratedCells.markRated(cell);
+			}else {
+				previousRating = endChordIntervalRatingMap == null ? 
+						null : endChordIntervalRatingMap.remove(ChordChangeCellLayout.interval(cell));
+				if(previousRating == null) {
+					continue;
+				}
+				ratedCells.markUnrated(cell);
+			}
+			reverseRatings.set(ChordChangeCellLayout.reverseCellIndex(cell), rating);
+			ratingBuckets.update(cell, previousRating, rating);
+
+			if((previousRating == null) != (rating == null)) {
+				cellsChanged++;
+			}
+		}
+		return cellsChanged;
+	}
+
 	@Override
 	public ChordChangeConsonanceRecord getRating(ChordChangeConsonanceRecord record) {
 		if(record == null) {
@@ -335,165 +454,236 @@ public class ChordChangeConsonanceModel implements RatingModel<ChordChangeConson
 
 	@Override
 	public ChordChangeConsonanceRecord getNextRecordToBeRated() {
-		if(isFull()) {
+		int cell = ratedCells.firstUnratedCell();
+		if(cell < 0) {
 			return null;
 		}
 
-		for(ChordSignature startChordSig : ChordSignature.valuesAsList()) {
-			for(ChordSignature endChordSig : ChordSignature.valuesAsList()) {
-				for(Interval interval : Interval.valuesAsList()) {
-					//Make sure we aren't duplicating ratings
-					//PERFECT8 refers to the same note as UNISON
-					if( !interval.inFirstOctave() ) {
-						break;
-					}
-					//if the start and end chord are the same and
-					//the interval is UNISON then the combination
-					//represents the same chord
-					if(startChordSig.equals(endChordSig) && interval.equals(Interval.UNISON)) {
-						continue;
-					}
-					ConsonanceRating rating = getRating(startChordSig, endChordSig, interval);
-					if(rating == null) {
-						return new ChordChangeConsonanceRecord(startChordSig, endChordSig, interval, null);
-					}
-				}
-			}
-		}
-
-		//this is redundant...I suppose that the 
-		//check at the start is unnecessary
-		//may have to change this in the future
-		return null;
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell), 
+				ChordChangeCellLayout.endChord(cell), 
+				ChordChangeCellLayout.interval(cell), 
+				null);
 	}
 
 	@Override
 	public ChordChangeConsonanceRecord getLastRecordRated() {
-		//This check isn't really necessary
-		//it works for now...maybe remove it later
-		if(isEmpty()) {
+		int cell = ratedCells.lastContiguousRatedCell();
+		if(cell < 0) {
 			return null;
 		}
 
-		ChordChangeConsonanceRecord lastRecordRated = null;
-
-		OUTER_LOOP:
-			for(ChordSignature startChord : ChordSignature.valuesAsList()) {
-				for(ChordSignature endChord : ChordSignature.valuesAsList()) {
-					for(Interval interval : Interval.valuesAsList()) {
-						//Make sure we aren't duplicating ratings
-						//PERFECT8 refers to the same note as UNISON
-						if( !interval.inFirstOctave() ) {
-							break;
-						}
-						//if the start and end chord are the same and
-						//the interval is UNISON then the combination
-						//represents the same chord
-						if(startChord.equals(endChord) && interval.equals(Interval.UNISON)) {
-							continue;
-						}
-
-						ConsonanceRating rating = getRating(startChord, endChord, interval);
-						if(rating == null) {
-							break OUTER_LOOP;
-						}
-						lastRecordRated = new ChordChangeConsonanceRecord(startChord, endChord, interval, rating);
-					}
-				}
-			}
+		ChordSignature startChord = ChordChangeCellLayout.startChord(cell);
+		ChordSignature endChord = ChordChangeCellLayout.endChord(cell);
+		Interval interval = ChordChangeCellLayout.interval(cell);
 
-		return lastRecordRated;
+		return new ChordChangeConsonanceRecord(
+				startChord, 
+				endChord, 
+				interval, 
+				getRating(startChord, endChord, interval));
 	}
 
 	@Override
 	public boolean isFull() {
-		
-		//TODO: These loops are pretty much the same
-		//we might need to parameterize this later with
-		//delegates or lambda expressions....works for now
-		for(ChordSignature startChord : ChordSignature.valuesAsList()) {
-			for(ChordSignature endChord : ChordSignature.valuesAsList()) {
-				for(Interval interval : Interval.valuesAsList()) {
-					//Make sure we aren't duplicating ratings
-					//PERFECT8 refers to the same note as UNISON
-					if( !interval.inFirstOctave() ) {
-						break;
-					}
-					//if the start and end chord are the same and
-					//the interval is UNISON then the combination
-					//represents the same chord
-					if(startChord.equals(endChord) && interval.equals(Interval.UNISON)) {
-						continue;
-					}
-
-					ConsonanceRating rating = getRating(startChord, endChord, interval);
-					if(rating == null) {
-						return false;
-					}
-				}
-			}
-		}
-		return true;
+		return ratedCells.isFull();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		purgeUnusedMaps();
-		return this.chordChangeConsonanceMap.keySet().size() == 0;
+		return ratedCells.isEmpty();
 	}
 
 	@Override
-	public Set<ChordChangeConsonanceRecord> getRecords(ChordChangeConsonanceRecordRequest request) {
+	public int[] getDirtyCells() {
+		return ratedCells.dirtyCells();
+	}
+
+	@Override
+	public int getNumberOfDirtyCells() {
+		return ratedCells.numberOfDirtyCells();
+	}
+
+	@Override
+	public void checkpoint() {
+		ratedCells.checkpoint();
+	}
+
+	/**
+	 * Check the request and compile it into its bit mask form.
+	 */
+	private static CompiledRecordRequest compileRequest(ChordChangeConsonanceRecordRequest request) {
 		if(request == null) {
 			throw new NullPointerException("request may not be null.");
 		}
 		if( !request.isInitialized() ) {
 			throw new IllegalStateException("request is not initialized");
 		}
-		//purge unused maps to simplify the request process
-		//by not checking for null values
-		purgeUnusedMaps();
-		
-		Set<ChordChangeConsonanceRecord> recordsRequested = new HashSet<>();
+		return request.compile();
+	}
+
+	@Override
+	public void forEachRating(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		List<ChordSignature> chordSignatures = ChordSignature.valuesAsList();
+		int cellsRequestedPerReferenceChord = 
+				compiledRequest.numberOfTargets() * Integer.bitCount(compiledRequest.intervalMask());
 		
-		//reference chord loop
-		for(ChordSignature referenceChordSig : this.chordChangeConsonanceMap.keySet()) {
-			if( ! request.containsReferenceChord(referenceChordSig)) {
+		//only visit the reference and target chords that are requested
+		//instead of testing every chord in the model against the request
+		for(int referenceOrdinal = compiledRequest.nextReferenceChord(0); 
+				referenceOrdinal >= 0; 
+				referenceOrdinal = compiledRequest.nextReferenceChord(referenceOrdinal + 1)) {
+			//use the rating buckets if they hold fewer transitions
+			//than the number of cells requested for the reference chord
+			if(ratingBuckets.numberOfRatings(referenceOrdinal, compiledRequest) < cellsRequestedPerReferenceChord) {
+				ratingBuckets.forEachRating(referenceOrdinal, compiledRequest, visitor);
 				continue;
 			}
+			ChordSignature referenceChordSig = chordSignatures.get(referenceOrdinal);
 			
-			//no need to check for nulls in these loops since we have already
-			//purged all unused maps and ratings
 			Map<ChordSignature,IntervalRatingMap> targetChordToIntervalMap =
 					this.chordChangeConsonanceMap.get(referenceChordSig);
+			if(targetChordToIntervalMap == null) {
+				continue;
+			}
 
-			for(ChordSignature targetChordSig : targetChordToIntervalMap.keySet()) {
-				if( !request.containsTargetChord(targetChordSig)) {
-					continue;
-				}
+			for(int targetOrdinal = compiledRequest.nextTarget(0); 
+					targetOrdinal >= 0; 
+					targetOrdinal = compiledRequest.nextTarget(targetOrdinal + 1)) {
+				ChordSignature targetChordSig = chordSignatures.get(targetOrdinal);
 				
 				IntervalRatingMap intervalRatingMap = 
 						targetChordToIntervalMap.get(targetChordSig);
+				if(intervalRatingMap == null) {
+					continue;
+				}
 				
-				for(Interval interval : intervalRatingMap.keySet()) {
-					if( !request.containsIntervalBetweenRoots(interval)) {
+				for(Map.Entry<Interval,ConsonanceRating> entry : intervalRatingMap.entrySet()) {
+					Interval interval = entry.getKey();
+					ConsonanceRating rating = entry.getValue();
+					if( !compiledRequest.containsInterval(interval.ordinal()) ||
+							!compiledRequest.contains(rating)) {
 						continue;
 					}
 					
-					ConsonanceRating rating = intervalRatingMap.get(interval);
-					if( !request.contains(rating)) {
+					visitor.visit(referenceChordSig, targetChordSig, interval, rating);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachRatingLeadingTo(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		
+		//walk the reverse index so that each requested target chord
+		//is a single contiguous block of cells
+		for(int targetOrdinal = compiledRequest.nextTarget(0); 
+				targetOrdinal >= 0; 
+				targetOrdinal = compiledRequest.nextTarget(targetOrdinal + 1)) {
+			for(int referenceOrdinal = compiledRequest.nextReferenceChord(0); 
+					referenceOrdinal >= 0; 
+					referenceOrdinal = compiledRequest.nextReferenceChord(referenceOrdinal + 1)) {
+				int firstReverseCell = ChordChangeCellLayout.cellIndex(targetOrdinal, referenceOrdinal, 0);
+				
+				for(int invertedOrdinal = 0; invertedOrdinal < ChordChangeCellLayout.NUMBER_OF_INTERVALS; invertedOrdinal++) {
+					int reverseCell = firstReverseCell + invertedOrdinal;
+					int code = reverseRatings.getCode(reverseCell);
+					if( !compiledRequest.containsRatingCode(code) ||
+							!compiledRequest.containsInterval(ChordChangeCellLayout.invertedIntervalOrdinal(invertedOrdinal))) {
 						continue;
 					}
+					int cell = ChordChangeCellLayout.reverseCellIndex(reverseCell);
 					
+					visitor.visit(
+							ChordChangeCellLayout.startChord(cell), 
+							ChordChangeCellLayout.endChord(cell), 
+							ChordChangeCellLayout.interval(cell), 
+							PackedRatingArray.decode(code));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachTransitionFrom(ChordSignature startChordSig, ConsonanceRating minimumRating, ChordChangeRatingVisitor visitor) {
+		if(startChordSig == null) {
+			throw new NullPointerException("start chord sig may not be null");
+		}
+		if(minimumRating == null) {
+			throw new NullPointerException("minimumRating may not be null");
+		}
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		ratingBuckets.forEachTransition(startChordSig.ordinal(), minimumRating, visitor);
+	}
+
+	@Override
+	public List<ChordChangeConsonanceRecord> getBestTransitionsFrom(ChordSignature startChordSig, int maximumNumberOfTransitions) {
+		if(startChordSig == null) {
+			throw new NullPointerException("start chord sig may not be null");
+		}
+		if(maximumNumberOfTransitions < 0) {
+			throw new IllegalArgumentException("maximumNumberOfTransitions may not be negative");
+		}
+		return ratingBuckets.bestTransitions(startChordSig.ordinal(), maximumNumberOfTransitions);
+	}
+
+	@Override
+	public FrozenChordChangeConsonanceModel freeze() {
+		return new FrozenChordChangeConsonanceModel(this);
+	}
+
+	@Override
+	public Set<ChordChangeConsonanceRecord> getRecords(ChordChangeConsonanceRecordRequest request) {
+		Set<ChordChangeConsonanceRecord> recordsRequested = new HashSet<>();
+		
+		forEachRating(request, 
+				(referenceChordSig, targetChordSig, interval, rating) -> 
 					recordsRequested.add(
 							new ChordChangeConsonanceRecord(
 									referenceChordSig, 
 									targetChordSig, 
 									interval, 
-									rating));
-				}
-			}
-		}
+									rating)));
+
 		return recordsRequested;
 	}
+
+	@Override
+	public Stream<ChordChangeConsonanceRecord> streamRecords(ChordChangeConsonanceRecordRequest request) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		List<ChordSignature> chordSignatures = ChordSignature.valuesAsList();
+		
+		return compiledRequest.referenceChordOrdinals()
+				.mapToObj(chordSignatures::get)
+				.filter(this.chordChangeConsonanceMap::containsKey)
+				.flatMap(referenceChordSig -> {
+					Map<ChordSignature,IntervalRatingMap> targetChordToIntervalMap =
+							this.chordChangeConsonanceMap.get(referenceChordSig);
+					
+					return compiledRequest.targetOrdinals()
+							.mapToObj(chordSignatures::get)
+							.filter(targetChordToIntervalMap::containsKey)
+							.flatMap(targetChordSig -> 
+								targetChordToIntervalMap.get(targetChordSig).entrySet().stream()
+									.filter(entry -> 
+										compiledRequest.containsInterval(entry.getKey().ordinal()) &&
+										compiledRequest.contains(entry.getValue()))
+									.map(entry -> 
+										new ChordChangeConsonanceRecord(
+												referenceChordSig, 
+												targetChordSig, 
+												entry.getKey(), 
+												entry.getValue())));
+				});
+	}
 }
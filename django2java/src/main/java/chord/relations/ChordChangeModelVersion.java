@@ -0,0 +1,195 @@
+package chord.relations;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import chord.relations.record.ChordChangeConsonanceRecord;
+
+/**
+ * One immutable version of a VersionedChordChangeConsonanceModel.
+ *
+ * The ratings are split into one segment per start chord(a PackedRatingArray
+ * of CELLS_PER_START_CHORD cells). A new version only copies the segments
+ * that were changed and shares every other segment with the version it was
+ * created from, so committing a single rating copies a few hundred bytes
+ * instead of the whole model.
+ *
+ * Segments are never changed once a version has been created so a version
+ * may be read by any number of threads without synchronization. Calling
+ * addRating or removeRating throws an UnsupportedOperationException.
+ * @author DAD
+ *
+ */
+public final class ChordChangeModelVersion extends AbstractChordChangeCellModel {
+
+	/**
+	 * Every segment holds one cell that can't be rated, the cell for
+	 * the start chord changing to itself by a unison.
+	 */
+	private static final int RATEABLE_CELLS_PER_SEGMENT = ChordChangeCellLayout.CELLS_PER_START_CHORD - 1;
+
+	private final long versionNumber;
+	private final PackedRatingArray[] segments;
+	private final int[] segmentRatingCounts;
+	private final int numberOfRatings;
+
+	private ChordChangeModelVersion(
+			long versionNumber,
+			PackedRatingArray[] segments,
+			int[] segmentRatingCounts,
+			int numberOfRatings) {
+		this.versionNumber = versionNumber;
+		this.segments = segments;
+		this.segmentRatingCounts = segmentRatingCounts;
+		this.numberOfRatings = numberOfRatings;
+	}
+
+	/**
+	 * Create version 0 of a model, every segment is the same empty segment.
+	 * @return empty version
+	 */
+	static ChordChangeModelVersion empty() {
+		PackedRatingArray[] segments = new PackedRatingArray[ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES];
+		Arrays.fill(segments, new PackedRatingArray(ChordChangeCellLayout.CELLS_PER_START_CHORD));
+
+		return new ChordChangeModelVersion(0, segments, new int[segments.length], 0);
+	}
+
+	/**
+	 * Create the next version with the given codes stored in the given cells.
+	 * Changes are applied in order so a later change to the same cell wins.
+	 * @param cells cells to change
+	 * @param codes codes to store in the cells, NOT_RATED to remove a rating
+	 * @param numberOfChanges number of entries of cells and codes to apply
+	 * @return the new version, this version if no cell was actually changed
+	 */
+	ChordChangeModelVersion withChanges(int[] cells, int[] codes, int numberOfChanges) {
+		PackedRatingArray[] newSegments = null;
+		int[] newSegmentRatingCounts = null;
+		boolean[] segmentCopied = null;
+		int newNumberOfRatings = numberOfRatings;
+
+		for(int i = 0; i < numberOfChanges; i++) {
+			int segment = ChordChangeCellLayout.startOrdinal(cells[i]);
+			int offset = cells[i] - segment * ChordChangeCellLayout.CELLS_PER_START_CHORD;
+			int previousCode = (newSegments == null ? segments : newSegments)[segment].getCode(offset);
+
+			if(previousCode == codes[i]) {
+				continue;
+			}
+			if(newSegments == null) {
+				newSegments = segments.clone();
+				newSegmentRatingCounts = segmentRatingCounts.clone();
+				segmentCopied = new boolean[segments.length];
+			}
+			if( !segmentCopied[segment]) {
+				newSegments[segment] = new PackedRatingArray(newSegments[segment]);
+				segmentCopied[segment] = true;
+			}
+			newSegments[segment].setCode(offset, codes[i]);
+
+			if(previousCode == PackedRatingArray.NOT_RATED) {
+				newSegmentRatingCounts[segment]++;
+				newNumberOfRatings++;
+			}else if(codes[i] == PackedRatingArray.NOT_RATED) {
+				newSegmentRatingCounts[segment]--;
+				newNumberOfRatings--;
+			}
+		}
+
+		if(newSegments == null) {
+			return this;
+		}
+		return new ChordChangeModelVersion(versionNumber + 1, newSegments, newSegmentRatingCounts, newNumberOfRatings);
+	}
+
+	/**
+	 * Get the number of this version. Every commit that changes at least one
+	 * rating increases the number by one.
+	 * @return version number, 0 for the empty version
+	 */
+	public long getVersionNumber() {
+		return versionNumber;
+	}
+
+	/**
+	 * Get the number of ratings in this version.
+	 * @return number of rated cells
+	 */
+	public int numberOfRatings() {
+		return numberOfRatings;
+	}
+
+	/**
+	 * Test if this version shares the segment of the start chord with
+	 * the other version, i.e. neither changed a rating from the start chord.
+	 * @param other version to compare against
+	 * @param startOrdinal ordinal of the start chord
+	 * @return true if the segment is the same object in both versions
+	 */
+	boolean sharesSegment(ChordChangeModelVersion other, int startOrdinal) {
+		return segments[startOrdinal] == other.segments[startOrdinal];
+	}
+
+	@Override
+	int getCode(int cell) {
+		int segment = ChordChangeCellLayout.startOrdinal(cell);
+		return segments[segment].getCode(cell - segment * ChordChangeCellLayout.CELLS_PER_START_CHORD);
+	}
+
+	@Override
+	int firstUnratedCell() {
+		for(int segment = 0; segment < segments.length; segment++) {
+			if(segmentRatingCounts[segment] == RATEABLE_CELLS_PER_SEGMENT) {
+				continue;
+			}
+			int firstCell = segment * ChordChangeCellLayout.CELLS_PER_START_CHORD;
+			for(int cell = firstCell; cell < firstCell + ChordChangeCellLayout.CELLS_PER_START_CHORD; cell++) {
+				if(ChordChangeCellLayout.isRateable(cell) &&
+						segments[segment].getCode(cell - firstCell) == PackedRatingArray.NOT_RATED) {
+					return cell;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord addRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("model versions cannot be changed");
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord removeRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("model versions cannot be changed");
+	}
+
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("model versions cannot be changed");
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("model versions cannot be changed");
+	}
+
+	@Override
+	public boolean isFull() {
+		return numberOfRatings == ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return numberOfRatings == 0;
+	}
+
+	/**
+	 * A version can't change so it is returned as is.
+	 * @return this version
+	 */
+	@Override
+	public ChordChangeModelVersion freeze() {
+		return this;
+	}
+}
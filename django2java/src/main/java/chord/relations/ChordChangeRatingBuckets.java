@@ -0,0 +1,216 @@
+package chord.relations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import chord.ConsonanceRating;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.CompiledRecordRequest;
+
+/**
+ * Adjacency lists of the chord change ratings grouped by rating.
+ *
+ * For every start chord there is one bucket per ConsonanceRating holding
+ * the (end chord, interval) pairs with that rating. The buckets are visited
+ * from VERY_GOOD down to VERY_BAD so threshold and top-K queries only
+ * touch the transitions they return.
+ *
+ * Transitions are removed by swapping the last entry of the bucket into
+ * their place so the order within a bucket is not defined.
+ *
+ * The models must call update every time a rating changes.
+ * @author DAD
+ *
+ */
+class ChordChangeRatingBuckets {
+
+	private static final ConsonanceRating[] RATINGS = ConsonanceRating.values();
+	private static final int NUMBER_OF_RATINGS = RATINGS.length;
+	private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+	/**
+	 * Bucket for each start chord/rating combination. Entries are the
+	 * offset of the cell from the first cell of the start chord
+	 * (end chord ordinal * 12 + interval ordinal).
+	 */
+	private final int[][] buckets;
+	private final int[] bucketSizes;
+
+	/**
+	 * Position of every rated cell within its bucket.
+	 */
+	private final int[] positions;
+
+	/**
+	 * Create empty buckets for every start chord.
+	 */
+	ChordChangeRatingBuckets() {
+		int numberOfBuckets = ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES * NUMBER_OF_RATINGS;
+
+		this.buckets = new int[numberOfBuckets][];
+		this.bucketSizes = new int[numberOfBuckets];
+		this.positions = new int[ChordChangeCellLayout.NUMBER_OF_CELLS];
+	}
+
+	private static int bucketIndex(int startOrdinal, int ratingOrdinal) {
+		return startOrdinal * NUMBER_OF_RATINGS + ratingOrdinal;
+	}
+
+	/**
+	 * Move the cell to the bucket for its new rating.
+	 * @param cell cell whose rating changed
+	 * @param previousRating rating before the change, null if unrated
+	 * @param rating rating after the change, null if the rating was removed
+	 */
+	void update(int cell, ConsonanceRating previousRating, ConsonanceRating rating) {
+		if(previousRating == rating) {
+			return;
+		}
+		if(previousRating != null) {
+			remove(cell, previousRating);
+		}
+		if(rating != null) {
+			add(cell, rating);
+		}
+	}
+
+	private void add(int cell, ConsonanceRating rating) {
+		int startOrdinal = ChordChangeCellLayout.startOrdinal(cell);
+		int bucket = bucketIndex(startOrdinal, rating.ordinal());
+		int size = bucketSizes[bucket];
+
+		if(buckets[bucket] == null) {
+			buckets[bucket] = new int[INITIAL_BUCKET_CAPACITY];
+		}else if(size == buckets[bucket].length) {
+			buckets[bucket] = Arrays.copyOf(buckets[bucket], size * 2);
+		}
+
+		buckets[bucket][size] = cell - ChordChangeCellLayout.cellIndex(startOrdinal, 0, 0);
+		positions[cell] = size;
+		bucketSizes[bucket] = size + 1;
+	}
+
+	private void remove(int cell, ConsonanceRating rating) {
+		int startOrdinal = ChordChangeCellLayout.startOrdinal(cell);
+		int bucket = bucketIndex(startOrdinal, rating.ordinal());
+		int lastPosition = bucketSizes[bucket] - 1;
+		int position = positions[cell];
+
+		//move the last entry into the hole left by the cell
+		int lastOffset = buckets[bucket][lastPosition];
+		buckets[bucket][position] = lastOffset;
+		positions[ChordChangeCellLayout.cellIndex(startOrdinal, 0, 0) + lastOffset] = position;
+		bucketSizes[bucket] = lastPosition;
+	}
+
+	/**
+	 * Get the number of transitions from the start chord with the rating.
+	 * @param startOrdinal ordinal of the start chord
+	 * @param rating rating of the transitions
+	 * @return number of transitions in the bucket
+	 */
+	int bucketSize(int startOrdinal, ConsonanceRating rating) {
+		return bucketSizes[bucketIndex(startOrdinal, rating.ordinal())];
+	}
+
+	/**
+	 * Get the number of transitions from the start chord with a rating
+	 * contained in the request. This is the amount of work done by
+	 * forEachRating.
+	 * @param startOrdinal ordinal of the start chord
+	 * @param request compiled request
+	 * @return number of transitions in the requested buckets
+	 */
+	int numberOfRatings(int startOrdinal, CompiledRecordRequest request) {
+		int numberOfRatings = 0;
+		for(ConsonanceRating rating : RATINGS) {
+			if(request.contains(rating)) {
+				numberOfRatings += bucketSize(startOrdinal, rating);
+			}
+		}
+		return numberOfRatings;
+	}
+
+	/**
+	 * Visit the transitions from the start chord matching the request,
+	 * best rating first.
+	 * @param startOrdinal ordinal of the start chord
+	 * @param request compiled request used to filter the target chords and intervals
+	 * @param visitor callback receiving the fields of each rating
+	 */
+	void forEachRating(int startOrdinal, CompiledRecordRequest request, ChordChangeRatingVisitor visitor) {
+		int firstCell = ChordChangeCellLayout.cellIndex(startOrdinal, 0, 0);
+
+		for(int ratingOrdinal = NUMBER_OF_RATINGS - 1; ratingOrdinal >= 0; ratingOrdinal--) {
+			ConsonanceRating rating = RATINGS[ratingOrdinal];
+			if( !request.contains(rating)) {
+				continue;
+			}
+			int bucket = bucketIndex(startOrdinal, ratingOrdinal);
+			for(int position = 0; position < bucketSizes[bucket]; position++) {
+				int cell = firstCell + buckets[bucket][position];
+				if( !request.containsTarget(ChordChangeCellLayout.endOrdinal(cell)) ||
+						!request.containsInterval(ChordChangeCellLayout.intervalOrdinal(cell))) {
+					continue;
+				}
+				visitor.visit(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						rating);
+			}
+		}
+	}
+
+	/**
+	 * Visit every transition from the start chord rated at least the
+	 * minimum rating, best rating first.
+	 * @param startOrdinal ordinal of the start chord
+	 * @param minimumRating lowest rating to visit
+	 * @param visitor callback receiving the fields of each rating
+	 */
+	void forEachTransition(int startOrdinal, ConsonanceRating minimumRating, ChordChangeRatingVisitor visitor) {
+		int firstCell = ChordChangeCellLayout.cellIndex(startOrdinal, 0, 0);
+
+		for(int ratingOrdinal = NUMBER_OF_RATINGS - 1; ratingOrdinal >= minimumRating.ordinal(); ratingOrdinal--) {
+			int bucket = bucketIndex(startOrdinal, ratingOrdinal);
+			for(int position = 0; position < bucketSizes[bucket]; position++) {
+				int cell = firstCell + buckets[bucket][position];
+				visitor.visit(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						RATINGS[ratingOrdinal]);
+			}
+		}
+	}
+
+	/**
+	 * Get the best rated transitions from the start chord.
+	 * @param startOrdinal ordinal of the start chord
+	 * @param maximumNumberOfTransitions maximum number of records to return
+	 * @return records ordered best rating first, at most maximumNumberOfTransitions long
+	 */
+	List<ChordChangeConsonanceRecord> bestTransitions(int startOrdinal, int maximumNumberOfTransitions) {
+		int firstCell = ChordChangeCellLayout.cellIndex(startOrdinal, 0, 0);
+		List<ChordChangeConsonanceRecord> bestTransitions = new ArrayList<>();
+
+		for(int ratingOrdinal = NUMBER_OF_RATINGS - 1; ratingOrdinal >= 0; ratingOrdinal--) {
+			int bucket = bucketIndex(startOrdinal, ratingOrdinal);
+			for(int position = 0; position < bucketSizes[bucket]; position++) {
+				if(bestTransitions.size() == maximumNumberOfTransitions) {
+					return bestTransitions;
+				}
+				int cell = firstCell + buckets[bucket][position];
+				bestTransitions.add(
+						new ChordChangeConsonanceRecord(
+								ChordChangeCellLayout.startChord(cell),
+								ChordChangeCellLayout.endChord(cell),
+								ChordChangeCellLayout.interval(cell),
+								RATINGS[ratingOrdinal]));
+			}
+		}
+		return bestTransitions;
+	}
+}
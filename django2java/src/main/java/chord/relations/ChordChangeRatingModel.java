@@ -0,0 +1,70 @@
+package chord.relations;
+
+import java.util.List;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Common interface for all models holding chord change ratings.
+ * @author DAD
+ *
+ */
+public interface ChordChangeRatingModel extends RatingModel<ChordChangeConsonanceRecord,ChordChangeConsonanceRecordRequest> {
+
+	/**
+	 * Pass the fields of every rating matching the request to the visitor.
+	 * No records or collections are created.
+	 * 
+	 * The model must not be changed by the visitor.
+	 * @param request object used to specify the ratings to visit
+	 * @param visitor callback receiving the fields of each rating
+	 */
+	void forEachRating(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor);
+
+	/**
+	 * Pass the fields of every rating matching the request to the visitor
+	 * starting from the requested target chords instead of the reference
+	 * chords.
+	 * 
+	 * The ratings visited are the same as forEachRating but the work done 
+	 * is proportional to the number of target chords requested, so this
+	 * should be used to find the chords leading into a chord.
+	 * 
+	 * The model must not be changed by the visitor.
+	 * @param request object used to specify the ratings to visit
+	 * @param visitor callback receiving the fields of each rating
+	 */
+	void forEachRatingLeadingTo(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor);
+
+	/**
+	 * Visit every transition from the start chord with a rating of at least 
+	 * minimumRating. Transitions are visited best rating first.
+	 * 
+	 * The model must not be changed by the visitor.
+	 * @param startChordSig chord the transitions start from
+	 * @param minimumRating lowest rating to visit
+	 * @param visitor callback receiving the fields of each rating
+	 */
+	void forEachTransitionFrom(ChordSignature startChordSig, ConsonanceRating minimumRating, ChordChangeRatingVisitor visitor);
+	
+	/**
+	 * Get the best rated transitions from the start chord. Transitions 
+	 * with the same rating are returned in no particular order.
+	 * @param startChordSig chord the transitions start from
+	 * @param maximumNumberOfTransitions maximum number of transitions to return
+	 * @return records ordered best rating first
+	 */
+	List<ChordChangeConsonanceRecord> getBestTransitionsFrom(ChordSignature startChordSig, int maximumNumberOfTransitions);
+	
+	/**
+	 * Create a read only snapshot of the ratings currently in the model.
+	 * The snapshot is deeply immutable and may be shared between threads
+	 * without synchronization. Later changes to this model are not seen
+	 * by the snapshot.
+	 * @return immutable snapshot of the model
+	 */
+	ChordChangeRatingModel freeze();
+}
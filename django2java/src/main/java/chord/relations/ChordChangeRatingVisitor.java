@@ -0,0 +1,24 @@
+package chord.relations;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+
+/**
+ * Callback used to visit the chord change ratings matching a request
+ * without creating a record for each rating.
+ * @author DAD
+ *
+ */
+@FunctionalInterface
+public interface ChordChangeRatingVisitor {
+
+	/**
+	 * Called once for every rating matching the request.
+	 * @param startChordSig the start chord signature
+	 * @param endChordSig the end chord signature
+	 * @param intervalBetweenRoots interval between the roots of the two chords
+	 * @param rating rating of the chord change
+	 */
+	void visit(ChordSignature startChordSig, ChordSignature endChordSig, Interval intervalBetweenRoots, ConsonanceRating rating);
+}
@@ -0,0 +1,200 @@
+package chord.relations;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chord.ConsonanceRating;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Chord change model that may be written to and read from by any
+ * number of threads at the same time.
+ *
+ * Every rating is a 4 bit cell of an AtomicPackedRatingArray so adding,
+ * removing and getting a single rating is one atomic operation on one
+ * cell and no locks are taken. Writers only contend when they write to
+ * cells held in the same long.
+ *
+ * The number of ratings is kept in an AtomicInteger that is only changed
+ * when a cell goes from unrated to rated or back, so isFull and isEmpty
+ * never scan the model.
+ *
+ * Queries over more than one cell(getRecords, forEachRating...) are weakly
+ * consistent. They see every rating that was in the model before the query
+ * started and may or may not see ratings changed while the query runs.
+ * Use freeze() on a quiet model when a consistent snapshot is needed.
+ * @author DAD
+ *
+ */
+public class ConcurrentChordChangeConsonanceModel extends AbstractChordChangeCellModel {
+
+	private final AtomicPackedRatingArray ratings;
+
+	private final AtomicInteger numberOfRatings;
+
+	/**
+	 * Every cell before the hint is rated or can't be rated. Lowered
+	 * when a rating is removed and raised by getNextRecordToBeRated.
+	 *
+	 * The hint is the low 32 bits, the high 32 bits count the removals.
+	 * Every removal changes the stamp, so a reader that scanned past a
+	 * cell while it was being cleared can't raise the hint over it.
+	 */
+	private final AtomicLong fillCursor;
+
+	/**
+	 * Create an empty ConcurrentChordChangeConsonanceModel.
+	 */
+	public ConcurrentChordChangeConsonanceModel() {
+		this.ratings = new AtomicPackedRatingArray(ChordChangeCellLayout.NUMBER_OF_CELLS);
+		this.numberOfRatings = new AtomicInteger();
+		this.fillCursor = new AtomicLong();
+	}
+
+	/**
+	 * Create a ConcurrentChordChangeConsonanceModel containing every rating
+	 * in the given model.
+	 * @param model model to copy the ratings from, may not be null
+	 */
+	public ConcurrentChordChangeConsonanceModel(ChordChangeRatingModel model) {
+		this();
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		model.forEachRating(
+				ChordChangeConsonanceRecordRequest.allPossibleRecords(),
+				(startChordSig, endChordSig, intervalBetweenRoots, rating) ->
+					setRating(ChordChangeCellLayout.cellIndex(startChordSig, endChordSig, intervalBetweenRoots), rating));
+	}
+
+	/**
+	 * Atomically store the rating in the cell and update the counters.
+	 * @param cell cell to store the rating in
+	 * @param rating rating to store, null to remove the rating
+	 * @return the previous rating in the cell
+	 */
+	private ConsonanceRating setRating(int cell, ConsonanceRating rating) {
+		ConsonanceRating previousRating = ratings.set(cell, rating);
+
+		if(previousRating == null && rating != null) {
+			numberOfRatings.incrementAndGet();
+		}else if(previousRating != null && rating == null) {
+			numberOfRatings.decrementAndGet();
+			fillCursor.updateAndGet(cursor -> fillCursor(removals(cursor) + 1, Math.min(hint(cursor), cell)));
+		}
+		return previousRating;
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord addRating(ChordChangeConsonanceRecord record) {
+		int cell = ChordChangeCellLayout.cellIndex(record);
+		if(record.rating() == null) {
+			throw new NullPointerException("rating must not be null");
+		}
+		ConsonanceRating previousRating = setRating(cell, record.rating());
+
+		return previousRating == null ? null : createRecord(cell, previousRating);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord removeRating(ChordChangeConsonanceRecord record) {
+		int cell = ChordChangeCellLayout.cellIndex(record);
+		ConsonanceRating previousRating = setRating(cell, null);
+
+		return previousRating == null ? null : createRecord(cell, previousRating);
+	}
+
+	/**
+	 * Each rating is added atomically but other threads may see some of the
+	 * ratings of the batch before the others.
+	 */
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forAdding(records, ChordChangeCellLayout::cellIndex, ChordChangeConsonanceRecord::rating));
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forRemoving(records, ChordChangeCellLayout::cellIndex));
+	}
+
+	/**
+	 * Write every entry of the batch.
+	 * @return number of cells that went from unrated to rated or back
+	 */
+	private int writeBatch(RatingBatch batch) {
+		int cellsChanged = 0;
+		for(int i = 0; i < batch.size(); i++) {
+			ConsonanceRating rating = PackedRatingArray.decode(batch.code(i));
+			if((setRating(batch.cell(i), rating) == null) != (rating == null)) {
+				cellsChanged++;
+			}
+		}
+		return cellsChanged;
+	}
+
+	@Override
+	int getCode(int cell) {
+		return ratings.getCode(cell);
+	}
+
+	private static long fillCursor(int removals, int hint) {
+		return (long)removals << Integer.SIZE | hint;
+	}
+
+	private static int removals(long fillCursor) {
+		return (int)(fillCursor >>> Integer.SIZE);
+	}
+
+	private static int hint(long fillCursor) {
+		return (int)fillCursor;
+	}
+
+	@Override
+	int firstUnratedCell() {
+		long cursor = fillCursor.get();
+		int firstUnrated = -1;
+		for(int cell = hint(cursor); cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell) &&
+					getCode(cell) == PackedRatingArray.NOT_RATED) {
+				firstUnrated = cell;
+				break;
+			}
+		}
+		//if a rating was removed in the meantime the stamp has changed
+		//and the hint is left for the next caller
+		int newHint = firstUnrated < 0 ? ChordChangeCellLayout.NUMBER_OF_CELLS : firstUnrated;
+		fillCursor.compareAndSet(cursor, fillCursor(removals(cursor), newHint));
+		return firstUnrated;
+	}
+
+	@Override
+	public boolean isFull() {
+		return numberOfRatings.get() == ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return numberOfRatings.get() == 0;
+	}
+
+	/**
+	 * Get the number of ratings in the model.
+	 * @return number of rated cells
+	 */
+	public int numberOfRatings() {
+		return numberOfRatings.get();
+	}
+
+	/**
+	 * Create a snapshot of the model. Ratings changed while the snapshot
+	 * is being created may or may not be included.
+	 * @return immutable snapshot of the model
+	 */
+	@Override
+	public FrozenChordChangeConsonanceModel freeze() {
+		return new FrozenChordChangeConsonanceModel(this);
+	}
+}
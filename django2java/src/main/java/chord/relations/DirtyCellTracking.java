@@ -0,0 +1,35 @@
+package chord.relations;
+
+/**
+ * Implemented by models that keep track of the cells whose rating was
+ * added, changed or removed since a checkpoint.
+ *
+ * This lets a persister save only the cells that changed since the model
+ * was last loaded or saved instead of every record, see DeltaFilePersister.
+ * Cells are the cell indexes of the model's cell layout(ChordChangeCellLayout,
+ * NoteCellLayout or ScaleCellLayout).
+ *
+ * A cell is dirty if it was written to, even if it was set back to the
+ * rating it had at the checkpoint.
+ * @author DAD
+ *
+ */
+public interface DirtyCellTracking {
+
+	/**
+	 * Get the cells changed since the last checkpoint.
+	 * @return cell indexes in increasing order, empty if nothing changed
+	 */
+	int[] getDirtyCells();
+
+	/**
+	 * Get the number of cells changed since the last checkpoint.
+	 * @return number of dirty cells
+	 */
+	int getNumberOfDirtyCells();
+
+	/**
+	 * Forget the changed cells, the current ratings become the checkpoint.
+	 */
+	void checkpoint();
+}
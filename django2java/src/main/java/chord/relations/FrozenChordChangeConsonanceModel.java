@@ -0,0 +1,139 @@
+package chord.relations;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Read only snapshot of a chord change rating model.
+ *
+ * The ratings are copied into a PackedChordChangeConsonanceModel that
+ * is never exposed or changed after the snapshot is created. None of the
+ * query methods of the packed model change its state so any number of
+ * threads may query the snapshot without synchronization.
+ *
+ * Calling addRating or removeRating throws an UnsupportedOperationException.
+ * Changes should be made to the mutable model and frozen again.
+ * @author DAD
+ *
+ */
+public final class FrozenChordChangeConsonanceModel implements ChordChangeRatingModel {
+
+	private final PackedChordChangeConsonanceModel ratings;
+
+	/**
+	 * Create a snapshot of the ratings currently in the model.
+	 * @param model model to copy, may not be null and must not be
+	 * changed while the snapshot is created
+	 */
+	public FrozenChordChangeConsonanceModel(ChordChangeRatingModel model) {
+		this.ratings = new PackedChordChangeConsonanceModel(model);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord addRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord removeRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getRating(ChordChangeConsonanceRecord record) {
+		return ratings.getRating(record);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getNextRecordToBeRated() {
+		return ratings.getNextRecordToBeRated();
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getLastRecordRated() {
+		return ratings.getLastRecordRated();
+	}
+
+	@Override
+	public boolean isFull() {
+		return ratings.isFull();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return ratings.isEmpty();
+	}
+
+	@Override
+	public Set<ChordChangeConsonanceRecord> getRecords(ChordChangeConsonanceRecordRequest request) {
+		return ratings.getRecords(request);
+	}
+
+	@Override
+	public Stream<ChordChangeConsonanceRecord> streamRecords(ChordChangeConsonanceRecordRequest request) {
+		return ratings.streamRecords(request);
+	}
+
+	@Override
+	public void forEachRating(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		ratings.forEachRating(request, visitor);
+	}
+
+	@Override
+	public void forEachRatingLeadingTo(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		ratings.forEachRatingLeadingTo(request, visitor);
+	}
+
+	@Override
+	public void forEachTransitionFrom(ChordSignature startChordSig, ConsonanceRating minimumRating, ChordChangeRatingVisitor visitor) {
+		ratings.forEachTransitionFrom(startChordSig, minimumRating, visitor);
+	}
+
+	@Override
+	public List<ChordChangeConsonanceRecord> getBestTransitionsFrom(ChordSignature startChordSig, int maximumNumberOfTransitions) {
+		return ratings.getBestTransitionsFrom(startChordSig, maximumNumberOfTransitions);
+	}
+
+	/**
+	 * The snapshot can't change so it is returned as is.
+	 * @return this snapshot
+	 */
+	@Override
+	public FrozenChordChangeConsonanceModel freeze() {
+		return this;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(o == this)
+			return true;
+		if(!(o instanceof FrozenChordChangeConsonanceModel))
+			return false;
+
+		FrozenChordChangeConsonanceModel other = (FrozenChordChangeConsonanceModel)o;
+
+		return this.ratings.equals(other.ratings);
+	}
+
+	@Override
+	public int hashCode() {
+		return ratings.hashCode();
+	}
+}
@@ -0,0 +1,218 @@
+package chord.relations;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import chord.ConsonanceRating;
+import chord.relations.record.NoteConsonanceRecord;
+import chord.relations.request.CompiledRecordRequest;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+/**
+ * Read only snapshot of a note rating model.
+ *
+ * The ratings are copied into a PackedRatingArray when the snapshot is
+ * created and never change afterwards, so any number of threads may
+ * query the snapshot without synchronization.
+ *
+ * Calling addRating or removeRating throws an UnsupportedOperationException.
+ * Changes should be made to the mutable model and frozen again.
+ * @author DAD
+ *
+ */
+public final class FrozenNoteConsonanceModel implements NoteRatingModel {
+
+	private final PackedRatingArray ratings;
+	private final int numberOfRatings;
+
+	/**
+	 * First unrated cell, NUMBER_OF_CELLS if the model is full.
+	 */
+	private final int firstUnratedCell;
+
+	/**
+	 * Create a snapshot of the ratings currently in the model.
+	 * @param model model to copy, may not be null and must not be
+	 * changed while the snapshot is created
+	 */
+	public FrozenNoteConsonanceModel(NoteRatingModel model) {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		PackedRatingArray copiedRatings = new PackedRatingArray(NoteCellLayout.NUMBER_OF_CELLS);
+
+		model.forEachRating(
+				NoteConsonanceRecordRequest.allPossibleRecords(),
+				(chordSig, interval, rating) ->
+					copiedRatings.set(NoteCellLayout.cellIndex(chordSig, interval), rating));
+
+		int ratingsCounted = 0;
+		int firstUnrated = NoteCellLayout.NUMBER_OF_CELLS;
+		for(int cell = 0; cell < NoteCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(copiedRatings.getCode(cell) != PackedRatingArray.NOT_RATED) {
+				ratingsCounted++;
+			}else if(firstUnrated == NoteCellLayout.NUMBER_OF_CELLS) {
+				firstUnrated = cell;
+			}
+		}
+
+		this.ratings = copiedRatings;
+		this.numberOfRatings = ratingsCounted;
+		this.firstUnratedCell = firstUnrated;
+	}
+
+	private static NoteConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new NoteConsonanceRecord(
+				NoteCellLayout.chord(cell),
+				NoteCellLayout.interval(cell),
+				rating);
+	}
+
+	/**
+	 * Check the request and compile it into its bit mask form.
+	 */
+	private static CompiledRecordRequest compileRequest(NoteConsonanceRecordRequest request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		if( !request.isInitialized()) {
+			throw new IllegalArgumentException("Request has not been properly initialized");
+		}
+		return request.compile();
+	}
+
+	@Override
+	public NoteConsonanceRecord addRating(NoteConsonanceRecord record) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public NoteConsonanceRecord removeRating(NoteConsonanceRecord record) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public int addRatings(Collection<? extends NoteConsonanceRecord> records) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends NoteConsonanceRecord> records) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public NoteConsonanceRecord getRating(NoteConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		int cell = NoteCellLayout.cellIndex(record.chordSignature(), record.interval());
+		ConsonanceRating rating = ratings.get(cell);
+
+		return rating == null ? null : createRecord(cell, rating);
+	}
+
+	@Override
+	public NoteConsonanceRecord getNextRecordToBeRated() {
+		if(isFull()) {
+			return null;
+		}
+		return createRecord(firstUnratedCell, null);
+	}
+
+	@Override
+	public NoteConsonanceRecord getLastRecordRated() {
+		int cell = firstUnratedCell - 1;
+		if(cell < 0) {
+			return null;
+		}
+		return createRecord(cell, ratings.get(cell));
+	}
+
+	@Override
+	public boolean isFull() {
+		return numberOfRatings == NoteCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return numberOfRatings == 0;
+	}
+
+	@Override
+	public void forEachRating(NoteConsonanceRecordRequest request, NoteRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+
+		for(int chordOrdinal = compiledRequest.nextReferenceChord(0);
+				chordOrdinal >= 0;
+				chordOrdinal = compiledRequest.nextReferenceChord(chordOrdinal + 1)) {
+			for(int intervalOrdinal = 0; intervalOrdinal < NoteCellLayout.NUMBER_OF_INTERVALS; intervalOrdinal++) {
+				int cell = NoteCellLayout.cellIndex(chordOrdinal, intervalOrdinal);
+				int code = ratings.getCode(cell);
+				if( !compiledRequest.containsInterval(intervalOrdinal) ||
+						!compiledRequest.containsRatingCode(code)) {
+					continue;
+				}
+				visitor.visit(
+						NoteCellLayout.chord(cell),
+						NoteCellLayout.interval(cell),
+						PackedRatingArray.decode(code));
+			}
+		}
+	}
+
+	@Override
+	public Set<NoteConsonanceRecord> getRecords(NoteConsonanceRecordRequest request) {
+		Set<NoteConsonanceRecord> matchingRecords = new HashSet<>();
+
+		forEachRating(request,
+				(chordSig, interval, rating) ->
+					matchingRecords.add(new NoteConsonanceRecord(chordSig, interval, rating)));
+
+		return matchingRecords;
+	}
+
+	@Override
+	public Stream<NoteConsonanceRecord> streamRecords(NoteConsonanceRecordRequest request) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+
+		return compiledRequest.referenceChordOrdinals()
+				.flatMap(chordOrdinal -> IntStream.range(0, NoteCellLayout.NUMBER_OF_INTERVALS)
+						.filter(compiledRequest::containsInterval)
+						.map(intervalOrdinal -> NoteCellLayout.cellIndex(chordOrdinal, intervalOrdinal)))
+				.filter(cell -> compiledRequest.containsRatingCode(ratings.getCode(cell)))
+				.mapToObj(cell -> createRecord(cell, ratings.get(cell)));
+	}
+
+	/**
+	 * The snapshot can't change so it is returned as is.
+	 * @return this snapshot
+	 */
+	@Override
+	public FrozenNoteConsonanceModel freeze() {
+		return this;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(o == this)
+			return true;
+		if(!(o instanceof FrozenNoteConsonanceModel))
+			return false;
+
+		FrozenNoteConsonanceModel other = (FrozenNoteConsonanceModel)o;
+
+		return this.ratings.equals(other.ratings);
+	}
+
+	@Override
+	public int hashCode() {
+		return ratings.hashCode();
+	}
+}
@@ -0,0 +1,217 @@
+package chord.relations;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import chord.ConsonanceRating;
+import chord.relations.record.ScaleConsonanceRecord;
+import chord.relations.request.CompiledRecordRequest;
+import chord.relations.request.ScaleConsonanceRecordRequest;
+
+/**
+ * Read only snapshot of a scale rating model.
+ *
+ * The ratings are copied into a PackedRatingArray when the snapshot is
+ * created and never change afterwards, so any number of threads may
+ * query the snapshot without synchronization.
+ *
+ * Calling addRating or removeRating throws an UnsupportedOperationException.
+ * Changes should be made to the mutable model and frozen again.
+ * @author DAD
+ *
+ */
+public final class FrozenScaleConsonanceModel implements ScaleRatingModel {
+
+	private final PackedRatingArray ratings;
+	private final int numberOfRatings;
+
+	/**
+	 * First unrated cell, NUMBER_OF_CELLS if the model is full.
+	 */
+	private final int firstUnratedCell;
+
+	/**
+	 * Create a snapshot of the ratings currently in the model.
+	 * @param model model to copy, may not be null and must not be
+	 * changed while the snapshot is created
+	 */
+	public FrozenScaleConsonanceModel(ScaleRatingModel model) {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		PackedRatingArray copiedRatings = new PackedRatingArray(ScaleCellLayout.NUMBER_OF_CELLS);
+
+		model.forEachRating(
+				ScaleConsonanceRecordRequest.allPossibleRecords(),
+				(chordSig, scaleSig, rating) ->
+					copiedRatings.set(ScaleCellLayout.cellIndex(chordSig, scaleSig), rating));
+
+		int ratingsCounted = 0;
+		int firstUnrated = ScaleCellLayout.NUMBER_OF_CELLS;
+		for(int cell = 0; cell < ScaleCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(copiedRatings.getCode(cell) != PackedRatingArray.NOT_RATED) {
+				ratingsCounted++;
+			}else if(firstUnrated == ScaleCellLayout.NUMBER_OF_CELLS) {
+				firstUnrated = cell;
+			}
+		}
+
+		this.ratings = copiedRatings;
+		this.numberOfRatings = ratingsCounted;
+		this.firstUnratedCell = firstUnrated;
+	}
+
+	private static ScaleConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new ScaleConsonanceRecord(
+				ScaleCellLayout.chord(cell),
+				ScaleCellLayout.scale(cell),
+				rating);
+	}
+
+	/**
+	 * Check the request and compile it into its bit mask form.
+	 */
+	private static CompiledRecordRequest compileRequest(ScaleConsonanceRecordRequest request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		if( !request.isInitialized()) {
+			throw new IllegalArgumentException("request is not initialized..check your code");
+		}
+		return request.compile();
+	}
+
+	@Override
+	public ScaleConsonanceRecord addRating(ScaleConsonanceRecord record) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public ScaleConsonanceRecord removeRating(ScaleConsonanceRecord record) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public int addRatings(Collection<? extends ScaleConsonanceRecord> records) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ScaleConsonanceRecord> records) {
+		throw new UnsupportedOperationException("frozen models cannot be changed");
+	}
+
+	@Override
+	public ScaleConsonanceRecord getRating(ScaleConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		int cell = ScaleCellLayout.cellIndex(record.chordSignature(), record.scaleSignature());
+		ConsonanceRating rating = ratings.get(cell);
+
+		return rating == null ? null : createRecord(cell, rating);
+	}
+
+	@Override
+	public ScaleConsonanceRecord getNextRecordToBeRated() {
+		if(isFull()) {
+			return null;
+		}
+		return createRecord(firstUnratedCell, null);
+	}
+
+	@Override
+	public ScaleConsonanceRecord getLastRecordRated() {
+		int cell = firstUnratedCell - 1;
+		if(cell < 0) {
+			return null;
+		}
+		return createRecord(cell, ratings.get(cell));
+	}
+
+	@Override
+	public boolean isFull() {
+		return numberOfRatings == ScaleCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return numberOfRatings == 0;
+	}
+
+	@Override
+	public void forEachRating(ScaleConsonanceRecordRequest request, ScaleRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+
+		for(int chordOrdinal = compiledRequest.nextReferenceChord(0);
+				chordOrdinal >= 0;
+				chordOrdinal = compiledRequest.nextReferenceChord(chordOrdinal + 1)) {
+			for(int scaleOrdinal = compiledRequest.nextTarget(0);
+					scaleOrdinal >= 0;
+					scaleOrdinal = compiledRequest.nextTarget(scaleOrdinal + 1)) {
+				int cell = ScaleCellLayout.cellIndex(chordOrdinal, scaleOrdinal);
+				int code = ratings.getCode(cell);
+				if( !compiledRequest.containsRatingCode(code)) {
+					continue;
+				}
+				visitor.visit(
+						ScaleCellLayout.chord(cell),
+						ScaleCellLayout.scale(cell),
+						PackedRatingArray.decode(code));
+			}
+		}
+	}
+
+	@Override
+	public Set<ScaleConsonanceRecord> getRecords(ScaleConsonanceRecordRequest request) {
+		Set<ScaleConsonanceRecord> recordsRequested = new HashSet<>();
+
+		forEachRating(request,
+				(chordSig, scaleSig, rating) ->
+					recordsRequested.add(new ScaleConsonanceRecord(chordSig, scaleSig, rating)));
+
+		return recordsRequested;
+	}
+
+	@Override
+	public Stream<ScaleConsonanceRecord> streamRecords(ScaleConsonanceRecordRequest request) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+
+		return compiledRequest.referenceChordOrdinals()
+				.flatMap(chordOrdinal -> compiledRequest.targetOrdinals()
+						.map(scaleOrdinal -> ScaleCellLayout.cellIndex(chordOrdinal, scaleOrdinal)))
+				.filter(cell -> compiledRequest.containsRatingCode(ratings.getCode(cell)))
+				.mapToObj(cell -> createRecord(cell, ratings.get(cell)));
+	}
+
+	/**
+	 * The snapshot can't change so it is returned as is.
+	 * @return this snapshot
+	 */
+	@Override
+	public FrozenScaleConsonanceModel freeze() {
+		return this;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(o == this)
+			return true;
+		if(!(o instanceof FrozenScaleConsonanceModel))
+			return false;
+
+		FrozenScaleConsonanceModel other = (FrozenScaleConsonanceModel)o;
+
+		return this.ratings.equals(other.ratings);
+	}
+
+	@Override
+	public int hashCode() {
+		return ratings.hashCode();
+	}
+}
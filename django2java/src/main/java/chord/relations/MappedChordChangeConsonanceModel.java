@@ -0,0 +1,149 @@
+package chord.relations;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import chord.ConsonanceRating;
+import chord.relations.record.ChordChangeConsonanceRecord;
+
+/**
+ * Read only chord change model that reads its ratings directly out of a
+ * buffer holding the ratings section of a binary model file, usually a
+ * MappedByteBuffer over the file.
+ *
+ * Nothing is copied or decoded when the model is created, so opening a
+ * model file is a map and a header check no matter how many ratings it
+ * holds, and every process mapping the same file shares the same pages
+ * of the page cache. Each rating is read from the buffer when it is
+ * asked for.
+ *
+ * The ratings are 4 bits per cell in ChordChangeCellLayout order, two
+ * cells per byte with the even cell in the low bits. A code that is not
+ * a rating code means the file is corrupt and a FileFormatException is
+ * thrown by the query that read it.
+ *
+ * The buffer must not be changed while the model is used. Calling
+ * addRating or removeRating throws an UnsupportedOperationException.
+ * @author DAD
+ *
+ */
+public final class MappedChordChangeConsonanceModel extends AbstractChordChangeCellModel {
+
+	private static final int RATINGS_SIZE = (ChordChangeCellLayout.NUMBER_OF_CELLS + 1) / 2;
+	private static final int MAXIMUM_CODE = ConsonanceRating.values().length;
+
+	private final ByteBuffer ratings;
+
+	/**
+	 * Number of ratings and first unrated cell, found the first time
+	 * they are needed. -1 until then.
+	 */
+	private volatile int numberOfRatings = -1;
+	private volatile int firstUnratedCell = -1;
+
+	/**
+	 * Create a model reading its ratings from the buffer.
+	 * @param ratings buffer whose content from position 0 is the ratings
+	 * section of a chord change model file, may not be null
+	 */
+	public MappedChordChangeConsonanceModel(ByteBuffer ratings) {
+		if(ratings == null) {
+			throw new NullPointerException("ratings may not be null");
+		}
+		if(ratings.capacity() < RATINGS_SIZE) {
+			throw new IllegalArgumentException("ratings buffer is too small:" + ratings.capacity());
+		}
+		//only absolute reads are used so the position of the buffer doesn't matter
+		this.ratings = ratings.asReadOnlyBuffer();
+	}
+
+	@Override
+	int getCode(int cell) {
+		int packedCodes = ratings.get(cell >>> 1);
+		int code = (cell & 1) == 0 ? packedCodes & 0xF : (packedCodes >>> 4) & 0xF;
+		if(code > MAXIMUM_CODE) {
+			throw new FileFormatException("invalid rating code " + code + " for cell " + cell);
+		}
+		return code;
+	}
+
+	@Override
+	int firstUnratedCell() {
+		if(firstUnratedCell == -1) {
+			countRatings();
+		}
+		return firstUnratedCell == ChordChangeCellLayout.NUMBER_OF_CELLS ? -1 : firstUnratedCell;
+	}
+
+	/**
+	 * Scan the ratings once for the number of ratings and the first
+	 * unrated cell. Threads racing here compute the same values.
+	 */
+	private void countRatings() {
+		int ratingsCounted = 0;
+		int firstUnrated = ChordChangeCellLayout.NUMBER_OF_CELLS;
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if( !ChordChangeCellLayout.isRateable(cell)) {
+				continue;
+			}
+			if(getCode(cell) != PackedRatingArray.NOT_RATED) {
+				ratingsCounted++;
+			}else if(firstUnrated == ChordChangeCellLayout.NUMBER_OF_CELLS) {
+				firstUnrated = cell;
+			}
+		}
+		firstUnratedCell = firstUnrated;
+		numberOfRatings = ratingsCounted;
+	}
+
+	/**
+	 * Get the number of ratings in the model. The ratings are counted
+	 * the first time this, isFull, isEmpty or getNextRecordToBeRated is called.
+	 * @return number of rated cells
+	 */
+	public int numberOfRatings() {
+		if(numberOfRatings == -1) {
+			countRatings();
+		}
+		return numberOfRatings;
+	}
+
+	@Override
+	public boolean isFull() {
+		return numberOfRatings() == ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return numberOfRatings() == 0;
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord addRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("mapped models cannot be changed");
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord removeRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("mapped models cannot be changed");
+	}
+
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("mapped models cannot be changed");
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("mapped models cannot be changed");
+	}
+
+	/**
+	 * The mapped model can't change so it is returned as is.
+	 * @return this model
+	 */
+	@Override
+	public MappedChordChangeConsonanceModel freeze() {
+		return this;
+	}
+}
@@ -0,0 +1,95 @@
+package chord.relations;
+
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.record.NoteConsonanceRecord;
+
+/**
+ * Maps every chord signature/interval combination of a note
+ * consonance rating to a single integer cell index.
+ *
+ * Cells are ordered the same way ratings are entered by the raters,
+ * chord signature first and then interval(UNISON to MAJOR7).
+ * @author DAD
+ *
+ */
+public final class NoteCellLayout {
+
+	private static final ChordSignature[] CHORD_SIGNATURES = ChordSignature.values();
+	private static final Interval[] INTERVALS = Interval.valuesInFirstOctave();
+
+	public static final int NUMBER_OF_CHORD_SIGNATURES = CHORD_SIGNATURES.length;
+	public static final int NUMBER_OF_INTERVALS = INTERVALS.length;
+	public static final int NUMBER_OF_CELLS = NUMBER_OF_CHORD_SIGNATURES * NUMBER_OF_INTERVALS;
+
+	private NoteCellLayout() {
+		//static methods only
+	}
+
+	/**
+	 * Get the cell index for the given ordinals. No checks are made
+	 * on the parameters.
+	 * @param chordOrdinal ordinal of the chord signature
+	 * @param intervalOrdinal ordinal of the interval
+	 * @return cell index for the ordinals
+	 */
+	public static int cellIndex(int chordOrdinal, int intervalOrdinal) {
+		return chordOrdinal * NUMBER_OF_INTERVALS + intervalOrdinal;
+	}
+
+	/**
+	 * Get the cell index for the chord signature and interval.
+	 * @param chordSig chord signature, may not be null
+	 * @param interval interval, must be in the first octave
+	 * @return cell index for the parameters
+	 */
+	public static int cellIndex(ChordSignature chordSig, Interval interval) {
+		if(chordSig == null) {
+			throw new NullPointerException("ChordSignature may not be null.");
+		}
+		if(interval == null) {
+			throw new NullPointerException("Interval may not be null.");
+		}
+		if(!interval.inFirstOctave()) {
+			throw new IllegalArgumentException("Interval must be between UNISON and MAJOR7 inclusive.");
+		}
+		return cellIndex(chordSig.ordinal(), interval.ordinal());
+	}
+
+	/**
+	 * Get the cell index of the chord signature and interval held by the record.
+	 * @param record record holding the chord signature and interval, may not be null
+	 * @return cell index for the record
+	 */
+	public static int cellIndex(NoteConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		return cellIndex(record.chordSignature(), record.interval());
+	}
+
+	public static int chordOrdinal(int cell) {
+		return cell / NUMBER_OF_INTERVALS;
+	}
+
+	public static int intervalOrdinal(int cell) {
+		return cell % NUMBER_OF_INTERVALS;
+	}
+
+	public static ChordSignature chord(int cell) {
+		return CHORD_SIGNATURES[chordOrdinal(cell)];
+	}
+
+	public static Interval interval(int cell) {
+		return INTERVALS[intervalOrdinal(cell)];
+	}
+
+	/**
+	 * Every note consonance cell can be rated.
+	 * @param cell cell index
+	 * @return true
+	 */
+	public static boolean isRateable(int cell) {
+		return true;
+	}
+}
@@ -1,17 +1,20 @@
 package chord.relations;
 
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import chord.ConsonanceRating;
 import chord.Interval;
 import chord.ident.ChordSignature;
 import chord.relations.record.NoteConsonanceRecord;
 import chord.relations.request.NoteConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
 
 /**
  * Main data model for rating the consonance of chord signatures to
@@ -19,7 +22,7 @@ import chord.relations.request.NoteConsonanceRecordRequest;
  * by the interval between the root note of the chord and the note that is
  * being rated.
  */
-public class NoteConsonanceModel implements RatingModel<NoteConsonanceRecord,NoteConsonanceRecordRequest>{
+public class NoteConsonanceModel implements NoteRatingModel, DirtyCellTracking{
 
 	/**
 	 * Main data structure containing the consonance rating between
@@ -27,11 +30,20 @@ public class NoteConsonanceModel implements RatingModel<NoteConsonanceRecord,Not
 	 */
 	private Map<ChordSignature, IntervalRatingMap> chordToIntervalRatingMap;
 
+	/**
+	 * Keeps track of the rated cells so that we don't have to scan
+	 * every chord/interval pair to find the next record to be rated.
+	 */
+	private final RatedCellTracker ratedCells;
+
 	/**
 	 * Create an empty NoteConsonanceModel.
 	 */
 	public NoteConsonanceModel() {
 		this.chordToIntervalRatingMap = new EnumMap<>(ChordSignature.class);
+		this.ratedCells = new RatedCellTracker(
+				NoteCellLayout.NUMBER_OF_CELLS, 
+				NoteCellLayout::isRateable);
 	}
 
 	/**
@@ -68,7 +80,10 @@ public class NoteConsonanceModel implements RatingModel<NoteConsonanceRecord,Not
 			chordToIntervalRatingMap.put(chordSig, ratingMapForChordSignature);
 		}
 
-		return ratingMapForChordSignature.put(interval,rating);
+		ConsonanceRating previousRating = ratingMapForChordSignature.put(interval,rating);
+		ratedCells.markRated(NoteCellLayout.cellIndex(chordSig.ordinal(), interval.ordinal()));
+
+		return previousRating;
 	}
 
 	/**
@@ -92,7 +107,12 @@ public class NoteConsonanceModel implements RatingModel<NoteConsonanceRecord,Not
 		IntervalRatingMap ratingMapForChordSignature = 
 				chordToIntervalRatingMap.get(chordSig);
 
-		return ratingMapForChordSignature == null? null : ratingMapForChordSignature.remove(interval);
+		ConsonanceRating removedRating = 
+				ratingMapForChordSignature == null? null : ratingMapForChordSignature.remove(interval);
+		if(removedRating != null) {
+			ratedCells.markUnrated(NoteCellLayout.cellIndex(chordSig.ordinal(), interval.ordinal()));
+		}
+		return removedRating;
 	}
 
 	/**
@@ -206,6 +226,70 @@ public class NoteConsonanceModel implements RatingModel<NoteConsonanceRecord,Not
 		}
 	}
 
+	@Override
+	public int addRatings(Collection<? extends NoteConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forAdding(records, NoteCellLayout::cellIndex, NoteConsonanceModel::ratingToAdd));
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends NoteConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forRemoving(records, NoteCellLayout::cellIndex));
+	}
+
+	/**
+	 * Get the rating of a record being added, checked the same way as addRating.
+	 */
+	private static ConsonanceRating ratingToAdd(NoteConsonanceRecord record) {
+		if(!record.isRated()) {
+			throw new IllegalArgumentException("Record must have a rating for the addRating method.");
+		}
+		return record.rating();
+	}
+
+	/**
+	 * Write every entry of the batch. The entries are ordered by cell so
+	 * the interval map of a chord signature is only looked up once.
+	 * @param batch checked ratings to add, or ratings to remove
+	 * @return number of cells that went from unrated to rated or back
+	 */
+	private int writeBatch(RatingBatch batch) {
+		int cellsChanged = 0;
+		int currentChordOrdinal = -1;
+		IntervalRatingMap ratingMapForChordSignature = null;
+
+		for(int i = 0; i < batch.size(); i++) {
+			int cell = batch.cell(i);
+			ConsonanceRating rating = PackedRatingArray.decode(batch.code(i));
+
+			if(NoteCellLayout.chordOrdinal(cell) != currentChordOrdinal) {
+				currentChordOrdinal = NoteCellLayout.chordOrdinal(cell);
+				ratingMapForChordSignature = chordToIntervalRatingMap.get(NoteCellLayout.chord(cell));
+
+				if(ratingMapForChordSignature == null && rating != null) {
+					ratingMapForChordSignature = new IntervalRatingMap();
+					chordToIntervalRatingMap.put(NoteCellLayout.chord(cell), ratingMapForChordSignature);
+				}
+			}
+
+			ConsonanceRating previousRating;
+			if(rating != null) {
+				previousRating = ratingMapForChordSignature.put(NoteCellLayout.interval(cell), rating);
+				ratedCells.markRated(cell);
+			}else {
+				previousRating = ratingMapForChordSignature == null ? 
+						null : ratingMapForChordSignature.remove(NoteCellLayout.interval(cell));
+				if(previousRating != null) {
+					ratedCells.markUnrated(cell);
+				}
+			}
+
+			if((previousRating == null) != (rating == null)) {
+				cellsChanged++;
+			}
+		}
+		return cellsChanged;
+	}
+
 	@Override
 	public NoteConsonanceRecord getRating(NoteConsonanceRecord record) {
 		if(record == null) {
@@ -225,124 +309,66 @@ public class NoteConsonanceModel implements RatingModel<NoteConsonanceRecord,Not
 
 	@Override
 	public NoteConsonanceRecord getNextRecordToBeRated() {
-		//we will iterate through all chord signatures until we find one
-		//that does not have a rating...we cannot use the keyset since
-		//the ordering of the chord signatures is not guaranteed
-
-		for(ChordSignature chordSig : ChordSignature.valuesAsList()) {
-			IntervalRatingMap intervalMapForChordSig = 
-					this.chordToIntervalRatingMap.get(chordSig);
-
-			if(intervalMapForChordSig == null) {
-				return new NoteConsonanceRecord(
-						chordSig, 
-						Interval.UNISON, 
-						null);
-			}
-			for(Interval interval : Interval.valuesAsList()) {
-				//make sure that we aren't duplicating
-				//interval chord relations by going to
-				//the second octave
-				if( !interval.inFirstOctave() ) {
-					break;
-				}
-
-				if(getRating(chordSig, interval) == null) {
-					//We are looking for the next chord/interval pair to be
-					//rated so the ConsonanceRating is only added to
-					//avoid a NullPointerException
-					//may be a design flaw
-					return new NoteConsonanceRecord(chordSig, interval, null);
-				}
-			}
+		int cell = ratedCells.firstUnratedCell();
+		if(cell < 0) {
+			//every rating has been filled
+			return null;
 		}
-		//if we reach here then every rating has been filled
-		return null;
+
+		//We are looking for the next chord/interval pair to be
+		//rated so the ConsonanceRating is left null
+		return new NoteConsonanceRecord(
+				NoteCellLayout.chord(cell), 
+				NoteCellLayout.interval(cell), 
+				null);
 	}
 
 	@Override
 	public NoteConsonanceRecord getLastRecordRated() {
-		ChordSignature chordSignatureOfLastRating,chordSignatureOfCurrentRating;
-		Interval intervalOfLastRating,intervalOfCurrentRating;
-		ConsonanceRating ratingOfLastRating,ratingOfCurrentRating;
-
-		NoteConsonanceRecord currentNoteConsonanceRecordBeingRated = 
-				getNextRecordToBeRated();
-
-		//if all records have been filled return a record
-		//with the last chord signature and last interval
-		//possible
-		if(currentNoteConsonanceRecordBeingRated == null)  {
-			chordSignatureOfLastRating = 
-					ChordSignature.lastSignature();
-			intervalOfLastRating = 
-					Interval.MAJOR7;
-			ratingOfLastRating = getRating(chordSignatureOfLastRating, intervalOfLastRating);
-			return new NoteConsonanceRecord(
-					chordSignatureOfLastRating, 
-					intervalOfLastRating,
-					ratingOfLastRating);
-		}
-
-		chordSignatureOfCurrentRating = 
-				currentNoteConsonanceRecordBeingRated.chordSignature();
-		intervalOfCurrentRating = 
-				currentNoteConsonanceRecordBeingRated.interval();
-		ratingOfCurrentRating = 
-				currentNoteConsonanceRecordBeingRated.rating();
-
-		//if there have not been any ratings added yet then return a null value
-		if( chordSignatureOfCurrentRating.isFirstSignature() &&
-				intervalOfCurrentRating.equals(Interval.UNISON)) {
+		int cell = ratedCells.lastContiguousRatedCell();
+		if(cell < 0) {
+			//no ratings have been added yet
 			return null;
 		}
 
-		//if we reach this point then the last rating is somewhere in the middle of 
-		//the total list of chord signatures and intervals
-		//
-		//if the interval we are currenlty working on is UNISON then
-		//the previous rating was on the previous ChordSignature.
-		if(intervalOfCurrentRating.equals(Interval.UNISON)) {
-			chordSignatureOfLastRating = 
-					chordSignatureOfCurrentRating.getPreviousChordSignature();
-			intervalOfLastRating = 
-					Interval.MAJOR7;
-			ratingOfLastRating = 
-					getRating(chordSignatureOfLastRating, intervalOfLastRating);
-
-
-			return new NoteConsonanceRecord(
-					chordSignatureOfLastRating,
-					intervalOfLastRating,
-					ratingOfLastRating);
-		}
-
-		chordSignatureOfLastRating =
-				chordSignatureOfCurrentRating;
-		intervalOfLastRating = 
-				intervalOfCurrentRating.getPreviousInterval();
-		ratingOfLastRating = 
-				getRating(chordSignatureOfLastRating, intervalOfLastRating);
+		ChordSignature chordSignatureOfLastRating = NoteCellLayout.chord(cell);
+		Interval intervalOfLastRating = NoteCellLayout.interval(cell);
 
 		return new NoteConsonanceRecord(
 				chordSignatureOfLastRating,
 				intervalOfLastRating,
-				ratingOfLastRating);
+				getRating(chordSignatureOfLastRating, intervalOfLastRating));
 	}
 
 	@Override
 	public boolean isFull() {
-		return getNextRecordToBeRated() == null;
+		return ratedCells.isFull();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		purgeMapsWithoutRatings();
-		return this.chordToIntervalRatingMap.size() == 0;
+		return ratedCells.isEmpty();
 	}
 
 	@Override
-	public Set<NoteConsonanceRecord> getRecords(NoteConsonanceRecordRequest request) {
+	public int[] getDirtyCells() {
+		return ratedCells.dirtyCells();
+	}
+
+	@Override
+	public int getNumberOfDirtyCells() {
+		return ratedCells.numberOfDirtyCells();
+	}
+
+	@Override
+	public void checkpoint() {
+		ratedCells.checkpoint();
+	}
+
+	/**
+	 * Check the request and compile it into its bit mask form.
+	 */
+	private static CompiledRecordRequest compileRequest(NoteConsonanceRecordRequest request) {
 		if(request == null) {
 			throw new NullPointerException("request may not be null");
 		}
@@ -350,36 +376,72 @@ public class NoteConsonanceModel implements RatingModel<NoteConsonanceRecord,Not
 		if( !request.isInitialized()) {
 			throw new IllegalArgumentException("Request has not been properly initialized");
 		}
+		return request.compile();
+	}
+
+	@Override
+	public void forEachRating(NoteConsonanceRecordRequest request, NoteRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		List<ChordSignature> chordSignatures = ChordSignature.valuesAsList();
 		
-		purgeMapsWithoutRatings();
-		
-		Set<NoteConsonanceRecord> matchingRecords = new HashSet<>();
-		
-		for(ChordSignature chordSig : this.chordToIntervalRatingMap.keySet()) {
-			//skip any chords that we are not looking for.
-			if( !request.containsReferenceChord(chordSig)) {
-				continue;
-			}
+		//only visit the chords that are requested
+		for(int chordOrdinal = compiledRequest.nextReferenceChord(0); 
+				chordOrdinal >= 0; 
+				chordOrdinal = compiledRequest.nextReferenceChord(chordOrdinal + 1)) {
+			ChordSignature chordSig = chordSignatures.get(chordOrdinal);
 			
 			IntervalRatingMap ratingMap = this.chordToIntervalRatingMap.get(chordSig);
-			for(Interval interval : ratingMap.keySet()) {
-				//skip intervals that we are not looking for
-				if( !request.contains(interval)) {
-					continue;
-				}
-				ConsonanceRating rating = ratingMap.get(interval);
+			if(ratingMap == null) {
+				continue;
+			}
+			for(Map.Entry<Interval,ConsonanceRating> entry : ratingMap.entrySet()) {
+				Interval interval = entry.getKey();
+				ConsonanceRating rating = entry.getValue();
 				
-				//skip ratings we are not looking for
-				if( !request.contains(rating)) {
+				//skip intervals and ratings that we are not looking for
+				if( !compiledRequest.containsInterval(interval.ordinal()) ||
+						!compiledRequest.contains(rating)) {
 					continue;
 				}
 				
-				NoteConsonanceRecord recordToAdd = 
-						new NoteConsonanceRecord(chordSig, interval, rating);
-				matchingRecords.add(recordToAdd);
+				visitor.visit(chordSig, interval, rating);
 			}
 		}
+	}
+
+	@Override
+	public FrozenNoteConsonanceModel freeze() {
+		return new FrozenNoteConsonanceModel(this);
+	}
+
+	@Override
+	public Set<NoteConsonanceRecord> getRecords(NoteConsonanceRecordRequest request) {
+		Set<NoteConsonanceRecord> matchingRecords = new HashSet<>();
+		
+		forEachRating(request, 
+				(chordSig, interval, rating) -> 
+					matchingRecords.add(new NoteConsonanceRecord(chordSig, interval, rating)));
 		
 		return matchingRecords;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public Stream<NoteConsonanceRecord> streamRecords(NoteConsonanceRecordRequest request) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		List<ChordSignature> chordSignatures = ChordSignature.valuesAsList();
+		
+		return compiledRequest.referenceChordOrdinals()
+				.mapToObj(chordSignatures::get)
+				.filter(this.chordToIntervalRatingMap::containsKey)
+				.flatMap(chordSig -> 
+					this.chordToIntervalRatingMap.get(chordSig).entrySet().stream()
+						.filter(entry -> 
+							compiledRequest.containsInterval(entry.getKey().ordinal()) &&
+							compiledRequest.contains(entry.getValue()))
+						.map(entry -> 
+							new NoteConsonanceRecord(chordSig, entry.getKey(), entry.getValue())));
+	}
+}
@@ -0,0 +1,31 @@
+package chord.relations;
+
+import chord.relations.record.NoteConsonanceRecord;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+/**
+ * Common interface for all models holding note ratings.
+ * @author DAD
+ *
+ */
+public interface NoteRatingModel extends RatingModel<NoteConsonanceRecord,NoteConsonanceRecordRequest> {
+
+	/**
+	 * Pass the fields of every rating matching the request to the visitor.
+	 * No records or collections are created.
+	 * 
+	 * The model must not be changed by the visitor.
+	 * @param request object used to specify the ratings to visit
+	 * @param visitor callback receiving the fields of each rating
+	 */
+	void forEachRating(NoteConsonanceRecordRequest request, NoteRatingVisitor visitor);
+	
+	/**
+	 * Create a read only snapshot of the ratings currently in the model.
+	 * The snapshot is deeply immutable and may be shared between threads
+	 * without synchronization. Later changes to this model are not seen
+	 * by the snapshot.
+	 * @return immutable snapshot of the model
+	 */
+	NoteRatingModel freeze();
+}
@@ -0,0 +1,23 @@
+package chord.relations;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+
+/**
+ * Callback used to visit the note ratings matching a request
+ * without creating a record for each rating.
+ * @author DAD
+ *
+ */
+@FunctionalInterface
+public interface NoteRatingVisitor {
+
+	/**
+	 * Called once for every rating matching the request.
+	 * @param chordSig chord signature the note is rated against
+	 * @param interval interval between the root of the chord and the note
+	 * @param rating rating of the note
+	 */
+	void visit(ChordSignature chordSig, Interval interval, ConsonanceRating rating);
+}
@@ -0,0 +1,401 @@
+package chord.relations;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+/**
+ * Alternative storage for chord change ratings.
+ *
+ * Every start chord/end chord/interval combination is given a cell
+ * by the ChordChangeCellLayout and the ratings are stored in a single
+ * PackedRatingArray. Lookups are a single index computation and there
+ * are no maps to create, purge or compare.
+ *
+ * A full model takes roughly 32 kilobytes compared to the megabytes
+ * of map nodes used by ChordChangeConsonanceModel.
+ * @author DAD
+ *
+ */
+public class PackedChordChangeConsonanceModel implements ChordChangeRatingModel, DirtyCellTracking{
+
+	private final PackedRatingArray ratings;
+
+	/**
+	 * Keeps track of the rated cells and the fill cursor.
+	 */
+	private final RatedCellTracker ratedCells;
+
+	/**
+	 * Transitions from each start chord grouped by rating.
+	 */
+	private final ChordChangeRatingBuckets ratingBuckets;
+
+	/**
+	 * Create an empty PackedChordChangeConsonanceModel.
+	 */
+	public PackedChordChangeConsonanceModel() {
+		this.ratings = new PackedRatingArray(ChordChangeCellLayout.NUMBER_OF_CELLS);
+		this.ratedCells = new RatedCellTracker(
+				ChordChangeCellLayout.NUMBER_OF_CELLS, 
+				ChordChangeCellLayout::isRateable);
+		this.ratingBuckets = new ChordChangeRatingBuckets();
+	}
+
+	/**
+	 * Create a PackedChordChangeConsonanceModel containing every rating
+	 * in the given model.
+	 * @param model model to copy the ratings from, may not be null
+	 */
+	public PackedChordChangeConsonanceModel(RatingModel<ChordChangeConsonanceRecord,ChordChangeConsonanceRecordRequest> model) {
+		this();
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		for(ChordChangeConsonanceRecord record : model.getRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords())) {
+			addRating(record);
+		}
+	}
+
+	/**
+	 * Store the rating in the cell keeping track of the rated cells.
+	 * @param cell cell to store the rating in
+	 * @param rating rating to store, null to remove the rating
+	 * @return the previous rating in the cell
+	 */
+	private ConsonanceRating setRating(int cell, ConsonanceRating rating) {
+		ConsonanceRating previousRating = ratings.set(cell, rating);
+		ratingBuckets.update(cell, previousRating, rating);
+
+		if(rating != null) {
+			ratedCells.markRated(cell);
+		}else if(previousRating != null) {
+			ratedCells.markUnrated(cell);
+		}
+		return previousRating;
+	}
+
+	/**
+	 * Create a record for the cell with the given rating.
+	 */
+	private static ChordChangeConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell),
+				ChordChangeCellLayout.endChord(cell),
+				ChordChangeCellLayout.interval(cell),
+				rating);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord addRating(ChordChangeConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		if(record.rating() == null) {
+			throw new NullPointerException("rating must not be null");
+		}
+		//the record has already checked for the same start and end chord
+		int cell = ChordChangeCellLayout.cellIndex(
+				record.startChordSignature(),
+				record.endChordSignature(),
+				record.intervalBetweenRoots());
+
+		ConsonanceRating previousRating = setRating(cell, record.rating());
+
+		return previousRating == null ? null : createRecord(cell, previousRating);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord removeRating(ChordChangeConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		int cell = ChordChangeCellLayout.cellIndex(
+				record.startChordSignature(),
+				record.endChordSignature(),
+				record.intervalBetweenRoots());
+
+		ConsonanceRating previousRating = setRating(cell, null);
+
+		return previousRating == null ? null : createRecord(cell, previousRating);
+	}
+
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forAdding(records, ChordChangeCellLayout::cellIndex, ChordChangeConsonanceRecord::rating));
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forRemoving(records, ChordChangeCellLayout::cellIndex));
+	}
+
+	/**
+	 * Write every entry of the batch.
+	 * @return number of cells that went from unrated to rated or back
+	 */
+	private int writeBatch(RatingBatch batch) {
+		int cellsChanged = 0;
+		for(int i = 0; i < batch.size(); i++) {
+			ConsonanceRating rating = PackedRatingArray.decode(batch.code(i));
+			if((setRating(batch.cell(i), rating) == null) != (rating == null)) {
+				cellsChanged++;
+			}
+		}
+		return cellsChanged;
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getRating(ChordChangeConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		int cell = ChordChangeCellLayout.cellIndex(
+				record.startChordSignature(),
+				record.endChordSignature(),
+				record.intervalBetweenRoots());
+
+		ConsonanceRating rating = ratings.get(cell);
+
+		return rating == null ? null : createRecord(cell, rating);
+	}
+
+	/**
+	 * Get the rating for the given parameters.
+	 * @param startChordSig the start chord signature
+	 * @param endChordSig the end chord signature
+	 * @param intervalBetweenRoots interval between the roots of the two chords
+	 * @return the rating associated with the parameters,
+	 * null if no rating exists
+	 */
+	public ConsonanceRating getRating(ChordSignature startChordSig, ChordSignature endChordSig, Interval intervalBetweenRoots) {
+		return ratings.get(ChordChangeCellLayout.cellIndex(startChordSig, endChordSig, intervalBetweenRoots));
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getNextRecordToBeRated() {
+		int cell = ratedCells.firstUnratedCell();
+		if(cell < 0) {
+			return null;
+		}
+		return createRecord(cell, null);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getLastRecordRated() {
+		int cell = ratedCells.lastContiguousRatedCell();
+		if(cell < 0) {
+			return null;
+		}
+		return createRecord(cell, ratings.get(cell));
+	}
+
+	@Override
+	public boolean isFull() {
+		return ratedCells.isFull();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return ratedCells.isEmpty();
+	}
+
+	@Override
+	public int[] getDirtyCells() {
+		return ratedCells.dirtyCells();
+	}
+
+	@Override
+	public int getNumberOfDirtyCells() {
+		return ratedCells.numberOfDirtyCells();
+	}
+
+	@Override
+	public void checkpoint() {
+		ratedCells.checkpoint();
+	}
+
+	/**
+	 * Check the request and compile it into its bit mask form.
+	 */
+	private static CompiledRecordRequest compileRequest(ChordChangeConsonanceRecordRequest request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null.");
+		}
+		if( !request.isInitialized() ) {
+			throw new IllegalStateException("request is not initialized");
+		}
+		return request.compile();
+	}
+
+	/**
+	 * Get the cells matching the request in ascending order.
+	 */
+	private IntStream requestedCells(CompiledRecordRequest compiledRequest) {
+		return compiledRequest.referenceChordOrdinals()
+				.flatMap(referenceOrdinal -> compiledRequest.targetOrdinals()
+						.flatMap(targetOrdinal -> {
+							int firstCell = ChordChangeCellLayout.cellIndex(referenceOrdinal, targetOrdinal, 0);
+							return IntStream.range(0, ChordChangeCellLayout.NUMBER_OF_INTERVALS)
+									.filter(compiledRequest::containsInterval)
+									.map(intervalOrdinal -> firstCell + intervalOrdinal);
+						}))
+				//unrated cells have a code of 0 which is never requested
+				.filter(cell -> compiledRequest.containsRatingCode(ratings.getCode(cell)));
+	}
+
+	@Override
+	public void forEachRating(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		int cellsRequestedPerReferenceChord = 
+				compiledRequest.numberOfTargets() * Integer.bitCount(compiledRequest.intervalMask());
+
+		for(int referenceOrdinal = compiledRequest.nextReferenceChord(0);
+				referenceOrdinal >= 0;
+				referenceOrdinal = compiledRequest.nextReferenceChord(referenceOrdinal + 1)) {
+			//use the rating buckets if they hold fewer transitions
+			//than the number of cells requested for the reference chord
+			if(ratingBuckets.numberOfRatings(referenceOrdinal, compiledRequest) < cellsRequestedPerReferenceChord) {
+				ratingBuckets.forEachRating(referenceOrdinal, compiledRequest, visitor);
+				continue;
+			}
+			for(int targetOrdinal = compiledRequest.nextTarget(0);
+					targetOrdinal >= 0;
+					targetOrdinal = compiledRequest.nextTarget(targetOrdinal + 1)) {
+				int firstCell = ChordChangeCellLayout.cellIndex(referenceOrdinal, targetOrdinal, 0);
+
+				for(int intervalOrdinal = 0; intervalOrdinal < ChordChangeCellLayout.NUMBER_OF_INTERVALS; intervalOrdinal++) {
+					int cell = firstCell + intervalOrdinal;
+					//unrated cells have a code of 0 which is never requested
+					if( !compiledRequest.containsInterval(intervalOrdinal) ||
+							!compiledRequest.containsRatingCode(ratings.getCode(cell))) {
+						continue;
+					}
+					visitor.visit(
+							ChordChangeCellLayout.startChord(cell),
+							ChordChangeCellLayout.endChord(cell),
+							ChordChangeCellLayout.interval(cell),
+							ratings.get(cell));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachRatingLeadingTo(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+
+		//every cell is a direct lookup so there is no need for a reverse
+		//index, we only have to swap the order of the loops
+		for(int targetOrdinal = compiledRequest.nextTarget(0);
+				targetOrdinal >= 0;
+				targetOrdinal = compiledRequest.nextTarget(targetOrdinal + 1)) {
+			for(int referenceOrdinal = compiledRequest.nextReferenceChord(0);
+					referenceOrdinal >= 0;
+					referenceOrdinal = compiledRequest.nextReferenceChord(referenceOrdinal + 1)) {
+				int firstCell = ChordChangeCellLayout.cellIndex(referenceOrdinal, targetOrdinal, 0);
+
+				for(int intervalOrdinal = 0; intervalOrdinal < ChordChangeCellLayout.NUMBER_OF_INTERVALS; intervalOrdinal++) {
+					int cell = firstCell + intervalOrdinal;
+					int code = ratings.getCode(cell);
+					if( !compiledRequest.containsInterval(intervalOrdinal) ||
+							!compiledRequest.containsRatingCode(code)) {
+						continue;
+					}
+					visitor.visit(
+							ChordChangeCellLayout.startChord(cell),
+							ChordChangeCellLayout.endChord(cell),
+							ChordChangeCellLayout.interval(cell),
+							PackedRatingArray.decode(code));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachTransitionFrom(ChordSignature startChordSig, ConsonanceRating minimumRating, ChordChangeRatingVisitor visitor) {
+		if(startChordSig == null) {
+			throw new NullPointerException("start chord sig may not be null");
+		}
+		if(minimumRating == null) {
+			throw new NullPointerException("minimumRating may not be null");
+		}
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		ratingBuckets.forEachTransition(startChordSig.ordinal(), minimumRating, visitor);
+	}
+
+	@Override
+	public List<ChordChangeConsonanceRecord> getBestTransitionsFrom(ChordSignature startChordSig, int maximumNumberOfTransitions) {
+		if(startChordSig == null) {
+			throw new NullPointerException("start chord sig may not be null");
+		}
+		if(maximumNumberOfTransitions < 0) {
+			throw new IllegalArgumentException("maximumNumberOfTransitions may not be negative");
+		}
+		return ratingBuckets.bestTransitions(startChordSig.ordinal(), maximumNumberOfTransitions);
+	}
+
+	@Override
+	public FrozenChordChangeConsonanceModel freeze() {
+		return new FrozenChordChangeConsonanceModel(this);
+	}
+
+	@Override
+	public Set<ChordChangeConsonanceRecord> getRecords(ChordChangeConsonanceRecordRequest request) {
+		Set<ChordChangeConsonanceRecord> recordsRequested = new HashSet<>();
+
+		forEachRating(request,
+				(referenceChordSig, targetChordSig, interval, rating) ->
+					recordsRequested.add(
+							new ChordChangeConsonanceRecord(
+									referenceChordSig,
+									targetChordSig,
+									interval,
+									rating)));
+
+		return recordsRequested;
+	}
+
+	@Override
+	public Stream<ChordChangeConsonanceRecord> streamRecords(ChordChangeConsonanceRecordRequest request) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+
+		return requestedCells(compiledRequest)
+				.mapToObj(cell -> createRecord(cell, ratings.get(cell)));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(o == this)
+			return true;
+		if(!(o instanceof PackedChordChangeConsonanceModel))
+			return false;
+
+		PackedChordChangeConsonanceModel other = (PackedChordChangeConsonanceModel)o;
+
+		return this.ratings.equals(other.ratings);
+	}
+
+	@Override
+	public int hashCode() {
+		return ratings.hashCode();
+	}
+}
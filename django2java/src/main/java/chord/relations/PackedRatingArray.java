@@ -0,0 +1,202 @@
+package chord.relations;
+
+import java.util.Arrays;
+
+import chord.ConsonanceRating;
+
+/**
+ * Fixed size array of ConsonanceRatings packed into 4 bit cells
+ * of a long array.
+ *
+ * Each cell holds a rating code, 0 means that the cell has not been
+ * rated and any other value is the ordinal of the rating plus one.
+ * Sixteen cells fit into a single long so a model with tens of thousands
+ * of ratings only takes up tens of kilobytes.
+ *
+ * The array does not know anything about what the cells represent,
+ * the models are responsible for turning their fields into a cell index.
+ * @author DAD
+ *
+ */
+public final class PackedRatingArray {
+
+	/**
+	 * Code stored in a cell that has not been rated.
+	 */
+	public static final int NOT_RATED = 0;
+
+	private static final int BITS_PER_CELL = 4;
+	private static final int CELLS_PER_WORD = Long.SIZE / BITS_PER_CELL;
+	private static final long CELL_MASK = (1L << BITS_PER_CELL) - 1;
+
+	/**
+	 * Cached copy of ConsonanceRating.values() so that decoding
+	 * doesn't create a new array every time.
+	 */
+	private static final ConsonanceRating[] RATINGS = ConsonanceRating.values();
+
+	/**
+	 * Turn a rating into the code stored in a cell.
+	 * @param rating rating to encode, null for no rating
+	 * @return code for the rating
+	 */
+	public static int encode(ConsonanceRating rating) {
+		return rating == null ? NOT_RATED : rating.ordinal() + 1;
+	}
+
+	/**
+	 * Turn a code stored in a cell back into a rating.
+	 * @param code code stored in the cell
+	 * @return the rating represented by the code, null if the
+	 * code represents an unrated cell.
+	 */
+	public static ConsonanceRating decode(int code) {
+		return code == NOT_RATED ? null : RATINGS[code - 1];
+	}
+
+	/**
+	 * Get the number of longs required to store the given number of cells.
+	 * @param numberOfCells number of cells to store
+	 * @return number of longs required to store the cells.
+	 */
+	static int wordsRequired(int numberOfCells) {
+		return (numberOfCells + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+	}
+
+	/**
+	 * Get the index of the long that holds the cell.
+	 */
+	static int wordIndex(int cell) {
+		return cell / CELLS_PER_WORD;
+	}
+
+	/**
+	 * Get the bit offset of the cell within the long that holds it.
+	 */
+	static int bitOffset(int cell) {
+		return (cell % CELLS_PER_WORD) * BITS_PER_CELL;
+	}
+
+	/**
+	 * Read the code of the cell out of the long that holds it.
+	 */
+	static int codeInWord(long word, int cell) {
+		return (int)((word >>> bitOffset(cell)) & CELL_MASK);
+	}
+
+	/**
+	 * Replace the code of the cell in the long that holds it.
+	 * @return the new value of the long
+	 */
+	static long replaceCodeInWord(long word, int cell, int code) {
+		int offset = bitOffset(cell);
+		return (word & ~(CELL_MASK << offset)) | ((long)code << offset);
+	}
+
+	private final long[] words;
+	private final int numberOfCells;
+
+	/**
+	 * Create an array with every cell unrated.
+	 * @param numberOfCells number of cells in the array, may not be negative
+	 */
+	public PackedRatingArray(int numberOfCells) {
+		if(numberOfCells < 0) {
+			throw new IllegalArgumentException("numberOfCells may not be negative");
+		}
+		this.numberOfCells = numberOfCells;
+		this.words = new long[wordsRequired(numberOfCells)];
+	}
+
+	/**
+	 * Create a copy of the given array.
+	 * @param other array to copy, may not be null
+	 */
+	public PackedRatingArray(PackedRatingArray other) {
+		if(other == null) {
+			throw new NullPointerException("other may not be null");
+		}
+		this.numberOfCells = other.numberOfCells;
+		this.words = other.words.clone();
+	}
+
+	/**
+	 * Get the number of cells in the array.
+	 * @return number of cells in the array
+	 */
+	public int size() {
+		return numberOfCells;
+	}
+
+	/**
+	 * Get the rating code stored in the cell.
+	 * @param cell index of the cell
+	 * @return code stored in the cell, NOT_RATED if there is no rating
+	 */
+	public int getCode(int cell) {
+		checkCell(cell);
+		return codeInWord(words[wordIndex(cell)], cell);
+	}
+
+	/**
+	 * Store the rating code in the cell.
+	 * @param cell index of the cell
+	 * @param code code to store, NOT_RATED to clear the cell
+	 * @return the code previously stored in the cell
+	 */
+	public int setCode(int cell, int code) {
+		checkCell(cell);
+		if(code < NOT_RATED || code > RATINGS.length) {
+			throw new IllegalArgumentException("code is not a valid rating code:" + code);
+		}
+		int wordIndex = wordIndex(cell);
+		long word = words[wordIndex];
+		words[wordIndex] = replaceCodeInWord(word, cell, code);
+
+		return codeInWord(word, cell);
+	}
+
+	/**
+	 * Get the rating stored in the cell.
+	 * @param cell index of the cell
+	 * @return the rating stored in the cell, null if not rated
+	 */
+	public ConsonanceRating get(int cell) {
+		return decode(getCode(cell));
+	}
+
+	/**
+	 * Store the rating in the cell.
+	 * @param cell index of the cell
+	 * @param rating rating to store, null to clear the cell
+	 * @return the previous rating stored in the cell, null if
+	 * the cell was not rated
+	 */
+	public ConsonanceRating set(int cell, ConsonanceRating rating) {
+		return decode(setCode(cell, encode(rating)));
+	}
+
+	private void checkCell(int cell) {
+		if(cell < 0 || cell >= numberOfCells) {
+			throw new IndexOutOfBoundsException("cell " + cell + " is out of bounds for size " + numberOfCells);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(o == this)
+			return true;
+		if(!(o instanceof PackedRatingArray))
+			return false;
+
+		PackedRatingArray other = (PackedRatingArray)o;
+
+		return this.numberOfCells == other.numberOfCells &&
+				Arrays.equals(this.words, other.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * numberOfCells + Arrays.hashCode(words);
+	}
+}
@@ -0,0 +1,175 @@
+package chord.relations;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Keeps track of which cells of a rating model have been rated so
+ * that the models don't have to rescan every combination to answer
+ * isFull, isEmpty, getNextRecordToBeRated and getLastRecordRated.
+ *
+ * Cells that can never be rated are marked as filled when the tracker
+ * is created so that they are skipped by the fill cursor.
+ *
+ * The models must call markRated/markUnrated every time a rating is
+ * added or removed. The cells changed since the last checkpoint are kept
+ * as well so that the models can implement DirtyCellTracking.
+ * @author DAD
+ *
+ */
+class RatedCellTracker {
+
+	/**
+	 * Set bits are cells that are rated or cannot be rated.
+	 */
+	private final BitSet filledCells;
+
+	/**
+	 * Set bits are cells whose rating was added, changed or removed
+	 * since the last checkpoint.
+	 */
+	private final BitSet dirtyCells;
+
+	private final int numberOfCells;
+	private final int numberOfRateableCells;
+	private final IntPredicate isRateable;
+
+	private int numberOfRatings;
+
+	/**
+	 * Index of the first cell that is not filled,
+	 * numberOfCells if every cell is filled.
+	 */
+	private int firstUnfilledCell;
+
+	/**
+	 * Create a tracker with no rated cells.
+	 * @param numberOfCells number of cells in the model's layout
+	 * @param isRateable predicate used to test if a cell may hold a rating
+	 */
+	RatedCellTracker(int numberOfCells, IntPredicate isRateable) {
+		if(isRateable == null) {
+			throw new NullPointerException("isRateable may not be null");
+		}
+		this.numberOfCells = numberOfCells;
+		this.isRateable = isRateable;
+		this.filledCells = new BitSet(numberOfCells);
+		this.dirtyCells = new BitSet(numberOfCells);
+
+		int rateableCells = 0;
+		for(int cell = 0; cell < numberOfCells; cell++) {
+			if(isRateable.test(cell)) {
+				rateableCells++;
+			}else {
+				filledCells.set(cell);
+			}
+		}
+		this.numberOfRateableCells = rateableCells;
+		this.numberOfRatings = 0;
+		this.firstUnfilledCell = filledCells.nextClearBit(0);
+	}
+
+	/**
+	 * Record that the cell now holds a rating.
+	 * @param cell rateable cell that was rated
+	 */
+	void markRated(int cell) {
+		//the rating may have changed even if the cell was already rated
+		dirtyCells.set(cell);
+		if(filledCells.get(cell)) {
+			return;
+		}
+		filledCells.set(cell);
+		numberOfRatings++;
+
+		if(cell == firstUnfilledCell) {
+			firstUnfilledCell = Math.min(filledCells.nextClearBit(cell), numberOfCells);
+		}
+	}
+
+	/**
+	 * Record that the cell no longer holds a rating.
+	 * @param cell rateable cell whose rating was removed
+	 */
+	void markUnrated(int cell) {
+		if( !filledCells.get(cell) || !isRateable.test(cell)) {
+			return;
+		}
+		filledCells.clear(cell);
+		dirtyCells.set(cell);
+		numberOfRatings--;
+
+		if(cell < firstUnfilledCell) {
+			firstUnfilledCell = cell;
+		}
+	}
+
+	/**
+	 * Test to see if the cell has been rated.
+	 * @param cell cell to test
+	 * @return true if the cell holds a rating
+	 */
+	boolean isRated(int cell) {
+		return filledCells.get(cell) && isRateable.test(cell);
+	}
+
+	int numberOfRatings() {
+		return numberOfRatings;
+	}
+
+	int numberOfRateableCells() {
+		return numberOfRateableCells;
+	}
+
+	boolean isFull() {
+		return numberOfRatings == numberOfRateableCells;
+	}
+
+	boolean isEmpty() {
+		return numberOfRatings == 0;
+	}
+
+	/**
+	 * Get the first cell which can be rated but has not been.
+	 * @return index of the first unrated cell, -1 if all cells
+	 * are rated
+	 */
+	int firstUnratedCell() {
+		return firstUnfilledCell == numberOfCells ? -1 : firstUnfilledCell;
+	}
+
+	/**
+	 * Get the last rated cell of the uninterrupted run of ratings
+	 * starting at the first cell.
+	 * @return index of the last rated cell before the first unrated cell,
+	 * -1 if the first rateable cell has not been rated
+	 */
+	int lastContiguousRatedCell() {
+		int cell = firstUnfilledCell - 1;
+
+		//skip back over any cells that can't be rated
+		while(cell >= 0 && !isRateable.test(cell)) {
+			cell--;
+		}
+		return cell;
+	}
+
+	/**
+	 * Get the cells changed since the last checkpoint.
+	 * @return changed cells in cell order
+	 */
+	int[] dirtyCells() {
+		return dirtyCells.stream().toArray();
+	}
+
+	int numberOfDirtyCells() {
+		return dirtyCells.cardinality();
+	}
+
+	/**
+	 * Forget the changed cells.
+	 */
+	void checkpoint() {
+		dirtyCells.clear();
+	}
+}
@@ -0,0 +1,120 @@
+package chord.relations;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import chord.ConsonanceRating;
+
+/**
+ * Cells and rating codes of a batch of records, checked and sorted
+ * by cell before any of them are written to a model.
+ *
+ * Each entry is packed into a single long(cell, position in the batch, code)
+ * so sorting the entries orders them by cell and keeps records for the same
+ * cell in the order they were given. Writing the entries in order means a
+ * later record for a cell wins, just like calling addRating for every record.
+ * @author DAD
+ *
+ */
+final class RatingBatch {
+
+	private static final int CODE_BITS = 4;
+	private static final int POSITION_BITS = 32;
+	private static final int CELL_SHIFT = CODE_BITS + POSITION_BITS;
+	private static final long CODE_MASK = (1L << CODE_BITS) - 1;
+
+	private final long[] entries;
+
+	private RatingBatch(long[] entries) {
+		Arrays.sort(entries);
+		this.entries = entries;
+	}
+
+	private static long entry(int cell, int position, int code) {
+		return ((long)cell << CELL_SHIFT) | ((long)position << CODE_BITS) | code;
+	}
+
+	/**
+	 * Check every record and create the batch of ratings to add.
+	 * @param records records holding the ratings to add, may not be null,
+	 * contain null or contain records without ratings
+	 * @param cellIndex gives the cell of a record
+	 * @param rating gives the rating of a record
+	 * @return batch sorted by cell
+	 */
+	static <RECORD> RatingBatch forAdding(
+			Collection<? extends RECORD> records,
+			ToIntFunction<? super RECORD> cellIndex,
+			Function<? super RECORD, ConsonanceRating> rating) {
+		if(records == null) {
+			throw new NullPointerException("records may not be null");
+		}
+		long[] entries = new long[records.size()];
+		int position = 0;
+		for(RECORD record : records) {
+			if(record == null) {
+				throw new NullPointerException("record may not be null");
+			}
+			ConsonanceRating recordRating = rating.apply(record);
+			if(recordRating == null) {
+				throw new NullPointerException("rating must not be null");
+			}
+			entries[position] = entry(cellIndex.applyAsInt(record), position, PackedRatingArray.encode(recordRating));
+			position++;
+		}
+		return new RatingBatch(entries);
+	}
+
+	/**
+	 * Check every record and create the batch of ratings to remove.
+	 * @param records records of the ratings to remove, may not be null
+	 * or contain null
+	 * @param cellIndex gives the cell of a record
+	 * @return batch sorted by cell, every code is NOT_RATED
+	 */
+	static <RECORD> RatingBatch forRemoving(
+			Collection<? extends RECORD> records,
+			ToIntFunction<? super RECORD> cellIndex) {
+		if(records == null) {
+			throw new NullPointerException("records may not be null");
+		}
+		long[] entries = new long[records.size()];
+		int position = 0;
+		for(RECORD record : records) {
+			if(record == null) {
+				throw new NullPointerException("record may not be null");
+			}
+			entries[position] = entry(cellIndex.applyAsInt(record), position, PackedRatingArray.NOT_RATED);
+			position++;
+		}
+		return new RatingBatch(entries);
+	}
+
+	/**
+	 * Get the number of entries in the batch.
+	 * @return number of records the batch was created from
+	 */
+	int size() {
+		return entries.length;
+	}
+
+	/**
+	 * Get the cell of the entry.
+	 * @param i entry index, entries are ordered by cell
+	 * @return cell to write
+	 */
+	int cell(int i) {
+		return (int)(entries[i] >>> CELL_SHIFT);
+	}
+
+	/**
+	 * Get the rating code of the entry.
+	 * @param i entry index, entries are ordered by cell
+	 * @return code to write, NOT_RATED to remove the rating
+	 */
+	int code(int i) {
+		return (int)(entries[i] & CODE_MASK);
+	}
+}
@@ -1,6 +1,8 @@
 package chord.relations;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * RatingModel interface declares the common methods for
@@ -38,6 +40,53 @@ public interface RatingModel<RECORD,REQUEST> {
 	 */
 	RECORD removeRating(RECORD record);
 	
+	/**
+	 * Add the ratings of every record in the collection.
+	 * 
+	 * Unlike addRating the previous ratings are not returned, so no records
+	 * are created. The models in this package check every record before
+	 * adding any of them and write the ratings in cell order, so a bad record
+	 * leaves the model unchanged. If the collection holds more than one record
+	 * for the same rating the last one wins.
+	 * @param records records holding the ratings to add, may not be null,
+	 * contain null or contain records without ratings
+	 * @return number of ratings that did not exist before
+	 */
+	default int addRatings(Collection<? extends RECORD> records) {
+		if(records == null) {
+			throw new NullPointerException("records may not be null");
+		}
+		int ratingsAdded = 0;
+		for(RECORD record : records) {
+			if(addRating(record) == null) {
+				ratingsAdded++;
+			}
+		}
+		return ratingsAdded;
+	}
+	
+	/**
+	 * Remove the ratings of every record in the collection.
+	 * 
+	 * Like addRatings the removed ratings are not returned and every record
+	 * is checked before any rating is removed.
+	 * @param records records of the ratings to remove, may not be null
+	 * or contain null
+	 * @return number of ratings that were removed
+	 */
+	default int removeRatings(Collection<? extends RECORD> records) {
+		if(records == null) {
+			throw new NullPointerException("records may not be null");
+		}
+		int ratingsRemoved = 0;
+		for(RECORD record : records) {
+			if(removeRating(record) != null) {
+				ratingsRemoved++;
+			}
+		}
+		return ratingsRemoved;
+	}
+	
 	/**
 	 * Get the record containing the rating represented by the
 	 * record param.
@@ -87,4 +136,25 @@ public interface RatingModel<RECORD,REQUEST> {
 	 */
 	Set<RECORD> getRecords(REQUEST request);
 	
+	/**
+	 * Get a lazy stream of the records specified by the request parameter.
+	 * Records are only created as the stream is consumed so callers that 
+	 * only pass over the records once do not have to build a set.
+	 * 
+	 * The model must not be changed while the stream is being consumed.
+	 * @param request object used to specify the records
+	 * desired by the caller.
+	 * @return stream of the records matching the request.
+	 */
+	Stream<RECORD> streamRecords(REQUEST request);
+	
+	/**
+	 * Create a read only snapshot of the ratings currently in the model.
+	 * The snapshot may be shared between threads and later changes to this
+	 * model are not seen by it, so it can be saved in the background while
+	 * the model is still being rated.
+	 * @return immutable snapshot of the model
+	 */
+	RatingModel<RECORD,REQUEST> freeze();
+	
 }
@@ -0,0 +1,92 @@
+package chord.relations;
+
+import chord.ident.ChordSignature;
+import chord.ident.ScaleSignature;
+import chord.relations.record.ScaleConsonanceRecord;
+
+/**
+ * Maps every chord signature/scale signature combination of a
+ * scale consonance rating to a single integer cell index.
+ *
+ * Cells are ordered the same way ratings are entered by the raters,
+ * chord signature first and then scale signature.
+ * @author DAD
+ *
+ */
+public final class ScaleCellLayout {
+
+	private static final ChordSignature[] CHORD_SIGNATURES = ChordSignature.values();
+	private static final ScaleSignature[] SCALE_SIGNATURES = ScaleSignature.values();
+
+	public static final int NUMBER_OF_CHORD_SIGNATURES = CHORD_SIGNATURES.length;
+	public static final int NUMBER_OF_SCALE_SIGNATURES = SCALE_SIGNATURES.length;
+	public static final int NUMBER_OF_CELLS = NUMBER_OF_CHORD_SIGNATURES * NUMBER_OF_SCALE_SIGNATURES;
+
+	private ScaleCellLayout() {
+		//static methods only
+	}
+
+	/**
+	 * Get the cell index for the given ordinals. No checks are made
+	 * on the parameters.
+	 * @param chordOrdinal ordinal of the chord signature
+	 * @param scaleOrdinal ordinal of the scale signature
+	 * @return cell index for the ordinals
+	 */
+	public static int cellIndex(int chordOrdinal, int scaleOrdinal) {
+		return chordOrdinal * NUMBER_OF_SCALE_SIGNATURES + scaleOrdinal;
+	}
+
+	/**
+	 * Get the cell index for the chord and scale signatures.
+	 * @param chordSig chord signature, may not be null
+	 * @param scaleSig scale signature, may not be null
+	 * @return cell index for the parameters
+	 */
+	public static int cellIndex(ChordSignature chordSig, ScaleSignature scaleSig) {
+		if(chordSig == null) {
+			throw new NullPointerException("ChordSignature may not be null.");
+		}
+		if(scaleSig == null) {
+			throw new NullPointerException("Scale signature may not be null.");
+		}
+		return cellIndex(chordSig.ordinal(), scaleSig.ordinal());
+	}
+
+	/**
+	 * Get the cell index of the chord and scale signatures held by the record.
+	 * @param record record holding the signatures, may not be null
+	 * @return cell index for the record
+	 */
+	public static int cellIndex(ScaleConsonanceRecord record) {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		return cellIndex(record.chordSignature(), record.scaleSignature());
+	}
+
+	public static int chordOrdinal(int cell) {
+		return cell / NUMBER_OF_SCALE_SIGNATURES;
+	}
+
+	public static int scaleOrdinal(int cell) {
+		return cell % NUMBER_OF_SCALE_SIGNATURES;
+	}
+
+	public static ChordSignature chord(int cell) {
+		return CHORD_SIGNATURES[chordOrdinal(cell)];
+	}
+
+	public static ScaleSignature scale(int cell) {
+		return SCALE_SIGNATURES[scaleOrdinal(cell)];
+	}
+
+	/**
+	 * Every scale consonance cell can be rated.
+	 * @param cell cell index
+	 * @return true
+	 */
+	public static boolean isRateable(int cell) {
+		return true;
+	}
+}
@@ -1,32 +1,44 @@
 package chord.relations;
 
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import chord.ConsonanceRating;
 import chord.ident.ChordSignature;
 import chord.ident.ScaleSignature;
 import chord.relations.record.ScaleConsonanceRecord;
 import chord.relations.request.ScaleConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
 
 /**
  * Main data structure for rating the consonance of chords to scales.
  * @author DAD
  *
  */
-public class ScaleConsonanceModel implements RatingModel<ScaleConsonanceRecord,ScaleConsonanceRecordRequest>{
+public class ScaleConsonanceModel implements ScaleRatingModel, DirtyCellTracking{
 	
 	private Map<ChordSignature, Map<ScaleSignature,ConsonanceRating>> chordToScaleRatingMap;
 	
+	/**
+	 * Keeps track of the rated cells so that we don't have to scan
+	 * every chord/scale pair to find the next record to be rated.
+	 */
+	private final RatedCellTracker ratedCells;
+	
 	/**
 	 * Create an empty ScaleConsonanceModel.
 	 */
 	public ScaleConsonanceModel() {
 		this.chordToScaleRatingMap = new EnumMap<>(ChordSignature.class);
+		this.ratedCells = new RatedCellTracker(
+				ScaleCellLayout.NUMBER_OF_CELLS, 
+				ScaleCellLayout::isRateable);
 	}
 	
 	/**
@@ -56,7 +68,10 @@ public class ScaleConsonanceModel implements RatingModel<ScaleConsonanceRecord,S
 			chordToScaleRatingMap.put(chordSig, ratingMapForChordSignature);
 		}
 		
-		return ratingMapForChordSignature.put(scaleSig,rating);
+		ConsonanceRating previousRating = ratingMapForChordSignature.put(scaleSig,rating);
+		ratedCells.markRated(ScaleCellLayout.cellIndex(chordSig.ordinal(), scaleSig.ordinal()));
+		
+		return previousRating;
 	}
 	
 	/**
@@ -77,7 +92,12 @@ public class ScaleConsonanceModel implements RatingModel<ScaleConsonanceRecord,S
 		Map<ScaleSignature,ConsonanceRating> ratingMapForChordSignature = 
 				chordToScaleRatingMap.get(chordSig);
 
-		return ratingMapForChordSignature == null? null : ratingMapForChordSignature.remove(scaleSig);
+		ConsonanceRating removedRating = 
+				ratingMapForChordSignature == null? null : ratingMapForChordSignature.remove(scaleSig);
+		if(removedRating != null) {
+			ratedCells.markUnrated(ScaleCellLayout.cellIndex(chordSig.ordinal(), scaleSig.ordinal()));
+		}
+		return removedRating;
 	}
 	
 	/**
@@ -175,6 +195,70 @@ public class ScaleConsonanceModel implements RatingModel<ScaleConsonanceRecord,S
 		}
 	}
 
+	@Override
+	public int addRatings(Collection<? extends ScaleConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forAdding(records, ScaleCellLayout::cellIndex, ScaleConsonanceModel::ratingToAdd));
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ScaleConsonanceRecord> records) {
+		return writeBatch(RatingBatch.forRemoving(records, ScaleCellLayout::cellIndex));
+	}
+
+	/**
+	 * Get the rating of a record being added, checked the same way as addRating.
+	 */
+	private static ConsonanceRating ratingToAdd(ScaleConsonanceRecord record) {
+		if(record.rating()==null) {
+			throw new IllegalArgumentException("The rating field in record may not be null.");
+		}
+		return record.rating();
+	}
+
+	/**
+	 * Write every entry of the batch. The entries are ordered by cell so
+	 * the scale map of a chord signature is only looked up once.
+	 * @param batch checked ratings to add, or ratings to remove
+	 * @return number of cells that went from unrated to rated or back
+	 */
+	private int writeBatch(RatingBatch batch) {
+		int cellsChanged = 0;
+		int currentChordOrdinal = -1;
+		Map<ScaleSignature,ConsonanceRating> ratingMapForChordSignature = null;
+
+		for(int i = 0; i < batch.size(); i++) {
+			int cell = batch.cell(i);
+			ConsonanceRating rating = PackedRatingArray.decode(batch.code(i));
+
+			if(ScaleCellLayout.chordOrdinal(cell) != currentChordOrdinal) {
+				currentChordOrdinal = ScaleCellLayout.chordOrdinal(cell);
+				ratingMapForChordSignature = chordToScaleRatingMap.get(ScaleCellLayout.chord(cell));
+
+				if(ratingMapForChordSignature == null && rating != null) {
+					ratingMapForChordSignature = new EnumMap<>(ScaleSignature.class);
+					chordToScaleRatingMap.put(ScaleCellLayout.chord(cell), ratingMapForChordSignature);
+				}
+			}
+
+			ConsonanceRating previousRating;
+			if(rating != null) {
+				previousRating = ratingMapForChordSignature.put(ScaleCellLayout.scale(cell), rating);
+				ratedCells.markRated(cell);
+			}else {
+				previousRating = ratingMapForChordSignature == null ? 
+						null : ratingMapForChordSignature.remove(ScaleCellLayout.scale(cell));
+				if(previousRating != null) {
+					ratedCells.markUnrated(cell);
+				}
+			}
+
+			if((previousRating == null) != (rating == null)) {
+				cellsChanged++;
+			}
+		}
+		return cellsChanged;
+	}
+
 	@Override
 	public ScaleConsonanceRecord getRating(ScaleConsonanceRecord record) {
 		if(record == null) {
@@ -190,63 +274,26 @@ public class ScaleConsonanceModel implements RatingModel<ScaleConsonanceRecord,S
 
 	@Override
 	public ScaleConsonanceRecord getNextRecordToBeRated() {
-		if(isFull()) {
+		int cell = ratedCells.firstUnratedCell();
+		if(cell < 0) {
 			return null;
 		}
-		for(ChordSignature chordSig : ChordSignature.valuesAsList()) {
-			for(ScaleSignature scaleSig : ScaleSignature.valuesAsList()) {
-				ConsonanceRating rating = getRating(chordSig,scaleSig);
-				if(rating == null) {
-					return new ScaleConsonanceRecord(chordSig, scaleSig, null);
-				}
-			}
-		}
-
-		//this return statement is redundant since we check to
-		//see if the model is full at the start.
-		//leaving it here so the code compiles
-		return null;
+		return new ScaleConsonanceRecord(
+				ScaleCellLayout.chord(cell), 
+				ScaleCellLayout.scale(cell), 
+				null);
 	}
 
 	@Override
 	public ScaleConsonanceRecord getLastRecordRated() {
-		if(isEmpty()) {
+		int cell = ratedCells.lastContiguousRatedCell();
+		if(cell < 0) {
 			return null;
 		}
-		ChordSignature chordSigOfPreviousRecord;
-		ScaleSignature scaleSigOfPreviousRecord;
-		ConsonanceRating ratingOfPreviousRecord;
-		
-		for(ChordSignature chordSig : ChordSignature.valuesAsList()) {
-			for(ScaleSignature scaleSig : ScaleSignature.valuesAsList()) {
-				ConsonanceRating rating = getRating(chordSig,scaleSig);
-				if(rating == null) {
-					if(chordSig.isFirstSignature() && scaleSig.isFirstSignature()) {
-						return null;
-					}
-					if(scaleSig.isFirstSignature()) {
-						chordSigOfPreviousRecord = chordSig.getPreviousChordSignature();
-						scaleSigOfPreviousRecord = ScaleSignature.lastSignature();
-						ratingOfPreviousRecord = this.getRating(chordSigOfPreviousRecord, scaleSigOfPreviousRecord);
-						return new ScaleConsonanceRecord(
-								chordSigOfPreviousRecord, 
-								scaleSigOfPreviousRecord, 
-								ratingOfPreviousRecord);
-					}else {
-						chordSigOfPreviousRecord = chordSig;
-						scaleSigOfPreviousRecord = scaleSig.getPreviousScale();
-						ratingOfPreviousRecord = this.getRating(chordSigOfPreviousRecord, scaleSigOfPreviousRecord);
-					}
-					
-					return new ScaleConsonanceRecord(chordSigOfPreviousRecord, scaleSigOfPreviousRecord, ratingOfPreviousRecord);
-				}
-			}
-		}
-		//if we have iterated through the whole data structure then the
-		//model must be full so we return the last possible record
-		chordSigOfPreviousRecord = ChordSignature.lastSignature();
-		scaleSigOfPreviousRecord = ScaleSignature.lastSignature();
-		ratingOfPreviousRecord = this.getRating(chordSigOfPreviousRecord, scaleSigOfPreviousRecord);
+		ChordSignature chordSigOfPreviousRecord = ScaleCellLayout.chord(cell);
+		ScaleSignature scaleSigOfPreviousRecord = ScaleCellLayout.scale(cell);
+		ConsonanceRating ratingOfPreviousRecord = this.getRating(chordSigOfPreviousRecord, scaleSigOfPreviousRecord);
+
 		return new ScaleConsonanceRecord(
 				chordSigOfPreviousRecord, 
 				scaleSigOfPreviousRecord, 
@@ -255,63 +302,115 @@ public class ScaleConsonanceModel implements RatingModel<ScaleConsonanceRecord,S
 
 	@Override
 	public boolean isFull() {
-		for(ChordSignature chordSig : ChordSignature.valuesAsList()) {
-			for(ScaleSignature scaleSig : ScaleSignature.valuesAsList()) {
-				ConsonanceRating rating = this.getRating(chordSig, scaleSig);
-				if(rating == null) {
-					return false;
-				}
-			}
-		}
-		return true;
+		return ratedCells.isFull();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		this.purgeUnratedScales();
-		return this.chordToScaleRatingMap.keySet().size() == 0;
+		return ratedCells.isEmpty();
 	}
 
 	@Override
-	public Set<ScaleConsonanceRecord> getRecords(ScaleConsonanceRecordRequest request) {
+	public int[] getDirtyCells() {
+		return ratedCells.dirtyCells();
+	}
+
+	@Override
+	public int getNumberOfDirtyCells() {
+		return ratedCells.numberOfDirtyCells();
+	}
+
+	@Override
+	public void checkpoint() {
+		ratedCells.checkpoint();
+	}
+
+	/**
+	 * Check the request and compile it into its bit mask form.
+	 */
+	private static CompiledRecordRequest compileRequest(ScaleConsonanceRecordRequest request) {
 		if(request == null) {
 			throw new NullPointerException("request may not be null");
 		}
 		if( !request.isInitialized()) {
 			throw new IllegalArgumentException("request is not initialized..check your code");
 		}
+		return request.compile();
+	}
+
+	@Override
+	public void forEachRating(ScaleConsonanceRecordRequest request, ScaleRatingVisitor visitor) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		if(visitor == null) {
+			throw new NullPointerException("visitor may not be null");
+		}
+		List<ChordSignature> chordSignatures = ChordSignature.valuesAsList();
+		List<ScaleSignature> scaleSignatures = ScaleSignature.valuesAsList();
 		
-		purgeUnratedScales();
-		
-		Set<ScaleConsonanceRecord> recordsRequested = new HashSet<>();
-		
-		for(ChordSignature chordSig : chordToScaleRatingMap.keySet()) {
-			if(! request.containsReferenceChord(chordSig)) {
-				continue;
-			}
+		//only visit the chords and scales that are requested
+		for(int chordOrdinal = compiledRequest.nextReferenceChord(0); 
+				chordOrdinal >= 0; 
+				chordOrdinal = compiledRequest.nextReferenceChord(chordOrdinal + 1)) {
+			ChordSignature chordSig = chordSignatures.get(chordOrdinal);
 			
 			Map<ScaleSignature,ConsonanceRating> scaleToRatingMap = chordToScaleRatingMap.get(chordSig);
-			for(ScaleSignature scaleSig : scaleToRatingMap.keySet()) {
-				if( !request.contains(scaleSig)) {
-					continue;
-				}
+			if(scaleToRatingMap == null) {
+				continue;
+			}
+			for(int scaleOrdinal = compiledRequest.nextTarget(0); 
+					scaleOrdinal >= 0; 
+					scaleOrdinal = compiledRequest.nextTarget(scaleOrdinal + 1)) {
+				ScaleSignature scaleSig = scaleSignatures.get(scaleOrdinal);
 				
 				ConsonanceRating rating = scaleToRatingMap.get(scaleSig);
-				if( !request.contains(rating)) {
+				if( !compiledRequest.contains(rating)) {
 					continue;
 				}
-				ScaleConsonanceRecord requestedRecord = 
-						new ScaleConsonanceRecord(
-								chordSig, 
-								scaleSig, 
-								rating);
-				
-				recordsRequested.add(requestedRecord);
+				visitor.visit(chordSig, scaleSig, rating);
 			}
-			
-			
 		}
+	}
+
+	@Override
+	public FrozenScaleConsonanceModel freeze() {
+		return new FrozenScaleConsonanceModel(this);
+	}
+
+	@Override
+	public Set<ScaleConsonanceRecord> getRecords(ScaleConsonanceRecordRequest request) {
+		Set<ScaleConsonanceRecord> recordsRequested = new HashSet<>();
+		
+		forEachRating(request, 
+				(chordSig, scaleSig, rating) -> 
+					recordsRequested.add(
+							new ScaleConsonanceRecord(
+									chordSig, 
+									scaleSig, 
+									rating)));
 
 		return recordsRequested;
 	}
+
+	@Override
+	public Stream<ScaleConsonanceRecord> streamRecords(ScaleConsonanceRecordRequest request) {
+		CompiledRecordRequest compiledRequest = compileRequest(request);
+		List<ChordSignature> chordSignatures = ChordSignature.valuesAsList();
+		List<ScaleSignature> scaleSignatures = ScaleSignature.valuesAsList();
+		
+		return compiledRequest.referenceChordOrdinals()
+				.mapToObj(chordSignatures::get)
+				.filter(chordToScaleRatingMap::containsKey)
+				.flatMap(chordSig -> {
+					Map<ScaleSignature,ConsonanceRating> scaleToRatingMap = chordToScaleRatingMap.get(chordSig);
+					
+					return compiledRequest.targetOrdinals()
+							.mapToObj(scaleSignatures::get)
+							.filter(scaleSig -> compiledRequest.contains(scaleToRatingMap.get(scaleSig)))
+							.map(scaleSig -> 
+								new ScaleConsonanceRecord(
+										chordSig, 
+										scaleSig, 
+										scaleToRatingMap.get(scaleSig)));
+				});
+	}
 }
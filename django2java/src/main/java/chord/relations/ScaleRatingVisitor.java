@@ -0,0 +1,23 @@
+package chord.relations;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.ident.ScaleSignature;
+
+/**
+ * Callback used to visit the scale ratings matching a request
+ * without creating a record for each rating.
+ * @author DAD
+ *
+ */
+@FunctionalInterface
+public interface ScaleRatingVisitor {
+
+	/**
+	 * Called once for every rating matching the request.
+	 * @param chordSig chord signature the scale is rated against
+	 * @param scaleSig scale signature being rated
+	 * @param rating rating of the scale
+	 */
+	void visit(ChordSignature chordSig, ScaleSignature scaleSig, ConsonanceRating rating);
+}
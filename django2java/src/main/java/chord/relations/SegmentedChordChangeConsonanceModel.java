@@ -0,0 +1,295 @@
+package chord.relations;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import chord.ConsonanceRating;
+import chord.relations.record.ChordChangeConsonanceRecord;
+
+/**
+ * Read only chord change model that reads the ratings of each start chord
+ * from its source the first time they are asked for.
+ *
+ * The ratings of a start chord, a segment, are CELLS_PER_START_CHORD cells
+ * of 4 bits in ChordChangeCellLayout order, two cells per byte with the
+ * even cell in the low bits. A query about one reference chord reads only
+ * that segment. The number of ratings of every segment comes from the
+ * source without reading the segment, so isFull, isEmpty and
+ * numberOfRatings read nothing and getNextRecordToBeRated reads a single
+ * segment.
+ *
+ * At most maximumResidentSegments segments with ratings are held at once.
+ * When another one is needed a segment that hasn't been used since the
+ * last sweep is dropped(the clock algorithm) and read again if it is asked
+ * for later. A segment is checked when it is read, a corrupt one throws a
+ * FileFormatException from the query that read it.
+ *
+ * Calling addRating or removeRating throws an UnsupportedOperationException.
+ * Closing the model closes the source, queries that need a segment after
+ * that throw an IllegalStateException.
+ * @author DAD
+ *
+ */
+public final class SegmentedChordChangeConsonanceModel extends AbstractChordChangeCellModel implements Closeable {
+
+	/**
+	 * Source of the segments, usually a segmented model file.
+	 */
+	public interface SegmentSource extends Closeable {
+
+		/**
+		 * Get the number of ratings held by the segment, without reading it.
+		 * @param startOrdinal ordinal of the start chord of the segment
+		 * @return number of rated cells of the segment
+		 */
+		int numberOfRatings(int startOrdinal);
+
+		/**
+		 * Read the segment. Only called for segments holding ratings.
+		 * @param startOrdinal ordinal of the start chord of the segment
+		 * @return SEGMENT_SIZE bytes of packed rating codes
+		 * @throws UncheckedIOException if the segment can't be read
+		 * @throws FileFormatException if the segment is corrupt
+		 */
+		byte[] readSegment(int startOrdinal);
+	}
+
+	/**
+	 * Number of bytes holding the ratings of a start chord.
+	 */
+	public static final int SEGMENT_SIZE = (ChordChangeCellLayout.CELLS_PER_START_CHORD + 1) / 2;
+
+	private static final int NUMBER_OF_SEGMENTS = ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES;
+	//the unison change to the same chord can't be rated
+	private static final int RATEABLE_CELLS_PER_SEGMENT = ChordChangeCellLayout.CELLS_PER_START_CHORD - 1;
+	private static final int MAXIMUM_CODE = ConsonanceRating.values().length;
+
+	//shared by every segment without ratings, never dropped
+	private static final byte[] EMPTY_SEGMENT = new byte[SEGMENT_SIZE];
+
+	private final SegmentSource source;
+
+	private final int maximumResidentSegments;
+
+	private final AtomicReferenceArray<byte[]> segments = new AtomicReferenceArray<>(NUMBER_OF_SEGMENTS);
+
+	/**
+	 * 1 if the segment was used since the clock hand last passed it.
+	 */
+	private final AtomicIntegerArray referenced = new AtomicIntegerArray(NUMBER_OF_SEGMENTS);
+
+	//everything below is guarded by this
+
+	private int residentSegments;
+
+	private int clockHand;
+
+	private int segmentReads;
+
+	private boolean closed;
+
+	/**
+	 * Create a model reading its segments from the source.
+	 * @param source source of the segments, may not be null
+	 * @param maximumResidentSegments number of segments with ratings held
+	 * at once, at least 1
+	 */
+	public SegmentedChordChangeConsonanceModel(SegmentSource source, int maximumResidentSegments) {
+		if(source == null) {
+			throw new NullPointerException("source may not be null");
+		}
+		if(maximumResidentSegments < 1) {
+			throw new IllegalArgumentException("maximumResidentSegments must be at least 1");
+		}
+		this.source = source;
+		this.maximumResidentSegments = maximumResidentSegments;
+	}
+
+	@Override
+	int getCode(int cell) {
+		int startOrdinal = ChordChangeCellLayout.startOrdinal(cell);
+		byte[] segment = segments.get(startOrdinal);
+		if(segment == null) {
+			segment = readSegment(startOrdinal);
+		}else if(referenced.get(startOrdinal) == 0) {
+			referenced.set(startOrdinal, 1);
+		}
+
+		int segmentCell = cell - startOrdinal * ChordChangeCellLayout.CELLS_PER_START_CHORD;
+		int packedCodes = segment[segmentCell >>> 1];
+		return (segmentCell & 1) == 0 ? packedCodes & 0xF : (packedCodes >>> 4) & 0xF;
+	}
+
+	private synchronized byte[] readSegment(int startOrdinal) {
+		byte[] segment = segments.get(startOrdinal);
+		if(segment != null) {
+			//read by another thread while this one waited
+			return segment;
+		}
+		if(closed) {
+			throw new IllegalStateException("model is closed");
+		}
+		if(source.numberOfRatings(startOrdinal) == 0) {
+			segments.set(startOrdinal, EMPTY_SEGMENT);
+			return EMPTY_SEGMENT;
+		}
+
+		while(residentSegments >= maximumResidentSegments) {
+			dropSegment();
+		}
+		segment = source.readSegment(startOrdinal);
+		checkSegment(startOrdinal, segment);
+		segmentReads++;
+		residentSegments++;
+		referenced.set(startOrdinal, 1);
+		segments.set(startOrdinal, segment);
+		return segment;
+	}
+
+	/**
+	 * Drop the first segment the clock hand finds that wasn't used since
+	 * the hand last passed it, clearing the used flag of those it passes.
+	 */
+	private void dropSegment() {
+		while(true) {
+			int startOrdinal = clockHand;
+			clockHand = (clockHand + 1) % NUMBER_OF_SEGMENTS;
+
+			byte[] segment = segments.get(startOrdinal);
+			if(segment == null || segment == EMPTY_SEGMENT) {
+				continue;
+			}
+			if(referenced.get(startOrdinal) != 0) {
+				referenced.set(startOrdinal, 0);
+				continue;
+			}
+			segments.set(startOrdinal, null);
+			residentSegments--;
+			return;
+		}
+	}
+
+	private void checkSegment(int startOrdinal, byte[] segment) {
+		if(segment.length != SEGMENT_SIZE) {
+			throw new FileFormatException("segment " + startOrdinal + " has the wrong size:" + segment.length);
+		}
+		int ratingsCounted = 0;
+		for(int segmentCell = 0; segmentCell < ChordChangeCellLayout.CELLS_PER_START_CHORD; segmentCell++) {
+			int packedCodes = segment[segmentCell >>> 1];
+			int code = (segmentCell & 1) == 0 ? packedCodes & 0xF : (packedCodes >>> 4) & 0xF;
+			if(code > MAXIMUM_CODE) {
+				throw new FileFormatException("invalid rating code " + code + " in segment " + startOrdinal);
+			}
+			if(code != PackedRatingArray.NOT_RATED) {
+				ratingsCounted++;
+			}
+		}
+		if(ratingsCounted != source.numberOfRatings(startOrdinal)) {
+			throw new FileFormatException("segment " + startOrdinal + " does not hold the number of ratings of the directory");
+		}
+	}
+
+	@Override
+	int firstUnratedCell() {
+		for(int startOrdinal = 0; startOrdinal < NUMBER_OF_SEGMENTS; startOrdinal++) {
+			if(source.numberOfRatings(startOrdinal) == RATEABLE_CELLS_PER_SEGMENT) {
+				continue;
+			}
+			int firstCell = startOrdinal * ChordChangeCellLayout.CELLS_PER_START_CHORD;
+			for(int cell = firstCell; cell < firstCell + ChordChangeCellLayout.CELLS_PER_START_CHORD; cell++) {
+				if(ChordChangeCellLayout.isRateable(cell) && getCode(cell) == PackedRatingArray.NOT_RATED) {
+					return cell;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the number of ratings in the model, without reading any segment.
+	 * @return number of rated cells
+	 */
+	public int numberOfRatings() {
+		int numberOfRatings = 0;
+		for(int startOrdinal = 0; startOrdinal < NUMBER_OF_SEGMENTS; startOrdinal++) {
+			numberOfRatings += source.numberOfRatings(startOrdinal);
+		}
+		return numberOfRatings;
+	}
+
+	/**
+	 * Get the number of segments with ratings held at the moment.
+	 * @return number of resident segments
+	 */
+	public synchronized int getResidentSegments() {
+		return residentSegments;
+	}
+
+	/**
+	 * Get the number of times a segment was read from the source.
+	 * @return number of segment reads
+	 */
+	public synchronized int getSegmentReads() {
+		return segmentReads;
+	}
+
+	@Override
+	public boolean isFull() {
+		return numberOfRatings() == ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return numberOfRatings() == 0;
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord addRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("segmented models cannot be changed");
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord removeRating(ChordChangeConsonanceRecord record) {
+		throw new UnsupportedOperationException("segmented models cannot be changed");
+	}
+
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("segmented models cannot be changed");
+	}
+
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		throw new UnsupportedOperationException("segmented models cannot be changed");
+	}
+
+	/**
+	 * The segmented model can't change so it is returned as is. It can't
+	 * be used once it is closed.
+	 * @return this model
+	 */
+	@Override
+	public SegmentedChordChangeConsonanceModel freeze() {
+		return this;
+	}
+
+	/**
+	 * Drop every segment and close the source.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		for(int startOrdinal = 0; startOrdinal < NUMBER_OF_SEGMENTS; startOrdinal++) {
+			segments.set(startOrdinal, null);
+		}
+		residentSegments = 0;
+		source.close();
+	}
+}
@@ -0,0 +1,266 @@
+package chord.relations;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Chord change model where every change creates a new immutable
+ * ChordChangeModelVersion.
+ *
+ * Writers(i.e. the RatingModelController) call addRating, removeRating or
+ * commit which build the next version from the current one and publish it.
+ * Writes are serialized by a lock but never wait on readers.
+ *
+ * Readers call pinVersion() to get the current version and keep using it for
+ * as long as they need a consistent model, e.g. while saving the model or
+ * searching for progressions. Ratings added after the version was pinned
+ * are not seen by the reader. The query methods of this class pin the
+ * current version for the duration of the call, and freeze() returns the
+ * current version without copying anything.
+ * @author DAD
+ *
+ */
+public class VersionedChordChangeConsonanceModel implements ChordChangeRatingModel {
+
+	private final Object writeLock = new Object();
+
+	private volatile ChordChangeModelVersion currentVersion;
+
+	/**
+	 * Create an empty VersionedChordChangeConsonanceModel.
+	 */
+	public VersionedChordChangeConsonanceModel() {
+		this.currentVersion = ChordChangeModelVersion.empty();
+	}
+
+	/**
+	 * Create a VersionedChordChangeConsonanceModel whose first version
+	 * contains every rating in the given model.
+	 * @param model model to copy the ratings from, may not be null
+	 */
+	public VersionedChordChangeConsonanceModel(ChordChangeRatingModel model) {
+		this();
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		int[] cells = new int[ChordChangeCellLayout.NUMBER_OF_CELLS];
+		int[] codes = new int[ChordChangeCellLayout.NUMBER_OF_CELLS];
+		int[] numberOfChanges = new int[1];
+
+		model.forEachRating(
+				ChordChangeConsonanceRecordRequest.allPossibleRecords(),
+				(startChordSig, endChordSig, intervalBetweenRoots, rating) -> {
+					cells[numberOfChanges[0]] = ChordChangeCellLayout.cellIndex(startChordSig, endChordSig, intervalBetweenRoots);
+					codes[numberOfChanges[0]] = PackedRatingArray.encode(rating);
+					numberOfChanges[0]++;
+				});
+
+		this.currentVersion = currentVersion.withChanges(cells, codes, numberOfChanges[0]);
+	}
+
+	/**
+	 * Get the current version of the model. The version never changes so it
+	 * may be used for as long as the caller needs a consistent view of the
+	 * ratings.
+	 * @return the current version
+	 */
+	public ChordChangeModelVersion pinVersion() {
+		return currentVersion;
+	}
+
+	/**
+	 * Get the number of the current version.
+	 * @return current version number
+	 */
+	public long getVersionNumber() {
+		return currentVersion.getVersionNumber();
+	}
+
+	/**
+	 * Add and remove a batch of ratings as a single new version. Readers see
+	 * either none or all of the changes. Ratings are added before ratings are
+	 * removed.
+	 * @param ratingsToAdd records holding the ratings to add, may not be null
+	 * or contain null records or records without ratings
+	 * @param ratingsToRemove records of the ratings to remove, may not be null
+	 * or contain null records
+	 * @return the version created by the commit, the current version if
+	 * nothing was changed
+	 */
+	public ChordChangeModelVersion commit(
+			Collection<ChordChangeConsonanceRecord> ratingsToAdd,
+			Collection<ChordChangeConsonanceRecord> ratingsToRemove) {
+		if(ratingsToAdd == null || ratingsToRemove == null) {
+			throw new NullPointerException("records may not be null");
+		}
+		int numberOfChanges = ratingsToAdd.size() + ratingsToRemove.size();
+		int[] cells = new int[numberOfChanges];
+		int[] codes = new int[numberOfChanges];
+
+		//check everything before changing anything
+		int i = 0;
+		for(ChordChangeConsonanceRecord record : ratingsToAdd) {
+			cells[i] = ChordChangeCellLayout.cellIndex(record);
+			if(record.rating() == null) {
+				throw new NullPointerException("rating must not be null");
+			}
+			codes[i++] = PackedRatingArray.encode(record.rating());
+		}
+		for(ChordChangeConsonanceRecord record : ratingsToRemove) {
+			cells[i] = ChordChangeCellLayout.cellIndex(record);
+			codes[i++] = PackedRatingArray.NOT_RATED;
+		}
+
+		synchronized(writeLock) {
+			currentVersion = currentVersion.withChanges(cells, codes, numberOfChanges);
+			return currentVersion;
+		}
+	}
+
+	/**
+	 * Store the code in the cell as a new version.
+	 * @return the previous code stored in the cell
+	 */
+	private int commitCode(int cell, int code) {
+		synchronized(writeLock) {
+			ChordChangeModelVersion version = currentVersion;
+			int previousCode = version.getCode(cell);
+			currentVersion = version.withChanges(new int[] {cell}, new int[] {code}, 1);
+			return previousCode;
+		}
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord addRating(ChordChangeConsonanceRecord record) {
+		int cell = ChordChangeCellLayout.cellIndex(record);
+		if(record.rating() == null) {
+			throw new NullPointerException("rating must not be null");
+		}
+		int previousCode = commitCode(cell, PackedRatingArray.encode(record.rating()));
+
+		return previousCode == PackedRatingArray.NOT_RATED ? null :
+			AbstractChordChangeCellModel.createRecord(cell, PackedRatingArray.decode(previousCode));
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord removeRating(ChordChangeConsonanceRecord record) {
+		int cell = ChordChangeCellLayout.cellIndex(record);
+		int previousCode = commitCode(cell, PackedRatingArray.NOT_RATED);
+
+		return previousCode == PackedRatingArray.NOT_RATED ? null :
+			AbstractChordChangeCellModel.createRecord(cell, PackedRatingArray.decode(previousCode));
+	}
+
+	/**
+	 * All of the ratings are added as a single new version.
+	 */
+	@Override
+	public int addRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return commitBatch(RatingBatch.forAdding(records, ChordChangeCellLayout::cellIndex, ChordChangeConsonanceRecord::rating));
+	}
+
+	/**
+	 * All of the ratings are removed as a single new version.
+	 */
+	@Override
+	public int removeRatings(Collection<? extends ChordChangeConsonanceRecord> records) {
+		return commitBatch(RatingBatch.forRemoving(records, ChordChangeCellLayout::cellIndex));
+	}
+
+	/**
+	 * Commit every entry of the batch as one version.
+	 * @return number of cells that went from unrated to rated or back
+	 */
+	private int commitBatch(RatingBatch batch) {
+		int[] cells = new int[batch.size()];
+		int[] codes = new int[batch.size()];
+		for(int i = 0; i < batch.size(); i++) {
+			cells[i] = batch.cell(i);
+			codes[i] = batch.code(i);
+		}
+
+		synchronized(writeLock) {
+			ChordChangeModelVersion previousVersion = currentVersion;
+			currentVersion = previousVersion.withChanges(cells, codes, cells.length);
+			//a batch only adds or only removes ratings
+			return Math.abs(currentVersion.numberOfRatings() - previousVersion.numberOfRatings());
+		}
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getRating(ChordChangeConsonanceRecord record) {
+		return pinVersion().getRating(record);
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getNextRecordToBeRated() {
+		return pinVersion().getNextRecordToBeRated();
+	}
+
+	@Override
+	public ChordChangeConsonanceRecord getLastRecordRated() {
+		return pinVersion().getLastRecordRated();
+	}
+
+	@Override
+	public boolean isFull() {
+		return pinVersion().isFull();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return pinVersion().isEmpty();
+	}
+
+	@Override
+	public Set<ChordChangeConsonanceRecord> getRecords(ChordChangeConsonanceRecordRequest request) {
+		return pinVersion().getRecords(request);
+	}
+
+	/**
+	 * The stream reads the version that was current when this method was
+	 * called, so unlike the other models this model may be changed while
+	 * the stream is consumed.
+	 */
+	@Override
+	public Stream<ChordChangeConsonanceRecord> streamRecords(ChordChangeConsonanceRecordRequest request) {
+		return pinVersion().streamRecords(request);
+	}
+
+	@Override
+	public void forEachRating(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		pinVersion().forEachRating(request, visitor);
+	}
+
+	@Override
+	public void forEachRatingLeadingTo(ChordChangeConsonanceRecordRequest request, ChordChangeRatingVisitor visitor) {
+		pinVersion().forEachRatingLeadingTo(request, visitor);
+	}
+
+	@Override
+	public void forEachTransitionFrom(ChordSignature startChordSig, ConsonanceRating minimumRating, ChordChangeRatingVisitor visitor) {
+		pinVersion().forEachTransitionFrom(startChordSig, minimumRating, visitor);
+	}
+
+	@Override
+	public List<ChordChangeConsonanceRecord> getBestTransitionsFrom(ChordSignature startChordSig, int maximumNumberOfTransitions) {
+		return pinVersion().getBestTransitionsFrom(startChordSig, maximumNumberOfTransitions);
+	}
+
+	/**
+	 * Versions are already immutable so the current version is returned
+	 * without being copied.
+	 * @return the current version
+	 */
+	@Override
+	public ChordChangeModelVersion freeze() {
+		return pinVersion();
+	}
+}
@@ -0,0 +1,172 @@
+package chord.relations.persist;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import chord.relations.RatingModel;
+import chord.relations.request.AbstractRecordRequest;
+
+/**
+ * Runs the saves and loads of a PersistModelStrategy on a background
+ * thread so that the caller, usually the Swing event thread, doesn't wait
+ * for the file to be written.
+ *
+ * save freezes the model on the calling thread, so ratings added after
+ * the call are not half saved, and the frozen snapshot is written in the
+ * background. Saves requested while another save is waiting to start are
+ * coalesced: only the newest snapshot is written and every caller gets the
+ * same future. Saves and loads run one at a time in the order they were
+ * requested. The outcome of each is reported through the returned
+ * CompletableFuture, which completes on the background thread.
+ *
+ * The wrapped persister must only be used through this class while it is
+ * in use. The file persisters replace the file atomically, so a save that
+ * fails or is cut short leaves the previous file in place.
+ *
+ * The background thread stops when it has been idle for a while, so an
+ * unclosed persister doesn't keep the program running, and it is not a
+ * daemon thread, so a save that has started is finished before the
+ * program exits.
+ * @author DAD
+ *
+ * @param <RECORD> type of record to use
+ * @param <REQUEST> type of request to use
+ * @param <MODEL> type of model loaded
+ */
+public final class AsyncModelPersister<
+	RECORD,
+	REQUEST extends AbstractRecordRequest,
+	MODEL extends RatingModel<RECORD,REQUEST>> implements Closeable {
+
+	private static final long IDLE_SECONDS = 5;
+
+	private final PersistModelStrategy<RECORD,REQUEST,?,MODEL> persister;
+
+	private final ThreadPoolExecutor executor;
+
+	//everything below is guarded by this
+
+	/**
+	 * Snapshot to write by the save that is waiting to start, null if
+	 * no save is waiting.
+	 */
+	private RatingModel<RECORD,REQUEST> pendingSnapshot;
+
+	private CompletableFuture<Void> pendingSave;
+
+	private int coalescedSaves;
+
+	private boolean closed;
+
+	/**
+	 * Create an asynchronous persister.
+	 * @param persister persister that does the saving and loading, already
+	 * given its request and config
+	 */
+	public AsyncModelPersister(PersistModelStrategy<RECORD,REQUEST,?,MODEL> persister) {
+		if(persister == null) {
+			throw new NullPointerException("persister may not be null");
+		}
+		this.persister = persister;
+		this.executor = new ThreadPoolExecutor(
+				1, 1,
+				IDLE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				runnable -> new Thread(runnable, "model persister"));
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Save a snapshot of the model in the background.
+	 * @param model model to save, frozen before this method returns
+	 * @return future completed when the snapshot, or a newer one that
+	 * replaced it, is saved, or completed exceptionally with the
+	 * PersistenceException if the save failed
+	 * @throws IllegalStateException if the persister is closed
+	 */
+	public synchronized CompletableFuture<Void> save(RatingModel<RECORD,REQUEST> model) {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		checkOpen();
+
+		RatingModel<RECORD,REQUEST> snapshot = model.freeze();
+		if(pendingSave != null) {
+			//the waiting save hasn't taken its snapshot yet
+			pendingSnapshot = snapshot;
+			coalescedSaves++;
+			return pendingSave;
+		}
+
+		pendingSnapshot = snapshot;
+		pendingSave = new CompletableFuture<>();
+		CompletableFuture<Void> save = pendingSave;
+		executor.execute(this::writePendingSave);
+		return save;
+	}
+
+	private void writePendingSave() {
+		RatingModel<RECORD,REQUEST> snapshot;
+		CompletableFuture<Void> save;
+		synchronized(this) {
+			snapshot = pendingSnapshot;
+			save = pendingSave;
+			pendingSnapshot = null;
+			pendingSave = null;
+		}
+		try {
+			persister.save(snapshot);
+			save.complete(null);
+		} catch (PersistenceException | RuntimeException e) {
+			save.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Load the model in the background, after every save requested before.
+	 * @return future completed with the model loaded, or completed
+	 * exceptionally with the PersistenceException if the load failed
+	 * @throws IllegalStateException if the persister is closed
+	 */
+	public synchronized CompletableFuture<MODEL> load() {
+		checkOpen();
+
+		CompletableFuture<MODEL> load = new CompletableFuture<>();
+		executor.execute(() -> {
+			try {
+				load.complete(persister.load());
+			} catch (PersistenceException | RuntimeException e) {
+				load.completeExceptionally(e);
+			}
+		});
+		return load;
+	}
+
+	/**
+	 * Get the number of saves that were folded into another save instead
+	 * of being written.
+	 * @return number of coalesced saves
+	 */
+	public synchronized int getCoalescedSaves() {
+		return coalescedSaves;
+	}
+
+	private void checkOpen() {
+		if(closed) {
+			throw new IllegalStateException("persister is closed");
+		}
+	}
+
+	/**
+	 * Stop accepting saves and loads. Those already requested still run,
+	 * use their futures to wait for them.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		executor.shutdown();
+	}
+}
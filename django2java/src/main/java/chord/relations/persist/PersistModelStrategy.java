@@ -40,12 +40,16 @@ public interface PersistModelStrategy<RECORD,REQUEST extends AbstractRecordReque
 	/**
 	 * Save the model to the destination described by
 	 * the parameters passed to  configure.
+	 * 
+	 * Any model holding the right type of records may be saved, so a
+	 * frozen snapshot or a pinned version of a model that is still being
+	 * written to can be saved without stopping the writer.
 	 * @param model model to be saved
 	 * 
 	 * @throws PersistenceException if there is an error saving
 	 * the model.
 	 */
-	void save(MODEL model) throws PersistenceException;
+	void save(RatingModel<RECORD,REQUEST> model) throws PersistenceException;
 	
 	/**
 	 * Load the model from the source described by
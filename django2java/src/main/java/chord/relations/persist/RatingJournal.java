@@ -0,0 +1,27 @@
+package chord.relations.persist;
+
+/**
+ * Receives every rating added to or removed from a model as it is made,
+ * so that it can be persisted one rating at a time instead of saving the
+ * whole model.
+ * @author DAD
+ *
+ * @param <RECORD> type of record of the model
+ */
+public interface RatingJournal<RECORD> {
+
+	/**
+	 * Record that the rating of the record was added to the model,
+	 * replacing any rating it had.
+	 * @param record rated record that was added, may not be null
+	 * @throws PersistenceException if the change can't be persisted
+	 */
+	void ratingAdded(RECORD record) throws PersistenceException;
+
+	/**
+	 * Record that the rating of the record was removed from the model.
+	 * @param record record whose rating was removed, may not be null
+	 * @throws PersistenceException if the change can't be persisted
+	 */
+	void ratingRemoved(RECORD record) throws PersistenceException;
+}
@@ -0,0 +1,435 @@
+package chord.relations.persist.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.relations.PackedRatingArray;
+import chord.relations.RatingModel;
+import chord.relations.persist.PersistModelStrategy;
+import chord.relations.persist.PersistenceException;
+import chord.relations.request.AbstractRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+/**
+ * Abstract class used to persist models in a database table through JDBC.
+ *
+ * Every rated cell of the model's cell layout is a row of the table, keyed
+ * by the ordinals of the cell, with the rating code of PackedRatingArray in
+ * the RATING column. The first key column is always the reference chord, so
+ * the primary key index is used to read only the rows of some reference
+ * chords.
+ *
+ * A save only touches the cells of the request. It reads the rows stored
+ * for them and writes only the cells that changed, with batched statements
+ * in one transaction: changed ratings are upserted and ratings no longer
+ * in the model are deleted. The table is created by the first save. The
+ * upsert is the MERGE statement of H2.
+ *
+ * To use, overwrite the methods giving the table, the cell layout and the
+ * empty model. All three of the generics should go together, the same way
+ * as AbstractBinaryFilePersister.
+ * @author DAD
+ *
+ * @param <RECORD> type of record to use
+ * @param <REQUEST> type of request to use
+ * @param <MODEL> type of model to use
+ */
+public abstract class AbstractDatabasePersister<
+	RECORD,
+	REQUEST extends AbstractRecordRequest,
+	MODEL extends RatingModel<RECORD,REQUEST>>
+	implements PersistModelStrategy<
+	RECORD,
+	REQUEST,
+	DatabaseStrategyConfig,
+	MODEL>{
+
+	static final String RATING_COLUMN = "RATING";
+
+	/**
+	 * Number of statements sent to the database at once.
+	 */
+	static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Number of rows the driver is asked to fetch at once when reading,
+	 * so a large table is streamed instead of read into memory.
+	 */
+	static final int FETCH_SIZE = 1000;
+
+	private static final int NUMBER_OF_RATINGS = ConsonanceRating.values().length;
+
+	private DatabaseStrategyConfig config;
+
+	private REQUEST request;
+
+	private int changedCellsOfLastSave;
+
+	public AbstractDatabasePersister(
+			DatabaseStrategyConfig config,
+			REQUEST request) {
+
+		setRequest(request);
+		configure(config);
+	}
+
+	@Override
+	public final void setRequest(REQUEST request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		if(!request.isInitialized()) {
+			throw new IllegalArgumentException("request must be initialized.");
+		}
+		this.request = request;
+	}
+
+	@Override
+	public final void configure(DatabaseStrategyConfig configParam) {
+		if(configParam == null) {
+			throw new NullPointerException("parameters may not be null");
+		}
+
+		this.config = configParam;
+	}
+
+	/**
+	 * Save the requested ratings. Requested cells that are not rated in the
+	 * model are removed from the table, cells that are not requested are
+	 * left as they are. A cell the model rates with a rating the request
+	 * doesn't ask for is not requested, it is neither written nor removed.
+	 */
+	@Override
+	public final void save(RatingModel<RECORD,REQUEST> model) throws PersistenceException {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		if(request == null) {
+			throw new IllegalStateException("request has not been initialized");
+		}
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+
+		byte[] codes = new byte[getNumberOfCells()];
+		model.streamRecords(request)
+			.forEach(record -> codes[cellIndex(record)] = (byte)PackedRatingArray.encode(ratingOf(record)));
+		CompiledRecordRequest compiledRequest = request.compile();
+
+		try(Connection connection = config.openConnection()) {
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try {
+				createTable(connection);
+				byte[] stored = readCodes(connection, compiledRequest, false);
+				keepUnrequestedRatings(model, codes, stored);
+				changedCellsOfLastSave = writeChanges(connection, codes, stored);
+				connection.commit();
+			} catch (SQLException | PersistenceException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("error saving to database",e);
+		}
+	}
+
+	@Override
+	public final MODEL load() throws PersistenceException {
+		return load(null);
+	}
+
+	/**
+	 * Load only the ratings the request asks for. Only the rows of the
+	 * requested reference chords are read from the table.
+	 * @return model holding the requested ratings
+	 * @throws PersistenceException if there is an error loading the data
+	 */
+	public final MODEL loadRequested() throws PersistenceException {
+		if(request == null) {
+			throw new IllegalStateException("request has not been initialized");
+		}
+		return load(request.compile());
+	}
+
+	private MODEL load(CompiledRecordRequest compiledRequest) throws PersistenceException {
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+
+		byte[] codes;
+		try(Connection connection = config.openConnection()) {
+			codes = readCodes(connection, compiledRequest, true);
+		} catch (SQLException e) {
+			throw new PersistenceException("error loading from database",e);
+		}
+
+		List<RECORD> records = new ArrayList<>();
+		for(int cell = 0; cell < codes.length; cell++) {
+			if(codes[cell] != PackedRatingArray.NOT_RATED) {
+				records.add(createRecord(cell, PackedRatingArray.decode(codes[cell])));
+			}
+		}
+
+		MODEL model = createEmptyModel();
+		model.addRatings(records);
+
+		return model;
+	}
+
+	/**
+	 * Get the number of cells written or deleted by the last save.
+	 * @return number of cells that changed
+	 */
+	public final int getChangedCellsOfLastSave() {
+		return changedCellsOfLastSave;
+	}
+
+	private void createTable(Connection connection) throws SQLException {
+		String keyColumns = String.join(", ", getKeyColumns());
+		String columns = Arrays.stream(getKeyColumns())
+				.map(column -> column + " INT NOT NULL")
+				.collect(Collectors.joining(", "));
+
+		try(Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS " + getTableName() + " (" +
+					columns + ", " +
+					RATING_COLUMN + " TINYINT NOT NULL, " +
+					"PRIMARY KEY (" + keyColumns + "))");
+		}
+	}
+
+	/**
+	 * Read the rating codes stored in the table.
+	 * @param connection open connection
+	 * @param compiledRequest cells to read, null to read every cell
+	 * @param filterRatings true to also leave out the ratings that are not
+	 * requested
+	 * @return rating code of every cell of the layout, NOT_RATED for cells
+	 * not stored or not read
+	 */
+	private byte[] readCodes(Connection connection, CompiledRecordRequest compiledRequest, boolean filterRatings)
+			throws SQLException, PersistenceException {
+		String[] keyColumns = getKeyColumns();
+		StringBuilder query = new StringBuilder("SELECT ")
+				.append(String.join(", ", keyColumns))
+				.append(", ").append(RATING_COLUMN)
+				.append(" FROM ").append(getTableName());
+
+		//use the index when only some of the reference chords are wanted
+		List<Integer> referenceChords = Collections.emptyList();
+		if(compiledRequest != null && request.numReferenceChordsRequested() < ChordSignature.values().length) {
+			referenceChords = compiledRequest.referenceChordOrdinals().boxed().toList();
+			query.append(" WHERE ").append(keyColumns[0]).append(" IN (")
+				.append(String.join(", ", Collections.nCopies(referenceChords.size(), "?")))
+				.append(")");
+		}
+
+		byte[] codes = new byte[getNumberOfCells()];
+		try(PreparedStatement statement = connection.prepareStatement(query.toString())) {
+			for(int i = 0; i < referenceChords.size(); i++) {
+				statement.setInt(i + 1, referenceChords.get(i));
+			}
+			statement.setFetchSize(FETCH_SIZE);
+
+			int[] keys = new int[keyColumns.length];
+			try(ResultSet rows = statement.executeQuery()) {
+				while(rows.next()) {
+					for(int column = 0; column < keys.length; column++) {
+						keys[column] = rows.getInt(column + 1);
+					}
+					int code = rows.getInt(keys.length + 1);
+					int cell = checkedCellIndex(keys);
+					if(code <= PackedRatingArray.NOT_RATED || code > NUMBER_OF_RATINGS) {
+						throw new PersistenceException("invalid rating code stored for cell " + cell + ":" + code);
+					}
+					if(compiledRequest != null &&
+							(!isRequested(cell, compiledRequest) ||
+							(filterRatings && !compiledRequest.containsRatingCode(code)))) {
+						continue;
+					}
+					codes[cell] = (byte)code;
+				}
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * Leave the stored cells that the model rates with a rating that isn't
+	 * requested as they are. The model side of a save only holds the
+	 * requested ratings, so these cells would otherwise be deleted.
+	 * @param model model being saved
+	 * @param codes requested rating codes of the model, changed to the
+	 * stored code for the cells to leave alone
+	 * @param stored rating codes stored for the requested cells with any rating
+	 */
+	private void keepUnrequestedRatings(RatingModel<RECORD,REQUEST> model, byte[] codes, byte[] stored) {
+		for(int cell = 0; cell < codes.length; cell++) {
+			if(codes[cell] == PackedRatingArray.NOT_RATED && stored[cell] != PackedRatingArray.NOT_RATED &&
+					model.getRating(createRecord(cell, null)) != null) {
+				codes[cell] = stored[cell];
+			}
+		}
+	}
+
+	private int checkedCellIndex(int[] keys) throws PersistenceException {
+		int cell = cellIndex(keys);
+		boolean valid = cell >= 0 && cell < getNumberOfCells() && isRateable(cell);
+		for(int column = 0; valid && column < keys.length; column++) {
+			valid = keyOrdinal(cell, column) == keys[column];
+		}
+		if( !valid) {
+			throw new PersistenceException("invalid key stored:" + Arrays.toString(keys));
+		}
+		return cell;
+	}
+
+	/**
+	 * Upsert the cells whose code changed and delete the cells no longer rated.
+	 * @return number of cells changed
+	 */
+	private int writeChanges(Connection connection, byte[] codes, byte[] stored) throws SQLException {
+		String[] keyColumns = getKeyColumns();
+		String keyList = String.join(", ", keyColumns);
+		String upsertSql = "MERGE INTO " + getTableName() +
+				" (" + keyList + ", " + RATING_COLUMN + ") KEY (" + keyList + ") VALUES (" +
+				String.join(", ", Collections.nCopies(keyColumns.length + 1, "?")) + ")";
+		String deleteSql = "DELETE FROM " + getTableName() + " WHERE " +
+				Arrays.stream(keyColumns).map(column -> column + " = ?").collect(Collectors.joining(" AND "));
+
+		int changedCells = 0;
+		try(PreparedStatement upsert = connection.prepareStatement(upsertSql);
+				PreparedStatement delete = connection.prepareStatement(deleteSql)) {
+			int pendingUpserts = 0;
+			int pendingDeletes = 0;
+			for(int cell = 0; cell < codes.length; cell++) {
+				if(codes[cell] == stored[cell]) {
+					continue;
+				}
+				changedCells++;
+
+				PreparedStatement statement = codes[cell] == PackedRatingArray.NOT_RATED ? delete : upsert;
+				for(int column = 0; column < keyColumns.length; column++) {
+					statement.setInt(column + 1, keyOrdinal(cell, column));
+				}
+				if(statement == upsert) {
+					upsert.setInt(keyColumns.length + 1, codes[cell]);
+					upsert.addBatch();
+					if(++pendingUpserts == BATCH_SIZE) {
+						upsert.executeBatch();
+						pendingUpserts = 0;
+					}
+				} else {
+					delete.addBatch();
+					if(++pendingDeletes == BATCH_SIZE) {
+						delete.executeBatch();
+						pendingDeletes = 0;
+					}
+				}
+			}
+			if(pendingUpserts > 0) {
+				upsert.executeBatch();
+			}
+			if(pendingDeletes > 0) {
+				delete.executeBatch();
+			}
+		}
+		return changedCells;
+	}
+
+	/**
+	 * Get the name of the table holding the model.
+	 * @return table name
+	 */
+	protected abstract String getTableName();
+
+	/**
+	 * Get the names of the key columns of the table, the reference chord first.
+	 * @return key column names
+	 */
+	protected abstract String[] getKeyColumns();
+
+	/**
+	 * Get the ordinal stored in the key column for the cell.
+	 * @param cell cell index
+	 * @param column index of the key column in getKeyColumns
+	 * @return ordinal of the key column
+	 */
+	protected abstract int keyOrdinal(int cell, int column);
+
+	/**
+	 * Get the cell of the key column ordinals. No checks are made on the
+	 * ordinals, the cell is checked against them afterwards.
+	 * @param keyOrdinals ordinals of the key columns
+	 * @return cell index
+	 */
+	protected abstract int cellIndex(int[] keyOrdinals);
+
+	/**
+	 * Get the number of cells in the cell layout of the model.
+	 * @return number of cells including those that can't be rated
+	 */
+	protected abstract int getNumberOfCells();
+
+	/**
+	 * Get the cell of the record in the cell layout of the model.
+	 * @param record record to find the cell for
+	 * @return cell index
+	 */
+	protected abstract int cellIndex(RECORD record);
+
+	/**
+	 * Test if the cell can hold a rating.
+	 * @param cell cell index
+	 * @return true if the cell can be rated
+	 */
+	protected abstract boolean isRateable(int cell);
+
+	/**
+	 * Test if the cell is one of the cells the request asks for. The rating
+	 * of the cell is tested separately.
+	 * @param cell cell index
+	 * @param request compiled form of the request
+	 * @return true if the reference chord and the target or interval of the
+	 * cell are requested
+	 */
+	protected abstract boolean isRequested(int cell, CompiledRecordRequest request);
+
+	/**
+	 * Get the rating held by the record.
+	 *
+	 * we need this method since the records don't share an interface.
+	 * @param record record holding the rating
+	 * @return the rating of the record
+	 */
+	protected abstract ConsonanceRating ratingOf(RECORD record);
+
+	/**
+	 * Create the record for the cell.
+	 * @param cell cell index
+	 * @param rating rating of the cell
+	 * @return record for the cell holding the rating
+	 */
+	protected abstract RECORD createRecord(int cell, ConsonanceRating rating);
+
+	/**
+	 * We need to create the model externally since we cannot
+	 * call the constructor of the model directly through generics.
+	 *
+	 * @return empty model of the required type.
+	 */
+	protected abstract MODEL createEmptyModel();
+}
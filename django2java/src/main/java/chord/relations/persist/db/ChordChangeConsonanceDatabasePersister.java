@@ -0,0 +1,90 @@
+package chord.relations.persist.db;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+public class ChordChangeConsonanceDatabasePersister extends
+		AbstractDatabasePersister<ChordChangeConsonanceRecord, ChordChangeConsonanceRecordRequest, ChordChangeConsonanceModel> {
+
+	private static final String[] KEY_COLUMNS = {"START_CHORD", "END_CHORD", "ROOT_INTERVAL"};
+
+	public ChordChangeConsonanceDatabasePersister(DatabaseStrategyConfig config,
+			ChordChangeConsonanceRecordRequest request) {
+		super(config, request);
+	}
+
+	@Override
+	protected String getTableName() {
+		return "CHORD_CHANGE_RATING";
+	}
+
+	@Override
+	protected String[] getKeyColumns() {
+		return KEY_COLUMNS.clone();
+	}
+
+	@Override
+	protected int keyOrdinal(int cell, int column) {
+		switch(column) {
+		case 0:
+			return ChordChangeCellLayout.startOrdinal(cell);
+		case 1:
+			return ChordChangeCellLayout.endOrdinal(cell);
+		case 2:
+			return ChordChangeCellLayout.intervalOrdinal(cell);
+		default:
+			throw new IllegalArgumentException("no key column " + column);
+		}
+	}
+
+	@Override
+	protected int cellIndex(int[] keyOrdinals) {
+		return ChordChangeCellLayout.cellIndex(keyOrdinals[0], keyOrdinals[1], keyOrdinals[2]);
+	}
+
+	@Override
+	protected int getNumberOfCells() {
+		return ChordChangeCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	protected int cellIndex(ChordChangeConsonanceRecord record) {
+		return ChordChangeCellLayout.cellIndex(record);
+	}
+
+	@Override
+	protected boolean isRateable(int cell) {
+		return ChordChangeCellLayout.isRateable(cell);
+	}
+
+	@Override
+	protected boolean isRequested(int cell, CompiledRecordRequest request) {
+		return request.containsReferenceChord(ChordChangeCellLayout.startOrdinal(cell)) &&
+				request.containsTarget(ChordChangeCellLayout.endOrdinal(cell)) &&
+				request.containsInterval(ChordChangeCellLayout.intervalOrdinal(cell));
+	}
+
+	@Override
+	protected ConsonanceRating ratingOf(ChordChangeConsonanceRecord record) {
+		return record.rating();
+	}
+
+	@Override
+	protected ChordChangeConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell),
+				ChordChangeCellLayout.endChord(cell),
+				ChordChangeCellLayout.interval(cell),
+				rating);
+	}
+
+	@Override
+	protected ChordChangeConsonanceModel createEmptyModel() {
+		return new ChordChangeConsonanceModel();
+	}
+
+}
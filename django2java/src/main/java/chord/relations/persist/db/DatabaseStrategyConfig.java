@@ -0,0 +1,75 @@
+package chord.relations.persist.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Configuration class for PersistModelStrategy to
+ * save to a database through JDBC.
+ *
+ * The persisters are written for an embedded H2 database, opened with a
+ * url such as "jdbc:h2:~/chordRatings". The H2 driver has to be on the
+ * class path of the program, this library doesn't depend on it.
+ *
+ * This class exists to conform to the
+ * Command design pattern of the PersistModelStrategy interface.
+ * @author DAD
+ *
+ */
+public class DatabaseStrategyConfig {
+
+	/**
+	 * Opens the connections used by the persisters.
+	 */
+	@FunctionalInterface
+	public interface ConnectionSource {
+		/**
+		 * Open a new connection, closed by the persister when it is done with it.
+		 * @return open connection
+		 * @throws SQLException if the connection can't be opened
+		 */
+		Connection getConnection() throws SQLException;
+	}
+
+	/**
+	 * source of the connections to the source/destination database.
+	 */
+	private final ConnectionSource connectionSource;
+
+	/**
+	 * Create the configuration for the database at the url.
+	 * @param jdbcUrl JDBC url of the source/destination database,
+	 * may not be null or empty.
+	 */
+	public DatabaseStrategyConfig(String jdbcUrl) {
+		if(jdbcUrl == null) {
+			throw new NullPointerException("jdbc url may not be null");
+		}
+		if(jdbcUrl.isEmpty()) {
+			throw new IllegalArgumentException("jdbc url may not be empty");
+		}
+		this.connectionSource = () -> DriverManager.getConnection(jdbcUrl);
+	}
+
+	/**
+	 * Create the configuration for the database the source connects to,
+	 * used when the connections come from a pool.
+	 * @param connectionSource source of the connections, may not be null
+	 */
+	public DatabaseStrategyConfig(ConnectionSource connectionSource) {
+		if(connectionSource == null) {
+			throw new NullPointerException("connection source may not be null");
+		}
+		this.connectionSource = connectionSource;
+	}
+
+	/**
+	 * Open a connection to the source/destination database.
+	 * @return open connection
+	 * @throws SQLException if the connection can't be opened
+	 */
+	public Connection openConnection() throws SQLException {
+		return connectionSource.getConnection();
+	}
+}
@@ -0,0 +1,88 @@
+package chord.relations.persist.db;
+
+import chord.ConsonanceRating;
+import chord.relations.NoteCellLayout;
+import chord.relations.NoteConsonanceModel;
+import chord.relations.record.NoteConsonanceRecord;
+import chord.relations.request.CompiledRecordRequest;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+public class NoteConsonanceDatabasePersister extends
+	AbstractDatabasePersister<
+		NoteConsonanceRecord,
+		NoteConsonanceRecordRequest,
+		NoteConsonanceModel> {
+
+	private static final String[] KEY_COLUMNS = {"CHORD", "NOTE_INTERVAL"};
+
+	public NoteConsonanceDatabasePersister(DatabaseStrategyConfig config, NoteConsonanceRecordRequest request) {
+		super(config, request);
+	}
+
+	@Override
+	protected String getTableName() {
+		return "NOTE_RATING";
+	}
+
+	@Override
+	protected String[] getKeyColumns() {
+		return KEY_COLUMNS.clone();
+	}
+
+	@Override
+	protected int keyOrdinal(int cell, int column) {
+		switch(column) {
+		case 0:
+			return NoteCellLayout.chordOrdinal(cell);
+		case 1:
+			return NoteCellLayout.intervalOrdinal(cell);
+		default:
+			throw new IllegalArgumentException("no key column " + column);
+		}
+	}
+
+	@Override
+	protected int cellIndex(int[] keyOrdinals) {
+		return NoteCellLayout.cellIndex(keyOrdinals[0], keyOrdinals[1]);
+	}
+
+	@Override
+	protected int getNumberOfCells() {
+		return NoteCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	protected int cellIndex(NoteConsonanceRecord record) {
+		return NoteCellLayout.cellIndex(record);
+	}
+
+	@Override
+	protected boolean isRateable(int cell) {
+		return NoteCellLayout.isRateable(cell);
+	}
+
+	@Override
+	protected boolean isRequested(int cell, CompiledRecordRequest request) {
+		return request.containsReferenceChord(NoteCellLayout.chordOrdinal(cell)) &&
+				request.containsInterval(NoteCellLayout.intervalOrdinal(cell));
+	}
+
+	@Override
+	protected ConsonanceRating ratingOf(NoteConsonanceRecord record) {
+		return record.rating();
+	}
+
+	@Override
+	protected NoteConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new NoteConsonanceRecord(
+				NoteCellLayout.chord(cell),
+				NoteCellLayout.interval(cell),
+				rating);
+	}
+
+	@Override
+	protected NoteConsonanceModel createEmptyModel() {
+		return new NoteConsonanceModel();
+	}
+
+}
@@ -0,0 +1,88 @@
+package chord.relations.persist.db;
+
+import chord.ConsonanceRating;
+import chord.relations.ScaleCellLayout;
+import chord.relations.ScaleConsonanceModel;
+import chord.relations.record.ScaleConsonanceRecord;
+import chord.relations.request.CompiledRecordRequest;
+import chord.relations.request.ScaleConsonanceRecordRequest;
+
+public class ScaleConsonanceDatabasePersister extends
+	AbstractDatabasePersister<
+		ScaleConsonanceRecord,
+		ScaleConsonanceRecordRequest,
+		ScaleConsonanceModel> {
+
+	private static final String[] KEY_COLUMNS = {"CHORD", "SCALE"};
+
+	public ScaleConsonanceDatabasePersister(DatabaseStrategyConfig config, ScaleConsonanceRecordRequest request) {
+		super(config, request);
+	}
+
+	@Override
+	protected String getTableName() {
+		return "SCALE_RATING";
+	}
+
+	@Override
+	protected String[] getKeyColumns() {
+		return KEY_COLUMNS.clone();
+	}
+
+	@Override
+	protected int keyOrdinal(int cell, int column) {
+		switch(column) {
+		case 0:
+			return ScaleCellLayout.chordOrdinal(cell);
+		case 1:
+			return ScaleCellLayout.scaleOrdinal(cell);
+		default:
+			throw new IllegalArgumentException("no key column " + column);
+		}
+	}
+
+	@Override
+	protected int cellIndex(int[] keyOrdinals) {
+		return ScaleCellLayout.cellIndex(keyOrdinals[0], keyOrdinals[1]);
+	}
+
+	@Override
+	protected int getNumberOfCells() {
+		return ScaleCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	protected int cellIndex(ScaleConsonanceRecord record) {
+		return ScaleCellLayout.cellIndex(record);
+	}
+
+	@Override
+	protected boolean isRateable(int cell) {
+		return ScaleCellLayout.isRateable(cell);
+	}
+
+	@Override
+	protected boolean isRequested(int cell, CompiledRecordRequest request) {
+		return request.containsReferenceChord(ScaleCellLayout.chordOrdinal(cell)) &&
+				request.containsTarget(ScaleCellLayout.scaleOrdinal(cell));
+	}
+
+	@Override
+	protected ConsonanceRating ratingOf(ScaleConsonanceRecord record) {
+		return record.rating();
+	}
+
+	@Override
+	protected ScaleConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new ScaleConsonanceRecord(
+				ScaleCellLayout.chord(cell),
+				ScaleCellLayout.scale(cell),
+				rating);
+	}
+
+	@Override
+	protected ScaleConsonanceModel createEmptyModel() {
+		return new ScaleConsonanceModel();
+	}
+
+}
@@ -0,0 +1,262 @@
+package chord.relations.persist.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import chord.ConsonanceRating;
+import chord.relations.PackedRatingArray;
+import chord.relations.RatingModel;
+import chord.relations.persist.PersistModelStrategy;
+import chord.relations.persist.PersistenceException;
+import chord.relations.request.AbstractRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+/**
+ * Abstract class used to persist models in the compact binary format
+ * described by BinaryModelFormat.
+ *
+ * Instead of a line of text per record, every cell of the model's cell
+ * layout gets 4 bits, so a full chord change model is a little over 32
+ * kilobytes and is saved and loaded without building or parsing strings.
+ *
+ * To use, overwrite the methods giving the model type, the cell layout
+ * and the empty model. All three of the generics should go together,
+ * the same way as AbstractFilePersister.
+ * @author DAD
+ *
+ * @param <RECORD> type of record to use
+ * @param <REQUEST> type of request to use
+ * @param <MODEL> type of model to use
+ */
+public abstract class AbstractBinaryFilePersister<
+	RECORD,
+	REQUEST extends AbstractRecordRequest,
+	MODEL extends RatingModel<RECORD,REQUEST>>
+	implements PersistModelStrategy<
+	RECORD,
+	REQUEST,
+	FileStrategyConfig,
+	MODEL>{
+
+	private FileStrategyConfig config;
+
+	private REQUEST request;
+
+	public AbstractBinaryFilePersister(
+			FileStrategyConfig config,
+			REQUEST request) {
+
+		setRequest(request);
+		configure(config);
+	}
+
+	@Override
+	public final void setRequest(REQUEST request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		if(!request.isInitialized()) {
+			throw new IllegalArgumentException("request must be initialized.");
+		}
+		this.request = request;
+	}
+
+	@Override
+	public final void configure(FileStrategyConfig configParam) {
+		if(configParam == null) {
+			throw new NullPointerException("parameters may not be null");
+		}
+
+		this.config = configParam;
+	}
+
+	final FileStrategyConfig getConfig() {
+		return config;
+	}
+
+	final REQUEST getRequest() {
+		return request;
+	}
+
+	/**
+	 * Save the requested ratings. Cells that are not requested or not rated
+	 * are saved as not rated.
+	 */
+	@Override
+	public final void save(RatingModel<RECORD,REQUEST> model) throws PersistenceException {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		if(request == null) {
+			throw new IllegalStateException("request has not been initialized");
+		}
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+
+		int numberOfCells = getNumberOfCells();
+		byte[] ratings = new byte[BinaryModelFormat.ratingsSize(numberOfCells)];
+
+		model.streamRecords(request)
+			.forEach(record -> BinaryModelFormat.setCode(
+					ratings,
+					cellIndex(record),
+					PackedRatingArray.encode(ratingOf(record))));
+
+		writeRatings(ratings);
+	}
+
+	/**
+	 * Write a file holding the ratings section, replacing the configured file.
+	 * @param ratings ratings section of the file, one code for every cell
+	 * @throws PersistenceException if the file can't be written
+	 */
+	final void writeRatings(byte[] ratings) throws PersistenceException {
+		int numberOfCells = getNumberOfCells();
+		ByteBuffer file = ByteBuffer.allocate(BinaryModelFormat.fileSize(numberOfCells));
+		file.position(BinaryModelFormat.HEADER_SIZE);
+		file.put(ratings);
+		BinaryModelFormat.writeHeader(file, getModelType(), numberOfCells);
+
+		//write next to the file and move it into place so that processes
+		//that have the old file mapped keep reading the old file
+		try {
+			AtomicFileWriter.replace(
+					config.getSourceDestFile().toPath(), 
+					out -> out.write(file.array(), 0, file.limit()));
+		} catch (IOException e) {
+			throw new PersistenceException("error saving to file",e);
+		}
+	}
+
+	@Override
+	public final MODEL load() throws PersistenceException {
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+
+		ByteBuffer file;
+		try {
+			file = ByteBuffer.wrap(Files.readAllBytes(config.getSourceDestFile().toPath()));
+		} catch (IOException e) {
+			throw new PersistenceException("error loading from file",e);
+		}
+
+		int numberOfCells = getNumberOfCells();
+		BinaryModelFormat.checkFile(file, getModelType(), numberOfCells);
+
+		List<RECORD> records = new ArrayList<>();
+		for(int cell = 0; cell < numberOfCells; cell++) {
+			int code = BinaryModelFormat.codeAt(file, BinaryModelFormat.HEADER_SIZE, cell);
+			if(code == PackedRatingArray.NOT_RATED) {
+				continue;
+			}
+			BinaryModelFormat.checkCode(code, cell);
+			if( !isRateable(cell)) {
+				throw new PersistenceException("rating saved for a cell that can't be rated:" + cell);
+			}
+			records.add(createRecord(cell, PackedRatingArray.decode(code)));
+		}
+
+		MODEL model = createEmptyModel();
+		model.addRatings(records);
+
+		return model;
+	}
+
+	/**
+	 * Map the file read only and check its header. The ratings are not read,
+	 * not even to check the checksum.
+	 * @return read only buffer whose content from position 0 is the ratings
+	 * section of the file
+	 * @throws PersistenceException if the file can't be mapped or its header
+	 * is not the header of this type of model
+	 */
+	protected final ByteBuffer mapRatings() throws PersistenceException {
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+
+		ByteBuffer file;
+		try(FileChannel channel = FileChannel.open(config.getSourceDestFile().toPath(), StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new PersistenceException("model file has the wrong size:" + channel.size());
+			}
+			//the mapping stays valid after the channel is closed
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			throw new PersistenceException("error mapping file",e);
+		}
+
+		int numberOfCells = getNumberOfCells();
+		BinaryModelFormat.checkHeader(file, getModelType(), numberOfCells);
+
+		return file.slice(BinaryModelFormat.HEADER_SIZE, BinaryModelFormat.ratingsSize(numberOfCells));
+	}
+
+	/**
+	 * Get the model type stored in the file header.
+	 * @return one of the model types in BinaryModelFormat
+	 */
+	protected abstract byte getModelType();
+
+	/**
+	 * Get the number of cells in the cell layout of the model.
+	 * @return number of cells including those that can't be rated
+	 */
+	protected abstract int getNumberOfCells();
+
+	/**
+	 * Get the cell of the record in the cell layout of the model.
+	 * @param record record to find the cell for
+	 * @return cell index
+	 */
+	protected abstract int cellIndex(RECORD record);
+
+	/**
+	 * Test if the cell can hold a rating.
+	 * @param cell cell index
+	 * @return true if the cell can be rated
+	 */
+	protected abstract boolean isRateable(int cell);
+
+	/**
+	 * Test if the cell is one of the cells the request asks for. The rating
+	 * of the cell is tested separately.
+	 * @param cell cell index
+	 * @param request compiled form of the request
+	 * @return true if the reference chord and the target or interval of the
+	 * cell are requested
+	 */
+	protected abstract boolean isRequested(int cell, CompiledRecordRequest request);
+
+	/**
+	 * Get the rating held by the record.
+	 *
+	 * we need this method since the records don't share an interface.
+	 * @param record record holding the rating
+	 * @return the rating of the record
+	 */
+	protected abstract ConsonanceRating ratingOf(RECORD record);
+
+	/**
+	 * Create the record for the cell.
+	 * @param cell cell index
+	 * @param rating rating of the cell
+	 * @return record for the cell holding the rating
+	 */
+	protected abstract RECORD createRecord(int cell, ConsonanceRating rating);
+
+	/**
+	 * We need to create the model externally since we cannot
+	 * call the constructor of the model directly through generics.
+	 *
+	 * @return empty model of the required type.
+	 */
+	protected abstract MODEL createEmptyModel();
+}
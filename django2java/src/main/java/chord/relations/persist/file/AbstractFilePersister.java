@@ -1,9 +1,11 @@
 package chord.relations.persist.file;
 
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.util.Scanner;
-import java.util.Set;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 
 import chord.relations.RatingModel;
 import chord.relations.persist.PersistModelStrategy;
@@ -15,8 +17,13 @@ import chord.relations.request.AbstractRecordRequest;
  * Abstract class used for file persistence of models.
  * 
  * To use, overwrite getFileTypeSignifier(), createEmptyModel(),
- * and createRecordFromString()....follow the comments and you should
+ * readRecord() and writeRecord()....follow the comments and you should
  * be good.
+ *
+ * The files are read and written with TextModelReader and TextModelWriter,
+ * which parse and format the records in place instead of going through
+ * strings. The files are the same as printing createPersistenceString
+ * for every record.
  * 
  * All three of the generics should go together...
  * i.e. NoteConsonanceRecord,NoteConsonanceRecordRequest, NoteConsonanceModel
@@ -69,7 +76,7 @@ public abstract class AbstractFilePersister<
 	}
 
 	@Override
-	public final void save(MODEL model) throws PersistenceException {
+	public final void save(RatingModel<RECORD,REQUEST> model) throws PersistenceException {
 		if(model == null) {
 			throw new NullPointerException("model may not be null");
 		}
@@ -80,17 +87,22 @@ public abstract class AbstractFilePersister<
 			throw new IllegalStateException("config has not been initialized");
 		}
 
-		try(PrintWriter modelWriter = new PrintWriter(config.getSourceDestFile())){
-			
-			modelWriter.println(getFileTypeSignifier());
+		//write next to the file and move it into place so that a save
+		//that fails part way doesn't leave half of the model behind
+		try {
+			AtomicFileWriter.replace(config.getSourceDestFile().toPath(), out -> {
+				TextModelWriter modelWriter = new TextModelWriter(out);
+				modelWriter.writeLine(getFileTypeSignifier());
 
-			Set<RECORD> recordsToSave = model.getRecords(request);
-			
-			for(RECORD record : recordsToSave) {
-				modelWriter.println(record.createPersistenceString());
-			}
-			
-		} catch (FileNotFoundException e) {
+				//stream the records so that we don't have to build a set
+				//containing the whole model just to write it out
+				Iterator<RECORD> records = model.streamRecords(request).iterator();
+				while(records.hasNext()) {
+					writeRecord(modelWriter, records.next());
+				}
+				modelWriter.flush();
+			});
+		} catch (IOException e) {
 			throw new PersistenceException("error saving to file",e);
 		}
 
@@ -98,28 +110,43 @@ public abstract class AbstractFilePersister<
 
 	@Override
 	public final MODEL load() throws PersistenceException {
+		MODEL model = createEmptyModel();
+
+		List<RECORD> records = new ArrayList<>();
+		readRecords(records::add);
+
+		//add everything at once so the model can check the records
+		//once and write them in cell order
+		model.addRatings(records);
+
+		return model;
+	}
+
+	/**
+	 * Read the records of the file one at a time without building a model,
+	 * used when the records are only passed through, as when merging files.
+	 * @param consumer consumer given every record of the file in order
+	 * @throws PersistenceException if the file can't be read or isn't a
+	 * model file of this type
+	 */
+	final void readRecords(Consumer<? super RECORD> consumer) throws PersistenceException {
 		if(config == null) {
 			throw new IllegalStateException("config has not been initialized");
 		}
-		
-		MODEL model = createEmptyModel();
-		
-		try(Scanner fileScanner = new Scanner(config.getSourceDestFile())){
-			String line = fileScanner.nextLine();
-			if( !line.equals(getFileTypeSignifier()) ) {
+
+		try(TextModelReader modelReader = new TextModelReader(new FileInputStream(config.getSourceDestFile()))){
+			String line = modelReader.readLine();
+			if( !getFileTypeSignifier().equals(line) ) {
 				throw new PersistenceException("Incorrect file type, fileSignifier:"+line);
 			}
-			
-			while(fileScanner.hasNextLine()) {
-				line = fileScanner.nextLine();
-				model.addRating(createRecordFromString(line));
+
+			while(modelReader.nextRecord()) {
+				consumer.accept(readRecord(modelReader));
 			}
-			
-		} catch (FileNotFoundException e) {
+
+		} catch (IOException e) {
 			throw new PersistenceException("error loading from file",e);
 		}
-
-		return model;
 	}
 	
 	/**
@@ -143,15 +170,25 @@ public abstract class AbstractFilePersister<
 	protected abstract MODEL createEmptyModel();
 	
 	/**
-	 * Create the record from the persisted string.
+	 * Create the record from the fields of the current line of the reader.
+	 * 
+	 * The fields are in the same order as in createPersistenceString
+	 * of the record.
 	 * 
-	 * we need this method since we cannot call the
-	 * static methods directly using generics.
+	 * @param reader reader positioned on the line of the record
+	 * @return record representing the fields of the line
+	 * @throws PersistenceException if the line is not a valid record
+	 */
+	protected abstract RECORD readRecord(TextModelReader reader) throws PersistenceException;
+	
+	/**
+	 * Write the record as a single line, exactly as createPersistenceString
+	 * of the record followed by a line separator.
 	 * 
-	 * @param persistedString string containing the
-	 * data required to create the record.
-	 * @return record representing the data in the persistedString
+	 * @param writer writer to write the line to
+	 * @param record record to write
+	 * @throws IOException if the line can't be written
 	 */
-	protected abstract RECORD createRecordFromString(String persistedString);
+	protected abstract void writeRecord(TextModelWriter writer, RECORD record) throws IOException;
 
 }
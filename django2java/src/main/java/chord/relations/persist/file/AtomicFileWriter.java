@@ -0,0 +1,98 @@
+package chord.relations.persist.file;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * Replaces files so that a crash or a failed save leaves either the old
+ * file or the new one and never a half written file.
+ *
+ * The contents are written to a temporary file next to the destination,
+ * forced to disk and moved over the destination in one step. Processes
+ * that have the old file open or mapped keep reading the old file.
+ *
+ * Temporary files are only readable by their owner, so the permissions
+ * of the destination are copied to the temporary file before the move,
+ * otherwise every save would make the file private.
+ * @author DAD
+ *
+ */
+final class AtomicFileWriter {
+
+	/**
+	 * Writes the contents of the new file.
+	 */
+	@FunctionalInterface
+	interface Contents {
+		/**
+		 * Write the whole file to the stream. The stream must not be
+		 * closed, anything buffered must be flushed to it.
+		 * @param out stream of the temporary file
+		 * @throws IOException if the file can't be written
+		 */
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	private AtomicFileWriter() {
+		//static methods only
+	}
+
+	/**
+	 * Replace the destination with the contents.
+	 * @param destination file to replace, it does not have to exist
+	 * @param contents writes the new file
+	 * @throws IOException if the file can't be written, the destination
+	 * is unchanged
+	 */
+	static void replace(Path destination, Contents contents) throws IOException {
+		Path absoluteDestination = destination.toAbsolutePath();
+		Path tempFile = Files.createTempFile(
+				absoluteDestination.getParent(), 
+				absoluteDestination.getFileName().toString(), 
+				".tmp");
+		try {
+			copyPermissions(absoluteDestination, tempFile);
+			try(FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+				contents.writeTo(Channels.newOutputStream(channel));
+				channel.force(true);
+			}
+			try {
+				Files.move(tempFile, absoluteDestination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, absoluteDestination, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Give the target the POSIX permissions of the source. Nothing is
+	 * copied if the source doesn't exist or the file system has no POSIX
+	 * permissions.
+	 * @param source file to copy the permissions from
+	 * @param target file to set the permissions of
+	 * @throws IOException if the permissions can't be read or set
+	 */
+	private static void copyPermissions(Path source, Path target) throws IOException {
+		PosixFileAttributeView sourceView = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+		PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+		if(sourceView == null || targetView == null) {
+			return;
+		}
+		try {
+			targetView.setPermissions(sourceView.readAttributes().permissions());
+		} catch (NoSuchFileException e) {
+			//a new file keeps the permissions of the temporary file
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package chord.relations.persist.file;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ScaleCellLayout;
+import chord.relations.persist.PersistenceException;
+
+/**
+ * Layout of the binary model files.
+ *
+ * The file is a fixed size header followed by the rating of every cell
+ * of the model's cell layout, 4 bits per cell, two cells per byte(the even
+ * cell in the low bits). Cells are in ordinal order and unrated cells hold
+ * PackedRatingArray.NOT_RATED so the position of every rating is known
+ * without reading anything but the header.
+ *
+ * Header(big endian)
+ * <pre>
+ *  0 int   magic number "CHRD"
+ *  4 short format version
+ *  6 byte  model type
+ *  7 byte  bits per cell
+ *  8 short number of chord signatures
+ * 10 short number of scale signatures
+ * 12 short number of intervals in the first octave
+ * 14 short reserved, always 0
+ * 16 int   number of cells
+ * 20 int   CRC32 of the ratings
+ * </pre>
+ * The table sizes are stored so that a file written before a signature
+ * was added to one of the enums is rejected instead of being read with
+ * every cell shifted.
+ * @author DAD
+ *
+ */
+public final class BinaryModelFormat {
+
+	public static final int MAGIC_NUMBER = 0x43485244;
+	public static final short FORMAT_VERSION = 1;
+	public static final int HEADER_SIZE = 24;
+	public static final int BITS_PER_CELL = 4;
+
+	public static final byte CHORD_CHANGE_MODEL = 1;
+	public static final byte NOTE_MODEL = 2;
+	public static final byte SCALE_MODEL = 3;
+
+	private static final int CHECKSUM_OFFSET = 20;
+	private static final ConsonanceRating[] RATINGS = ConsonanceRating.values();
+
+	private BinaryModelFormat() {
+		//static methods only
+	}
+
+	/**
+	 * Get the number of bytes holding the ratings of the cells.
+	 * @param numberOfCells number of cells in the model's layout
+	 * @return size of the ratings section of the file
+	 */
+	public static int ratingsSize(int numberOfCells) {
+		return (numberOfCells + 1) / 2;
+	}
+
+	/**
+	 * Get the size of a file holding a model with the given number of cells.
+	 * @param numberOfCells number of cells in the model's layout
+	 * @return size of the file in bytes
+	 */
+	public static int fileSize(int numberOfCells) {
+		return HEADER_SIZE + ratingsSize(numberOfCells);
+	}
+
+	/**
+	 * Get the rating code of the cell.
+	 * @param ratings ratings section of the file, positioned anywhere
+	 * @param ratingsOffset index of the first byte of the ratings in the buffer
+	 * @param cell cell index
+	 * @return code stored for the cell, not checked
+	 */
+	public static int codeAt(ByteBuffer ratings, int ratingsOffset, int cell) {
+		int packedCodes = ratings.get(ratingsOffset + (cell >>> 1));
+		return (cell & 1) == 0 ? packedCodes & 0xF : (packedCodes >>> BITS_PER_CELL) & 0xF;
+	}
+
+	/**
+	 * Store the rating code of the cell in the ratings section.
+	 * @param ratings ratings section of a file
+	 * @param cell cell index
+	 * @param code code to store
+	 */
+	static void setCode(byte[] ratings, int cell, int code) {
+		int index = cell >>> 1;
+		if((cell & 1) == 0) {
+			ratings[index] = (byte)((ratings[index] & 0xF0) | code);
+		}else {
+			ratings[index] = (byte)((ratings[index] & 0x0F) | (code << BITS_PER_CELL));
+		}
+	}
+
+	/**
+	 * Check that the code read from a file is a valid rating code.
+	 * @param code code read from the file
+	 * @param cell cell the code was read for
+	 * @throws PersistenceException if the code is not a rating code
+	 */
+	static void checkCode(int code, int cell) throws PersistenceException {
+		if(code > RATINGS.length) {
+			throw new PersistenceException("invalid rating code " + code + " for cell " + cell);
+		}
+	}
+
+	/**
+	 * Compute the checksum stored in the header.
+	 * @param ratings buffer holding the ratings section
+	 * @param ratingsOffset index of the first byte of the ratings
+	 * @param numberOfCells number of cells in the model's layout
+	 * @return CRC32 of the ratings section
+	 */
+	public static int checksum(ByteBuffer ratings, int ratingsOffset, int numberOfCells) {
+		CRC32 crc = new CRC32();
+		crc.update(ratings.duplicate().position(ratingsOffset).limit(ratingsOffset + ratingsSize(numberOfCells)));
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Get the checksum stored in the header of the file.
+	 * @param file buffer holding at least the header of the file
+	 * @return CRC32 of the ratings as written in the header
+	 */
+	static int storedChecksum(ByteBuffer file) {
+		return file.getInt(CHECKSUM_OFFSET);
+	}
+
+	/**
+	 * Write the header at the start of the buffer.
+	 * @param file buffer holding the whole file, ratings already filled in
+	 * @param modelType type of model saved
+	 * @param numberOfCells number of cells in the model's layout
+	 */
+	static void writeHeader(ByteBuffer file, byte modelType, int numberOfCells) {
+		file.putInt(0, MAGIC_NUMBER);
+		file.putShort(4, FORMAT_VERSION);
+		file.put(6, modelType);
+		file.put(7, (byte)BITS_PER_CELL);
+		file.putShort(8, (short)ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES);
+		file.putShort(10, (short)ScaleCellLayout.NUMBER_OF_SCALE_SIGNATURES);
+		file.putShort(12, (short)ChordChangeCellLayout.NUMBER_OF_INTERVALS);
+		file.putShort(14, (short)0);
+		file.putInt(16, numberOfCells);
+		file.putInt(CHECKSUM_OFFSET, checksum(file, HEADER_SIZE, numberOfCells));
+	}
+
+	/**
+	 * Check the header and the checksum of the file.
+	 * @param file buffer holding the whole file
+	 * @param modelType type of model expected
+	 * @param numberOfCells number of cells the model's layout has
+	 * @throws PersistenceException if the file is not a binary model file
+	 * of the expected type, was written with different signature tables or
+	 * is corrupt
+	 */
+	public static void checkFile(ByteBuffer file, byte modelType, int numberOfCells) throws PersistenceException {
+		checkHeader(file, modelType, numberOfCells);
+		if(file.getInt(CHECKSUM_OFFSET) != checksum(file, HEADER_SIZE, numberOfCells)) {
+			throw new PersistenceException("model file checksum does not match, the file is corrupt");
+		}
+	}
+
+	/**
+	 * Check the header of the file without reading the ratings.
+	 * @param file buffer holding the whole file
+	 * @param modelType type of model expected
+	 * @param numberOfCells number of cells the model's layout has
+	 * @throws PersistenceException if the file is not a binary model file
+	 * of the expected type, was written with different signature tables or
+	 * has the wrong size
+	 */
+	public static void checkHeader(ByteBuffer file, byte modelType, int numberOfCells) throws PersistenceException {
+		if(file.limit() < HEADER_SIZE || file.getInt(0) != MAGIC_NUMBER) {
+			throw new PersistenceException("not a binary model file");
+		}
+		if(file.getShort(4) != FORMAT_VERSION) {
+			throw new PersistenceException("unsupported binary model file version:" + file.getShort(4));
+		}
+		if(file.get(6) != modelType) {
+			throw new PersistenceException("incorrect model type:" + file.get(6));
+		}
+		if(file.get(7) != BITS_PER_CELL ||
+				file.getShort(8) != ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES ||
+				file.getShort(10) != ScaleCellLayout.NUMBER_OF_SCALE_SIGNATURES ||
+				file.getShort(12) != ChordChangeCellLayout.NUMBER_OF_INTERVALS ||
+				file.getInt(16) != numberOfCells) {
+			throw new PersistenceException("model file was written with different signature tables");
+		}
+		if(file.limit() != fileSize(numberOfCells)) {
+			throw new PersistenceException("model file has the wrong size:" + file.limit());
+		}
+	}
+}
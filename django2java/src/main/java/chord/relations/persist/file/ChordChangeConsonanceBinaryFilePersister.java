@@ -0,0 +1,80 @@
+package chord.relations.persist.file;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.MappedChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+public class ChordChangeConsonanceBinaryFilePersister extends
+		AbstractBinaryFilePersister<ChordChangeConsonanceRecord, ChordChangeConsonanceRecordRequest, ChordChangeConsonanceModel> {
+
+	public ChordChangeConsonanceBinaryFilePersister(FileStrategyConfig config,
+			ChordChangeConsonanceRecordRequest request) {
+		super(config, request);
+	}
+
+	/**
+	 * Open the file as a read only model that reads the ratings straight
+	 * out of the mapped file instead of loading them.
+	 *
+	 * Only the header is checked. The checksum is not, since that would
+	 * read every rating, so a corrupt rating is only found when it is read.
+	 * @return model backed by the mapped file
+	 * @throws PersistenceException if the file can't be mapped or is not
+	 * a chord change model file
+	 */
+	public MappedChordChangeConsonanceModel map() throws PersistenceException {
+		return new MappedChordChangeConsonanceModel(mapRatings());
+	}
+
+	@Override
+	protected byte getModelType() {
+		return BinaryModelFormat.CHORD_CHANGE_MODEL;
+	}
+
+	@Override
+	protected int getNumberOfCells() {
+		return ChordChangeCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	protected int cellIndex(ChordChangeConsonanceRecord record) {
+		return ChordChangeCellLayout.cellIndex(record);
+	}
+
+	@Override
+	protected boolean isRateable(int cell) {
+		return ChordChangeCellLayout.isRateable(cell);
+	}
+
+	@Override
+	protected boolean isRequested(int cell, CompiledRecordRequest request) {
+		return request.containsReferenceChord(ChordChangeCellLayout.startOrdinal(cell)) &&
+				request.containsTarget(ChordChangeCellLayout.endOrdinal(cell)) &&
+				request.containsInterval(ChordChangeCellLayout.intervalOrdinal(cell));
+	}
+
+	@Override
+	protected ConsonanceRating ratingOf(ChordChangeConsonanceRecord record) {
+		return record.rating();
+	}
+
+	@Override
+	protected ChordChangeConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell),
+				ChordChangeCellLayout.endChord(cell),
+				ChordChangeCellLayout.interval(cell),
+				rating);
+	}
+
+	@Override
+	protected ChordChangeConsonanceModel createEmptyModel() {
+		return new ChordChangeConsonanceModel();
+	}
+
+}
@@ -1,6 +1,11 @@
 package chord.relations.persist.file;
 
+import java.io.IOException;
+
+import chord.Interval;
+import chord.ident.ChordSignature;
 import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
 import chord.relations.record.ChordChangeConsonanceRecord;
 import chord.relations.request.ChordChangeConsonanceRecordRequest;
 
@@ -8,6 +13,8 @@ public class ChordChangeConsonanceFilePersister extends
 		AbstractFilePersister<ChordChangeConsonanceRecord, ChordChangeConsonanceRecordRequest, ChordChangeConsonanceModel> {
 
 	private static final String CHORD_CHANGE_CONSONANCE_FILE_TYPE_SIGNIFIER = "ChordChangeConsonanceModelFile";
+	private static final EnumNameTable<ChordSignature> CHORD_SIGNATURES = new EnumNameTable<>(ChordSignature.class);
+	private static final EnumNameTable<Interval> INTERVALS = new EnumNameTable<>(Interval.class);
 	
 	
 	public ChordChangeConsonanceFilePersister(FileStrategyConfig config,
@@ -26,8 +33,25 @@ public class ChordChangeConsonanceFilePersister extends
 	}
 
 	@Override
-	protected ChordChangeConsonanceRecord createRecordFromString(String persistedString) {
-		return ChordChangeConsonanceRecord.createRecordFromString(persistedString);
+	protected ChordChangeConsonanceRecord readRecord(TextModelReader reader) throws PersistenceException {
+		reader.checkNumberOfFields(4);
+		return new ChordChangeConsonanceRecord(
+				reader.enumField(0, CHORD_SIGNATURES),
+				reader.enumField(1, CHORD_SIGNATURES),
+				reader.enumField(2, INTERVALS),
+				reader.ratingField(3));
+	}
+
+	@Override
+	protected void writeRecord(TextModelWriter writer, ChordChangeConsonanceRecord record) throws IOException {
+		writer.writeName(record.startChordSignature(), CHORD_SIGNATURES);
+		writer.writeSeparator();
+		writer.writeName(record.endChordSignature(), CHORD_SIGNATURES);
+		writer.writeSeparator();
+		writer.writeName(record.intervalBetweenRoots(), INTERVALS);
+		writer.writeSeparator();
+		writer.writeRating(record.rating());
+		writer.endLine();
 	}
 
 }
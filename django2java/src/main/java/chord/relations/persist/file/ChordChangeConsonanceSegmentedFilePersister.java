@@ -0,0 +1,300 @@
+package chord.relations.persist.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.FileFormatException;
+import chord.relations.PackedRatingArray;
+import chord.relations.RatingModel;
+import chord.relations.SegmentedChordChangeConsonanceModel;
+import chord.relations.SegmentedChordChangeConsonanceModel.SegmentSource;
+import chord.relations.persist.PersistModelStrategy;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Persists chord change models in the segmented files described by
+ * SegmentedModelFormat, with the ratings of each start chord in a segment
+ * of their own.
+ *
+ * load reads the whole file into a ChordChangeConsonanceModel. open only
+ * reads the directory and gives a SegmentedChordChangeConsonanceModel
+ * that reads the segment of a start chord the first time it is queried,
+ * so looking up the chord changes of a few reference chords reads only
+ * their segments.
+ * @author DAD
+ *
+ */
+public class ChordChangeConsonanceSegmentedFilePersister implements PersistModelStrategy<
+	ChordChangeConsonanceRecord,
+	ChordChangeConsonanceRecordRequest,
+	FileStrategyConfig,
+	ChordChangeConsonanceModel> {
+
+	/**
+	 * Number of segments held at once by the models opened with open().
+	 */
+	public static final int DEFAULT_RESIDENT_SEGMENTS = 16;
+
+	private FileStrategyConfig config;
+
+	private ChordChangeConsonanceRecordRequest request;
+
+	public ChordChangeConsonanceSegmentedFilePersister(
+			FileStrategyConfig config,
+			ChordChangeConsonanceRecordRequest request) {
+
+		setRequest(request);
+		configure(config);
+	}
+
+	@Override
+	public final void setRequest(ChordChangeConsonanceRecordRequest request) {
+		if(request == null) {
+			throw new NullPointerException("request may not be null");
+		}
+		if(!request.isInitialized()) {
+			throw new IllegalArgumentException("request must be initialized.");
+		}
+		this.request = request;
+	}
+
+	@Override
+	public final void configure(FileStrategyConfig configParam) {
+		if(configParam == null) {
+			throw new NullPointerException("parameters may not be null");
+		}
+
+		this.config = configParam;
+	}
+
+	/**
+	 * Save the requested ratings. Cells that are not requested or not rated
+	 * are saved as not rated.
+	 */
+	@Override
+	public void save(RatingModel<ChordChangeConsonanceRecord, ChordChangeConsonanceRecordRequest> model) throws PersistenceException {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		if(request == null) {
+			throw new IllegalStateException("request has not been initialized");
+		}
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+
+		byte[][] segments = new byte[SegmentedModelFormat.NUMBER_OF_SEGMENTS][SegmentedModelFormat.SEGMENT_SIZE];
+		int[] numberOfRatings = new int[SegmentedModelFormat.NUMBER_OF_SEGMENTS];
+		model.streamRecords(request).forEach(record -> {
+			int cell = ChordChangeCellLayout.cellIndex(record);
+			int startOrdinal = ChordChangeCellLayout.startOrdinal(cell);
+			BinaryModelFormat.setCode(
+					segments[startOrdinal],
+					cell - startOrdinal * ChordChangeCellLayout.CELLS_PER_START_CHORD,
+					PackedRatingArray.encode(record.rating()));
+			numberOfRatings[startOrdinal]++;
+		});
+		ByteBuffer file = SegmentedModelFormat.createFile(segments, numberOfRatings);
+
+		try {
+			AtomicFileWriter.replace(
+					config.getSourceDestFile().toPath(),
+					out -> out.write(file.array(), 0, file.limit()));
+		} catch (IOException e) {
+			throw new PersistenceException("error saving to file",e);
+		}
+	}
+
+	@Override
+	public ChordChangeConsonanceModel load() throws PersistenceException {
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+
+		ByteBuffer file;
+		try {
+			file = ByteBuffer.wrap(Files.readAllBytes(config.getSourceDestFile().toPath()));
+		} catch (IOException e) {
+			throw new PersistenceException("error loading from file",e);
+		}
+		SegmentedModelFormat.Directory directory = SegmentedModelFormat.readDirectory(file, file.limit());
+
+		//read every segment through a segmented model so the checks are the same
+		List<ChordChangeConsonanceRecord> records;
+		try(SegmentedChordChangeConsonanceModel segmentedModel = new SegmentedChordChangeConsonanceModel(
+				new BufferSegmentSource(directory, file),
+				SegmentedModelFormat.NUMBER_OF_SEGMENTS)) {
+			records = segmentedModel.streamRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords()).toList();
+		} catch (FileFormatException | IOException e) {
+			throw new PersistenceException("error loading from file",e);
+		}
+
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		model.addRatings(records);
+		return model;
+	}
+
+	/**
+	 * Open the file as a read only model that reads the segment of a start
+	 * chord the first time it is queried, holding DEFAULT_RESIDENT_SEGMENTS
+	 * segments at most.
+	 * @return model backed by the file, to be closed when no longer used
+	 * @throws PersistenceException if the file can't be opened or is not
+	 * a segmented chord change model file
+	 */
+	public SegmentedChordChangeConsonanceModel open() throws PersistenceException {
+		return open(DEFAULT_RESIDENT_SEGMENTS);
+	}
+
+	/**
+	 * Open the file as a read only model that reads the segment of a start
+	 * chord the first time it is queried.
+	 *
+	 * Only the header and the directory are read and checked here. A
+	 * segment is checked when it is read, so a corrupt segment is only found
+	 * by the query reading it. The file stays open until the model is
+	 * closed, so a save replacing the file isn't seen by the model.
+	 * @param maximumResidentSegments number of segments held at once
+	 * @return model backed by the file, to be closed when no longer used
+	 * @throws PersistenceException if the file can't be opened or is not
+	 * a segmented chord change model file
+	 */
+	public SegmentedChordChangeConsonanceModel open(int maximumResidentSegments) throws PersistenceException {
+		if(config == null) {
+			throw new IllegalStateException("config has not been initialized");
+		}
+		if(maximumResidentSegments < 1) {
+			throw new IllegalArgumentException("maximumResidentSegments must be at least 1");
+		}
+
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(config.getSourceDestFile().toPath(), StandardOpenOption.READ);
+			ByteBuffer header = ByteBuffer.allocate(SegmentedModelFormat.DIRECTORY_END);
+			readFully(channel, header, 0);
+			SegmentedModelFormat.Directory directory = SegmentedModelFormat.readDirectory(header.flip(), channel.size());
+
+			SegmentedChordChangeConsonanceModel model = new SegmentedChordChangeConsonanceModel(
+					new FileSegmentSource(directory, channel),
+					maximumResidentSegments);
+			channel = null;
+			return model;
+		} catch (IOException e) {
+			throw new PersistenceException("error opening file",e);
+		} finally {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					//the open failed already, that is the error reported
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read from the channel until the buffer is full or the file ends.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if(read < 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Segments of a file, found through its directory.
+	 */
+	private abstract static class DirectorySegmentSource implements SegmentSource {
+
+		private final SegmentedModelFormat.Directory directory;
+
+		DirectorySegmentSource(SegmentedModelFormat.Directory directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public int numberOfRatings(int startOrdinal) {
+			return directory.numberOfRatings()[startOrdinal];
+		}
+
+		@Override
+		public byte[] readSegment(int startOrdinal) {
+			byte[] segment = new byte[SegmentedModelFormat.SEGMENT_SIZE];
+			readBytes(directory.offsets()[startOrdinal], segment);
+			SegmentedModelFormat.checkSegment(segment, directory, startOrdinal);
+			return segment;
+		}
+
+		/**
+		 * Fill the array with the bytes of the file from the offset on.
+		 */
+		abstract void readBytes(int offset, byte[] bytes);
+	}
+
+	/**
+	 * Segments of a file read into memory.
+	 */
+	private static final class BufferSegmentSource extends DirectorySegmentSource {
+
+		private final ByteBuffer file;
+
+		BufferSegmentSource(SegmentedModelFormat.Directory directory, ByteBuffer file) {
+			super(directory);
+			this.file = file;
+		}
+
+		@Override
+		void readBytes(int offset, byte[] bytes) {
+			file.get(offset, bytes);
+		}
+
+		@Override
+		public void close() {
+			//nothing to close
+		}
+	}
+
+	/**
+	 * Segments of an open file, read with positional reads so that the
+	 * channel can be shared by threads.
+	 */
+	private static final class FileSegmentSource extends DirectorySegmentSource {
+
+		private final FileChannel channel;
+
+		FileSegmentSource(SegmentedModelFormat.Directory directory, FileChannel channel) {
+			super(directory);
+			this.channel = channel;
+		}
+
+		@Override
+		void readBytes(int offset, byte[] bytes) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			try {
+				readFully(channel, buffer, offset);
+			} catch (IOException e) {
+				throw new UncheckedIOException("error reading segment", e);
+			}
+			if(buffer.hasRemaining()) {
+				throw new FileFormatException("model file ends inside a segment");
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package chord.relations.persist.file;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.PackedRatingArray;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Merges the chord change model files of many raters into one consensus
+ * model.
+ *
+ * The files are read at the same time on the common fork join pool. No
+ * source model is built, each record read is counted straight into a tally
+ * holding, for every cell, how many raters gave it each rating. Tallies of
+ * files read on different threads are added together as the tasks join,
+ * so only a few tallies exist at once however many files are merged. The
+ * merged rating of each cell is then picked from its tally by the Rule,
+ * one start chord at a time in parallel.
+ *
+ * Cells no rater rated are left unrated. If a file rates a cell more than
+ * once, the last rating in the file is the one counted, as when it is loaded.
+ * @author DAD
+ *
+ */
+public final class ChordChangeModelMerger {
+
+	private static final int NUMBER_OF_RATINGS = ConsonanceRating.values().length;
+
+	/**
+	 * Number of leaf tasks made per thread of the pool, more than one so
+	 * that a thread that gets small files can pick up more work.
+	 */
+	private static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * How the ratings the raters gave a cell are combined into one.
+	 */
+	public enum Rule {
+		/**
+		 * Mean of the ratings, counting VERY_BAD as 0 up to VERY_GOOD as 4,
+		 * rounded to the nearest rating with halves rounded up.
+		 */
+		MEAN {
+			@Override
+			int resolve(int[] counts, int offset, int numberOfRatings) {
+				long sum = 0;
+				for(int ordinal = 0; ordinal < NUMBER_OF_RATINGS; ordinal++) {
+					sum += (long)ordinal * counts[offset + ordinal];
+				}
+				return (int)((2 * sum + numberOfRatings) / (2L * numberOfRatings));
+			}
+		},
+		/**
+		 * Median of the ratings, the lower of the two middle ratings when
+		 * the number of ratings is even.
+		 */
+		MEDIAN {
+			@Override
+			int resolve(int[] counts, int offset, int numberOfRatings) {
+				int middle = (numberOfRatings + 1) / 2;
+				int seen = 0;
+				for(int ordinal = 0; ordinal < NUMBER_OF_RATINGS; ordinal++) {
+					seen += counts[offset + ordinal];
+					if(seen >= middle) {
+						return ordinal;
+					}
+				}
+				throw new IllegalStateException("tally does not hold the number of ratings");
+			}
+		},
+		/**
+		 * The rating given most often. A tie goes to the lower rating so
+		 * that a disputed chord change isn't favoured.
+		 */
+		MAJORITY {
+			@Override
+			int resolve(int[] counts, int offset, int numberOfRatings) {
+				int best = 0;
+				for(int ordinal = 1; ordinal < NUMBER_OF_RATINGS; ordinal++) {
+					if(counts[offset + ordinal] > counts[offset + best]) {
+						best = ordinal;
+					}
+				}
+				return best;
+			}
+		};
+
+		/**
+		 * Pick the merged rating of a cell.
+		 * @param counts tally of every cell
+		 * @param offset index of the count of the first rating of the cell
+		 * @param numberOfRatings number of ratings of the cell, at least one
+		 * @return ordinal of the merged rating
+		 */
+		abstract int resolve(int[] counts, int offset, int numberOfRatings);
+	}
+
+	/**
+	 * The merged model with the tally it was made from, used for the
+	 * statistics of each cell.
+	 */
+	public static final class MergedModel {
+
+		private final ChordChangeConsonanceModel model;
+		private final int[] counts;
+		//merged rating code of every cell
+		private final byte[] codes;
+		private final int numberOfFiles;
+
+		private MergedModel(ChordChangeConsonanceModel model, int[] counts, byte[] codes, int numberOfFiles) {
+			this.model = model;
+			this.counts = counts;
+			this.codes = codes;
+			this.numberOfFiles = numberOfFiles;
+		}
+
+		/**
+		 * @return the consensus model
+		 */
+		public ChordChangeConsonanceModel getModel() {
+			return model;
+		}
+
+		/**
+		 * @return number of files merged
+		 */
+		public int getNumberOfFiles() {
+			return numberOfFiles;
+		}
+
+		/**
+		 * Get the merged rating of the cell.
+		 * @param cell cell of ChordChangeCellLayout
+		 * @return merged rating, null if nobody rated the cell
+		 */
+		public ConsonanceRating getMergedRating(int cell) {
+			checkCell(cell);
+			return PackedRatingArray.decode(codes[cell]);
+		}
+
+		/**
+		 * Get the number of raters that rated the cell.
+		 * @param cell cell of ChordChangeCellLayout
+		 * @return number of ratings
+		 */
+		public int getNumberOfRatings(int cell) {
+			int offset = offset(cell);
+			int numberOfRatings = 0;
+			for(int ordinal = 0; ordinal < NUMBER_OF_RATINGS; ordinal++) {
+				numberOfRatings += counts[offset + ordinal];
+			}
+			return numberOfRatings;
+		}
+
+		/**
+		 * Get the number of raters that gave the cell the rating.
+		 * @param cell cell of ChordChangeCellLayout
+		 * @param rating rating to count, may not be null
+		 * @return number of raters
+		 */
+		public int getNumberOfRatings(int cell, ConsonanceRating rating) {
+			if(rating == null) {
+				throw new NullPointerException("rating may not be null");
+			}
+			return counts[offset(cell) + rating.ordinal()];
+		}
+
+		/**
+		 * Get the share of the raters of the cell that gave it its merged rating.
+		 * @param cell cell of ChordChangeCellLayout
+		 * @return agreement from 0 to 1, 0 if nobody rated the cell
+		 */
+		public double getAgreement(int cell) {
+			int numberOfRatings = getNumberOfRatings(cell);
+			if(numberOfRatings == 0) {
+				return 0;
+			}
+			return (double)counts[offset(cell) + codes[cell] - 1] / numberOfRatings;
+		}
+
+		private static int offset(int cell) {
+			checkCell(cell);
+			return cell * NUMBER_OF_RATINGS;
+		}
+
+		private static void checkCell(int cell) {
+			if(cell < 0 || cell >= ChordChangeCellLayout.NUMBER_OF_CELLS) {
+				throw new IndexOutOfBoundsException("cell " + cell + " is not in the layout");
+			}
+		}
+	}
+
+	private final Rule rule;
+
+	/**
+	 * Create a merger.
+	 * @param rule how the ratings of a cell are combined
+	 */
+	public ChordChangeModelMerger(Rule rule) {
+		if(rule == null) {
+			throw new NullPointerException("rule may not be null");
+		}
+		this.rule = rule;
+	}
+
+	/**
+	 * Merge the chord change text model files.
+	 * @param files files written by the ChordChangeConsonanceFilePersister,
+	 * may not be empty
+	 * @return the merged model and its statistics
+	 * @throws PersistenceException if a file can't be read
+	 */
+	public MergedModel merge(List<File> files) throws PersistenceException {
+		if(files == null) {
+			throw new NullPointerException("files may not be null");
+		}
+		if(files.isEmpty()) {
+			throw new IllegalArgumentException("files may not be empty");
+		}
+		List<File> sources = List.copyOf(files);
+
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int leafSize = Math.max(1, sources.size() / (pool.getParallelism() * TASKS_PER_THREAD));
+		int[] counts;
+		try {
+			counts = pool.invoke(new TallyTask(sources, 0, sources.size(), leafSize));
+		} catch (RuntimeException e) {
+			//the pool may rethrow a copy of the failure with the original as its cause
+			for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if(cause instanceof PersistenceException persistenceException) {
+					throw persistenceException;
+				}
+			}
+			throw e;
+		}
+
+		byte[] codes = resolve(counts);
+		return new MergedModel(createModel(codes), counts, codes, sources.size());
+	}
+
+	private byte[] resolve(int[] counts) {
+		byte[] codes = new byte[ChordChangeCellLayout.NUMBER_OF_CELLS];
+		IntStream.range(0, ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES).parallel().forEach(startOrdinal -> {
+			int firstCell = startOrdinal * ChordChangeCellLayout.CELLS_PER_START_CHORD;
+			int endCell = firstCell + ChordChangeCellLayout.CELLS_PER_START_CHORD;
+			for(int cell = firstCell; cell < endCell; cell++) {
+				int offset = cell * NUMBER_OF_RATINGS;
+				int numberOfRatings = 0;
+				for(int ordinal = 0; ordinal < NUMBER_OF_RATINGS; ordinal++) {
+					numberOfRatings += counts[offset + ordinal];
+				}
+				if(numberOfRatings > 0) {
+					codes[cell] = (byte)(rule.resolve(counts, offset, numberOfRatings) + 1);
+				}
+			}
+		});
+		return codes;
+	}
+
+	private static ChordChangeConsonanceModel createModel(byte[] codes) {
+		List<ChordChangeConsonanceRecord> records = new ArrayList<>();
+		for(int cell = 0; cell < codes.length; cell++) {
+			if(codes[cell] != PackedRatingArray.NOT_RATED) {
+				records.add(new ChordChangeConsonanceRecord(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						PackedRatingArray.decode(codes[cell])));
+			}
+		}
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		model.addRatings(records);
+		return model;
+	}
+
+	/**
+	 * Tallies the files from..to, splitting the range in two until it is
+	 * no larger than the leaf size.
+	 */
+	private static final class TallyTask extends RecursiveTask<int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> files;
+		private final int from;
+		private final int to;
+		private final int leafSize;
+
+		TallyTask(List<File> files, int from, int to, int leafSize) {
+			this.files = files;
+			this.from = from;
+			this.to = to;
+			this.leafSize = leafSize;
+		}
+
+		@Override
+		protected int[] compute() {
+			if(to - from <= leafSize) {
+				return tallyFiles();
+			}
+			int middle = (from + to) >>> 1;
+			TallyTask left = new TallyTask(files, from, middle, leafSize);
+			left.fork();
+			int[] counts = new TallyTask(files, middle, to, leafSize).compute();
+			int[] leftCounts = left.join();
+			for(int i = 0; i < counts.length; i++) {
+				counts[i] += leftCounts[i];
+			}
+			return counts;
+		}
+
+		private int[] tallyFiles() {
+			int[] counts = new int[ChordChangeCellLayout.NUMBER_OF_CELLS * NUMBER_OF_RATINGS];
+			//rating code of every cell of the file being read, so a cell
+			//rated twice in a file is only counted once
+			byte[] codes = new byte[ChordChangeCellLayout.NUMBER_OF_CELLS];
+			ChordChangeConsonanceRecordRequest request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+
+			for(int i = from; i < to; i++) {
+				Arrays.fill(codes, (byte)PackedRatingArray.NOT_RATED);
+				ChordChangeConsonanceFilePersister persister =
+						new ChordChangeConsonanceFilePersister(new FileStrategyConfig(files.get(i)), request);
+				try {
+					persister.readRecords(record -> {
+						if(record.isRated()) {
+							codes[ChordChangeCellLayout.cellIndex(record)] = (byte)PackedRatingArray.encode(record.rating());
+						}
+					});
+				} catch (PersistenceException e) {
+					throw new MergeFailure(files.get(i), e);
+				}
+
+				for(int cell = 0; cell < codes.length; cell++) {
+					if(codes[cell] != PackedRatingArray.NOT_RATED) {
+						counts[cell * NUMBER_OF_RATINGS + codes[cell] - 1]++;
+					}
+				}
+			}
+			return counts;
+		}
+	}
+
+	/**
+	 * Carries a PersistenceException out of a fork join task.
+	 */
+	private static final class MergeFailure extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		MergeFailure(File file, PersistenceException cause) {
+			super("error reading " + file, cause);
+		}
+	}
+}
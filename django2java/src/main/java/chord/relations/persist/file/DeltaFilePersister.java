@@ -0,0 +1,410 @@
+package chord.relations.persist.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import chord.ConsonanceRating;
+import chord.relations.DirtyCellTracking;
+import chord.relations.PackedRatingArray;
+import chord.relations.RatingModel;
+import chord.relations.persist.PersistModelStrategy;
+import chord.relations.persist.PersistenceException;
+import chord.relations.request.AbstractRecordRequest;
+import chord.relations.request.CompiledRecordRequest;
+
+/**
+ * Persister that saves only the cells that changed since the last save
+ * to a delta file next to a binary snapshot of the model.
+ *
+ * The snapshot is written by the given AbstractBinaryFilePersister. When
+ * the model saved is the model last loaded or saved by this persister and
+ * it implements DirtyCellTracking, only its dirty cells are looked up and
+ * the delta file is rewritten with every cell changed since the snapshot,
+ * so the cost of a save depends on the number of changes and not on the
+ * size of the model. Any other model is saved as a full snapshot.
+ *
+ * Once the delta holds more than consolidationThreshold cells, or would be
+ * no smaller than the snapshot, the model is consolidated: a new snapshot is
+ * written and the delta file is deleted.
+ *
+ * Delta file(big endian)
+ * <pre>
+ *  0 int   magic number "CDLT"
+ *  4 short format version
+ *  6 byte  model type, as in BinaryModelFormat
+ *  7 byte  reserved, always 0
+ *  8 int   checksum of the snapshot the delta applies to
+ * 12 int   number of entries
+ * 16 int[] entries, cell &lt;&lt; 4 | rating code, in cell order
+ *    int   CRC32 of everything before it
+ * </pre>
+ * The delta file is replaced atomically. If the program stops after a new
+ * snapshot was written but before the old delta was deleted, the checksum
+ * of the snapshot no longer matches the delta and the delta is dropped,
+ * since the snapshot already holds newer ratings.
+ * @author DAD
+ *
+ * @param <RECORD> type of record to use
+ * @param <REQUEST> type of request to use
+ * @param <MODEL> type of model to use
+ */
+public final class DeltaFilePersister<
+	RECORD,
+	REQUEST extends AbstractRecordRequest,
+	MODEL extends RatingModel<RECORD,REQUEST>>
+	implements PersistModelStrategy<
+	RECORD,
+	REQUEST,
+	FileStrategyConfig,
+	MODEL> {
+
+	public static final int DEFAULT_CONSOLIDATION_THRESHOLD = 1024;
+
+	static final int DELTA_MAGIC_NUMBER = 0x43444C54;
+	static final short DELTA_VERSION = 1;
+	static final int DELTA_HEADER_SIZE = 16;
+
+	static final String DELTA_SUFFIX = ".delta";
+
+	private static final int BASE_CHECKSUM_OFFSET = 8;
+	private static final int NUMBER_OF_ENTRIES_OFFSET = 12;
+
+	private static final int CODE_BITS = 4;
+	private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+	private final AbstractBinaryFilePersister<RECORD,REQUEST,MODEL> snapshotPersister;
+
+	private final int consolidationThreshold;
+
+	//everything below is guarded by this
+
+	/**
+	 * Model whose dirty cells are the changes since the last save, null
+	 * if the next save must write a full snapshot.
+	 */
+	private RatingModel<RECORD,REQUEST> trackedModel;
+
+	/**
+	 * Checksum of the snapshot the delta applies to.
+	 */
+	private int baseChecksum;
+
+	/**
+	 * Cells changed since the snapshot and their rating codes, only the
+	 * codes of the cells set in deltaCells are used.
+	 */
+	private final BitSet deltaCells;
+	private final PackedRatingArray deltaCodes;
+
+	/**
+	 * Create a delta persister.
+	 * @param snapshotPersister persister used to write and read the snapshot,
+	 * its config and request are the ones used by this persister
+	 * @param consolidationThreshold number of changed cells the delta may hold
+	 * before a full snapshot is written
+	 */
+	public DeltaFilePersister(
+			AbstractBinaryFilePersister<RECORD,REQUEST,MODEL> snapshotPersister,
+			int consolidationThreshold) {
+		if(snapshotPersister == null) {
+			throw new NullPointerException("snapshot persister may not be null");
+		}
+		if(consolidationThreshold < 1) {
+			throw new IllegalArgumentException("consolidation threshold must be positive");
+		}
+		this.snapshotPersister = snapshotPersister;
+		this.consolidationThreshold = consolidationThreshold;
+		this.deltaCells = new BitSet(snapshotPersister.getNumberOfCells());
+		this.deltaCodes = new PackedRatingArray(snapshotPersister.getNumberOfCells());
+	}
+
+	/**
+	 * Set the request, the next save writes a full snapshot.
+	 */
+	@Override
+	public synchronized void setRequest(REQUEST request) {
+		snapshotPersister.setRequest(request);
+		forgetDelta();
+	}
+
+	/**
+	 * Set the files to use, the next save writes a full snapshot.
+	 */
+	@Override
+	public synchronized void configure(FileStrategyConfig configParam) {
+		snapshotPersister.configure(configParam);
+		forgetDelta();
+	}
+
+	/**
+	 * Load the snapshot and apply the delta to it. A missing snapshot is
+	 * an empty model.
+	 */
+	@Override
+	public synchronized MODEL load() throws PersistenceException {
+		forgetDelta();
+
+		if( !Files.exists(snapshotPath())) {
+			if(Files.exists(deltaPath())) {
+				throw new PersistenceException("delta file without its snapshot:" + deltaPath());
+			}
+			//nothing to base a delta on until a snapshot is saved
+			return snapshotPersister.createEmptyModel();
+		}
+
+		int snapshotChecksum = readSnapshotChecksum();
+		MODEL model = snapshotPersister.load();
+
+		if(Files.exists(deltaPath())) {
+			ByteBuffer delta = readDelta();
+			if(delta.getInt(BASE_CHECKSUM_OFFSET) == snapshotChecksum) {
+				applyDelta(delta, model);
+			}else {
+				//left behind by a consolidation, the snapshot is newer
+				try {
+					Files.delete(deltaPath());
+				} catch (IOException e) {
+					throw new PersistenceException("error deleting old delta file", e);
+				}
+			}
+		}
+
+		baseChecksum = snapshotChecksum;
+		track(model);
+		return model;
+	}
+
+	/**
+	 * Save the cells changed since the last save if the model is the model
+	 * last loaded or saved, otherwise save a full snapshot. The model must
+	 * not be changed while it is being saved.
+	 */
+	@Override
+	public synchronized void save(RatingModel<RECORD,REQUEST> model) throws PersistenceException {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		if(model != trackedModel) {
+			consolidate(model);
+			return;
+		}
+
+		DirtyCellTracking tracking = (DirtyCellTracking)model;
+		int[] dirtyCells = tracking.getDirtyCells();
+		if(dirtyCells.length == 0) {
+			return;
+		}
+
+		CompiledRecordRequest request = snapshotPersister.getRequest().compile();
+		for(int cell : dirtyCells) {
+			RECORD record = model.getRating(snapshotPersister.createRecord(cell, null));
+			int code = record == null ?
+					PackedRatingArray.NOT_RATED : PackedRatingArray.encode(snapshotPersister.ratingOf(record));
+			//cells that aren't requested are saved as not rated, the same as a full save
+			if( !request.containsRatingCode(code) || !snapshotPersister.isRequested(cell, request)) {
+				code = PackedRatingArray.NOT_RATED;
+			}
+			deltaCells.set(cell);
+			deltaCodes.setCode(cell, code);
+		}
+
+		int deltaEntries = deltaCells.cardinality();
+		if(deltaEntries > consolidationThreshold ||
+				(long)deltaEntries * Integer.BYTES >= BinaryModelFormat.ratingsSize(snapshotPersister.getNumberOfCells())) {
+			consolidate(model);
+			return;
+		}
+
+		writeDelta();
+		tracking.checkpoint();
+	}
+
+	/**
+	 * Get the number of cells held by the delta since the last snapshot.
+	 * @return number of cells in the delta
+	 */
+	public synchronized int getDeltaEntries() {
+		return deltaCells.cardinality();
+	}
+
+	private void forgetDelta() {
+		trackedModel = null;
+		deltaCells.clear();
+	}
+
+	/**
+	 * Start tracking the changes made to the model from now on.
+	 */
+	private void track(RatingModel<RECORD,REQUEST> model) {
+		if(model instanceof DirtyCellTracking tracking) {
+			tracking.checkpoint();
+			trackedModel = model;
+		}else {
+			trackedModel = null;
+		}
+	}
+
+	private Path snapshotPath() {
+		return snapshotPersister.getConfig().getSourceDestFile().toPath().toAbsolutePath();
+	}
+
+	private Path deltaPath() {
+		Path snapshot = snapshotPath();
+		return snapshot.resolveSibling(snapshot.getFileName() + DELTA_SUFFIX);
+	}
+
+	private int readSnapshotChecksum() throws PersistenceException {
+		ByteBuffer header = ByteBuffer.allocate(BinaryModelFormat.HEADER_SIZE);
+		try(FileChannel channel = FileChannel.open(snapshotPath(), StandardOpenOption.READ)) {
+			while(header.hasRemaining() && channel.read(header) >= 0) {
+				//keep reading until the header is full or the file ends
+			}
+		} catch (IOException e) {
+			throw new PersistenceException("error reading snapshot", e);
+		}
+		if(header.hasRemaining()) {
+			throw new PersistenceException("not a binary model file");
+		}
+		return BinaryModelFormat.storedChecksum(header);
+	}
+
+	private static int checksum(ByteBuffer buffer, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, length);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Read the delta file and check it.
+	 * @return the whole delta file
+	 */
+	private ByteBuffer readDelta() throws PersistenceException {
+		ByteBuffer delta;
+		try {
+			delta = ByteBuffer.wrap(Files.readAllBytes(deltaPath()));
+		} catch (IOException e) {
+			throw new PersistenceException("error reading delta file", e);
+		}
+		if(delta.limit() < DELTA_HEADER_SIZE + Integer.BYTES ||
+				delta.getInt(0) != DELTA_MAGIC_NUMBER ||
+				delta.getShort(4) != DELTA_VERSION ||
+				delta.get(6) != snapshotPersister.getModelType()) {
+			throw new PersistenceException("not a delta file for this model:" + deltaPath());
+		}
+		int entries = delta.getInt(NUMBER_OF_ENTRIES_OFFSET);
+		if(entries < 0 || delta.limit() != DELTA_HEADER_SIZE + (long)entries * Integer.BYTES + Integer.BYTES) {
+			throw new PersistenceException("delta file has the wrong size:" + delta.limit());
+		}
+		int checksumOffset = delta.limit() - Integer.BYTES;
+		if(delta.getInt(checksumOffset) != checksum(delta, checksumOffset)) {
+			throw new PersistenceException("delta file checksum does not match, the file is corrupt");
+		}
+		return delta;
+	}
+
+	/**
+	 * Apply the entries of the delta to the model loaded from the snapshot
+	 * and keep them so that later saves write them again.
+	 */
+	private void applyDelta(ByteBuffer delta, MODEL model) throws PersistenceException {
+		int numberOfCells = snapshotPersister.getNumberOfCells();
+		int entries = delta.getInt(NUMBER_OF_ENTRIES_OFFSET);
+
+		List<RECORD> ratingsToAdd = new ArrayList<>();
+		List<RECORD> ratingsToRemove = new ArrayList<>();
+		for(int i = 0; i < entries; i++) {
+			int entry = delta.getInt(DELTA_HEADER_SIZE + i * Integer.BYTES);
+			int cell = entry >>> CODE_BITS;
+			int code = entry & CODE_MASK;
+			if(cell >= numberOfCells) {
+				throw new PersistenceException("delta file holds a cell outside the model:" + cell);
+			}
+			BinaryModelFormat.checkCode(code, cell);
+
+			if(code == PackedRatingArray.NOT_RATED) {
+				ratingsToRemove.add(snapshotPersister.createRecord(cell, null));
+			}else {
+				if( !snapshotPersister.isRateable(cell)) {
+					throw new PersistenceException("rating saved for a cell that can't be rated:" + cell);
+				}
+				ratingsToAdd.add(snapshotPersister.createRecord(cell, PackedRatingArray.decode(code)));
+			}
+			deltaCells.set(cell);
+			deltaCodes.setCode(cell, code);
+		}
+		model.removeRatings(ratingsToRemove);
+		model.addRatings(ratingsToAdd);
+	}
+
+	/**
+	 * Replace the delta file with the cells changed since the snapshot.
+	 */
+	private void writeDelta() throws PersistenceException {
+		int entries = deltaCells.cardinality();
+		ByteBuffer delta = ByteBuffer.allocate(DELTA_HEADER_SIZE + entries * Integer.BYTES + Integer.BYTES);
+		delta.putInt(DELTA_MAGIC_NUMBER);
+		delta.putShort(DELTA_VERSION);
+		delta.put(snapshotPersister.getModelType());
+		delta.put((byte)0);
+		delta.putInt(baseChecksum);
+		delta.putInt(entries);
+		for(int cell = deltaCells.nextSetBit(0); cell >= 0; cell = deltaCells.nextSetBit(cell + 1)) {
+			delta.putInt((cell << CODE_BITS) | deltaCodes.getCode(cell));
+		}
+		delta.putInt(checksum(delta, delta.position()));
+
+		try {
+			AtomicFileWriter.replace(deltaPath(), out -> out.write(delta.array(), 0, delta.limit()));
+		} catch (IOException e) {
+			throw new PersistenceException("error saving delta file", e);
+		}
+	}
+
+	/**
+	 * Write a full snapshot of the model and delete the delta.
+	 */
+	private void consolidate(RatingModel<RECORD,REQUEST> model) throws PersistenceException {
+		int numberOfCells = snapshotPersister.getNumberOfCells();
+		byte[] ratings = new byte[BinaryModelFormat.ratingsSize(numberOfCells)];
+		model.streamRecords(snapshotPersister.getRequest())
+			.forEach(record -> BinaryModelFormat.setCode(
+					ratings,
+					snapshotPersister.cellIndex(record),
+					PackedRatingArray.encode(snapshotPersister.ratingOf(record))));
+		int snapshotChecksum = BinaryModelFormat.checksum(ByteBuffer.wrap(ratings), 0, numberOfCells);
+
+		try {
+			//a delta whose checksum matches the new snapshot would be applied
+			//to it if we stopped before deleting it, the snapshot on disk
+			//already holds the new ratings so the delta can go first
+			if(deltaMatches(snapshotChecksum)) {
+				Files.delete(deltaPath());
+			}
+			snapshotPersister.writeRatings(ratings);
+			Files.deleteIfExists(deltaPath());
+		} catch (IOException e) {
+			throw new PersistenceException("error deleting delta file", e);
+		}
+
+		forgetDelta();
+		baseChecksum = snapshotChecksum;
+		track(model);
+	}
+
+	private boolean deltaMatches(int snapshotChecksum) throws IOException {
+		if( !Files.exists(deltaPath())) {
+			return false;
+		}
+		ByteBuffer delta = ByteBuffer.wrap(Files.readAllBytes(deltaPath()));
+		return delta.limit() < DELTA_HEADER_SIZE ||
+				delta.getInt(BASE_CHECKSUM_OFFSET) == snapshotChecksum;
+	}
+}
@@ -0,0 +1,116 @@
+package chord.relations.persist.file;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lookup table from the names of an enum's constants, as bytes, to the
+ * constants.
+ *
+ * Used by TextModelReader to turn a field of a model file into an enum
+ * constant without creating a String for the field and by TextModelWriter
+ * to write a constant's name without calling toString. The names are
+ * hashed into an open addressing table built once per enum so a lookup
+ * is a hash of the field and usually a single comparison.
+ *
+ * Only enums whose constant names are plain ASCII are supported, which
+ * is every enum stored in the model files.
+ * @author DAD
+ *
+ * @param <E> enum type
+ */
+public final class EnumNameTable<E extends Enum<E>> {
+
+	private final E[] constants;
+
+	private final byte[][] names;
+
+	/**
+	 * Ordinal + 1 of the constant whose name hashes to the slot, 0 for
+	 * an empty slot.
+	 */
+	private final int[] slots;
+
+	private final int slotMask;
+
+	/**
+	 * Create the table for the constants of the enum.
+	 * @param enumClass class of the enum, may not be null
+	 */
+	public EnumNameTable(Class<E> enumClass) {
+		if(enumClass == null) {
+			throw new NullPointerException("enum class may not be null");
+		}
+		this.constants = enumClass.getEnumConstants();
+		this.names = new byte[constants.length][];
+
+		int numberOfSlots = Integer.highestOneBit(Math.max(constants.length, 1) * 4);
+		this.slots = new int[numberOfSlots];
+		this.slotMask = numberOfSlots - 1;
+
+		for(E constant : constants) {
+			String name = constant.name();
+			for(int i = 0; i < name.length(); i++) {
+				if(name.charAt(i) > 0x7F) {
+					throw new IllegalArgumentException("enum constant names must be ASCII:" + name);
+				}
+			}
+			byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+			names[constant.ordinal()] = nameBytes;
+
+			int slot = hash(nameBytes, 0, nameBytes.length) & slotMask;
+			while(slots[slot] != 0) {
+				slot = (slot + 1) & slotMask;
+			}
+			slots[slot] = constant.ordinal() + 1;
+		}
+	}
+
+	private static int hash(byte[] bytes, int from, int to) {
+		int hash = 0;
+		for(int i = from; i < to; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		//spread the high bits since only the low bits pick the slot
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Find the constant whose name is the given range of bytes.
+	 * @param bytes buffer holding the name
+	 * @param from index of the first byte of the name
+	 * @param to index after the last byte of the name
+	 * @return the constant with the name, null if no constant has the name
+	 */
+	public E lookup(byte[] bytes, int from, int to) {
+		int slot = hash(bytes, from, to) & slotMask;
+		int entry;
+		while((entry = slots[slot]) != 0) {
+			byte[] name = names[entry - 1];
+			if(name.length == to - from && regionEquals(name, bytes, from)) {
+				return constants[entry - 1];
+			}
+			slot = (slot + 1) & slotMask;
+		}
+		return null;
+	}
+
+	private static boolean regionEquals(byte[] name, byte[] bytes, int from) {
+		for(int i = 0; i < name.length; i++) {
+			if(name[i] != bytes[from + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the name of the constant as ASCII bytes.
+	 *
+	 * The array is shared, it must not be changed.
+	 * @param constant constant to get the name of, may not be null
+	 * @return bytes of the name of the constant
+	 */
+	byte[] nameBytes(E constant) {
+		return names[constant.ordinal()];
+	}
+}
@@ -0,0 +1,505 @@
+package chord.relations.persist.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+
+import chord.ConsonanceRating;
+import chord.relations.PackedRatingArray;
+import chord.relations.RatingModel;
+import chord.relations.persist.PersistModelStrategy;
+import chord.relations.persist.PersistenceException;
+import chord.relations.persist.RatingJournal;
+import chord.relations.request.AbstractRecordRequest;
+
+/**
+ * Persister that saves every rating as it is made by appending a small
+ * entry to a journal file next to a binary snapshot of the model.
+ *
+ * The snapshot is written by the given AbstractBinaryFilePersister. Each
+ * entry of the journal is the cell and rating code of one change and a
+ * checksum, 8 bytes, forced to disk before ratingAdded/ratingRemoved
+ * return. Loading reads the snapshot and replays the journal over it.
+ * An entry that was only partly written when the program stopped fails
+ * its checksum and it and everything after it is dropped, so at most the
+ * rating being written is lost.
+ *
+ * Once the journal holds compactionThreshold entries it is moved aside to
+ * a ".compacting" file, a new journal is started and the ratings are
+ * written to a new snapshot on a background thread, after which the moved
+ * journal is deleted. Entries set a cell to a rating instead of changing
+ * it, so replaying the moved journal over a snapshot that already holds
+ * its changes gives the same ratings, and a crash at any point of the
+ * compaction loses nothing.
+ *
+ * Usage...
+ * 1.load the model, or save a new model, to open the journal
+ * 2.pass the persister to RatingModelController.setRatingJournal, or call
+ * ratingAdded/ratingRemoved for every change made to the model
+ * 3.close the persister when done
+ * @author DAD
+ *
+ * @param <RECORD> type of record to use
+ * @param <REQUEST> type of request to use
+ * @param <MODEL> type of model to use
+ */
+public final class JournalingFilePersister<
+	RECORD,
+	REQUEST extends AbstractRecordRequest,
+	MODEL extends RatingModel<RECORD,REQUEST>>
+	implements PersistModelStrategy<
+	RECORD,
+	REQUEST,
+	FileStrategyConfig,
+	MODEL>, RatingJournal<RECORD>, Closeable {
+
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+	static final int JOURNAL_MAGIC_NUMBER = 0x434A4E4C;
+	static final short JOURNAL_VERSION = 1;
+	static final int JOURNAL_HEADER_SIZE = 8;
+	static final int ENTRY_SIZE = 8;
+
+	static final String JOURNAL_SUFFIX = ".journal";
+	static final String COMPACTING_SUFFIX = ".compacting";
+
+	private static final int CODE_BITS = 4;
+	private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+	private static final int MAXIMUM_CODE = ConsonanceRating.values().length;
+
+	private final AbstractBinaryFilePersister<RECORD,REQUEST,MODEL> snapshotPersister;
+
+	private final int compactionThreshold;
+
+	//everything below is guarded by this
+
+	/**
+	 * Ratings held by the snapshot and the journal together, used to
+	 * write the next snapshot. null while the journal is closed.
+	 */
+	private PackedRatingArray ratings;
+
+	private FileChannel journal;
+
+	private int journalEntries;
+
+	/**
+	 * Compaction running in the background, null if none was started
+	 * since the journal was opened.
+	 */
+	private FutureTask<Void> compaction;
+
+	private final ByteBuffer entryBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+
+	/**
+	 * Create a journaling persister.
+	 * @param snapshotPersister persister used to write and read the snapshot,
+	 * its config and request are the ones used by this persister
+	 * @param compactionThreshold number of journal entries that start a compaction
+	 */
+	public JournalingFilePersister(
+			AbstractBinaryFilePersister<RECORD,REQUEST,MODEL> snapshotPersister,
+			int compactionThreshold) {
+		if(snapshotPersister == null) {
+			throw new NullPointerException("snapshot persister may not be null");
+		}
+		if(compactionThreshold < 1) {
+			throw new IllegalArgumentException("compaction threshold must be positive");
+		}
+		this.snapshotPersister = snapshotPersister;
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	@Override
+	public synchronized void setRequest(REQUEST request) {
+		checkJournalClosed();
+		snapshotPersister.setRequest(request);
+	}
+
+	@Override
+	public synchronized void configure(FileStrategyConfig configParam) {
+		checkJournalClosed();
+		snapshotPersister.configure(configParam);
+	}
+
+	private void checkJournalClosed() {
+		if(journal != null) {
+			throw new IllegalStateException("the journal must be closed first");
+		}
+	}
+
+	/**
+	 * Load the snapshot, replay the journal over it and open the journal
+	 * for the ratings that follow. A missing snapshot is an empty model.
+	 */
+	@Override
+	public synchronized MODEL load() throws PersistenceException {
+		//the snapshot and the journal moved aside change when a compaction finishes
+		try {
+			waitForCompaction();
+		} catch (PersistenceException e) {
+			//the journal moved aside is still there and is replayed below
+		}
+		closeJournal();
+
+		int numberOfCells = snapshotPersister.getNumberOfCells();
+		MODEL model = Files.exists(snapshotPath()) ?
+				snapshotPersister.load() : snapshotPersister.createEmptyModel();
+
+		PackedRatingArray snapshotRatings = new PackedRatingArray(numberOfCells);
+		model.streamRecords(snapshotPersister.getRequest())
+			.forEach(record -> snapshotRatings.set(
+					snapshotPersister.cellIndex(record),
+					snapshotPersister.ratingOf(record)));
+
+		PackedRatingArray loadedRatings = new PackedRatingArray(snapshotRatings);
+		boolean compactionInterrupted = replay(compactingPath(), loadedRatings) >= 0;
+		long journalLength = replay(journalPath(), loadedRatings);
+
+		List<RECORD> ratingsToAdd = new ArrayList<>();
+		List<RECORD> ratingsToRemove = new ArrayList<>();
+		for(int cell = 0; cell < numberOfCells; cell++) {
+			int code = loadedRatings.getCode(cell);
+			if(code == snapshotRatings.getCode(cell)) {
+				continue;
+			}
+			if(code == PackedRatingArray.NOT_RATED) {
+				ratingsToRemove.add(snapshotPersister.createRecord(cell, null));
+			}else {
+				ratingsToAdd.add(snapshotPersister.createRecord(cell, PackedRatingArray.decode(code)));
+			}
+		}
+		model.removeRatings(ratingsToRemove);
+		model.addRatings(ratingsToAdd);
+
+		ratings = loadedRatings;
+		openJournal(journalLength);
+		if(compactionInterrupted || journalEntries >= compactionThreshold) {
+			compactNow();
+		}
+		return model;
+	}
+
+	/**
+	 * Write a full snapshot of the model, empty the journal and keep the
+	 * journal open for the ratings that follow.
+	 */
+	@Override
+	public synchronized void save(RatingModel<RECORD,REQUEST> model) throws PersistenceException {
+		if(model == null) {
+			throw new NullPointerException("model may not be null");
+		}
+		PackedRatingArray savedRatings = new PackedRatingArray(snapshotPersister.getNumberOfCells());
+		model.streamRecords(snapshotPersister.getRequest())
+			.forEach(record -> savedRatings.set(
+					snapshotPersister.cellIndex(record),
+					snapshotPersister.ratingOf(record)));
+
+		if(journal == null) {
+			//emptied by compactNow once the snapshot is written
+			try {
+				journal = openJournalChannel();
+			} catch (IOException e) {
+				throw new PersistenceException("error opening journal", e);
+			}
+		}
+		ratings = savedRatings;
+		compactNow();
+	}
+
+	@Override
+	public synchronized void ratingAdded(RECORD record) throws PersistenceException {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		ConsonanceRating rating = snapshotPersister.ratingOf(record);
+		if(rating == null) {
+			throw new NullPointerException("rating must not be null");
+		}
+		append(snapshotPersister.cellIndex(record), PackedRatingArray.encode(rating));
+	}
+
+	@Override
+	public synchronized void ratingRemoved(RECORD record) throws PersistenceException {
+		if(record == null) {
+			throw new NullPointerException("record may not be null");
+		}
+		append(snapshotPersister.cellIndex(record), PackedRatingArray.NOT_RATED);
+	}
+
+	/**
+	 * Get the number of entries in the journal since the last compaction.
+	 * @return number of entries in the open journal
+	 */
+	public synchronized int getJournalEntries() {
+		return journalEntries;
+	}
+
+	/**
+	 * Wait for a compaction running in the background to finish. If the
+	 * journal reached the compaction threshold while it ran, the compaction
+	 * that was skipped is started and waited for as well, so the journal
+	 * is below the threshold afterwards.
+	 * @throws PersistenceException if the compaction failed
+	 */
+	public synchronized void awaitCompaction() throws PersistenceException {
+		waitForCompaction();
+		if(journal != null && journalEntries >= compactionThreshold) {
+			startCompaction();
+			waitForCompaction();
+		}
+	}
+
+	/**
+	 * Wait for a compaction running in the background to finish.
+	 */
+	private void waitForCompaction() throws PersistenceException {
+		if(compaction == null) {
+			return;
+		}
+		try {
+			compaction.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("interrupted while waiting for compaction", e);
+		} catch (ExecutionException e) {
+			throw new PersistenceException("error compacting journal", e.getCause());
+		}
+	}
+
+	/**
+	 * Wait for any compaction and close the journal. Ratings can no longer
+	 * be journaled until the model is loaded or saved again.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			waitForCompaction();
+		} catch (PersistenceException e) {
+			//the journal moved aside is kept and replayed on the next load
+			throw new IOException(e.getMessage(), e.getCause());
+		} finally {
+			closeJournal();
+		}
+	}
+
+	private void closeJournal() {
+		if(journal == null) {
+			return;
+		}
+		try {
+			journal.close();
+		} catch (IOException e) {
+			//every entry was already forced to disk
+		}
+		journal = null;
+		ratings = null;
+		compaction = null;
+	}
+
+	private Path snapshotPath() {
+		return snapshotPersister.getConfig().getSourceDestFile().toPath().toAbsolutePath();
+	}
+
+	private Path journalPath() {
+		Path snapshot = snapshotPath();
+		return snapshot.resolveSibling(snapshot.getFileName() + JOURNAL_SUFFIX);
+	}
+
+	private Path compactingPath() {
+		Path snapshot = snapshotPath();
+		return snapshot.resolveSibling(snapshot.getFileName() + JOURNAL_SUFFIX + COMPACTING_SUFFIX);
+	}
+
+	private static int entryChecksum(ByteBuffer entry) {
+		CRC32 crc = new CRC32();
+		crc.update(entry.array(), 0, Integer.BYTES);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Apply the valid entries of the journal to the ratings.
+	 * @return length of the header and the valid entries of the journal,
+	 * -1 if there is no journal
+	 */
+	private long replay(Path journalPath, PackedRatingArray replayedRatings) throws PersistenceException {
+		if( !Files.exists(journalPath)) {
+			return -1;
+		}
+		ByteBuffer journalBuffer;
+		try {
+			journalBuffer = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+		} catch (IOException e) {
+			throw new PersistenceException("error reading journal", e);
+		}
+		if(journalBuffer.limit() < JOURNAL_HEADER_SIZE) {
+			//the header was being written
+			return 0;
+		}
+		if(journalBuffer.getInt(0) != JOURNAL_MAGIC_NUMBER ||
+				journalBuffer.getShort(4) != JOURNAL_VERSION ||
+				journalBuffer.get(6) != snapshotPersister.getModelType()) {
+			throw new PersistenceException("not a journal for this model:" + journalPath);
+		}
+
+		ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+		int position = JOURNAL_HEADER_SIZE;
+		for(; position + ENTRY_SIZE <= journalBuffer.limit(); position += ENTRY_SIZE) {
+			int packedEntry = journalBuffer.getInt(position);
+			entry.putInt(0, packedEntry);
+			if(journalBuffer.getInt(position + Integer.BYTES) != entryChecksum(entry)) {
+				break;
+			}
+			int cell = packedEntry >>> CODE_BITS;
+			int code = packedEntry & CODE_MASK;
+			if(cell >= replayedRatings.size() ||
+					code > MAXIMUM_CODE ||
+					(code != PackedRatingArray.NOT_RATED && !snapshotPersister.isRateable(cell))) {
+				break;
+			}
+			replayedRatings.setCode(cell, code);
+		}
+		return position;
+	}
+
+	/**
+	 * Open the journal, keeping the given length of it.
+	 * @param validLength length of the valid part of the journal, less than
+	 * the header size to start an empty journal
+	 */
+	private void openJournal(long validLength) throws PersistenceException {
+		try {
+			journal = openJournalChannel();
+			if(validLength < JOURNAL_HEADER_SIZE) {
+				startEmptyJournal();
+			}else {
+				//drop anything after the last valid entry
+				journal.truncate(validLength);
+				journal.position(validLength);
+				journal.force(true);
+				journalEntries = (int)((validLength - JOURNAL_HEADER_SIZE) / ENTRY_SIZE);
+			}
+		} catch (IOException e) {
+			closeJournal();
+			throw new PersistenceException("error opening journal", e);
+		}
+		compaction = null;
+	}
+
+	private FileChannel openJournalChannel() throws IOException {
+		return FileChannel.open(journalPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	private void startEmptyJournal() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+		header.putInt(JOURNAL_MAGIC_NUMBER);
+		header.putShort(JOURNAL_VERSION);
+		header.put(snapshotPersister.getModelType());
+		header.put((byte)0);
+		header.flip();
+
+		journal.truncate(0);
+		journal.position(0);
+		while(header.hasRemaining()) {
+			journal.write(header);
+		}
+		journal.force(true);
+		journalEntries = 0;
+	}
+
+	private void append(int cell, int code) throws PersistenceException {
+		if(journal == null) {
+			throw new IllegalStateException("journal is not open, load or save the model first");
+		}
+		entryBuffer.clear();
+		entryBuffer.putInt(0, (cell << CODE_BITS) | code);
+		entryBuffer.putInt(Integer.BYTES, entryChecksum(entryBuffer));
+		try {
+			while(entryBuffer.hasRemaining()) {
+				journal.write(entryBuffer);
+			}
+			journal.force(false);
+		} catch (IOException e) {
+			throw new PersistenceException("error writing to journal", e);
+		}
+		ratings.setCode(cell, code);
+		journalEntries++;
+
+		if(journalEntries >= compactionThreshold) {
+			startCompaction();
+		}
+	}
+
+	private byte[] encodeRatings() {
+		byte[] snapshotRatings = new byte[BinaryModelFormat.ratingsSize(ratings.size())];
+		for(int cell = 0; cell < ratings.size(); cell++) {
+			BinaryModelFormat.setCode(snapshotRatings, cell, ratings.getCode(cell));
+		}
+		return snapshotRatings;
+	}
+
+	/**
+	 * Move the journal aside, start a new one and write the snapshot in
+	 * the background.
+	 */
+	private void startCompaction() throws PersistenceException {
+		if(compaction != null && !compaction.isDone()) {
+			return;
+		}
+		if(Files.exists(compactingPath())) {
+			//the last compaction failed, its journal can't be replaced
+			compactNow();
+			return;
+		}
+		byte[] snapshotRatings = encodeRatings();
+		try {
+			journal.close();
+			journal = null;
+			Files.move(journalPath(), compactingPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			closeJournal();
+			throw new PersistenceException("error starting compaction", e);
+		}
+		openJournal(-1);
+
+		compaction = new FutureTask<>(() -> {
+			snapshotPersister.writeRatings(snapshotRatings);
+			Files.delete(compactingPath());
+			return null;
+		});
+		Thread compactionThread = new Thread(compaction, "rating journal compaction");
+		compactionThread.setDaemon(true);
+		compactionThread.start();
+	}
+
+	/**
+	 * Write the snapshot and empty the journals before returning.
+	 */
+	private void compactNow() throws PersistenceException {
+		//a snapshot still being written holds older ratings than ours
+		try {
+			waitForCompaction();
+		} catch (PersistenceException e) {
+			//its journal is still there and our snapshot replaces it
+		}
+		snapshotPersister.writeRatings(encodeRatings());
+		try {
+			Files.deleteIfExists(compactingPath());
+			startEmptyJournal();
+		} catch (IOException e) {
+			throw new PersistenceException("error emptying journal", e);
+		}
+		compaction = null;
+	}
+}
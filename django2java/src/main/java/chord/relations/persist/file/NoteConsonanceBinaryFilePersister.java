@@ -0,0 +1,64 @@
+package chord.relations.persist.file;
+
+import chord.ConsonanceRating;
+import chord.relations.NoteCellLayout;
+import chord.relations.NoteConsonanceModel;
+import chord.relations.record.NoteConsonanceRecord;
+import chord.relations.request.CompiledRecordRequest;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+public class NoteConsonanceBinaryFilePersister extends
+	AbstractBinaryFilePersister<
+		NoteConsonanceRecord,
+		NoteConsonanceRecordRequest,
+		NoteConsonanceModel> {
+
+	public NoteConsonanceBinaryFilePersister(FileStrategyConfig config, NoteConsonanceRecordRequest request) {
+		super(config, request);
+	}
+
+	@Override
+	protected byte getModelType() {
+		return BinaryModelFormat.NOTE_MODEL;
+	}
+
+	@Override
+	protected int getNumberOfCells() {
+		return NoteCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	protected int cellIndex(NoteConsonanceRecord record) {
+		return NoteCellLayout.cellIndex(record);
+	}
+
+	@Override
+	protected boolean isRateable(int cell) {
+		return NoteCellLayout.isRateable(cell);
+	}
+
+	@Override
+	protected boolean isRequested(int cell, CompiledRecordRequest request) {
+		return request.containsReferenceChord(NoteCellLayout.chordOrdinal(cell)) &&
+				request.containsInterval(NoteCellLayout.intervalOrdinal(cell));
+	}
+
+	@Override
+	protected ConsonanceRating ratingOf(NoteConsonanceRecord record) {
+		return record.rating();
+	}
+
+	@Override
+	protected NoteConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new NoteConsonanceRecord(
+				NoteCellLayout.chord(cell),
+				NoteCellLayout.interval(cell),
+				rating);
+	}
+
+	@Override
+	protected NoteConsonanceModel createEmptyModel() {
+		return new NoteConsonanceModel();
+	}
+
+}
@@ -1,6 +1,11 @@
 package chord.relations.persist.file;
 
+import java.io.IOException;
+
+import chord.Interval;
+import chord.ident.ChordSignature;
 import chord.relations.NoteConsonanceModel;
+import chord.relations.persist.PersistenceException;
 import chord.relations.record.NoteConsonanceRecord;
 import chord.relations.request.NoteConsonanceRecordRequest;
 
@@ -11,6 +16,8 @@ public class NoteConsonanceFilePersister extends
 		NoteConsonanceModel> {
 	
 	private static final String NOTE_CONSONANCE_FILE_TYPE_SIGNIFIER = "NoteConsonanceModelFile";
+	private static final EnumNameTable<ChordSignature> CHORD_SIGNATURES = new EnumNameTable<>(ChordSignature.class);
+	private static final EnumNameTable<Interval> INTERVALS = new EnumNameTable<>(Interval.class);
 	
 	public NoteConsonanceFilePersister(FileStrategyConfig config, NoteConsonanceRecordRequest request) {
 		super(config, request);
@@ -27,7 +34,21 @@ public class NoteConsonanceFilePersister extends
 	}
 
 	@Override
-	protected NoteConsonanceRecord createRecordFromString(String persistedString) {
-		return NoteConsonanceRecord.createRecordFromString(persistedString);
+	protected NoteConsonanceRecord readRecord(TextModelReader reader) throws PersistenceException {
+		reader.checkNumberOfFields(3);
+		return new NoteConsonanceRecord(
+				reader.enumField(0, CHORD_SIGNATURES),
+				reader.enumField(1, INTERVALS),
+				reader.ratingField(2));
+	}
+
+	@Override
+	protected void writeRecord(TextModelWriter writer, NoteConsonanceRecord record) throws IOException {
+		writer.writeName(record.chordSignature(), CHORD_SIGNATURES);
+		writer.writeSeparator();
+		writer.writeName(record.interval(), INTERVALS);
+		writer.writeSeparator();
+		writer.writeRating(record.rating());
+		writer.endLine();
 	}
 }
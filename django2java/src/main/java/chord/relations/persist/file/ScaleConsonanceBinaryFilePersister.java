@@ -0,0 +1,64 @@
+package chord.relations.persist.file;
+
+import chord.ConsonanceRating;
+import chord.relations.ScaleCellLayout;
+import chord.relations.ScaleConsonanceModel;
+import chord.relations.record.ScaleConsonanceRecord;
+import chord.relations.request.CompiledRecordRequest;
+import chord.relations.request.ScaleConsonanceRecordRequest;
+
+public class ScaleConsonanceBinaryFilePersister extends
+	AbstractBinaryFilePersister<
+		ScaleConsonanceRecord,
+		ScaleConsonanceRecordRequest,
+		ScaleConsonanceModel> {
+
+	public ScaleConsonanceBinaryFilePersister(FileStrategyConfig config, ScaleConsonanceRecordRequest request) {
+		super(config, request);
+	}
+
+	@Override
+	protected byte getModelType() {
+		return BinaryModelFormat.SCALE_MODEL;
+	}
+
+	@Override
+	protected int getNumberOfCells() {
+		return ScaleCellLayout.NUMBER_OF_CELLS;
+	}
+
+	@Override
+	protected int cellIndex(ScaleConsonanceRecord record) {
+		return ScaleCellLayout.cellIndex(record);
+	}
+
+	@Override
+	protected boolean isRateable(int cell) {
+		return ScaleCellLayout.isRateable(cell);
+	}
+
+	@Override
+	protected boolean isRequested(int cell, CompiledRecordRequest request) {
+		return request.containsReferenceChord(ScaleCellLayout.chordOrdinal(cell)) &&
+				request.containsTarget(ScaleCellLayout.scaleOrdinal(cell));
+	}
+
+	@Override
+	protected ConsonanceRating ratingOf(ScaleConsonanceRecord record) {
+		return record.rating();
+	}
+
+	@Override
+	protected ScaleConsonanceRecord createRecord(int cell, ConsonanceRating rating) {
+		return new ScaleConsonanceRecord(
+				ScaleCellLayout.chord(cell),
+				ScaleCellLayout.scale(cell),
+				rating);
+	}
+
+	@Override
+	protected ScaleConsonanceModel createEmptyModel() {
+		return new ScaleConsonanceModel();
+	}
+
+}
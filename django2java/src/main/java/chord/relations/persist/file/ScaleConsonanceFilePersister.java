@@ -1,6 +1,11 @@
 package chord.relations.persist.file;
 
+import java.io.IOException;
+
+import chord.ident.ChordSignature;
+import chord.ident.ScaleSignature;
 import chord.relations.ScaleConsonanceModel;
+import chord.relations.persist.PersistenceException;
 import chord.relations.record.ScaleConsonanceRecord;
 import chord.relations.request.ScaleConsonanceRecordRequest;
 
@@ -8,6 +13,8 @@ public class ScaleConsonanceFilePersister
 		extends AbstractFilePersister<ScaleConsonanceRecord, ScaleConsonanceRecordRequest, ScaleConsonanceModel> {
 
 	private static final String SCALE_CONSONANCE_FILE_TYPE_SIGNIFIER = "ScaleConsonanceModelFile";
+	private static final EnumNameTable<ChordSignature> CHORD_SIGNATURES = new EnumNameTable<>(ChordSignature.class);
+	private static final EnumNameTable<ScaleSignature> SCALE_SIGNATURES = new EnumNameTable<>(ScaleSignature.class);
 	
 	public ScaleConsonanceFilePersister(FileStrategyConfig config, ScaleConsonanceRecordRequest request) {
 		super(config, request);
@@ -24,8 +31,22 @@ public class ScaleConsonanceFilePersister
 	}
 
 	@Override
-	protected ScaleConsonanceRecord createRecordFromString(String persistedString) {
-		return ScaleConsonanceRecord.createRecordFromString(persistedString);
+	protected ScaleConsonanceRecord readRecord(TextModelReader reader) throws PersistenceException {
+		reader.checkNumberOfFields(3);
+		return new ScaleConsonanceRecord(
+				reader.enumField(0, CHORD_SIGNATURES),
+				reader.enumField(1, SCALE_SIGNATURES),
+				reader.ratingField(2));
+	}
+
+	@Override
+	protected void writeRecord(TextModelWriter writer, ScaleConsonanceRecord record) throws IOException {
+		writer.writeName(record.chordSignature(), CHORD_SIGNATURES);
+		writer.writeSeparator();
+		writer.writeName(record.scaleSignature(), SCALE_SIGNATURES);
+		writer.writeSeparator();
+		writer.writeRating(record.rating());
+		writer.endLine();
 	}
 
 }
@@ -0,0 +1,185 @@
+package chord.relations.persist.file;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.FileFormatException;
+import chord.relations.SegmentedChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
+
+/**
+ * Layout of the segmented chord change model files.
+ *
+ * The ratings of each start chord are a segment of its own, the cells of
+ * the start chord 4 bits per cell in ChordChangeCellLayout order the same
+ * way as BinaryModelFormat. A directory after the header gives the offset,
+ * number of ratings and checksum of every segment, so the ratings of one
+ * start chord are read without reading the rest of the file. Start chords
+ * without ratings have no segment.
+ *
+ * Header(big endian)
+ * <pre>
+ *  0 int   magic number "CSEG"
+ *  4 short format version
+ *  6 byte  model type, always BinaryModelFormat.CHORD_CHANGE_MODEL
+ *  7 byte  bits per cell
+ *  8 short number of chord signatures, the number of directory entries
+ * 10 short number of intervals in the first octave
+ * 12 int   segment size in bytes
+ * 16 int   CRC32 of the directory
+ * </pre>
+ * Directory entry, one per start chord in ordinal order
+ * <pre>
+ *  0 int   offset of the segment in the file, 0 if it has no ratings
+ *  4 int   number of ratings in the segment
+ *  8 int   CRC32 of the segment
+ * </pre>
+ * @author DAD
+ *
+ */
+final class SegmentedModelFormat {
+
+	static final int MAGIC_NUMBER = 0x43534547;
+	static final short FORMAT_VERSION = 1;
+	static final int HEADER_SIZE = 20;
+	static final int DIRECTORY_ENTRY_SIZE = 12;
+
+	static final int NUMBER_OF_SEGMENTS = ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES;
+	static final int SEGMENT_SIZE = SegmentedChordChangeConsonanceModel.SEGMENT_SIZE;
+
+	/**
+	 * Size of the header and the directory, the part of the file read
+	 * when it is opened.
+	 */
+	static final int DIRECTORY_END = HEADER_SIZE + NUMBER_OF_SEGMENTS * DIRECTORY_ENTRY_SIZE;
+
+	private static final int DIRECTORY_CHECKSUM_OFFSET = 16;
+	//the unison change to the same chord can't be rated
+	private static final int RATEABLE_CELLS_PER_SEGMENT = ChordChangeCellLayout.CELLS_PER_START_CHORD - 1;
+
+	/**
+	 * The directory of a file.
+	 */
+	record Directory(int[] offsets, int[] numberOfRatings, int[] checksums) {
+	}
+
+	private SegmentedModelFormat() {
+		//static methods only
+	}
+
+	/**
+	 * Create the whole file.
+	 * @param segments ratings of every start chord, SEGMENT_SIZE bytes each
+	 * @param numberOfRatings number of ratings of every start chord
+	 * @return buffer holding the file from 0 to its limit
+	 */
+	static ByteBuffer createFile(byte[][] segments, int[] numberOfRatings) {
+		int numberOfStoredSegments = 0;
+		for(int count : numberOfRatings) {
+			if(count > 0) {
+				numberOfStoredSegments++;
+			}
+		}
+
+		ByteBuffer file = ByteBuffer.allocate(DIRECTORY_END + numberOfStoredSegments * SEGMENT_SIZE);
+		file.putInt(0, MAGIC_NUMBER);
+		file.putShort(4, FORMAT_VERSION);
+		file.put(6, BinaryModelFormat.CHORD_CHANGE_MODEL);
+		file.put(7, (byte)BinaryModelFormat.BITS_PER_CELL);
+		file.putShort(8, (short)NUMBER_OF_SEGMENTS);
+		file.putShort(10, (short)ChordChangeCellLayout.NUMBER_OF_INTERVALS);
+		file.putInt(12, SEGMENT_SIZE);
+
+		int offset = DIRECTORY_END;
+		for(int startOrdinal = 0; startOrdinal < NUMBER_OF_SEGMENTS; startOrdinal++) {
+			int entry = HEADER_SIZE + startOrdinal * DIRECTORY_ENTRY_SIZE;
+			if(numberOfRatings[startOrdinal] == 0) {
+				continue;
+			}
+			file.put(offset, segments[startOrdinal]);
+			file.putInt(entry, offset);
+			file.putInt(entry + 4, numberOfRatings[startOrdinal]);
+			file.putInt(entry + 8, checksum(segments[startOrdinal]));
+			offset += SEGMENT_SIZE;
+		}
+		file.putInt(DIRECTORY_CHECKSUM_OFFSET, directoryChecksum(file));
+		return file;
+	}
+
+	/**
+	 * Check the header and read the directory.
+	 * @param file buffer holding at least the header and the directory
+	 * @param fileSize size of the whole file
+	 * @return the directory
+	 * @throws PersistenceException if the file is not a segmented chord
+	 * change model file, was written with different signature tables or
+	 * its directory is corrupt
+	 */
+	static Directory readDirectory(ByteBuffer file, long fileSize) throws PersistenceException {
+		if(file.limit() < HEADER_SIZE || file.getInt(0) != MAGIC_NUMBER) {
+			throw new PersistenceException("not a segmented model file");
+		}
+		if(file.getShort(4) != FORMAT_VERSION) {
+			throw new PersistenceException("unsupported segmented model file version:" + file.getShort(4));
+		}
+		if(file.get(6) != BinaryModelFormat.CHORD_CHANGE_MODEL) {
+			throw new PersistenceException("incorrect model type:" + file.get(6));
+		}
+		if(file.get(7) != BinaryModelFormat.BITS_PER_CELL ||
+				file.getShort(8) != NUMBER_OF_SEGMENTS ||
+				file.getShort(10) != ChordChangeCellLayout.NUMBER_OF_INTERVALS ||
+				file.getInt(12) != SEGMENT_SIZE) {
+			throw new PersistenceException("model file was written with different signature tables");
+		}
+		if(file.limit() < DIRECTORY_END || file.getInt(DIRECTORY_CHECKSUM_OFFSET) != directoryChecksum(file)) {
+			throw new PersistenceException("model file directory is corrupt");
+		}
+
+		int[] offsets = new int[NUMBER_OF_SEGMENTS];
+		int[] numberOfRatings = new int[NUMBER_OF_SEGMENTS];
+		int[] checksums = new int[NUMBER_OF_SEGMENTS];
+		for(int startOrdinal = 0; startOrdinal < NUMBER_OF_SEGMENTS; startOrdinal++) {
+			int entry = HEADER_SIZE + startOrdinal * DIRECTORY_ENTRY_SIZE;
+			offsets[startOrdinal] = file.getInt(entry);
+			numberOfRatings[startOrdinal] = file.getInt(entry + 4);
+			checksums[startOrdinal] = file.getInt(entry + 8);
+
+			boolean valid = offsets[startOrdinal] == 0 ?
+					numberOfRatings[startOrdinal] == 0 :
+					offsets[startOrdinal] >= DIRECTORY_END &&
+					offsets[startOrdinal] <= fileSize - SEGMENT_SIZE &&
+					numberOfRatings[startOrdinal] > 0 &&
+					numberOfRatings[startOrdinal] <= RATEABLE_CELLS_PER_SEGMENT;
+			if( !valid) {
+				throw new PersistenceException("invalid directory entry for segment " + startOrdinal);
+			}
+		}
+		return new Directory(offsets, numberOfRatings, checksums);
+	}
+
+	/**
+	 * Check the checksum of a segment read from the file.
+	 * @param segment bytes of the segment
+	 * @param directory directory of the file
+	 * @param startOrdinal start chord of the segment
+	 * @throws FileFormatException if the checksum doesn't match
+	 */
+	static void checkSegment(byte[] segment, Directory directory, int startOrdinal) {
+		if(checksum(segment) != directory.checksums()[startOrdinal]) {
+			throw new FileFormatException("checksum of segment " + startOrdinal + " does not match, the file is corrupt");
+		}
+	}
+
+	private static int checksum(byte[] segment) {
+		CRC32 crc = new CRC32();
+		crc.update(segment);
+		return (int)crc.getValue();
+	}
+
+	private static int directoryChecksum(ByteBuffer file) {
+		CRC32 crc = new CRC32();
+		crc.update(file.duplicate().position(HEADER_SIZE).limit(DIRECTORY_END));
+		return (int)crc.getValue();
+	}
+}
@@ -0,0 +1,238 @@
+package chord.relations.persist.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import chord.ConsonanceRating;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.StringPersistable;
+
+/**
+ * Reader for the text model files written by AbstractFilePersister.
+ *
+ * The file is read in large blocks into a byte buffer and each line is
+ * split into its fields in place, recording where each field starts and
+ * ends. Fields are turned into enum constants through an EnumNameTable
+ * so reading a record creates no strings, arrays or regular expressions.
+ *
+ * Lines may end with "\n", "\r\n" or "\r", the same as java.util.Scanner.
+ * Empty lines are skipped.
+ * @author DAD
+ *
+ */
+public final class TextModelReader implements Closeable {
+
+	static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private static final byte FIELD_SEPARATOR = (byte)StringPersistable.FIELD_SEPARATOR.charAt(0);
+	private static final byte[] NULL_SIGNATURE = StringPersistable.NULL_SIGNATURE.getBytes(StandardCharsets.US_ASCII);
+	private static final EnumNameTable<ConsonanceRating> RATINGS = new EnumNameTable<>(ConsonanceRating.class);
+	private static final int MAXIMUM_NUMBER_OF_FIELDS = 8;
+
+	private final InputStream in;
+
+	private byte[] buffer;
+
+	/**
+	 * Next byte to read and end of the bytes read into the buffer.
+	 */
+	private int position, limit;
+
+	private boolean endOfInput;
+
+	/**
+	 * Bounds of the current line in the buffer.
+	 */
+	private int lineStart, lineEnd;
+
+	private int lineNumber;
+
+	private final int[] fieldStarts = new int[MAXIMUM_NUMBER_OF_FIELDS];
+	private final int[] fieldEnds = new int[MAXIMUM_NUMBER_OF_FIELDS];
+	private int numberOfFields;
+
+	/**
+	 * Create a reader for the stream. The stream is closed when the reader is.
+	 * @param in stream to read the model file from, may not be null
+	 */
+	public TextModelReader(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	TextModelReader(InputStream in, int bufferSize) {
+		if(in == null) {
+			throw new NullPointerException("input stream may not be null");
+		}
+		if(bufferSize < 1) {
+			throw new IllegalArgumentException("buffer size must be positive");
+		}
+		this.in = in;
+		this.buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Read the next line as a string, used for the file type signifier.
+	 * @return next line decoded with the default charset, null at the end of the file
+	 * @throws IOException if the file can't be read
+	 */
+	public String readLine() throws IOException {
+		if( !nextLine()) {
+			return null;
+		}
+		return new String(buffer, lineStart, lineEnd - lineStart, Charset.defaultCharset());
+	}
+
+	/**
+	 * Move to the next record and split it into its fields.
+	 * @return true if there is a record, false at the end of the file
+	 * @throws IOException if the file can't be read
+	 * @throws PersistenceException if the line has too many fields
+	 */
+	public boolean nextRecord() throws IOException, PersistenceException {
+		do {
+			if( !nextLine()) {
+				return false;
+			}
+		}while(lineStart == lineEnd);
+
+		numberOfFields = 0;
+		int fieldStart = lineStart;
+		for(int i = lineStart; i <= lineEnd; i++) {
+			if(i == lineEnd || buffer[i] == FIELD_SEPARATOR) {
+				if(numberOfFields == MAXIMUM_NUMBER_OF_FIELDS) {
+					throw new PersistenceException("too many fields on line " + lineNumber);
+				}
+				fieldStarts[numberOfFields] = fieldStart;
+				fieldEnds[numberOfFields] = i;
+				numberOfFields++;
+				fieldStart = i + 1;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check that the current record has the expected number of fields.
+	 * @param expectedNumberOfFields number of fields records of the file have
+	 * @throws PersistenceException if the record has a different number of fields
+	 */
+	public void checkNumberOfFields(int expectedNumberOfFields) throws PersistenceException {
+		if(numberOfFields != expectedNumberOfFields) {
+			throw new PersistenceException(
+					"expected " + expectedNumberOfFields + " fields but found " + numberOfFields +
+					" on line " + lineNumber + ":" + currentLine());
+		}
+	}
+
+	/**
+	 * Get the enum constant named by a field of the current record.
+	 * @param fieldIndex index of the field in the record
+	 * @param table table of the names of the enum
+	 * @return constant named by the field
+	 * @throws PersistenceException if no constant has the name
+	 */
+	public <E extends Enum<E>> E enumField(int fieldIndex, EnumNameTable<E> table) throws PersistenceException {
+		E constant = table.lookup(buffer, fieldStarts[fieldIndex], fieldEnds[fieldIndex]);
+		if(constant == null) {
+			throw new PersistenceException("unknown value in field " + fieldIndex + " on line " + lineNumber + ":" + currentLine());
+		}
+		return constant;
+	}
+
+	/**
+	 * Get the rating held by a field of the current record.
+	 * @param fieldIndex index of the field in the record
+	 * @return rating in the field, null if the field is StringPersistable.NULL_SIGNATURE
+	 * @throws PersistenceException if the field is not a rating
+	 */
+	public ConsonanceRating ratingField(int fieldIndex) throws PersistenceException {
+		int start = fieldStarts[fieldIndex];
+		int end = fieldEnds[fieldIndex];
+		if(end - start == NULL_SIGNATURE.length &&
+				Arrays.equals(buffer, start, end, NULL_SIGNATURE, 0, NULL_SIGNATURE.length)) {
+			return null;
+		}
+		return enumField(fieldIndex, RATINGS);
+	}
+
+	/**
+	 * Get the number of the current line, starting at 1.
+	 * @return number of the current line
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	private String currentLine() {
+		return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Find the bounds of the next line, reading more of the file when
+	 * the line isn't complete in the buffer.
+	 */
+	private boolean nextLine() throws IOException {
+		while(true) {
+			for(int i = position; i < limit; i++) {
+				byte b = buffer[i];
+				if(b != '\n' && b != '\r') {
+					continue;
+				}
+				if(b == '\r' && i + 1 == limit && !endOfInput) {
+					//can't tell "\r" from "\r\n" yet
+					break;
+				}
+				lineStart = position;
+				lineEnd = i;
+				position = i + 1;
+				if(b == '\r' && position < limit && buffer[position] == '\n') {
+					position++;
+				}
+				lineNumber++;
+				return true;
+			}
+			if(endOfInput) {
+				if(position == limit) {
+					return false;
+				}
+				//last line without a line separator
+				lineStart = position;
+				lineEnd = limit;
+				position = limit;
+				lineNumber++;
+				return true;
+			}
+			fill();
+		}
+	}
+
+	/**
+	 * Move the unread bytes to the start of the buffer, growing it if the
+	 * current line fills the whole buffer, and read more of the file after them.
+	 */
+	private void fill() throws IOException {
+		if(position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		if(limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		int bytesRead = in.read(buffer, limit, buffer.length - limit);
+		if(bytesRead < 0) {
+			endOfInput = true;
+		}else {
+			limit += bytesRead;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
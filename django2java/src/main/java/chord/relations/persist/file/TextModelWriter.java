@@ -0,0 +1,134 @@
+package chord.relations.persist.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import chord.ConsonanceRating;
+import chord.relations.record.StringPersistable;
+
+/**
+ * Writer for the text model files read by TextModelReader.
+ *
+ * Every name is copied out of an EnumNameTable into one reused byte
+ * buffer that is written to the stream when it is full, so writing a
+ * record creates no strings. The output is byte for byte what printing
+ * createPersistenceString of the record through a PrintWriter gives:
+ * the names are ASCII and the lines end with the platform line separator.
+ * @author DAD
+ *
+ */
+public final class TextModelWriter implements Closeable {
+
+	private static final byte FIELD_SEPARATOR = (byte)StringPersistable.FIELD_SEPARATOR.charAt(0);
+	private static final byte[] NULL_SIGNATURE = StringPersistable.NULL_SIGNATURE.getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	private static final EnumNameTable<ConsonanceRating> RATINGS = new EnumNameTable<>(ConsonanceRating.class);
+
+	private final OutputStream out;
+
+	private final byte[] buffer;
+
+	private int count;
+
+	/**
+	 * Create a writer for the stream. The stream is closed when the writer is.
+	 * @param out stream to write the model file to, may not be null
+	 */
+	public TextModelWriter(OutputStream out) {
+		if(out == null) {
+			throw new NullPointerException("output stream may not be null");
+		}
+		this.out = out;
+		this.buffer = new byte[TextModelReader.DEFAULT_BUFFER_SIZE];
+	}
+
+	/**
+	 * Write a whole line, used for the file type signifier.
+	 * @param line line to write encoded with the default charset, may not be null
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeLine(String line) throws IOException {
+		write(line.getBytes(Charset.defaultCharset()));
+		endLine();
+	}
+
+	/**
+	 * Write the name of the enum constant.
+	 * @param constant constant to write, may not be null
+	 * @param table table of the names of the enum
+	 * @throws IOException if the file can't be written
+	 */
+	public <E extends Enum<E>> void writeName(E constant, EnumNameTable<E> table) throws IOException {
+		write(table.nameBytes(constant));
+	}
+
+	/**
+	 * Write the rating, StringPersistable.NULL_SIGNATURE if the rating is null.
+	 * @param rating rating to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeRating(ConsonanceRating rating) throws IOException {
+		write(rating == null ? NULL_SIGNATURE : RATINGS.nameBytes(rating));
+	}
+
+	/**
+	 * Write the separator between two fields of a record.
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeSeparator() throws IOException {
+		if(count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = FIELD_SEPARATOR;
+	}
+
+	/**
+	 * End the current line.
+	 * @throws IOException if the file can't be written
+	 */
+	public void endLine() throws IOException {
+		write(LINE_SEPARATOR);
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		if(bytes.length > buffer.length - count) {
+			flushBuffer();
+			if(bytes.length > buffer.length) {
+				out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, count);
+		count = 0;
+	}
+
+	/**
+	 * Write everything buffered to the stream and flush it, without
+	 * closing the stream.
+	 * @throws IOException if the file can't be written
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Write everything buffered to the stream and close it.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBuffer();
+		} finally {
+			out.close();
+		}
+	}
+}
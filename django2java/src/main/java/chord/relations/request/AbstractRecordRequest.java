@@ -102,4 +102,15 @@ public abstract class AbstractRecordRequest {
 	 * and the request is ready to be used
 	 */
 	protected abstract boolean allAditionalParametersInitialized();
+	
+	/**
+	 * Compile the request into its bit mask form so that the models
+	 * only have to visit the values requested.
+	 * 
+	 * The request parameters may be replaced at any time so the 
+	 * request must be compiled each time it is used.
+	 * @return immutable bit mask form of the request
+	 * @throws IllegalStateException if the request is not initialized
+	 */
+	public abstract CompiledRecordRequest compile();
 }
@@ -39,6 +39,28 @@ public class ChordChangeConsonanceRecordRequest extends AbstractRecordRequest {
 				RatingRequest.allPleasantRatingeRequest());
 	}
 	
+	/**
+	 * Get a request to retrieve all pleasant chord change ratings
+	 * leading into the target chord.
+	 * 
+	 * Use with forEachRatingLeadingTo so that only the target chord 
+	 * is visited instead of every reference chord.
+	 * @param targetChord chord that the chord changes lead to
+	 * @return all chord changes into the target chord with a rating of GOOD or VERY_GOOD
+	 * @throws RequestInitializationException if there is an error creating the request
+	 */
+	public static ChordChangeConsonanceRecordRequest allPleasantRatedRecordsForTargetChord(ChordSignature targetChord) throws RequestInitializationException {
+		if(targetChord == null) {
+			throw new NullPointerException("targetChord may not be null");
+		}
+		ChordRequest chordRequest = new ChordRequest(targetChord);
+		
+		return new ChordChangeConsonanceRecordRequest(
+				ChordRequest.allChordsRequest(),
+				chordRequest,
+				IntervalRequest.allIntervalsRequest(),
+				RatingRequest.allPleasantRatingeRequest());
+	}
 	
 	private ChordRequest targetChordRequest;
 	private IntervalRequest intervalsBetweenRootsRequest;
@@ -117,4 +139,15 @@ public class ChordChangeConsonanceRecordRequest extends AbstractRecordRequest {
 				intervalsBetweenRootsRequest.isInitialized();
 	}
 
+	@Override
+	public CompiledRecordRequest compile() {
+		if( !isInitialized() ) {
+			throw new IllegalStateException("request is not initialized");
+		}
+		return new CompiledRecordRequest(
+				referenceChordRequest.toOrdinalMask(),
+				targetChordRequest.toOrdinalMask(),
+				intervalsBetweenRootsRequest.toOrdinalMask(),
+				ratingRequest.toOrdinalMask());
+	}
 }
@@ -80,4 +80,9 @@ public class ChordRequest implements SimpleRequest<ChordSignature>{
 	public int numberRequested() {
 		return this.chordsRequested.size();
 	}
+
+	@Override
+	public long[] toOrdinalMask() {
+		return CompiledRecordRequest.ordinalMask(this.chordsRequested, ChordSignature.values().length);
+	}
 }
@@ -0,0 +1,235 @@
+package chord.relations.request;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+import chord.ConsonanceRating;
+
+/**
+ * Immutable bit mask form of a record request.
+ *
+ * Each of the request parameters is turned into a mask with the bit
+ * for the ordinal of every requested value set. This lets the models
+ * step through the requested reference chords and targets directly
+ * instead of testing every possible value against a HashSet.
+ *
+ * The target mask holds target chord ordinals for chord change requests
+ * and scale signature ordinals for scale requests. Note requests
+ * have no target mask.
+ *
+ * The rating mask is stored by rating code(ordinal + 1) the same way
+ * PackedRatingArray stores ratings so that the unrated code(0) is
+ * never contained in the request.
+ *
+ * Requests are mutable so a compiled request should be created
+ * every time the request is used. Compiled requests are equal when they
+ * request the same records, so they can be used as keys for results
+ * worked out from a request.
+ * @author DAD
+ *
+ */
+public final class CompiledRecordRequest {
+
+	/**
+	 * Get the index of the first set bit at or after the given index.
+	 * @param mask mask to search
+	 * @param fromIndex index to start searching from
+	 * @return index of the next set bit, -1 if there is none
+	 */
+	public static int nextSetBit(long[] mask, int fromIndex) {
+		if(mask == null || fromIndex < 0) {
+			return -1;
+		}
+		int wordIndex = fromIndex >>> 6;
+		if(wordIndex >= mask.length) {
+			return -1;
+		}
+
+		long word = mask[wordIndex] & (-1L << fromIndex);
+		while(true) {
+			if(word != 0) {
+				return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+			}
+			if(++wordIndex == mask.length) {
+				return -1;
+			}
+			word = mask[wordIndex];
+		}
+	}
+
+	/**
+	 * Test to see if the bit for the index is set.
+	 * @param mask mask to test
+	 * @param index index of the bit
+	 * @return true if the bit is set
+	 */
+	static boolean isSet(long[] mask, int index) {
+		if(mask == null || index < 0) {
+			return false;
+		}
+		int wordIndex = index >>> 6;
+		return wordIndex < mask.length && (mask[wordIndex] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Create a mask with the bit for the ordinal of each value set.
+	 * @param values values to include in the mask
+	 * @param numberOfConstants number of constants in the enum
+	 * @return mask of the ordinals of the values
+	 */
+	static long[] ordinalMask(Collection<? extends Enum<?>> values, int numberOfConstants) {
+		long[] mask = new long[(numberOfConstants + Long.SIZE - 1) / Long.SIZE];
+		for(Enum<?> value : values) {
+			mask[value.ordinal() >>> 6] |= 1L << value.ordinal();
+		}
+		return mask;
+	}
+
+	private final long[] referenceChordMask;
+	private final long[] targetMask;
+	private final int intervalMask;
+	private final int ratingCodeMask;
+
+	/**
+	 * Create a compiled request. Masks are copied so that the compiled
+	 * request can't be changed by the caller.
+	 * @param referenceChordMask ordinals of the reference chords requested
+	 * @param targetMask ordinals of the targets requested, null if the
+	 * request has no target
+	 * @param intervalMask ordinals of the intervals requested, 0 if
+	 * the request has no intervals
+	 * @param ratingMask ordinals of the ratings requested
+	 */
+	CompiledRecordRequest(long[] referenceChordMask, long[] targetMask, long[] intervalMask, long[] ratingMask) {
+		if(referenceChordMask == null) {
+			throw new NullPointerException("referenceChordMask may not be null");
+		}
+		if(ratingMask == null) {
+			throw new NullPointerException("ratingMask may not be null");
+		}
+		this.referenceChordMask = referenceChordMask.clone();
+		this.targetMask = targetMask == null ? null : targetMask.clone();
+		this.intervalMask = intervalMask == null ? 0 : (int)intervalMask[0];
+		this.ratingCodeMask = (int)ratingMask[0] << 1;
+	}
+
+	/**
+	 * Get the next requested reference chord ordinal.
+	 * @param fromOrdinal ordinal to start searching from
+	 * @return ordinal of the next requested reference chord, -1 if
+	 * there are no more
+	 */
+	public int nextReferenceChord(int fromOrdinal) {
+		return nextSetBit(referenceChordMask, fromOrdinal);
+	}
+
+	/**
+	 * Get the next requested target ordinal.
+	 * @param fromOrdinal ordinal to start searching from
+	 * @return ordinal of the next requested target, -1 if there are
+	 * no more or the request has no target
+	 */
+	public int nextTarget(int fromOrdinal) {
+		return nextSetBit(targetMask, fromOrdinal);
+	}
+
+	/**
+	 * Get the requested reference chord ordinals in ascending order.
+	 * @return lazy stream of the reference chord ordinals
+	 */
+	public IntStream referenceChordOrdinals() {
+		return IntStream.iterate(nextReferenceChord(0), ordinal -> ordinal >= 0, ordinal -> nextReferenceChord(ordinal + 1));
+	}
+
+	/**
+	 * Get the requested target ordinals in ascending order.
+	 * @return lazy stream of the target ordinals, empty if the request
+	 * has no target
+	 */
+	public IntStream targetOrdinals() {
+		return IntStream.iterate(nextTarget(0), ordinal -> ordinal >= 0, ordinal -> nextTarget(ordinal + 1));
+	}
+
+	/**
+	 * Get the number of targets requested.
+	 * @return number of set bits in the target mask, 0 if the request
+	 * has no target
+	 */
+	public int numberOfTargets() {
+		int numberOfTargets = 0;
+		if(targetMask != null) {
+			for(long word : targetMask) {
+				numberOfTargets += Long.bitCount(word);
+			}
+		}
+		return numberOfTargets;
+	}
+
+	public boolean containsReferenceChord(int ordinal) {
+		return isSet(referenceChordMask, ordinal);
+	}
+
+	public boolean containsTarget(int ordinal) {
+		return isSet(targetMask, ordinal);
+	}
+
+	public boolean containsInterval(int ordinal) {
+		return ordinal >= 0 && ordinal < Integer.SIZE && (intervalMask & (1 << ordinal)) != 0;
+	}
+
+	/**
+	 * Test to see if the rating code is requested.
+	 * @param code rating code as stored by PackedRatingArray(ordinal + 1)
+	 * @return true if the rating is requested, false for the unrated code
+	 */
+	public boolean containsRatingCode(int code) {
+		return code > 0 && code < Integer.SIZE && (ratingCodeMask & (1 << code)) != 0;
+	}
+
+	/**
+	 * Test to see if the rating is requested.
+	 * @param rating rating to test
+	 * @return true if the rating is requested, false if the rating is null
+	 */
+	public boolean contains(ConsonanceRating rating) {
+		return rating != null && containsRatingCode(rating.ordinal() + 1);
+	}
+
+	/**
+	 * Get the mask of requested intervals with bit n set for the
+	 * interval with ordinal n.
+	 * @return mask of the requested intervals
+	 */
+	public int intervalMask() {
+		return intervalMask;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(o == this) {
+			return true;
+		}
+		if( !(o instanceof CompiledRecordRequest)) {
+			return false;
+		}
+		CompiledRecordRequest other = (CompiledRecordRequest)o;
+
+		return Arrays.equals(referenceChordMask, other.referenceChordMask) &&
+				Arrays.equals(targetMask, other.targetMask) &&
+				intervalMask == other.intervalMask &&
+				ratingCodeMask == other.ratingCodeMask;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+
+		int result = Arrays.hashCode(referenceChordMask);
+		result = prime*result + Arrays.hashCode(targetMask);
+		result = prime*result + intervalMask;
+		result = prime*result + ratingCodeMask;
+
+		return result;
+	}
+}
@@ -85,4 +85,8 @@ public class IntervalRequest implements SimpleRequest<Interval>{
 		return this.intervalsRequested.size();
 	}
 
+	@Override
+	public long[] toOrdinalMask() {
+		return CompiledRecordRequest.ordinalMask(this.intervalsRequested, Interval.valuesInFirstOctave().length);
+	}
 }
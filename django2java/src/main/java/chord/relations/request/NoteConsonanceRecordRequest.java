@@ -127,5 +127,16 @@ public class NoteConsonanceRecordRequest extends AbstractRecordRequest{
 		}
 		return this.intervalRequest.isInitialized();
 	}
-	
+
+	@Override
+	public CompiledRecordRequest compile() {
+		if( !isInitialized() ) {
+			throw new IllegalStateException("request is not initialized");
+		}
+		return new CompiledRecordRequest(
+				referenceChordRequest.toOrdinalMask(),
+				null,
+				intervalRequest.toOrdinalMask(),
+				ratingRequest.toOrdinalMask());
+	}
 }
@@ -95,4 +95,9 @@ public class RatingRequest implements SimpleRequest<ConsonanceRating>{
 	public int numberRequested() {
 		return this.ratingsRequested.size();
 	}
+
+	@Override
+	public long[] toOrdinalMask() {
+		return CompiledRecordRequest.ordinalMask(this.ratingsRequested, ConsonanceRating.values().length);
+	}
 }
@@ -100,6 +100,16 @@ public class ScaleConsonanceRecordRequest extends AbstractRecordRequest{
 		}
 		return this.scaleRequest.isInitialized();
 	}
-	
-	
+
+	@Override
+	public CompiledRecordRequest compile() {
+		if( !isInitialized() ) {
+			throw new IllegalStateException("request is not initialized");
+		}
+		return new CompiledRecordRequest(
+				referenceChordRequest.toOrdinalMask(),
+				scaleRequest.toOrdinalMask(),
+				null,
+				ratingRequest.toOrdinalMask());
+	}
 }
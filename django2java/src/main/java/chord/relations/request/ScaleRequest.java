@@ -80,4 +80,8 @@ public class ScaleRequest implements SimpleRequest<ScaleSignature>{
 		return this.scalesRequested.size() > 0;
 	}
 
+	@Override
+	public long[] toOrdinalMask() {
+		return CompiledRecordRequest.ordinalMask(this.scalesRequested, ScaleSignature.values().length);
+	}
 }
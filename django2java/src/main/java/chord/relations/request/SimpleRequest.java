@@ -47,4 +47,11 @@ public interface SimpleRequest<DATA_TYPE> {
 	 * false otherwise
 	 */
 	boolean isInitialized();
+	
+	/**
+	 * Get a bit mask of the values requested. The bit
+	 * for the ordinal of each requested value is set.
+	 * @return new mask of the requested ordinals
+	 */
+	long[] toOrdinalMask();
 }
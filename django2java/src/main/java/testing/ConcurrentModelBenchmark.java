@@ -0,0 +1,152 @@
+package testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.ConcurrentChordChangeConsonanceModel;
+import chord.relations.record.ChordChangeConsonanceRecord;
+
+/**
+ * Rough throughput comparison of the ConcurrentChordChangeConsonanceModel
+ * and a ChordChangeConsonanceModel behind a single lock, which is how the
+ * model has to be shared between threads otherwise.
+ *
+ * Every thread does random getRating calls with one addRating or removeRating
+ * in every WRITE_EVERY operations for MEASURE_MILLIS after a warm up.
+ * Run with the number of threads as the first argument(default 4).
+ * @author DAD
+ *
+ */
+public class ConcurrentModelBenchmark {
+
+	private static final long WARM_UP_MILLIS = 2000;
+	private static final long MEASURE_MILLIS = 5000;
+	private static final int WRITE_EVERY = 10;
+
+	/**
+	 * The operations the benchmark calls on a model.
+	 */
+	private interface BenchmarkedModel {
+		void addRating(ChordChangeConsonanceRecord record);
+		void removeRating(ChordChangeConsonanceRecord record);
+		void getRating(ChordChangeConsonanceRecord record);
+	}
+
+	/**
+	 * Map based model where every call holds the same lock.
+	 */
+	private static final class SynchronizedModel implements BenchmarkedModel {
+		private final ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+
+		@Override
+		public synchronized void addRating(ChordChangeConsonanceRecord record) {
+			model.addRating(record);
+		}
+
+		@Override
+		public synchronized void removeRating(ChordChangeConsonanceRecord record) {
+			model.removeRating(record);
+		}
+
+		@Override
+		public synchronized void getRating(ChordChangeConsonanceRecord record) {
+			model.getRating(record);
+		}
+	}
+
+	/**
+	 * Lock free model, calls go straight through.
+	 */
+	private static final class ConcurrentModel implements BenchmarkedModel {
+		private final ConcurrentChordChangeConsonanceModel model = new ConcurrentChordChangeConsonanceModel();
+
+		@Override
+		public void addRating(ChordChangeConsonanceRecord record) {
+			model.addRating(record);
+		}
+
+		@Override
+		public void removeRating(ChordChangeConsonanceRecord record) {
+			model.removeRating(record);
+		}
+
+		@Override
+		public void getRating(ChordChangeConsonanceRecord record) {
+			model.getRating(record);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int numberOfThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+
+		System.out.println("threads: " + numberOfThreads);
+		System.out.printf("synchronized map model: %,d ops/s%n", measure(new SynchronizedModel(), numberOfThreads));
+		System.out.printf("concurrent packed model: %,d ops/s%n", measure(new ConcurrentModel(), numberOfThreads));
+	}
+
+	/**
+	 * Run the threads against the model and return the operations per
+	 * second counted after the warm up.
+	 */
+	private static long measure(BenchmarkedModel model, int numberOfThreads) throws InterruptedException {
+		ChordChangeConsonanceRecord[] records = createRecords();
+		LongAdder operations = new LongAdder();
+		CountDownLatch finished = new CountDownLatch(numberOfThreads);
+
+		long measureStart = System.nanoTime() + WARM_UP_MILLIS * 1_000_000L;
+		long measureEnd = measureStart + MEASURE_MILLIS * 1_000_000L;
+
+		List<Thread> threads = new ArrayList<>();
+		for(int t = 0; t < numberOfThreads; t++) {
+			threads.add(new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				long counted = 0;
+				long now;
+				while((now = System.nanoTime()) < measureEnd) {
+					for(int i = 0; i < WRITE_EVERY; i++) {
+						ChordChangeConsonanceRecord record = records[random.nextInt(records.length)];
+						if(i != 0) {
+							model.getRating(record);
+						}else if(random.nextBoolean()) {
+							model.addRating(record);
+						}else {
+							model.removeRating(record);
+						}
+					}
+					if(now >= measureStart) {
+						counted += WRITE_EVERY;
+					}
+				}
+				operations.add(counted);
+				finished.countDown();
+			}));
+		}
+		threads.forEach(Thread::start);
+		finished.await();
+
+		return operations.sum() * 1000 / MEASURE_MILLIS;
+	}
+
+	/**
+	 * One rated record for every cell that can be rated.
+	 */
+	private static ChordChangeConsonanceRecord[] createRecords() {
+		List<ChordChangeConsonanceRecord> records = new ArrayList<>();
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				records.add(new ChordChangeConsonanceRecord(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						ConsonanceRating.values()[cell % ConsonanceRating.values().length]));
+			}
+		}
+		return records.toArray(new ChordChangeConsonanceRecord[0]);
+	}
+}
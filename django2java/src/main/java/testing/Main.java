@@ -35,6 +35,7 @@ import chord.gui.MainChordRatingsPopulationFrame;
 import chord.ident.ChordSignature;
 import chord.ident.ScaleSignature;
 import chord.maps.ChordLibrary;
+import chord.maps.LibraryStartup;
 import chord.relations.ChordChangeConsonanceModel;
 import chord.relations.NoteConsonanceModel;
 import chord.relations.ScaleConsonanceModel;
@@ -240,10 +241,10 @@ public class Main {
 	}
 
 	private static void tryMainConsonanceFileBuildingGUI() throws Exception {
-		ChordLibrary.initializeChordLibraryInstance(
-				new ChordChangeConsonanceModel(), 
-				new ScaleConsonanceModel(), 
-				new NoteConsonanceModel());
+		new LibraryStartup(
+				ChordChangeConsonanceModel::new,
+				ScaleConsonanceModel::new,
+				NoteConsonanceModel::new).start();
 
 		try {
 			new MainChordRatingsPopulationFrame();
@@ -0,0 +1,100 @@
+package testing;
+
+import java.util.concurrent.ForkJoinPool;
+
+import chord.ConsonanceRating;
+import chord.NoteName;
+import chord.ident.ChordSignature;
+import chord.maps.ChordLibrary;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.NoteConsonanceModel;
+import chord.relations.ScaleConsonanceModel;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.IntervalRequest;
+import chord.relations.request.RatingRequest;
+import chord.relations.request.RequestInitializationException;
+
+/**
+ * Rough speedup of the chord progression search of ChordLibrary with
+ * pools of 1, 2, 4... threads up to the number of processors.
+ *
+ * The chord change model is full, every change rated by its cell so the
+ * ratings are spread evenly. The search starts from C major and uses the
+ * VERY_GOOD changes between the triads, every change of the full model is
+ * far too many for a depth 7 search to finish.
+ * Run with the depth as the first argument(default 7).
+ * @author DAD
+ *
+ */
+public class ProgressionSearchBenchmark {
+
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws RequestInitializationException {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+
+		ChordLibrary.initializeChordLibraryInstance(
+				createFullModel(),
+				new ScaleConsonanceModel(),
+				new NoteConsonanceModel());
+		ChordLibrary library = ChordLibrary.getInstance();
+
+		ChordRequest triads = new ChordRequest(ChordSignature.getAllTriads().toArray(new ChordSignature[0]));
+		ChordChangeConsonanceRecordRequest request = new ChordChangeConsonanceRecordRequest(
+				triads,
+				triads,
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ConsonanceRating.VERY_GOOD));
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		System.out.println("depth: " + depth + ", processors: " + processors);
+
+		long singleThreadNanos = 0;
+		for(int parallelism = 1; parallelism <= processors; parallelism *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			long bestNanos = Long.MAX_VALUE;
+			int numberOfProgressions = 0;
+			//the first run warms up
+			for(int run = 0; run <= RUNS; run++) {
+				long start = System.nanoTime();
+				numberOfProgressions = library.searchChordProgressions(
+						library.getChord(NoteName.C, ChordSignature.MAJOR),
+						request,
+						depth,
+						pool).join().size();
+				long nanos = System.nanoTime() - start;
+				if(run > 0) {
+					bestNanos = Math.min(bestNanos, nanos);
+				}
+			}
+			pool.shutdown();
+
+			if(parallelism == 1) {
+				singleThreadNanos = bestNanos;
+			}
+			System.out.printf("threads: %d, progressions: %,d, %,d ms, speedup %.2f%n",
+					parallelism,
+					numberOfProgressions,
+					bestNanos / 1_000_000,
+					(double)singleThreadNanos / bestNanos);
+		}
+	}
+
+	private static ChordChangeConsonanceModel createFullModel() {
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		ConsonanceRating[] ratings = ConsonanceRating.values();
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				model.addRating(new ChordChangeConsonanceRecord(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						ratings[(cell * 7) % ratings.length]));
+			}
+		}
+		return model;
+	}
+}
@@ -0,0 +1,128 @@
+package testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.persist.file.ChordChangeConsonanceFilePersister;
+import chord.relations.persist.file.FileStrategyConfig;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Rough timing of saving and loading a full chord change model as a text
+ * model file through the ChordChangeConsonanceFilePersister, which uses
+ * TextModelReader/TextModelWriter, and through the previous way of doing
+ * it: a PrintWriter printing createPersistenceString for every record and
+ * a Scanner reading it back with createRecordFromString.
+ *
+ * Each path is run WARM_UP_RUNS times before MEASURED_RUNS timed runs and
+ * the average is printed. The two files written are also compared byte
+ * for byte.
+ * @author DAD
+ *
+ */
+public class TextModelFileBenchmark {
+
+	private static final int WARM_UP_RUNS = 20;
+	private static final int MEASURED_RUNS = 20;
+
+	private static final String FILE_TYPE_SIGNIFIER = "ChordChangeConsonanceModelFile";
+
+	/**
+	 * A save or load that is timed.
+	 */
+	private interface Run {
+		void run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		ChordChangeConsonanceRecordRequest request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		ChordChangeConsonanceModel model = createFullModel();
+
+		File scannerFile = File.createTempFile("scannerModel", ".txt");
+		File readerFile = File.createTempFile("readerModel", ".txt");
+		scannerFile.deleteOnExit();
+		readerFile.deleteOnExit();
+
+		ChordChangeConsonanceFilePersister persister =
+				new ChordChangeConsonanceFilePersister(new FileStrategyConfig(readerFile), request);
+
+		System.out.printf("PrintWriter save: %.2f ms%n", measure(() -> saveWithPrintWriter(model, request, scannerFile)));
+		System.out.printf("TextModelWriter save: %.2f ms%n", measure(() -> persister.save(model)));
+		System.out.printf("Scanner load: %.2f ms%n", measure(() -> loadWithScanner(scannerFile)));
+		System.out.printf("TextModelReader load: %.2f ms%n", measure(() -> persister.load()));
+
+		boolean sameBytes = Arrays.equals(
+				Files.readAllBytes(scannerFile.toPath()),
+				Files.readAllBytes(readerFile.toPath()));
+		System.out.println("files are identical: " + sameBytes);
+		System.out.println("loaded models are equal: " + loadWithScanner(scannerFile).equals(persister.load()));
+	}
+
+	/**
+	 * Run the path and return the average time of the measured runs in milliseconds.
+	 */
+	private static double measure(Run run) throws Exception {
+		for(int i = 0; i < WARM_UP_RUNS; i++) {
+			run.run();
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < MEASURED_RUNS; i++) {
+			run.run();
+		}
+		return (System.nanoTime() - start) / 1_000_000.0 / MEASURED_RUNS;
+	}
+
+	private static void saveWithPrintWriter(
+			ChordChangeConsonanceModel model,
+			ChordChangeConsonanceRecordRequest request,
+			File file) throws IOException {
+		try(PrintWriter modelWriter = new PrintWriter(file)){
+			modelWriter.println(FILE_TYPE_SIGNIFIER);
+			model.streamRecords(request)
+				.forEach(record -> modelWriter.println(record.createPersistenceString()));
+		}
+	}
+
+	private static ChordChangeConsonanceModel loadWithScanner(File file) throws IOException, PersistenceException {
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		try(Scanner fileScanner = new Scanner(file)){
+			String line = fileScanner.nextLine();
+			if( !line.equals(FILE_TYPE_SIGNIFIER)) {
+				throw new PersistenceException("Incorrect file type, fileSignifier:"+line);
+			}
+			List<ChordChangeConsonanceRecord> records = new ArrayList<>();
+			while(fileScanner.hasNextLine()) {
+				records.add(ChordChangeConsonanceRecord.createRecordFromString(fileScanner.nextLine()));
+			}
+			model.addRatings(records);
+		}
+		return model;
+	}
+
+	private static ChordChangeConsonanceModel createFullModel() {
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		List<ChordChangeConsonanceRecord> records = new ArrayList<>();
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				records.add(new ChordChangeConsonanceRecord(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						ConsonanceRating.values()[cell % ConsonanceRating.values().length]));
+			}
+		}
+		model.addRatings(records);
+		return model;
+	}
+}
@@ -3,6 +3,11 @@ package chord.gui.controller;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -10,7 +15,11 @@ import chord.ConsonanceRating;
 import chord.Interval;
 import chord.ident.ChordSignature;
 import chord.relations.NoteConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.persist.file.FileStrategyConfig;
+import chord.relations.persist.file.NoteConsonanceFilePersister;
 import chord.relations.record.NoteConsonanceRecord;
+import chord.relations.request.NoteConsonanceRecordRequest;
 
 /**
  * Test class used to automate the testing of the
@@ -112,4 +121,33 @@ public class NoteConsonanceControllerTest {
 		}
 	}
 
+	/**
+	 * Save the ratings in the background and make sure the file
+	 * holds the ratings made before the save was requested.
+	 */
+	@Test
+	void testSaveFileAsync() throws InterruptedException, ExecutionException, TimeoutException, PersistenceException {
+		File testFile = new File("testFile.tmp");
+		try {
+			ncController.saveRating(ConsonanceRating.GOOD);
+			ncController.saveRating(ConsonanceRating.BAD);
+			NoteConsonanceModel savedModel = new NoteConsonanceModel();
+			savedModel.addRatings(ncModel.getRecords(NoteConsonanceRecordRequest.allPossibleRecords()));
+
+			var save = ncController.saveFileAsync(testFile);
+			ncController.saveRating(ConsonanceRating.VERY_BAD);
+			save.get(10, TimeUnit.SECONDS);
+
+			NoteConsonanceFilePersister persister = new NoteConsonanceFilePersister(
+					new FileStrategyConfig(testFile), 
+					NoteConsonanceRecordRequest.allPossibleRecords());
+			assertEquals(savedModel, persister.load());
+
+			ncController.saveFileAsync(testFile).get(10, TimeUnit.SECONDS);
+			assertEquals(ncModel, persister.load());
+		}finally {
+			testFile.delete();
+		}
+	}
+
 }
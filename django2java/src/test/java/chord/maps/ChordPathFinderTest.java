@@ -0,0 +1,165 @@
+package chord.maps;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.RequestInitializationException;
+
+public class ChordPathFinderTest {
+
+	ChordChangeConsonanceModel model;
+
+	ChordPathFinder pathFinder;
+
+	ChordTransitionGraph graph;
+
+	@BeforeEach
+	void init() throws RequestInitializationException {
+		model = new ChordChangeConsonanceModel();
+		ProgressionCycleEnumeratorTest.populateTestModel(model);
+		ChordRequest someChords = new ChordRequest(
+				ChordSignature.MAJOR, ChordSignature.MINOR, ChordSignature.SUS2, ChordSignature.P5);
+		graph = ChordTransitionGraph.build(model,
+				ProgressionCycleEnumeratorTest.testRequest(someChords, ConsonanceRating.VERY_GOOD));
+		pathFinder = new ChordPathFinder(graph);
+	}
+
+	private static int node(ChordSignature sig, Interval rootOffset) {
+		return ChordTransitionGraph.node(sig.ordinal(), rootOffset.ordinal());
+	}
+
+	/**
+	 * Every path from the source to the destination without repeated nodes, found the slow way.
+	 */
+	private List<List<Integer>> allLooplessPaths(int source, int destination, int maximumChanges) {
+		List<List<Integer>> paths = new ArrayList<>();
+		List<Integer> path = new ArrayList<>();
+		path.add(source);
+		addLooplessPaths(path, destination, maximumChanges, paths);
+		return paths;
+	}
+
+	private void addLooplessPaths(List<Integer> path, int destination, int maximumChanges, List<List<Integer>> paths) {
+		int node = path.get(path.size() - 1);
+		if(node == destination) {
+			paths.add(new ArrayList<>(path));
+			return;
+		}
+		if(path.size() - 1 == maximumChanges) {
+			return;
+		}
+		int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+		for(int i = graph.firstTransition(signatureOrdinal); i < graph.endOfTransitions(signatureOrdinal); i++) {
+			int next = ChordTransitionGraph.target(node, graph.transition(i));
+			if( !path.contains(next)) {
+				path.add(next);
+				addLooplessPaths(path, destination, maximumChanges, paths);
+				path.remove(path.size() - 1);
+			}
+		}
+	}
+
+	private static Set<List<Integer>> asSet(List<int[]> paths) {
+		Set<List<Integer>> pathSet = new HashSet<>();
+		for(int[] path : paths) {
+			assertTrue(pathSet.add(Arrays.stream(path).boxed().toList()), "paths are returned once");
+		}
+		return pathSet;
+	}
+
+	@Test
+	void testSameShortestPathsAsNaiveSearch() {
+		int source = node(ChordSignature.MAJOR, Interval.UNISON);
+		int pathsFound = 0;
+		for(ChordSignature sig : new ChordSignature[] {ChordSignature.MAJOR, ChordSignature.MINOR, ChordSignature.SUS2, ChordSignature.P5}) {
+			for(Interval rootOffset : Interval.valuesInFirstOctave()) {
+				int destination = node(sig, rootOffset);
+				List<List<Integer>> naivePaths = allLooplessPaths(source, destination, 4);
+				int shortest = naivePaths.stream().mapToInt(List::size).min().orElse(0);
+				Set<List<Integer>> shortestPaths = new HashSet<>();
+				for(List<Integer> path : naivePaths) {
+					if(path.size() == shortest) {
+						shortestPaths.add(path);
+					}
+				}
+
+				assertEquals(shortestPaths, asSet(pathFinder.shortestPaths(source, destination, 4)));
+				pathsFound += shortestPaths.size();
+			}
+		}
+		assertTrue(pathsFound > 48);
+	}
+
+	@Test
+	void testShortestPathsToItself() {
+		int source = node(ChordSignature.MINOR, Interval.PERFECT4);
+		List<int[]> paths = pathFinder.shortestPaths(source, source, 3);
+
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] {source}, paths.get(0));
+	}
+
+	@Test
+	void testNoPathWithinDepth() {
+		int source = node(ChordSignature.MAJOR, Interval.UNISON);
+		int destination = node(ChordSignature.MINOR, Interval.DIMINISHED5);
+		int shortest = pathFinder.shortestPaths(source, destination, 10).get(0).length - 1;
+		assertTrue(shortest > 1);
+
+		assertTrue(pathFinder.shortestPaths(source, destination, shortest - 1).isEmpty());
+		assertTrue(pathFinder.kShortestPaths(source, destination, shortest - 1, 5).isEmpty());
+		//chords that aren't in the request can't be reached
+		assertTrue(pathFinder.shortestPaths(source, node(ChordSignature.MAJOR_7, Interval.UNISON), 10).isEmpty());
+	}
+
+	@Test
+	void testKShortestPathsAreShortestLooplessPaths() {
+		int source = node(ChordSignature.MAJOR, Interval.UNISON);
+		int destination = node(ChordSignature.SUS2, Interval.MINOR6);
+		List<List<Integer>> naivePaths = allLooplessPaths(source, destination, 5);
+		Set<List<Integer>> naivePathSet = new HashSet<>(naivePaths);
+		int[] naiveLengths = naivePaths.stream().mapToInt(List::size).sorted().toArray();
+		assertTrue(naivePaths.size() > 20);
+
+		List<int[]> paths = pathFinder.kShortestPaths(source, destination, 5, 20);
+		assertEquals(20, paths.size());
+		assertTrue(naivePathSet.containsAll(asSet(paths)));
+		for(int i = 0; i < paths.size(); i++) {
+			assertEquals(naiveLengths[i], paths.get(i).length, "paths are returned shortest first");
+		}
+
+		//asking for more paths than there are returns all of them
+		List<int[]> allPaths = pathFinder.kShortestPaths(source, destination, 5, naivePaths.size() + 10);
+		assertEquals(naivePathSet, asSet(allPaths));
+	}
+
+	@Test
+	void testKShortestPathsToItself() {
+		int source = node(ChordSignature.P5, Interval.MINOR2);
+		List<int[]> paths = pathFinder.kShortestPaths(source, source, 4, 3);
+
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] {source}, paths.get(0));
+	}
+
+	@Test
+	void testNullGraph() {
+		assertThrows(NullPointerException.class, () -> new ChordPathFinder(null));
+	}
+}
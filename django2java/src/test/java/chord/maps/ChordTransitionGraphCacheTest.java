@@ -0,0 +1,92 @@
+package chord.maps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.IntervalRequest;
+import chord.relations.request.RatingRequest;
+import chord.relations.request.RequestInitializationException;
+
+public class ChordTransitionGraphCacheTest {
+
+	ChordChangeConsonanceModel model;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+		model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.MAJOR6, ConsonanceRating.GOOD));
+		model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.MAJOR, Interval.PERFECT5, ConsonanceRating.VERY_GOOD));
+		model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.MINOR3, ConsonanceRating.BAD));
+	}
+
+	private static ChordChangeConsonanceRecordRequest request(ConsonanceRating... ratings) throws RequestInitializationException {
+		return new ChordChangeConsonanceRecordRequest(
+				ChordRequest.allChordsRequest(),
+				ChordRequest.allChordsRequest(),
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ratings));
+	}
+
+	@Test
+	void testSameRecordsShareGraph() throws RequestInitializationException {
+		ChordTransitionGraphCache cache = new ChordTransitionGraphCache(model, 4);
+		ChordTransitionGraph graph = cache.get(request(ConsonanceRating.GOOD, ConsonanceRating.VERY_GOOD));
+
+		assertSame(graph, cache.get(request(ConsonanceRating.VERY_GOOD, ConsonanceRating.GOOD)));
+		assertEquals(2, graph.numberOfTransitions());
+		assertEquals(1, cache.size());
+
+		ChordTransitionGraph badGraph = cache.get(request(ConsonanceRating.BAD));
+		assertNotSame(graph, badGraph);
+		assertEquals(1, badGraph.numberOfTransitions());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	void testChangedRequestGetsNewGraph() throws RequestInitializationException {
+		ChordTransitionGraphCache cache = new ChordTransitionGraphCache(model, 4);
+		ChordChangeConsonanceRecordRequest request = request(ConsonanceRating.GOOD);
+		ChordTransitionGraph graph = cache.get(request);
+
+		request.addRatingRequest(new RatingRequest(ConsonanceRating.BAD));
+		ChordTransitionGraph changedGraph = cache.get(request);
+
+		assertNotSame(graph, changedGraph);
+		assertEquals(ChordSignature.MINOR.ordinal(),
+				ChordTransitionGraph.signatureOrdinal(changedGraph.transitionInto(0)));
+	}
+
+	@Test
+	void testLeastRecentlyUsedGraphDropped() throws RequestInitializationException {
+		ChordTransitionGraphCache cache = new ChordTransitionGraphCache(model, 2);
+		ChordTransitionGraph good = cache.get(request(ConsonanceRating.GOOD));
+		ChordTransitionGraph bad = cache.get(request(ConsonanceRating.BAD));
+
+		//using the good graph again makes the bad graph the least recently used
+		assertSame(good, cache.get(request(ConsonanceRating.GOOD)));
+		cache.get(request(ConsonanceRating.VERY_GOOD));
+
+		assertEquals(2, cache.size());
+		assertSame(good, cache.get(request(ConsonanceRating.GOOD)));
+		assertNotSame(bad, cache.get(request(ConsonanceRating.BAD)));
+	}
+
+	@Test
+	void testInvalidArguments() {
+		assertThrows(NullPointerException.class, () -> new ChordTransitionGraphCache(null, 2));
+		assertThrows(IllegalArgumentException.class, () -> new ChordTransitionGraphCache(model, 0));
+		assertThrows(NullPointerException.class, () -> new ChordTransitionGraphCache(model, 2).get(null));
+	}
+}
@@ -0,0 +1,88 @@
+package chord.maps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.RequestInitializationException;
+
+public class ChordTransitionGraphTest {
+
+	ChordChangeConsonanceModel model;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+		rate(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.MAJOR6, ConsonanceRating.GOOD);
+		rate(ChordSignature.MAJOR, ChordSignature.MAJOR, Interval.PERFECT5, ConsonanceRating.VERY_GOOD);
+		rate(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.MINOR3, ConsonanceRating.BAD);
+	}
+
+	private void rate(ChordSignature start, ChordSignature end, Interval interval, ConsonanceRating rating) {
+		model.addRating(new ChordChangeConsonanceRecord(start, end, interval, rating));
+	}
+
+	private static int node(ChordSignature sig, Interval rootOffset) {
+		return ChordTransitionGraph.node(sig.ordinal(), rootOffset.ordinal());
+	}
+
+	@Test
+	void testTransitionsFromSignature() throws RequestInitializationException {
+		ChordTransitionGraph graph = ChordTransitionGraph.build(model, ChordChangeConsonanceRecordRequest.allPossibleRecords());
+		int major = ChordSignature.MAJOR.ordinal();
+
+		assertEquals(3, graph.numberOfTransitions());
+		assertEquals(2, graph.endOfTransitions(major) - graph.firstTransition(major));
+		assertEquals(1, graph.endOfTransitions(ChordSignature.MINOR.ordinal()) - graph.firstTransition(ChordSignature.MINOR.ordinal()));
+
+		ChordTransitionGraph pleasantGraph = ChordTransitionGraph.build(model,
+				ChordChangeConsonanceRecordRequest.allPleasantRatedRecordsForReferenceChord(ChordSignature.MINOR));
+		assertEquals(0, pleasantGraph.numberOfTransitions());
+	}
+
+	@Test
+	void testTargetAddsRootOffsets() {
+		int transition = ChordTransitionGraph.node(ChordSignature.MAJOR.ordinal(), Interval.PERFECT5.ordinal());
+
+		assertEquals(node(ChordSignature.MAJOR, Interval.PERFECT5),
+				ChordTransitionGraph.target(node(ChordSignature.MINOR, Interval.UNISON), transition));
+		//7 + 7 semitones wraps around to 2
+		assertEquals(node(ChordSignature.MAJOR, Interval.MAJOR2),
+				ChordTransitionGraph.target(node(ChordSignature.MINOR, Interval.PERFECT5), transition));
+	}
+
+	@Test
+	void testDistancesTo() {
+		ChordTransitionGraph graph = ChordTransitionGraph.build(model, ChordChangeConsonanceRecordRequest.allPossibleRecords());
+		int[] distances = graph.distancesTo(node(ChordSignature.MAJOR, Interval.UNISON));
+
+		assertEquals(0, distances[node(ChordSignature.MAJOR, Interval.UNISON)]);
+		//A minor goes up a minor third to C major
+		assertEquals(1, distances[node(ChordSignature.MINOR, Interval.MAJOR6)]);
+		//F major goes up a fifth to C major
+		assertEquals(1, distances[node(ChordSignature.MAJOR, Interval.PERFECT4)]);
+		assertEquals(2, distances[node(ChordSignature.MINOR, Interval.MAJOR2)]);
+		assertEquals(ChordTransitionGraph.UNREACHABLE, distances[node(ChordSignature.SUS2, Interval.UNISON)]);
+	}
+
+	@Test
+	void testRatingsKeptWithTransitions() {
+		ChordTransitionGraph graph = ChordTransitionGraph.build(model, ChordChangeConsonanceRecordRequest.allPossibleRecords());
+		int major = ChordSignature.MAJOR.ordinal();
+
+		for(int i = graph.firstTransition(major); i < graph.endOfTransitions(major); i++) {
+			ConsonanceRating expected = ChordTransitionGraph.signatureOrdinal(graph.transition(i)) == major ?
+					ConsonanceRating.VERY_GOOD : ConsonanceRating.GOOD;
+			assertEquals(expected, graph.rating(i));
+		}
+		int minor = ChordSignature.MINOR.ordinal();
+		assertEquals(ConsonanceRating.BAD, graph.rating(graph.firstTransition(minor)));
+	}
+}
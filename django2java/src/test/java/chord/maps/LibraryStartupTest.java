@@ -0,0 +1,81 @@
+package chord.maps;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import chord.maps.LibraryStartup.LoadedModels;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.NoteConsonanceModel;
+import chord.relations.ScaleConsonanceModel;
+import chord.relations.persist.PersistenceException;
+
+public class LibraryStartupTest {
+
+	@Test
+	void testModelsLoadedConcurrently() throws PersistenceException {
+		ChordChangeConsonanceModel chordChangeModel = new ChordChangeConsonanceModel();
+		ScaleConsonanceModel scaleModel = new ScaleConsonanceModel();
+		NoteConsonanceModel noteModel = new NoteConsonanceModel();
+
+		//every load waits for the other two, so they only finish if they run at the same time
+		CyclicBarrier allLoading = new CyclicBarrier(3);
+		LibraryStartup startup = new LibraryStartup(
+				() -> awaitOthers(allLoading, chordChangeModel),
+				() -> awaitOthers(allLoading, scaleModel),
+				() -> awaitOthers(allLoading, noteModel));
+
+		LoadedModels models = startup.loadModels();
+
+		assertSame(chordChangeModel, models.chordChangeModel());
+		assertSame(scaleModel, models.scaleModel());
+		assertSame(noteModel, models.noteModel());
+	}
+
+	@Test
+	void testFailedLoadIsThrown() {
+		PersistenceException failure = new PersistenceException("bad model file");
+		LibraryStartup startup = new LibraryStartup(
+				ChordChangeConsonanceModel::new,
+				() -> { throw failure; },
+				NoteConsonanceModel::new);
+
+		assertSame(failure, assertThrows(PersistenceException.class, startup::loadModels));
+	}
+
+	@Test
+	void testRuntimeExceptionIsThrown() {
+		IllegalStateException failure = new IllegalStateException("broken loader");
+		LibraryStartup startup = new LibraryStartup(
+				() -> { throw failure; },
+				ScaleConsonanceModel::new,
+				NoteConsonanceModel::new);
+
+		assertSame(failure, assertThrows(IllegalStateException.class, startup::loadModels));
+	}
+
+	@Test
+	void testNullLoaders() {
+		assertThrows(NullPointerException.class,
+				() -> new LibraryStartup(null, ScaleConsonanceModel::new, NoteConsonanceModel::new));
+		assertThrows(NullPointerException.class,
+				() -> new LibraryStartup(ChordChangeConsonanceModel::new, null, NoteConsonanceModel::new));
+		assertThrows(NullPointerException.class,
+				() -> new LibraryStartup(ChordChangeConsonanceModel::new, ScaleConsonanceModel::new, null));
+	}
+
+	private static <MODEL> MODEL awaitOthers(CyclicBarrier barrier, MODEL model) throws PersistenceException {
+		try {
+			barrier.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+			throw new PersistenceException("loads did not run at the same time", e);
+		}
+		return model;
+	}
+}
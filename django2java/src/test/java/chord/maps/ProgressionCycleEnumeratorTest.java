@@ -0,0 +1,231 @@
+package chord.maps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.Chord;
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.NoteName;
+import chord.ident.ChordSignature;
+import chord.progression.CircularLinkedList;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.RatingModel;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.IntervalRequest;
+import chord.relations.request.RatingRequest;
+import chord.relations.request.RequestInitializationException;
+
+public class ProgressionCycleEnumeratorTest {
+
+	/**
+	 * Rate every cell of the model, the ratings spread over the cells so
+	 * that the searches of the chord.maps tests have every kind of change
+	 * to choose from.
+	 * @param model model to be filled
+	 */
+	static void populateTestModel(RatingModel<ChordChangeConsonanceRecord,ChordChangeConsonanceRecordRequest> model) {
+		ConsonanceRating[] ratings = ConsonanceRating.values();
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				model.addRating(new ChordChangeConsonanceRecord(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						ratings[(cell * 7) % ratings.length]));
+			}
+		}
+	}
+
+	/**
+	 * Request for the changes between the chords with any interval and
+	 * one of the ratings.
+	 */
+	static ChordChangeConsonanceRecordRequest testRequest(ChordRequest chords, ConsonanceRating... ratings)
+			throws RequestInitializationException {
+		return new ChordChangeConsonanceRecordRequest(
+				chords,
+				chords,
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ratings));
+	}
+
+	/**
+	 * Request for the GOOD and VERY_GOOD changes between MAJOR, MINOR, SUS2
+	 * and P5 chords.
+	 */
+	static ChordChangeConsonanceRecordRequest testRequest() throws RequestInitializationException {
+		return testRequest(
+				new ChordRequest(ChordSignature.MAJOR, ChordSignature.MINOR, ChordSignature.SUS2, ChordSignature.P5),
+				ConsonanceRating.GOOD, ConsonanceRating.VERY_GOOD);
+	}
+
+	ChordChangeConsonanceModel model;
+
+	ChordChangeConsonanceRecordRequest allRecords;
+
+	//one instance per chord so the progressions can be compared
+	Chord[][] chords;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+		allRecords = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		chords = new Chord[ChordSignature.values().length][NoteName.values().length];
+		for(ChordSignature sig : ChordSignature.values()) {
+			for(NoteName root : NoteName.values()) {
+				chords[sig.ordinal()][root.ordinal()] = new ConcreteChord(root, sig);
+			}
+		}
+	}
+
+	private void rate(ChordSignature start, ChordSignature end, Interval interval) {
+		model.addRating(new ChordChangeConsonanceRecord(start, end, interval, ConsonanceRating.GOOD));
+	}
+
+	private Chord chord(NoteName root, ChordSignature sig) {
+		return chords[sig.ordinal()][root.ordinal()];
+	}
+
+	@SafeVarargs
+	private static <T> CircularLinkedList<T> createList(T... elements) {
+		CircularLinkedList<T> list = new CircularLinkedList<>();
+		for(T element : elements) {
+			list.addNode(element);
+		}
+		return list;
+	}
+
+	private ProgressionCycleEnumerator enumerator(ChordSignature start, ChordChangeConsonanceRecordRequest request, int depth) {
+		return new ProgressionCycleEnumerator(ChordTransitionGraph.build(model, request), start, depth);
+	}
+
+	@Test
+	void testTwoChordProgression() {
+		rate(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.MAJOR6);
+		rate(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.MINOR3);
+		//doesn't come back to the start root
+		rate(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.PERFECT4);
+
+		assertEquals(
+				Set.of(createList(ChordSignature.MAJOR, ChordSignature.MINOR)),
+				enumerator(ChordSignature.MAJOR, allRecords, 2).findGenericProgressions());
+		assertEquals(
+				Set.of(createList(chord(NoteName.C, ChordSignature.MAJOR), chord(NoteName.A, ChordSignature.MINOR))),
+				enumerator(ChordSignature.MAJOR, allRecords, 2).findProgressions(this::chord, NoteName.C));
+	}
+
+	@Test
+	void testRootsMustComeBackToStart() {
+		rate(ChordSignature.MAJOR, ChordSignature.MAJOR, Interval.PERFECT4);
+
+		//the circle of fourths takes twelve chords to come back
+		assertTrue(enumerator(ChordSignature.MAJOR, allRecords, 11).findGenericProgressions().isEmpty());
+
+		Set<CircularLinkedList<ChordSignature>> progressions =
+				enumerator(ChordSignature.MAJOR, allRecords, 12).findGenericProgressions();
+		assertEquals(1, progressions.size());
+		assertEquals(12, progressions.iterator().next().size());
+	}
+
+	@Test
+	void testRotationsReturnedOnce() {
+		//MAJOR -> MINOR -> MAJOR two semitones up
+		rate(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.MAJOR2);
+		rate(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.UNISON);
+		//MAJOR -> SUS2 -> MAJOR ten semitones up
+		rate(ChordSignature.MAJOR, ChordSignature.SUS2, Interval.PERFECT5);
+		rate(ChordSignature.SUS2, ChordSignature.MAJOR, Interval.MINOR3);
+
+		//the two cycles are rotations of each other as signatures
+		assertEquals(2, enumerator(ChordSignature.MAJOR, allRecords, 4).findProgressions(this::chord, NoteName.C).size());
+		assertEquals(
+				Set.of(createList(ChordSignature.MAJOR, ChordSignature.MINOR, ChordSignature.MAJOR, ChordSignature.SUS2)),
+				enumerator(ChordSignature.MAJOR, allRecords, 4).findGenericProgressions());
+	}
+
+	@Test
+	void testSameProgressionWithDifferentRootsReturnedOnce() {
+		rate(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.MAJOR2);
+		rate(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.MINOR7);
+		rate(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.PERFECT5);
+		rate(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.PERFECT4);
+
+		assertEquals(2, enumerator(ChordSignature.MAJOR, allRecords, 2).findProgressions(this::chord, NoteName.C).size());
+		assertEquals(1, enumerator(ChordSignature.MAJOR, allRecords, 2).findGenericProgressions().size());
+	}
+
+	@Test
+	void testRequestFiltersChanges() throws RequestInitializationException {
+		rate(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.MAJOR6);
+		model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.MINOR3, ConsonanceRating.BAD));
+
+		ChordChangeConsonanceRecordRequest goodChanges = new ChordChangeConsonanceRecordRequest(
+				ChordRequest.allChordsRequest(),
+				ChordRequest.allChordsRequest(),
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ConsonanceRating.GOOD, ConsonanceRating.VERY_GOOD));
+
+		assertEquals(1, enumerator(ChordSignature.MAJOR, allRecords, 2).findGenericProgressions().size());
+		assertTrue(enumerator(ChordSignature.MAJOR, goodChanges, 2).findGenericProgressions().isEmpty());
+	}
+
+	@Test
+	void testSameCyclesAsNaiveSearch() throws RequestInitializationException {
+		populateTestModel(model);
+		ChordChangeConsonanceRecordRequest request = testRequest();
+
+		Set<CircularLinkedList<Chord>> expected = new HashSet<>();
+		List<Chord> path = new ArrayList<>();
+		path.add(chord(NoteName.C, ChordSignature.MINOR));
+		naiveSearch(model.getRecords(request), path, 5, expected);
+
+		Set<CircularLinkedList<Chord>> progressions =
+				enumerator(ChordSignature.MINOR, request, 5).findProgressions(this::chord, NoteName.C);
+		assertEquals(expected, progressions);
+		assertTrue(progressions.size() > 100);
+	}
+
+	/**
+	 * Try every change from the last chord of the path, recursing without
+	 * any pruning.
+	 */
+	private void naiveSearch(Set<ChordChangeConsonanceRecord> records, List<Chord> path, int depth, Set<CircularLinkedList<Chord>> cycles) {
+		Chord last = path.get(path.size() - 1);
+		for(ChordChangeConsonanceRecord record : records) {
+			if(record.startChordSignature() != last.getSignature()) {
+				continue;
+			}
+			Chord next = chord(last.getRoot().getNoteByInterval(record.intervalBetweenRoots()), record.endChordSignature());
+			if(next.equals(path.get(0))) {
+				cycles.add(createList(path.toArray(new Chord[0])));
+			}else if( !path.contains(next) && path.size() < depth) {
+				path.add(next);
+				naiveSearch(records, path, depth, cycles);
+				path.remove(path.size() - 1);
+			}
+		}
+	}
+
+	@Test
+	void testInvalidArguments() {
+		ChordTransitionGraph graph = ChordTransitionGraph.build(model, allRecords);
+
+		assertThrows(NullPointerException.class, () -> new ProgressionCycleEnumerator(null, ChordSignature.MAJOR, 2));
+		assertThrows(NullPointerException.class, () -> new ProgressionCycleEnumerator(graph, null, 2));
+		assertThrows(IllegalArgumentException.class, () -> new ProgressionCycleEnumerator(graph, ChordSignature.MAJOR, 0));
+		assertTrue(new ProgressionCycleEnumerator(graph, ChordSignature.MAJOR, 1).findGenericProgressions().isEmpty());
+	}
+}
@@ -0,0 +1,106 @@
+package chord.maps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.Chord;
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.NoteName;
+import chord.ident.ChordSignature;
+import chord.progression.CircularLinkedList;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.RequestInitializationException;
+
+public class ProgressionSearchTest {
+
+	ChordChangeConsonanceModel model;
+
+	ChordChangeConsonanceRecordRequest request;
+
+	@BeforeEach
+	void init() throws RequestInitializationException {
+		model = new ChordChangeConsonanceModel();
+		ProgressionCycleEnumeratorTest.populateTestModel(model);
+		request = ProgressionCycleEnumeratorTest.testRequest();
+	}
+
+	private ProgressionCycleEnumerator enumerator(ChordChangeConsonanceRecordRequest request, int depth) {
+		return new ProgressionCycleEnumerator(ChordTransitionGraph.build(model, request), ChordSignature.MAJOR, depth);
+	}
+
+	@Test
+	void testSameProgressionsAsSequentialSearch() {
+		ProgressionCycleEnumerator enumerator = enumerator(request, 5);
+		Set<CircularLinkedList<ChordSignature>> genericProgressions = enumerator.findGenericProgressions();
+		Set<CircularLinkedList<Chord>> progressions = enumerator.findProgressions(ConcreteChord::new, NoteName.D);
+		assertTrue(progressions.size() > 1000);
+
+		//one thread splits the first changes only, many threads split the second ones as well
+		for(int parallelism : new int[] {1, 4, 64}) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				assertEquals(genericProgressions,
+						new ProgressionSearch<>(enumerator, enumerator.signatureProgressions(), pool).join());
+				assertEquals(progressions,
+						new ProgressionSearch<>(enumerator, enumerator.chordProgressions(ConcreteChord::new, NoteName.D), pool).join());
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	void testShortProgressions() {
+		//progressions of two chords are found while splitting the first changes
+		model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.MAJOR6, ConsonanceRating.GOOD));
+		model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MINOR, ChordSignature.MAJOR, Interval.MINOR3, ConsonanceRating.GOOD));
+		ProgressionCycleEnumerator enumerator = enumerator(request, 2);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Set<CircularLinkedList<ChordSignature>> progressions =
+					new ProgressionSearch<>(enumerator, enumerator.signatureProgressions(), pool).join();
+			assertEquals(enumerator.findGenericProgressions(), progressions);
+			assertTrue( !progressions.isEmpty());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testCancel() throws InterruptedException {
+		//far too many progressions to ever finish
+		ProgressionCycleEnumerator enumerator = enumerator(ChordChangeConsonanceRecordRequest.allPossibleRecords(), 8);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		ProgressionSearch<ChordSignature> search = new ProgressionSearch<>(enumerator, enumerator.signatureProgressions(), pool);
+
+		Thread.sleep(100);
+		search.cancel();
+
+		assertThrows(CancellationException.class, search::join);
+		assertTrue(search.isCancelled());
+		assertTrue(search.isDone());
+		//every task stops soon after the search is cancelled
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testNullPool() {
+		ProgressionCycleEnumerator enumerator = enumerator(request, 3);
+
+		assertThrows(NullPointerException.class,
+				() -> new ProgressionSearch<>(enumerator, enumerator.signatureProgressions(), null));
+	}
+}
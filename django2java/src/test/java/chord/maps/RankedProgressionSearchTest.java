@@ -0,0 +1,189 @@
+package chord.maps;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.progression.ProgressionScorer;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.RequestInitializationException;
+
+public class RankedProgressionSearchTest {
+
+	ChordTransitionGraph graph;
+
+	@BeforeEach
+	void init() throws RequestInitializationException {
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		ProgressionCycleEnumeratorTest.populateTestModel(model);
+		ChordRequest someChords = new ChordRequest(ChordSignature.MAJOR, ChordSignature.MINOR, ChordSignature.SUS2);
+		graph = ChordTransitionGraph.build(model, ProgressionCycleEnumeratorTest.testRequest(
+				someChords, ConsonanceRating.MEDIOCRE, ConsonanceRating.GOOD, ConsonanceRating.VERY_GOOD));
+	}
+
+	private static int node(ChordSignature sig, Interval rootOffset) {
+		return ChordTransitionGraph.node(sig.ordinal(), rootOffset.ordinal());
+	}
+
+	/**
+	 * Score of every progression of the length from the start nodes, found the slow way.
+	 */
+	private Map<List<Integer>, Double> allProgressions(int[] startNodes, int endNode, int length, ProgressionScorer scorer) {
+		Map<List<Integer>, Double> progressions = new HashMap<>();
+		for(int startNode : startNodes) {
+			List<Integer> path = new ArrayList<>();
+			path.add(startNode);
+			addProgressions(path, scorer.startScore(), endNode, length, scorer, progressions);
+		}
+		return progressions;
+	}
+
+	private void addProgressions(List<Integer> path, double score, int endNode, int length, ProgressionScorer scorer,
+			Map<List<Integer>, Double> progressions) {
+		int node = path.get(path.size() - 1);
+		if(path.size() == length) {
+			if(endNode == RankedProgressionSearch.NO_NODE || node == endNode) {
+				progressions.put(new ArrayList<>(path), score);
+			}
+			return;
+		}
+		int signatureOrdinal = ChordTransitionGraph.signatureOrdinal(node);
+		for(int i = graph.firstTransition(signatureOrdinal); i < graph.endOfTransitions(signatureOrdinal); i++) {
+			int next = ChordTransitionGraph.target(node, graph.transition(i));
+			boolean backToStart = path.size() == length - 1 && next == endNode && next == path.get(0);
+			if( !path.contains(next) || backToStart) {
+				path.add(next);
+				addProgressions(path, scorer.addChange(score, graph.rating(i)), endNode, length, scorer, progressions);
+				path.remove(path.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * Check the search finds progressions with the best scores of all the progressions, best first.
+	 */
+	private void assertBestProgressions(int[] startNodes, int endNode, int length, int numberOfProgressions, ProgressionScorer scorer) {
+		Map<List<Integer>, Double> allProgressions = allProgressions(startNodes, endNode, length, scorer);
+		double[] bestScores = allProgressions.values().stream()
+				.mapToDouble(Double::doubleValue)
+				.map(score -> -score)
+				.sorted()
+				.map(score -> -score)
+				.limit(numberOfProgressions)
+				.toArray();
+
+		List<RankedProgressionSearch.RankedNodes> progressions =
+				new RankedProgressionSearch(graph, scorer, length, numberOfProgressions, endNode).find(startNodes);
+
+		assertTrue( !progressions.isEmpty());
+		assertArrayEquals(bestScores, progressions.stream().mapToDouble(RankedProgressionSearch.RankedNodes::score).toArray());
+		for(RankedProgressionSearch.RankedNodes progression : progressions) {
+			List<Integer> nodes = Arrays.stream(progression.nodes()).boxed().toList();
+			assertEquals(allProgressions.get(nodes), progression.score());
+		}
+		assertEquals(progressions.size(), progressions.stream().map(progression -> Arrays.toString(progression.nodes())).distinct().count());
+	}
+
+	@Test
+	void testSumFromStartChord() {
+		int[] start = {node(ChordSignature.MAJOR, Interval.UNISON)};
+		assertBestProgressions(start, RankedProgressionSearch.NO_NODE, 5, 50, ProgressionScorer.sum());
+		assertBestProgressions(start, RankedProgressionSearch.NO_NODE, 4, 1, ProgressionScorer.sum());
+	}
+
+	@Test
+	void testMinFromStartChord() {
+		int[] start = {node(ChordSignature.MINOR, Interval.PERFECT4)};
+		assertBestProgressions(start, RankedProgressionSearch.NO_NODE, 5, 50, ProgressionScorer.min());
+	}
+
+	@Test
+	void testScorerWithoutBound() {
+		//counts the GOOD changes so the best progressions aren't the ones the search tries first
+		ProgressionScorer goodChanges = new ProgressionScorer() {
+
+			@Override
+			public double startScore() {
+				return 0;
+			}
+
+			@Override
+			public double addChange(double score, ConsonanceRating rating) {
+				return rating == ConsonanceRating.GOOD ? score + 1 : score;
+			}
+		};
+		assertBestProgressions(new int[] {node(ChordSignature.SUS2, Interval.UNISON)}, RankedProgressionSearch.NO_NODE, 4, 30, goodChanges);
+	}
+
+	@Test
+	void testEndChord() {
+		int[] start = {node(ChordSignature.MAJOR, Interval.UNISON)};
+		int end = node(ChordSignature.MINOR, Interval.MAJOR6);
+		assertBestProgressions(start, end, 5, 20, ProgressionScorer.sum());
+
+		//progressions ending where they start
+		assertBestProgressions(start, start[0], 5, 20, ProgressionScorer.sum());
+
+		int[] anyStart = new int[ChordTransitionGraph.NUMBER_OF_NODES];
+		Arrays.setAll(anyStart, node -> node);
+		assertBestProgressions(anyStart, end, 4, 20, ProgressionScorer.sum());
+	}
+
+	@Test
+	void testEveryStartSignature() {
+		int[] starts = {
+				node(ChordSignature.MAJOR, Interval.UNISON),
+				node(ChordSignature.MINOR, Interval.UNISON),
+				node(ChordSignature.SUS2, Interval.UNISON)};
+		assertBestProgressions(starts, RankedProgressionSearch.NO_NODE, 4, 40, ProgressionScorer.sum());
+	}
+
+	@Test
+	void testFewerProgressionsThanAsked() {
+		int start = node(ChordSignature.MAJOR, Interval.UNISON);
+		int numberOfProgressions = allProgressions(new int[] {start}, RankedProgressionSearch.NO_NODE, 3, ProgressionScorer.sum()).size();
+
+		List<RankedProgressionSearch.RankedNodes> progressions = new RankedProgressionSearch(
+				graph, ProgressionScorer.sum(), 3, numberOfProgressions + 100, RankedProgressionSearch.NO_NODE).find(new int[] {start});
+		assertEquals(numberOfProgressions, progressions.size());
+		assertTrue(numberOfProgressions > 1);
+	}
+
+	@Test
+	void testSingleChord() {
+		int start = node(ChordSignature.MAJOR, Interval.UNISON);
+		List<RankedProgressionSearch.RankedNodes> progressions = new RankedProgressionSearch(
+				graph, ProgressionScorer.sum(), 1, 10, RankedProgressionSearch.NO_NODE).find(new int[] {start});
+
+		assertEquals(1, progressions.size());
+		assertArrayEquals(new int[] {start}, progressions.get(0).nodes());
+		assertEquals(0, progressions.get(0).score());
+		assertTrue(new RankedProgressionSearch(graph, ProgressionScorer.sum(), 1, 10, node(ChordSignature.MINOR, Interval.UNISON))
+				.find(new int[] {start}).isEmpty());
+	}
+
+	@Test
+	void testInvalidArguments() {
+		ProgressionScorer sum = ProgressionScorer.sum();
+		assertThrows(NullPointerException.class, () -> new RankedProgressionSearch(null, sum, 3, 10, RankedProgressionSearch.NO_NODE));
+		assertThrows(NullPointerException.class, () -> new RankedProgressionSearch(graph, null, 3, 10, RankedProgressionSearch.NO_NODE));
+		assertThrows(IllegalArgumentException.class, () -> new RankedProgressionSearch(graph, sum, 0, 10, RankedProgressionSearch.NO_NODE));
+		assertThrows(IllegalArgumentException.class, () -> new RankedProgressionSearch(graph, sum, 3, 0, RankedProgressionSearch.NO_NODE));
+		assertThrows(IllegalArgumentException.class,
+				() -> new RankedProgressionSearch(graph, sum, 3, 10, ChordTransitionGraph.NUMBER_OF_NODES));
+	}
+}
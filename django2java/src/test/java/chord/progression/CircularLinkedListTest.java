@@ -47,6 +47,9 @@ public class CircularLinkedListTest {
 		assertEquals(referenceList,equalList);
 		assertNotEquals(referenceList,nonEqualList);
 		assertNotEquals(referenceList,equivalentList);
+		assertNotEquals(referenceList,createList(1,2,3,1));
+		assertNotEquals(createList(1,2,3,1),referenceList);
+		assertEquals(new CircularLinkedList<Integer>(),new CircularLinkedList<Integer>());
 	}
 	
 	@Test
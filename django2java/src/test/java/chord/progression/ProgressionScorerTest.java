@@ -0,0 +1,68 @@
+package chord.progression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+
+public class ProgressionScorerTest {
+
+	private static double score(ProgressionScorer scorer, ConsonanceRating... ratings) {
+		double score = scorer.startScore();
+		for(ConsonanceRating rating : ratings) {
+			score = scorer.addChange(score, rating);
+		}
+		return score;
+	}
+
+	@Test
+	void testSum() {
+		ProgressionScorer sum = ProgressionScorer.sum();
+
+		assertEquals(0, score(sum));
+		assertEquals(4 + 3 + 0, score(sum, ConsonanceRating.VERY_GOOD, ConsonanceRating.GOOD, ConsonanceRating.VERY_BAD));
+		//two more changes can add at most two VERY_GOOD changes
+		assertEquals(7 + 8, sum.upperBound(score(sum, ConsonanceRating.VERY_GOOD, ConsonanceRating.GOOD), 2));
+	}
+
+	@Test
+	void testMin() {
+		ProgressionScorer min = ProgressionScorer.min();
+
+		assertEquals(4, score(min));
+		assertEquals(2, score(min, ConsonanceRating.VERY_GOOD, ConsonanceRating.MEDIOCRE, ConsonanceRating.GOOD));
+		assertEquals(2, min.upperBound(score(min, ConsonanceRating.MEDIOCRE), 3));
+	}
+
+	@Test
+	void testBoundsNeverBelowFinalScore() {
+		ConsonanceRating[] ratings = ConsonanceRating.values();
+		for(ProgressionScorer scorer : new ProgressionScorer[] {ProgressionScorer.sum(), ProgressionScorer.min()}) {
+			for(ConsonanceRating first : ratings) {
+				for(ConsonanceRating second : ratings) {
+					double bound = scorer.upperBound(score(scorer, first), 1);
+					assertTrue(bound >= score(scorer, first, second));
+				}
+			}
+		}
+	}
+
+	@Test
+	void testDefaultBoundDoesNotPrune() {
+		ProgressionScorer count = new ProgressionScorer() {
+
+			@Override
+			public double startScore() {
+				return 0;
+			}
+
+			@Override
+			public double addChange(double score, ConsonanceRating rating) {
+				return score + 1;
+			}
+		};
+		assertEquals(Double.POSITIVE_INFINITY, count.upperBound(3, 0));
+	}
+}
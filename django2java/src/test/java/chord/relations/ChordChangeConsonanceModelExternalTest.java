@@ -3,11 +3,13 @@ package chord.relations;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Set;
+import java.util.HashSet;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,6 +19,10 @@ import chord.Interval;
 import chord.ident.ChordSignature;
 import chord.relations.record.ChordChangeConsonanceRecord;
 import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.IntervalRequest;
+import chord.relations.request.RatingRequest;
+import chord.relations.request.RequestInitializationException;
 
 public class ChordChangeConsonanceModelExternalTest {
 	/**
@@ -444,6 +450,40 @@ public class ChordChangeConsonanceModelExternalTest {
 				lastRecordRated.intervalBetweenRoots());
 	}
 
+	/**
+	 * Fill the model, remove a rating from the middle and make sure
+	 * that the next record to be rated and the last record rated move
+	 * back to the hole and forward again once it is filled.
+	 */
+	@Test
+	void testNextAndLastRecordAfterRemovalOutOfOrder() {
+		populateTestModel(true, cccModel);
+
+		final ChordChangeConsonanceRecord removedRecord = 
+				new ChordChangeConsonanceRecord(
+						ChordSignature.MAJOR,
+						ChordSignature.MINOR,
+						Interval.PERFECT5,
+						ConsonanceRating.GOOD);
+		cccModel.removeRating(removedRecord);
+
+		final ChordChangeConsonanceRecord nextRecord = 
+				cccModel.getNextRecordToBeRated();
+		assertEquals(ChordSignature.MAJOR, nextRecord.startChordSignature());
+		assertEquals(ChordSignature.MINOR, nextRecord.endChordSignature());
+		assertEquals(Interval.PERFECT5, nextRecord.intervalBetweenRoots());
+
+		final ChordChangeConsonanceRecord lastRecord = 
+				cccModel.getLastRecordRated();
+		assertEquals(ChordSignature.MAJOR, lastRecord.startChordSignature());
+		assertEquals(ChordSignature.MINOR, lastRecord.endChordSignature());
+		assertEquals(Interval.DIMINISHED5, lastRecord.intervalBetweenRoots());
+
+		cccModel.addRating(removedRecord);
+		assertNull(cccModel.getNextRecordToBeRated());
+		assertTrue(cccModel.isFull());
+	}
+
 	/**
 	 * Make sure that the isEmpty method works
 	 * with initially empty, a single entry,
@@ -556,4 +596,64 @@ public class ChordChangeConsonanceModelExternalTest {
 		//the two models should be equal
 		assertEquals(cccModel,otherModel);
 	}
+	
+	@Test
+	void testForEachRatingLeadingToAfterRemoval() throws RequestInitializationException {
+		populateTestModel(true,cccModel);
+		
+		ChordChangeConsonanceRecord removedRecord = 
+				new ChordChangeConsonanceRecord(
+						ChordSignature.MINOR, 
+						ChordSignature.MAJOR, 
+						Interval.PERFECT4, 
+						null);
+		assertNotNull(cccModel.removeRating(removedRecord));
+		
+		ChordChangeConsonanceRecordRequest request = 
+				new ChordChangeConsonanceRecordRequest(
+						ChordRequest.allChordsRequest(),
+						new ChordRequest(ChordSignature.MAJOR),
+						IntervalRequest.allIntervalsRequest(),
+						RatingRequest.allRatingsRequest());
+		
+		Set<ChordChangeConsonanceRecord> recordsLeadingToMajor = new HashSet<>();
+		cccModel.forEachRatingLeadingTo(request, 
+				(startChordSig, endChordSig, interval, rating) -> 
+					recordsLeadingToMajor.add(new ChordChangeConsonanceRecord(startChordSig, endChordSig, interval, rating)));
+		
+		assertEquals(cccModel.getRecords(request), recordsLeadingToMajor);
+		//every chord change into major except for major to major unison
+		//and the rating that was removed
+		assertEquals(ChordSignature.values().length * Interval.valuesInFirstOctave().length - 2, recordsLeadingToMajor.size());
+	}
+
+	@Test
+	void testDirtyCells() {
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		ChordChangeConsonanceRecord firstRecord = 
+				new ChordChangeConsonanceRecord(ChordSignature.firstSignature(), ChordSignature.lastSignature(), Interval.MAJOR3, ConsonanceRating.GOOD);
+		ChordChangeConsonanceRecord secondRecord = 
+				new ChordChangeConsonanceRecord(ChordSignature.lastSignature(), ChordSignature.firstSignature(), Interval.MINOR3, ConsonanceRating.BAD);
+		assertEquals(0, model.getNumberOfDirtyCells());
+
+		model.addRating(secondRecord);
+		model.addRating(firstRecord);
+		assertEquals(2, model.getNumberOfDirtyCells());
+		assertEquals(ChordChangeCellLayout.cellIndex(firstRecord), model.getDirtyCells()[0]);
+		assertEquals(ChordChangeCellLayout.cellIndex(secondRecord), model.getDirtyCells()[1]);
+
+		model.checkpoint();
+		assertEquals(0, model.getDirtyCells().length);
+
+		//changing a rating, removing one and a batch all make the cells dirty
+		model.addRating(new ChordChangeConsonanceRecord(ChordSignature.firstSignature(), ChordSignature.lastSignature(), Interval.MAJOR3, ConsonanceRating.BAD));
+		model.removeRating(secondRecord);
+		assertEquals(2, model.getNumberOfDirtyCells());
+
+		model.checkpoint();
+		model.removeRatings(Set.of(secondRecord));
+		assertEquals(0, model.getNumberOfDirtyCells());
+		model.addRatings(Set.of(secondRecord));
+		assertEquals(1, model.getNumberOfDirtyCells());
+	}
 }
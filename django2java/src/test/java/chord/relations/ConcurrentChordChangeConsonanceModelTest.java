@@ -0,0 +1,332 @@
+package chord.relations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Tests for the ConcurrentChordChangeConsonanceModel.
+ *
+ * The stress tests have several threads writing to cells that share
+ * the same long so that lost updates would show up in the ratings or
+ * in the rating count.
+ * @author DAD
+ *
+ */
+public class ConcurrentChordChangeConsonanceModelTest {
+
+	private static final int NUMBER_OF_THREADS = 8;
+
+	private ConcurrentChordChangeConsonanceModel model;
+
+	@BeforeEach
+	void setUp() {
+		model = new ConcurrentChordChangeConsonanceModel();
+	}
+
+	private static ConsonanceRating ratingForCell(int cell) {
+		return ConsonanceRating.values()[cell % ConsonanceRating.values().length];
+	}
+
+	private static ChordChangeConsonanceRecord recordForCell(int cell, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell),
+				ChordChangeCellLayout.endChord(cell),
+				ChordChangeCellLayout.interval(cell),
+				rating);
+	}
+
+	/**
+	 * Run the task on every thread at the same time and wait for all of them.
+	 */
+	private static <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		CountDownLatch startSignal = new CountDownLatch(1);
+		try {
+			List<Future<T>> futures = new ArrayList<>();
+			for(Callable<T> task : tasks) {
+				futures.add(executor.submit(() -> {
+					startSignal.await();
+					return task.call();
+				}));
+			}
+			startSignal.countDown();
+
+			List<T> results = new ArrayList<>();
+			for(Future<T> future : futures) {
+				results.add(future.get(60, TimeUnit.SECONDS));
+			}
+			return results;
+		}finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testAddGetRemove() {
+		ChordChangeConsonanceRecord record = new ChordChangeConsonanceRecord(
+				ChordSignature.MAJOR, ChordSignature.MINOR, Interval.PERFECT5, ConsonanceRating.GOOD);
+
+		assertTrue(model.isEmpty());
+		assertNull(model.addRating(record));
+		assertEquals(record, model.getRating(record));
+		assertEquals(1, model.numberOfRatings());
+		assertFalse(model.isEmpty());
+
+		ChordChangeConsonanceRecord replacement = new ChordChangeConsonanceRecord(
+				ChordSignature.MAJOR, ChordSignature.MINOR, Interval.PERFECT5, ConsonanceRating.BAD);
+		assertEquals(record, model.addRating(replacement));
+		assertEquals(1, model.numberOfRatings());
+
+		assertEquals(replacement, model.removeRating(record));
+		assertNull(model.removeRating(record));
+		assertNull(model.getRating(record));
+		assertTrue(model.isEmpty());
+	}
+
+	@Test
+	void testInvalidArguments() {
+		assertThrows(NullPointerException.class, () -> model.addRating(null));
+		assertThrows(NullPointerException.class, () -> model.addRating(
+				new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.PERFECT5, null)));
+		assertThrows(NullPointerException.class, () -> model.getRecords(null));
+		assertThrows(NullPointerException.class, () -> model.getBestTransitionsFrom(null, 1));
+		assertThrows(IllegalArgumentException.class, () -> model.getBestTransitionsFrom(ChordSignature.MAJOR, -1));
+	}
+
+	@Test
+	void testMatchesMapModel() {
+		ChordChangeConsonanceModel mapModel = new ChordChangeConsonanceModel();
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, mapModel);
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, model);
+
+		ChordChangeConsonanceRecordRequest request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		assertEquals(mapModel.getRecords(request), model.getRecords(request));
+		assertEquals(mapModel.getNextRecordToBeRated(), model.getNextRecordToBeRated());
+		assertEquals(mapModel.getLastRecordRated(), model.getLastRecordRated());
+		assertEquals(model.getRecords(request).size(), model.streamRecords(request).count());
+		assertEquals(
+				mapModel.getBestTransitionsFrom(ChordSignature.MAJOR, 10).stream().map(ChordChangeConsonanceRecord::rating).toList(),
+				model.getBestTransitionsFrom(ChordSignature.MAJOR, 10).stream().map(ChordChangeConsonanceRecord::rating).toList());
+		assertEquals(new FrozenChordChangeConsonanceModel(mapModel), model.freeze());
+	}
+
+	@Test
+	void testFillingWithNextRecordToBeRated() {
+		ChordChangeConsonanceRecord next;
+		while((next = model.getNextRecordToBeRated()) != null) {
+			model.addRating(new ChordChangeConsonanceRecord(
+					next.startChordSignature(), next.endChordSignature(), next.intervalBetweenRoots(), ConsonanceRating.GOOD));
+		}
+		assertTrue(model.isFull());
+
+		ChordChangeConsonanceRecord removed = recordForCell(100, null);
+		model.removeRating(removed);
+		assertFalse(model.isFull());
+		assertEquals(removed, model.getNextRecordToBeRated());
+	}
+
+	/**
+	 * Rate every rateable cell except the last one, so that
+	 * getNextRecordToBeRated has to scan through the whole model.
+	 * @return the last rateable cell, left unrated
+	 */
+	private static int fillAllButLastCell(ConcurrentChordChangeConsonanceModel model) {
+		int lastCell = -1;
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				if(lastCell >= 0) {
+					model.addRating(recordForCell(lastCell, ratingForCell(lastCell)));
+				}
+				lastCell = cell;
+			}
+		}
+		return lastCell;
+	}
+
+	@Test
+	void testRemovalDuringScanIsNotSkipped() {
+		final int removedCell = ChordChangeCellLayout.NUMBER_OF_CELLS / 2;
+		assertTrue(ChordChangeCellLayout.isRateable(removedCell));
+
+		//removes a cell the scan has already passed, as another thread could
+		ConcurrentChordChangeConsonanceModel scannedModel = new ConcurrentChordChangeConsonanceModel() {
+			private boolean removed = false;
+
+			@Override
+			int getCode(int cell) {
+				if(cell > removedCell && !removed) {
+					removed = true;
+					removeRating(recordForCell(removedCell, null));
+				}
+				return super.getCode(cell);
+			}
+		};
+		int lastCell = fillAllButLastCell(scannedModel);
+
+		//the scan started before the removal so it may miss the cell
+		assertEquals(recordForCell(lastCell, null), scannedModel.getNextRecordToBeRated());
+		//but it mustn't move the hint past it
+		assertEquals(recordForCell(removedCell, null), scannedModel.getNextRecordToBeRated());
+	}
+
+	@Test
+	void testConcurrentRemovalsWhileScanningAreNotSkipped() throws Exception {
+		int lastCell = fillAllButLastCell(model);
+		ChordChangeConsonanceRecord firstRecord = model.getNextRecordToBeRated();
+		int firstCell = 0;
+		while( !ChordChangeCellLayout.isRateable(firstCell)) {
+			firstCell++;
+		}
+
+		for(int round = 0; round < 100; round++) {
+			//move the hint back to the start so the readers scan the whole model
+			model.removeRating(recordForCell(firstCell, null));
+			model.addRating(recordForCell(firstCell, ratingForCell(firstCell)));
+
+			int removedCell = firstCell + 1 + (round * 7919) % (lastCell - firstCell - 1);
+			while( !ChordChangeCellLayout.isRateable(removedCell)) {
+				removedCell++;
+			}
+			final int cellToRemove = removedCell;
+			final int spins = round * 50;
+
+			List<Callable<Void>> tasks = new ArrayList<>();
+			tasks.add(() -> {
+				//give the readers a head start that grows every round
+				for(int i = 0; i < spins; i++) {
+					Thread.onSpinWait();
+				}
+				model.removeRating(recordForCell(cellToRemove, null));
+				return null;
+			});
+			for(int t = 1; t < NUMBER_OF_THREADS; t++) {
+				tasks.add(() -> {
+					for(int i = 0; i < 4; i++) {
+						model.getNextRecordToBeRated();
+					}
+					return null;
+				});
+			}
+			runConcurrently(tasks);
+
+			assertEquals(recordForCell(cellToRemove, null), model.getNextRecordToBeRated());
+			model.addRating(recordForCell(cellToRemove, ratingForCell(cellToRemove)));
+		}
+		assertEquals(firstRecord, model.getNextRecordToBeRated());
+	}
+
+	@Test
+	void testConcurrentWritesToSharedWordsAreNotLost() throws Exception {
+		List<Callable<Void>> writers = new ArrayList<>();
+		for(int t = 0; t < NUMBER_OF_THREADS; t++) {
+			final int firstCell = t;
+			//interleave the cells so that every long is written by every thread
+			writers.add(() -> {
+				for(int cell = firstCell; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell += NUMBER_OF_THREADS) {
+					if(ChordChangeCellLayout.isRateable(cell)) {
+						model.addRating(recordForCell(cell, ratingForCell(cell)));
+					}
+				}
+				return null;
+			});
+		}
+		runConcurrently(writers);
+
+		assertTrue(model.isFull());
+		assertEquals(ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS, model.numberOfRatings());
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				assertEquals(ratingForCell(cell), model.getRating(recordForCell(cell, null)).rating());
+			}
+		}
+	}
+
+	@Test
+	void testConcurrentAddAndRemoveOfSameCellsKeepsCountExact() throws Exception {
+		final int cellsUsed = 256;
+		final int rounds = 200;
+
+		List<Callable<Integer>> writers = new ArrayList<>();
+		for(int t = 0; t < NUMBER_OF_THREADS; t++) {
+			final boolean adding = t % 2 == 0;
+			writers.add(() -> {
+				//net number of cells this thread changed from unrated to rated
+				int netRatingsAdded = 0;
+				for(int round = 0; round < rounds; round++) {
+					for(int cell = 0; cell < cellsUsed; cell++) {
+						if( !ChordChangeCellLayout.isRateable(cell)) {
+							continue;
+						}
+						if(adding) {
+							if(model.addRating(recordForCell(cell, ratingForCell(cell + round))) == null) {
+								netRatingsAdded++;
+							}
+						}else if(model.removeRating(recordForCell(cell, null)) != null) {
+							netRatingsAdded--;
+						}
+					}
+				}
+				return netRatingsAdded;
+			});
+		}
+		int netRatingsAdded = runConcurrently(writers).stream().mapToInt(Integer::intValue).sum();
+
+		int ratingsFound = model.getRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords()).size();
+		assertEquals(netRatingsAdded, ratingsFound);
+		assertEquals(ratingsFound, model.numberOfRatings());
+	}
+
+	@Test
+	void testReadersSeeOnlyCompleteRatings() throws Exception {
+		final int cellsUsed = ChordChangeCellLayout.CELLS_PER_START_CHORD;
+
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for(int t = 0; t < NUMBER_OF_THREADS; t++) {
+			final boolean writer = t % 2 == 0;
+			tasks.add(() -> {
+				int badReads = 0;
+				for(int round = 0; round < 50; round++) {
+					if(writer) {
+						for(int cell = 1; cell < cellsUsed; cell++) {
+							model.addRating(recordForCell(cell, ratingForCell(cell)));
+						}
+					}else {
+						//every rating seen must be the one written for its cell
+						for(ChordChangeConsonanceRecord record :
+								model.getBestTransitionsFrom(ChordSignature.firstSignature(), cellsUsed)) {
+							int cell = ChordChangeCellLayout.cellIndex(
+									record.startChordSignature(), record.endChordSignature(), record.intervalBetweenRoots());
+							if(record.rating() != ratingForCell(cell)) {
+								badReads++;
+							}
+						}
+					}
+				}
+				return badReads;
+			});
+		}
+		assertEquals(0, runConcurrently(tasks).stream().mapToInt(Integer::intValue).sum());
+		assertEquals(cellsUsed - 1, model.numberOfRatings());
+	}
+}
@@ -0,0 +1,121 @@
+package chord.relations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.ident.ScaleSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.record.NoteConsonanceRecord;
+import chord.relations.record.ScaleConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.NoteConsonanceRecordRequest;
+import chord.relations.request.ScaleConsonanceRecordRequest;
+
+/**
+ * Tests for the frozen snapshots of the three rating models.
+ * @author DAD
+ *
+ */
+public class FrozenConsonanceModelTest {
+
+	@Test
+	void testFrozenChordChangeModel() {
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, model);
+
+		FrozenChordChangeConsonanceModel frozenModel = model.freeze();
+		ChordChangeConsonanceRecordRequest request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+
+		assertEquals(model.getRecords(request), frozenModel.getRecords(request));
+		assertEquals(model.getNextRecordToBeRated(), frozenModel.getNextRecordToBeRated());
+		assertEquals(model.getLastRecordRated(), frozenModel.getLastRecordRated());
+		assertSame(frozenModel, frozenModel.freeze());
+
+		ChordChangeConsonanceRecord record = model.getNextRecordToBeRated();
+		assertThrows(UnsupportedOperationException.class,
+				() -> frozenModel.addRating(new ChordChangeConsonanceRecord(
+						record.startChordSignature(),
+						record.endChordSignature(),
+						record.intervalBetweenRoots(),
+						ConsonanceRating.GOOD)));
+		assertThrows(UnsupportedOperationException.class, () -> frozenModel.removeRating(record));
+
+		//changes to the mutable model are not seen by the snapshot
+		PackedChordChangeConsonanceModelTest.populateTestModel(true, model);
+		assertTrue(model.isFull());
+		assertFalse(frozenModel.isFull());
+		assertEquals(frozenModel, new FrozenChordChangeConsonanceModel(new PackedChordChangeConsonanceModel(frozenModel)));
+	}
+
+	@Test
+	void testFrozenNoteModel() {
+		NoteConsonanceModel model = new NoteConsonanceModel();
+		NoteConsonanceModelExternalTest.populateTestModel(false, model);
+
+		FrozenNoteConsonanceModel frozenModel = model.freeze();
+		NoteConsonanceRecordRequest request = NoteConsonanceRecordRequest.allPossibleRecords();
+
+		assertEquals(model.getRecords(request), frozenModel.getRecords(request));
+		assertEquals(frozenModel.getRecords(request), frozenModel.streamRecords(request).collect(Collectors.toSet()));
+		assertEquals(model.getNextRecordToBeRated(), frozenModel.getNextRecordToBeRated());
+		assertEquals(model.getLastRecordRated(), frozenModel.getLastRecordRated());
+
+		NoteConsonanceRecord record = new NoteConsonanceRecord(ChordSignature.MAJOR, Interval.UNISON, ConsonanceRating.GOOD);
+		assertThrows(UnsupportedOperationException.class, () -> frozenModel.addRating(record));
+
+		NoteConsonanceModelExternalTest.populateTestModel(true, model);
+		assertFalse(frozenModel.isFull());
+		assertTrue(model.freeze().isFull());
+		assertNull(model.freeze().getNextRecordToBeRated());
+		assertEquals(model.getLastRecordRated(), model.freeze().getLastRecordRated());
+		assertTrue(new NoteConsonanceModel().freeze().isEmpty());
+	}
+
+	@Test
+	void testFrozenScaleModel() {
+		ScaleConsonanceModel model = new ScaleConsonanceModel();
+		ScaleConsonanceModelExternalTest.populateTestModel(false, model);
+
+		FrozenScaleConsonanceModel frozenModel = model.freeze();
+		ScaleConsonanceRecordRequest request = ScaleConsonanceRecordRequest.allPossibleRecords();
+
+		assertEquals(model.getRecords(request), frozenModel.getRecords(request));
+		assertEquals(frozenModel.getRecords(request), frozenModel.streamRecords(request).collect(Collectors.toSet()));
+		assertEquals(model.getNextRecordToBeRated(), frozenModel.getNextRecordToBeRated());
+		assertEquals(model.getLastRecordRated(), frozenModel.getLastRecordRated());
+
+		ScaleConsonanceRecord record = new ScaleConsonanceRecord(ChordSignature.MAJOR, ScaleSignature.values()[0], ConsonanceRating.GOOD);
+		assertThrows(UnsupportedOperationException.class, () -> frozenModel.removeRating(record));
+
+		ScaleConsonanceModelExternalTest.populateTestModel(true, model);
+		assertFalse(frozenModel.isFull());
+		assertTrue(model.freeze().isFull());
+		assertEquals(model.getLastRecordRated(), model.freeze().getLastRecordRated());
+	}
+
+	@Test
+	void testFrozenModelsRejectBatches() {
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, model);
+		ChordChangeConsonanceRecordRequest request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+
+		FrozenChordChangeConsonanceModel frozenModel = model.freeze();
+		assertThrows(UnsupportedOperationException.class, () -> frozenModel.addRatings(model.getRecords(request)));
+		assertThrows(UnsupportedOperationException.class, () -> frozenModel.removeRatings(model.getRecords(request)));
+		assertEquals(model.getRecords(request), frozenModel.getRecords(request));
+
+		ChordChangeModelVersion version = new VersionedChordChangeConsonanceModel(model).pinVersion();
+		assertThrows(UnsupportedOperationException.class, () -> version.removeRatings(model.getRecords(request)));
+	}
+}
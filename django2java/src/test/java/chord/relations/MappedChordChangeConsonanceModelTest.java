@@ -0,0 +1,154 @@
+package chord.relations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.persist.PersistenceException;
+import chord.relations.persist.file.ChordChangeConsonanceBinaryFilePersister;
+import chord.relations.persist.file.FileStrategyConfig;
+import chord.relations.persist.file.NoteConsonanceBinaryFilePersister;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+public class MappedChordChangeConsonanceModelTest {
+
+	File testFile;
+
+	ChordChangeConsonanceModel model;
+	ChordChangeConsonanceBinaryFilePersister filePersister;
+
+	ChordChangeConsonanceRecordRequest request;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+		testFile = new File("testFile.tmp");
+		request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		filePersister = new ChordChangeConsonanceBinaryFilePersister(new FileStrategyConfig(testFile), request);
+	}
+
+	@AfterEach
+	void cleanup() {
+		testFile.delete();
+	}
+
+	@Test
+	void testMappedModelMatchesSavedModel() throws PersistenceException {
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, model);
+		filePersister.save(model);
+
+		MappedChordChangeConsonanceModel mappedModel = filePersister.map();
+
+		assertEquals(model.getRecords(request), mappedModel.getRecords(request));
+		assertEquals(model.getNextRecordToBeRated(), mappedModel.getNextRecordToBeRated());
+		assertEquals(model.getLastRecordRated(), mappedModel.getLastRecordRated());
+		assertEquals(model.getRecords(request).size(), mappedModel.numberOfRatings());
+		assertFalse(mappedModel.isFull());
+		assertFalse(mappedModel.isEmpty());
+
+		for(ChordSignature startChordSig : List.of(ChordSignature.firstSignature(), ChordSignature.values()[20])) {
+			assertEquals(
+					model.getBestTransitionsFrom(startChordSig, 25),
+					mappedModel.getBestTransitionsFrom(startChordSig, 25));
+		}
+
+		ChordChangeConsonanceRecord unrated = model.getNextRecordToBeRated();
+		assertNull(mappedModel.getRating(unrated));
+	}
+
+	@Test
+	void testFullAndEmptyMappedModels() throws PersistenceException {
+		filePersister.save(model);
+		MappedChordChangeConsonanceModel emptyModel = filePersister.map();
+
+		assertTrue(emptyModel.isEmpty());
+		assertNull(emptyModel.getLastRecordRated());
+		assertEquals(model.getNextRecordToBeRated(), emptyModel.getNextRecordToBeRated());
+
+		PackedChordChangeConsonanceModelTest.populateTestModel(true, model);
+		filePersister.save(model);
+		MappedChordChangeConsonanceModel fullModel = filePersister.map();
+
+		assertTrue(fullModel.isFull());
+		assertNull(fullModel.getNextRecordToBeRated());
+		assertEquals(model.getLastRecordRated(), fullModel.getLastRecordRated());
+		assertEquals(model.getRecords(request), fullModel.getRecords(request));
+	}
+
+	@Test
+	void testSavingOverMappedFileKeepsOldRatings() throws PersistenceException {
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, model);
+		filePersister.save(model);
+		MappedChordChangeConsonanceModel mappedModel = filePersister.map();
+
+		PackedChordChangeConsonanceModel changedModel = new PackedChordChangeConsonanceModel();
+		changedModel.addRating(new ChordChangeConsonanceRecord(
+				ChordSignature.firstSignature(),
+				ChordSignature.lastSignature(),
+				Interval.MAJOR3,
+				ConsonanceRating.VERY_GOOD));
+		filePersister.save(changedModel);
+
+		assertEquals(model.getRecords(request), mappedModel.getRecords(request));
+		assertEquals(changedModel.getRecords(request), filePersister.map().getRecords(request));
+	}
+
+	@Test
+	void testMappedModelCannotBeChanged() throws PersistenceException {
+		filePersister.save(model);
+		MappedChordChangeConsonanceModel mappedModel = filePersister.map();
+
+		ChordChangeConsonanceRecord record = new ChordChangeConsonanceRecord(
+				ChordSignature.firstSignature(),
+				ChordSignature.lastSignature(),
+				Interval.MAJOR3,
+				ConsonanceRating.GOOD);
+
+		assertThrows(UnsupportedOperationException.class, () -> mappedModel.addRating(record));
+		assertThrows(UnsupportedOperationException.class, () -> mappedModel.removeRating(record));
+		assertThrows(UnsupportedOperationException.class, () -> mappedModel.addRatings(List.of(record)));
+		assertThrows(UnsupportedOperationException.class, () -> mappedModel.removeRatings(List.of(record)));
+		assertSame(mappedModel, mappedModel.freeze());
+	}
+
+	@Test
+	void testWrongModelFileRejected() throws PersistenceException {
+		NoteConsonanceModel noteModel = new NoteConsonanceModel();
+		new NoteConsonanceBinaryFilePersister(
+				new FileStrategyConfig(testFile),
+				NoteConsonanceRecordRequest.allPossibleRecords()).save(noteModel);
+
+		assertThrows(PersistenceException.class, () -> filePersister.map());
+	}
+
+	@Test
+	void testInvalidRatingCode() {
+		ByteBuffer ratings = ByteBuffer.allocate((ChordChangeCellLayout.NUMBER_OF_CELLS + 1) / 2);
+		//cell 2 is not rated, cell 3 holds a code that is not a rating
+		ratings.put(1, (byte)0xF0);
+		MappedChordChangeConsonanceModel mappedModel = new MappedChordChangeConsonanceModel(ratings);
+
+		assertNull(mappedModel.getRating(AbstractChordChangeCellModel.createRecord(2, ConsonanceRating.GOOD)));
+		assertThrows(FileFormatException.class,
+				() -> mappedModel.getRating(AbstractChordChangeCellModel.createRecord(3, ConsonanceRating.GOOD)));
+		assertThrows(IllegalArgumentException.class,
+				() -> new MappedChordChangeConsonanceModel(ByteBuffer.allocate(10)));
+		assertThrows(NullPointerException.class, () -> new MappedChordChangeConsonanceModel(null));
+	}
+}
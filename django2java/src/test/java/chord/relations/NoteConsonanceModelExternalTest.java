@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.HashSet;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -454,4 +456,42 @@ public class NoteConsonanceModelExternalTest {
 		//the two models should be equal
 		assertEquals(ncModel,otherModel);
 	}
-}
\ No newline at end of file
+	
+	@Test
+	void testStreamAndVisitorMatchRequestMethod() {
+		populateTestModel(true,ncModel);
+		
+		NoteConsonanceRecordRequest request = 
+				NoteConsonanceRecordRequest.allPossibleRecords();
+		Set<NoteConsonanceRecord> recordsRetrieved = ncModel.getRecords(request);
+		
+		assertEquals(recordsRetrieved, ncModel.streamRecords(request).collect(Collectors.toSet()));
+		
+		Set<NoteConsonanceRecord> recordsVisited = new HashSet<>();
+		ncModel.forEachRating(request, 
+				(chordSig, interval, rating) -> 
+					recordsVisited.add(new NoteConsonanceRecord(chordSig, interval, rating)));
+		assertEquals(recordsRetrieved, recordsVisited);
+	}
+	
+	@Test
+	void testAddAndRemoveRatingsMatchSingleRecordMethods() {
+		populateTestModel(true,otherModel);
+		Set<NoteConsonanceRecord> records = 
+				otherModel.getRecords(NoteConsonanceRecordRequest.allPossibleRecords());
+		
+		assertEquals(records.size(), ncModel.addRatings(records));
+		assertEquals(otherModel, ncModel);
+		assertTrue(ncModel.isFull());
+		assertEquals(0, ncModel.addRatings(records));
+		
+		//a bad record stops the whole batch
+		Set<NoteConsonanceRecord> unratedRecords = new HashSet<>();
+		unratedRecords.add(new NoteConsonanceRecord(ChordSignature.MAJOR, Interval.UNISON, null));
+		assertThrows(IllegalArgumentException.class, () -> otherModel.addRatings(unratedRecords));
+		
+		assertEquals(records.size(), ncModel.removeRatings(records));
+		assertTrue(ncModel.isEmpty());
+		assertNull(ncModel.getNextRecordToBeRated().rating());
+	}
+}
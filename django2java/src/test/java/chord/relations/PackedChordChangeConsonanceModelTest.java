@@ -0,0 +1,320 @@
+package chord.relations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.IntervalRequest;
+import chord.relations.request.RatingRequest;
+import chord.relations.request.RequestInitializationException;
+
+/**
+ * Tests for the PackedChordChangeConsonanceModel.
+ *
+ * Most tests compare the packed model against the map based
+ * ChordChangeConsonanceModel since both should behave the same.
+ * @author DAD
+ *
+ */
+public class PackedChordChangeConsonanceModelTest {
+
+	/**
+	 * Fill the model with a rating that depends on the fields of the
+	 * record so that different cells hold different ratings.
+	 * @param full fill the model if true, half fill if false
+	 * @param model model to be filled
+	 */
+	static void populateTestModel(boolean full, RatingModel<ChordChangeConsonanceRecord,ChordChangeConsonanceRecordRequest> model) {
+		final int endIndex = full ? ChordSignature.values().length : ChordSignature.values().length / 2;
+
+		for(int i = 0; i < endIndex; i++) {
+			ChordSignature startChordSig = ChordSignature.values()[i];
+			for(ChordSignature endChordSig : ChordSignature.values()) {
+				for(Interval interval : Interval.valuesInFirstOctave()) {
+					if(startChordSig.equals(endChordSig) && interval.equals(Interval.UNISON)) {
+						continue;
+					}
+					ConsonanceRating rating =
+							ConsonanceRating.values()[(i + endChordSig.ordinal() + interval.ordinal()) % ConsonanceRating.values().length];
+
+					model.addRating(new ChordChangeConsonanceRecord(startChordSig, endChordSig, interval, rating));
+				}
+			}
+		}
+	}
+
+	PackedChordChangeConsonanceModel packedModel;
+	ChordChangeConsonanceModel mapModel;
+
+	@BeforeEach
+	void init() {
+		packedModel = new PackedChordChangeConsonanceModel();
+		mapModel = new ChordChangeConsonanceModel();
+	}
+
+	@Test
+	void testPackedRatingArray() {
+		PackedRatingArray array = new PackedRatingArray(37);
+
+		for(int cell = 0; cell < array.size(); cell++) {
+			assertNull(array.get(cell));
+		}
+
+		//write every rating into neighbouring cells to make sure
+		//the cells don't overwrite each other
+		for(int cell = 0; cell < array.size(); cell++) {
+			ConsonanceRating rating = ConsonanceRating.values()[cell % ConsonanceRating.values().length];
+			assertNull(array.set(cell, rating));
+		}
+		for(int cell = 0; cell < array.size(); cell++) {
+			ConsonanceRating rating = ConsonanceRating.values()[cell % ConsonanceRating.values().length];
+			assertEquals(rating, array.get(cell));
+		}
+
+		assertEquals(ConsonanceRating.VERY_BAD, array.set(15, null));
+		assertNull(array.get(15));
+		assertEquals(ConsonanceRating.VERY_GOOD, array.get(14));
+		assertEquals(ConsonanceRating.BAD, array.get(16));
+
+		assertEquals(array, new PackedRatingArray(array));
+		assertThrows(IndexOutOfBoundsException.class, () -> array.get(37));
+	}
+
+	@Test
+	void testAddRemoveGetRating() {
+		ChordChangeConsonanceRecord recordAdded =
+				new ChordChangeConsonanceRecord(
+						ChordSignature._10,
+						ChordSignature.MAJOR,
+						Interval.MAJOR3,
+						ConsonanceRating.GOOD);
+
+		assertNull(packedModel.getRating(recordAdded));
+		assertNull(packedModel.addRating(recordAdded));
+		assertEquals(recordAdded, packedModel.getRating(recordAdded));
+
+		ChordChangeConsonanceRecord recordUsedToOverwrite =
+				new ChordChangeConsonanceRecord(
+						ChordSignature._10,
+						ChordSignature.MAJOR,
+						Interval.MAJOR3,
+						ConsonanceRating.BAD);
+		assertEquals(recordAdded, packedModel.addRating(recordUsedToOverwrite));
+		assertEquals(recordUsedToOverwrite, packedModel.getRating(recordAdded));
+
+		assertEquals(recordUsedToOverwrite, packedModel.removeRating(recordAdded));
+		assertNull(packedModel.getRating(recordAdded));
+		assertNull(packedModel.removeRating(recordAdded));
+		assertTrue(packedModel.isEmpty());
+	}
+
+	@Test
+	void testAddRatingNullRating() {
+		ChordChangeConsonanceRecord record =
+				new ChordChangeConsonanceRecord(
+						ChordSignature._10,
+						ChordSignature.MAJOR,
+						Interval.MAJOR3,
+						null);
+
+		assertThrows(NullPointerException.class, () -> packedModel.addRating(record));
+	}
+
+	@Test
+	void testNextAndLastRecordMatchMapModel() {
+		assertEquals(mapModel.getNextRecordToBeRated(), packedModel.getNextRecordToBeRated());
+		assertNull(packedModel.getLastRecordRated());
+
+		populateTestModel(false, packedModel);
+		populateTestModel(false, mapModel);
+		assertEquals(mapModel.getNextRecordToBeRated(), packedModel.getNextRecordToBeRated());
+		assertEquals(mapModel.getLastRecordRated(), packedModel.getLastRecordRated());
+
+		populateTestModel(true, packedModel);
+		populateTestModel(true, mapModel);
+		assertNull(packedModel.getNextRecordToBeRated());
+		assertEquals(mapModel.getLastRecordRated(), packedModel.getLastRecordRated());
+	}
+
+	@Test
+	void testIsFullIsEmpty() {
+		assertTrue(packedModel.isEmpty());
+		assertFalse(packedModel.isFull());
+
+		populateTestModel(false, packedModel);
+		assertFalse(packedModel.isEmpty());
+		assertFalse(packedModel.isFull());
+
+		populateTestModel(true, packedModel);
+		assertTrue(packedModel.isFull());
+
+		packedModel.removeRating(packedModel.getLastRecordRated());
+		assertFalse(packedModel.isFull());
+	}
+
+	@Test
+	void testGetRecordsMatchesMapModel() throws RequestInitializationException {
+		populateTestModel(true, packedModel);
+		populateTestModel(true, mapModel);
+
+		ChordChangeConsonanceRecordRequest allRecords =
+				ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		assertEquals(mapModel.getRecords(allRecords), packedModel.getRecords(allRecords));
+
+		ChordChangeConsonanceRecordRequest partialRequest =
+				new ChordChangeConsonanceRecordRequest(
+						new ChordRequest(ChordSignature.MAJOR, ChordSignature.MINOR),
+						new ChordRequest(ChordSignature.SUS2),
+						new IntervalRequest(Interval.PERFECT4, Interval.PERFECT5),
+						new RatingRequest(ConsonanceRating.GOOD, ConsonanceRating.VERY_GOOD));
+		Set<ChordChangeConsonanceRecord> partialRecords = packedModel.getRecords(partialRequest);
+		assertEquals(mapModel.getRecords(partialRequest), partialRecords);
+	}
+
+	@Test
+	void testCopyConstructor() {
+		populateTestModel(false, mapModel);
+		populateTestModel(false, packedModel);
+
+		assertEquals(packedModel, new PackedChordChangeConsonanceModel(mapModel));
+	}
+
+	@Test
+	void testStreamAndVisitorMatchGetRecords() throws RequestInitializationException {
+		populateTestModel(false, packedModel);
+		populateTestModel(false, mapModel);
+
+		ChordChangeConsonanceRecordRequest partialRequest =
+				new ChordChangeConsonanceRecordRequest(
+						ChordRequest.allChordsRequest(),
+						new ChordRequest(ChordSignature.MAJOR, ChordSignature.SUS2),
+						new IntervalRequest(Interval.UNISON, Interval.PERFECT5),
+						RatingRequest.allPleasantRatingeRequest());
+
+		for(ChordChangeRatingModel model : List.of(packedModel, mapModel)) {
+			Set<ChordChangeConsonanceRecord> recordsRetrieved = model.getRecords(partialRequest);
+			assertFalse(recordsRetrieved.isEmpty());
+
+			assertEquals(recordsRetrieved, model.streamRecords(partialRequest).collect(Collectors.toSet()));
+
+			Set<ChordChangeConsonanceRecord> recordsVisited = new HashSet<>();
+			model.forEachRating(partialRequest,
+					(startChordSig, endChordSig, interval, rating) ->
+						recordsVisited.add(new ChordChangeConsonanceRecord(startChordSig, endChordSig, interval, rating)));
+			assertEquals(recordsRetrieved, recordsVisited);
+		}
+	}
+
+	@Test
+	void testForEachRatingLeadingToMatchesGetRecords() throws RequestInitializationException {
+		populateTestModel(true, packedModel);
+		populateTestModel(true, mapModel);
+
+		ChordChangeConsonanceRecordRequest request =
+				ChordChangeConsonanceRecordRequest.allPleasantRatedRecordsForTargetChord(ChordSignature.MAJOR);
+
+		for(ChordChangeRatingModel model : List.of(packedModel, mapModel)) {
+			Set<ChordChangeConsonanceRecord> recordsVisited = new HashSet<>();
+			model.forEachRatingLeadingTo(request,
+					(startChordSig, endChordSig, interval, rating) ->
+						recordsVisited.add(new ChordChangeConsonanceRecord(startChordSig, endChordSig, interval, rating)));
+
+			assertFalse(recordsVisited.isEmpty());
+			assertEquals(model.getRecords(request), recordsVisited);
+		}
+	}
+
+	@Test
+	void testTransitionsFromMatchGetRecords() throws RequestInitializationException {
+		populateTestModel(true, packedModel);
+		populateTestModel(true, mapModel);
+
+		ChordChangeConsonanceRecordRequest pleasantRequest =
+				ChordChangeConsonanceRecordRequest.allPleasantRatedRecordsForReferenceChord(ChordSignature.MAJOR);
+
+		for(ChordChangeRatingModel model : List.of(packedModel, mapModel)) {
+			//move some transitions between buckets to make sure the buckets follow the model
+			model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.PERFECT5, ConsonanceRating.VERY_BAD));
+			model.addRating(new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.SUS2, Interval.PERFECT4, ConsonanceRating.VERY_GOOD));
+			model.removeRating(new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.MAJOR, Interval.MAJOR2, null));
+
+			List<ChordChangeConsonanceRecord> recordsVisited = new ArrayList<>();
+			model.forEachTransitionFrom(ChordSignature.MAJOR, ConsonanceRating.GOOD,
+					(startChordSig, endChordSig, interval, rating) ->
+						recordsVisited.add(new ChordChangeConsonanceRecord(startChordSig, endChordSig, interval, rating)));
+
+			assertEquals(model.getRecords(pleasantRequest), new HashSet<>(recordsVisited));
+			for(int i = 1; i < recordsVisited.size(); i++) {
+				assertTrue(recordsVisited.get(i - 1).rating().compareTo(recordsVisited.get(i).rating()) >= 0);
+			}
+
+			List<ChordChangeConsonanceRecord> bestTransitions = model.getBestTransitionsFrom(ChordSignature.MAJOR, 10);
+			assertEquals(10, bestTransitions.size());
+			for(ChordChangeConsonanceRecord record : bestTransitions) {
+				assertEquals(ConsonanceRating.VERY_GOOD, record.rating());
+			}
+
+			//every transition from major except major to major unison and the removed rating
+			List<ChordChangeConsonanceRecord> allTransitions = model.getBestTransitionsFrom(ChordSignature.MAJOR, Integer.MAX_VALUE);
+			assertEquals(ChordChangeCellLayout.CELLS_PER_START_CHORD - 2, allTransitions.size());
+			assertTrue(allTransitions.contains(
+					new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.SUS2, Interval.PERFECT4, ConsonanceRating.VERY_GOOD)));
+		}
+	}
+
+	@Test
+	void testAddAndRemoveRatingsMatchSingleRecordMethods() {
+		ChordChangeConsonanceRecordRequest request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		ChordChangeConsonanceModel expectedModel = new ChordChangeConsonanceModel();
+		populateTestModel(false, expectedModel);
+
+		//hand the records over out of cell order with a duplicate whose last rating should win
+		List<ChordChangeConsonanceRecord> records = new ArrayList<>(expectedModel.getRecords(request));
+		ChordChangeConsonanceRecord duplicated = records.get(0);
+		records.add(0, new ChordChangeConsonanceRecord(
+				duplicated.startChordSignature(),
+				duplicated.endChordSignature(),
+				duplicated.intervalBetweenRoots(),
+				duplicated.rating() == ConsonanceRating.BAD ? ConsonanceRating.GOOD : ConsonanceRating.BAD));
+
+		List<RatingModel<ChordChangeConsonanceRecord,ChordChangeConsonanceRecordRequest>> models = List.of(
+				new ChordChangeConsonanceModel(),
+				new PackedChordChangeConsonanceModel(),
+				new ConcurrentChordChangeConsonanceModel(),
+				new VersionedChordChangeConsonanceModel());
+
+		for(RatingModel<ChordChangeConsonanceRecord,ChordChangeConsonanceRecordRequest> model : models) {
+			String modelName = model.getClass().getSimpleName();
+
+			assertEquals(records.size() - 1, model.addRatings(records), modelName);
+			assertEquals(expectedModel.getRecords(request), model.getRecords(request), modelName);
+			assertEquals(expectedModel.getNextRecordToBeRated(), model.getNextRecordToBeRated(), modelName);
+			assertEquals(expectedModel.getLastRecordRated(), model.getLastRecordRated(), modelName);
+
+			List<ChordChangeConsonanceRecord> withoutRating = List.of(records.get(1), 
+					new ChordChangeConsonanceRecord(ChordSignature.MAJOR, ChordSignature.MINOR, Interval.UNISON, null));
+			assertThrows(NullPointerException.class, () -> model.addRatings(withoutRating), modelName);
+
+			assertEquals(records.size() - 1, model.removeRatings(records), modelName);
+			assertTrue(model.isEmpty(), modelName);
+			assertEquals(0, model.removeRatings(records), modelName);
+		}
+	}
+}
@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.HashSet;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -444,4 +446,36 @@ public class ScaleConsonanceModelExternalTest {
 		//the two models should be equal
 		assertEquals(scModel,otherModel);
 	}
+	
+	@Test
+	void testStreamAndVisitorMatchRequestMethod() {
+		populateTestModel(true,scModel);
+		
+		ScaleConsonanceRecordRequest request = 
+				ScaleConsonanceRecordRequest.allPossibleRecords();
+		Set<ScaleConsonanceRecord> recordsRetrieved = scModel.getRecords(request);
+		
+		assertEquals(recordsRetrieved, scModel.streamRecords(request).collect(Collectors.toSet()));
+		
+		Set<ScaleConsonanceRecord> recordsVisited = new HashSet<>();
+		scModel.forEachRating(request, 
+				(chordSig, scaleSig, rating) -> 
+					recordsVisited.add(new ScaleConsonanceRecord(chordSig, scaleSig, rating)));
+		assertEquals(recordsRetrieved, recordsVisited);
+	}
+	
+	@Test
+	void testAddAndRemoveRatingsMatchSingleRecordMethods() {
+		populateTestModel(true,otherModel);
+		Set<ScaleConsonanceRecord> records = 
+				otherModel.getRecords(ScaleConsonanceRecordRequest.allPossibleRecords());
+		
+		assertEquals(records.size(), scModel.addRatings(records));
+		assertEquals(otherModel, scModel);
+		assertTrue(scModel.isFull());
+		
+		assertEquals(records.size(), scModel.removeRatings(records));
+		assertTrue(scModel.isEmpty());
+		assertThrows(NullPointerException.class, () -> scModel.addRatings(null));
+	}
 }
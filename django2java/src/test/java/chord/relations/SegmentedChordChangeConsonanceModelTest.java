@@ -0,0 +1,174 @@
+package chord.relations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+public class SegmentedChordChangeConsonanceModelTest {
+
+	/**
+	 * Segments held in memory, counting the reads.
+	 */
+	static class CountingSource implements SegmentedChordChangeConsonanceModel.SegmentSource {
+
+		final byte[][] segments = new byte[ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES][SegmentedChordChangeConsonanceModel.SEGMENT_SIZE];
+		final int[] numberOfRatings = new int[ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES];
+		int reads;
+		boolean closed;
+
+		CountingSource(ChordChangeConsonanceModel model) {
+			model.streamRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords()).forEach(record -> {
+				int cell = ChordChangeCellLayout.cellIndex(record);
+				int startOrdinal = ChordChangeCellLayout.startOrdinal(cell);
+				int segmentCell = cell - startOrdinal * ChordChangeCellLayout.CELLS_PER_START_CHORD;
+				segments[startOrdinal][segmentCell >>> 1] |= PackedRatingArray.encode(record.rating()) << (4 * (segmentCell & 1));
+				numberOfRatings[startOrdinal]++;
+			});
+		}
+
+		@Override
+		public int numberOfRatings(int startOrdinal) {
+			return numberOfRatings[startOrdinal];
+		}
+
+		@Override
+		public byte[] readSegment(int startOrdinal) {
+			reads++;
+			return segments[startOrdinal].clone();
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	ChordChangeConsonanceModel model;
+	CountingSource source;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+		List<ChordChangeConsonanceRecord> records = new ArrayList<>();
+		//every start chord but the last is rated
+		for(int cell = 0; cell < ChordChangeCellLayout.CELLS_PER_START_CHORD * (ChordChangeCellLayout.NUMBER_OF_CHORD_SIGNATURES - 1); cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				records.add(new ChordChangeConsonanceRecord(
+						ChordChangeCellLayout.startChord(cell),
+						ChordChangeCellLayout.endChord(cell),
+						ChordChangeCellLayout.interval(cell),
+						ConsonanceRating.values()[cell % ConsonanceRating.values().length]));
+			}
+		}
+		model.addRatings(records);
+		source = new CountingSource(model);
+	}
+
+	@Test
+	void testSameRatingsAsSourceModel() {
+		SegmentedChordChangeConsonanceModel segmented = new SegmentedChordChangeConsonanceModel(source, 4);
+		ChordChangeConsonanceRecordRequest request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+
+		assertEquals(model.getRecords(request), segmented.getRecords(request));
+		assertEquals(model.getNextRecordToBeRated(), segmented.getNextRecordToBeRated());
+		assertEquals(model.getLastRecordRated(), segmented.getLastRecordRated());
+		assertEquals(4, segmented.getResidentSegments());
+	}
+
+	@Test
+	void testSingleReferenceChordReadsOneSegment() {
+		SegmentedChordChangeConsonanceModel segmented = new SegmentedChordChangeConsonanceModel(source, 4);
+
+		assertEquals(
+				model.getBestTransitionsFrom(ChordSignature.MAJOR, 10),
+				segmented.getBestTransitionsFrom(ChordSignature.MAJOR, 10));
+		segmented.getBestTransitionsFrom(ChordSignature.MAJOR, 10);
+
+		assertEquals(1, source.reads);
+		assertEquals(1, segmented.getSegmentReads());
+	}
+
+	@Test
+	void testCountsReadNoSegment() {
+		SegmentedChordChangeConsonanceModel segmented = new SegmentedChordChangeConsonanceModel(source, 4);
+
+		assertEquals(ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS - (ChordChangeCellLayout.CELLS_PER_START_CHORD - 1),
+				segmented.numberOfRatings());
+		assertFalse(segmented.isFull());
+		assertFalse(segmented.isEmpty());
+		assertEquals(0, source.reads);
+
+		//only the last start chord has unrated cells and it has no segment
+		assertEquals(model.getNextRecordToBeRated(), segmented.getNextRecordToBeRated());
+		assertEquals(0, source.reads);
+	}
+
+	@Test
+	void testColdSegmentsDropped() {
+		SegmentedChordChangeConsonanceModel segmented = new SegmentedChordChangeConsonanceModel(source, 2);
+		ChordSignature[] chords = ChordSignature.values();
+
+		segmented.getBestTransitionsFrom(chords[0], 1);
+		segmented.getBestTransitionsFrom(chords[1], 1);
+		segmented.getBestTransitionsFrom(chords[2], 1);
+		assertEquals(2, segmented.getResidentSegments());
+		assertEquals(3, source.reads);
+
+		//the first segment was dropped to make room and is read again
+		segmented.getBestTransitionsFrom(chords[0], 1);
+		assertEquals(4, source.reads);
+		assertEquals(2, segmented.getResidentSegments());
+	}
+
+	@Test
+	void testCorruptSegment() {
+		source.segments[0][0] = (byte)0xFF;
+		SegmentedChordChangeConsonanceModel segmented = new SegmentedChordChangeConsonanceModel(source, 2);
+
+		assertThrows(FileFormatException.class, () -> segmented.getBestTransitionsFrom(ChordSignature.values()[0], 1));
+		assertEquals(
+				model.getBestTransitionsFrom(ChordSignature.values()[1], 1),
+				segmented.getBestTransitionsFrom(ChordSignature.values()[1], 1));
+	}
+
+	@Test
+	void testClose() throws IOException {
+		SegmentedChordChangeConsonanceModel segmented = new SegmentedChordChangeConsonanceModel(source, 2);
+		segmented.getBestTransitionsFrom(ChordSignature.MAJOR, 1);
+		segmented.close();
+
+		assertTrue(source.closed);
+		assertEquals(0, segmented.getResidentSegments());
+		assertThrows(IllegalStateException.class, () -> segmented.getBestTransitionsFrom(ChordSignature.MAJOR, 1));
+	}
+
+	@Test
+	void testReadOnly() {
+		SegmentedChordChangeConsonanceModel segmented = new SegmentedChordChangeConsonanceModel(source, 2);
+		ChordChangeConsonanceRecord record = model.getNextRecordToBeRated();
+
+		assertThrows(UnsupportedOperationException.class, () -> segmented.addRating(record));
+		assertThrows(UnsupportedOperationException.class, () -> segmented.removeRating(record));
+		assertThrows(UnsupportedOperationException.class, () -> segmented.addRatings(List.of(record)));
+		assertThrows(UnsupportedOperationException.class, () -> segmented.removeRatings(List.of(record)));
+	}
+
+	@Test
+	void testInvalidArguments() {
+		assertThrows(NullPointerException.class, () -> new SegmentedChordChangeConsonanceModel(null, 1));
+		assertThrows(IllegalArgumentException.class, () -> new SegmentedChordChangeConsonanceModel(source, 0));
+	}
+}
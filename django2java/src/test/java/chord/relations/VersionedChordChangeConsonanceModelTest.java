@@ -0,0 +1,173 @@
+package chord.relations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+/**
+ * Tests for the VersionedChordChangeConsonanceModel and its versions.
+ * @author DAD
+ *
+ */
+public class VersionedChordChangeConsonanceModelTest {
+
+	private static final ChordChangeConsonanceRecordRequest ALL_RECORDS =
+			ChordChangeConsonanceRecordRequest.allPossibleRecords();
+
+	private VersionedChordChangeConsonanceModel model;
+
+	@BeforeEach
+	void setUp() {
+		model = new VersionedChordChangeConsonanceModel();
+	}
+
+	private static ChordChangeConsonanceRecord record(ChordSignature startChordSig, ChordSignature endChordSig, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(startChordSig, endChordSig, Interval.PERFECT4, rating);
+	}
+
+	@Test
+	void testMatchesMapModel() {
+		ChordChangeConsonanceModel mapModel = new ChordChangeConsonanceModel();
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, mapModel);
+		PackedChordChangeConsonanceModelTest.populateTestModel(false, model);
+
+		assertEquals(mapModel.getRecords(ALL_RECORDS), model.getRecords(ALL_RECORDS));
+		assertEquals(mapModel.getNextRecordToBeRated(), model.getNextRecordToBeRated());
+		assertEquals(mapModel.getLastRecordRated(), model.getLastRecordRated());
+		assertEquals(new FrozenChordChangeConsonanceModel(mapModel), new FrozenChordChangeConsonanceModel(model));
+		assertEquals(mapModel.getRecords(ALL_RECORDS),
+				new VersionedChordChangeConsonanceModel(mapModel).getRecords(ALL_RECORDS));
+	}
+
+	@Test
+	void testAddAndRemoveReturnPreviousRating() {
+		ChordChangeConsonanceRecord good = record(ChordSignature.MAJOR, ChordSignature.MINOR, ConsonanceRating.GOOD);
+		ChordChangeConsonanceRecord bad = record(ChordSignature.MAJOR, ChordSignature.MINOR, ConsonanceRating.BAD);
+
+		assertNull(model.addRating(good));
+		assertEquals(good, model.addRating(bad));
+		assertEquals(bad, model.getRating(good));
+		assertEquals(bad, model.removeRating(good));
+		assertNull(model.removeRating(good));
+		assertTrue(model.isEmpty());
+		assertThrows(NullPointerException.class, () -> model.addRating(
+				record(ChordSignature.MAJOR, ChordSignature.MINOR, null)));
+	}
+
+	@Test
+	void testPinnedVersionDoesNotChange() {
+		ChordChangeConsonanceRecord first = record(ChordSignature.MAJOR, ChordSignature.MINOR, ConsonanceRating.GOOD);
+		ChordChangeConsonanceRecord second = record(ChordSignature.MINOR, ChordSignature.MAJOR, ConsonanceRating.BAD);
+
+		model.addRating(first);
+		ChordChangeModelVersion pinned = model.pinVersion();
+
+		model.addRating(second);
+		model.removeRating(first);
+
+		assertEquals(1, pinned.getVersionNumber());
+		assertEquals(3, model.getVersionNumber());
+		assertEquals(first, pinned.getRating(first));
+		assertNull(pinned.getRating(second));
+		assertEquals(1, pinned.getRecords(ALL_RECORDS).size());
+		assertEquals(second, model.getRating(second));
+		assertNull(model.getRating(first));
+
+		assertThrows(UnsupportedOperationException.class, () -> pinned.addRating(second));
+		assertSame(pinned, pinned.freeze());
+	}
+
+	@Test
+	void testUnchangedSegmentsAreShared() {
+		model.addRating(record(ChordSignature.MAJOR, ChordSignature.MINOR, ConsonanceRating.GOOD));
+		ChordChangeModelVersion before = model.pinVersion();
+
+		model.addRating(record(ChordSignature.MINOR, ChordSignature.MAJOR, ConsonanceRating.GOOD));
+		ChordChangeModelVersion after = model.pinVersion();
+
+		for(ChordSignature startChordSig : ChordSignature.values()) {
+			assertEquals( !startChordSig.equals(ChordSignature.MINOR),
+					before.sharesSegment(after, startChordSig.ordinal()),
+					startChordSig.toString());
+		}
+	}
+
+	@Test
+	void testCommitCreatesOneVersion() {
+		ChordChangeConsonanceRecord first = record(ChordSignature.MAJOR, ChordSignature.MINOR, ConsonanceRating.GOOD);
+		ChordChangeConsonanceRecord second = record(ChordSignature.MINOR, ChordSignature.MAJOR, ConsonanceRating.BAD);
+		model.addRating(first);
+
+		ChordChangeModelVersion committed = model.commit(List.of(second), List.of(first));
+
+		assertEquals(2, committed.getVersionNumber());
+		assertSame(committed, model.pinVersion());
+		assertEquals(1, committed.numberOfRatings());
+		assertEquals(second, committed.getRating(second));
+
+		//committing nothing new doesn't create a version
+		assertSame(committed, model.commit(List.of(second), List.of()));
+
+		//a bad record stops the whole commit
+		ChordChangeConsonanceRecord unrated = record(ChordSignature.MAJOR, ChordSignature.MINOR, null);
+		assertThrows(NullPointerException.class, () -> model.commit(List.of(first, unrated), List.of()));
+		assertSame(committed, model.pinVersion());
+	}
+
+	@Test
+	void testFillingAndFreezing() {
+		ChordChangeConsonanceRecord next;
+		while((next = model.getNextRecordToBeRated()) != null) {
+			model.addRating(new ChordChangeConsonanceRecord(
+					next.startChordSignature(), next.endChordSignature(), next.intervalBetweenRoots(), ConsonanceRating.MEDIOCRE));
+		}
+		assertTrue(model.isFull());
+		assertEquals(ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS, model.getVersionNumber());
+		assertSame(model.pinVersion(), model.freeze());
+		assertEquals(ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS, model.freeze().numberOfRatings());
+	}
+
+	@Test
+	void testReaderSeesConsistentVersionsWhileWriting() throws InterruptedException {
+		AtomicBoolean inconsistentVersionSeen = new AtomicBoolean();
+		AtomicBoolean writing = new AtomicBoolean(true);
+
+		Thread reader = new Thread(() -> {
+			while(writing.get()) {
+				ChordChangeModelVersion version = model.pinVersion();
+				//every commit adds exactly one rating
+				if(version.getRecords(ALL_RECORDS).size() != version.getVersionNumber() ||
+						version.numberOfRatings() != version.getVersionNumber()) {
+					inconsistentVersionSeen.set(true);
+				}
+			}
+		});
+		reader.start();
+
+		for(ChordSignature startChordSig : ChordSignature.values()) {
+			for(ChordSignature endChordSig : ChordSignature.values()) {
+				model.addRating(record(startChordSig, endChordSig, ConsonanceRating.VERY_GOOD));
+			}
+		}
+		writing.set(false);
+		reader.join();
+
+		assertFalse(inconsistentVersionSeen.get());
+		assertEquals(ChordSignature.values().length * ChordSignature.values().length, model.pinVersion().numberOfRatings());
+	}
+}
@@ -0,0 +1,153 @@
+package chord.relations.persist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.NoteConsonanceModel;
+import chord.relations.RatingModel;
+import chord.relations.record.NoteConsonanceRecord;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+public class AsyncModelPersisterTest {
+
+	/**
+	 * Persister that keeps the models it is given and waits to be
+	 * released before finishing the first save.
+	 */
+	static class BlockingPersister implements PersistModelStrategy<
+		NoteConsonanceRecord, NoteConsonanceRecordRequest, Void, NoteConsonanceModel> {
+
+		final CountDownLatch firstSaveStarted = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<RatingModel<NoteConsonanceRecord,NoteConsonanceRecordRequest>> savedModels = new CopyOnWriteArrayList<>();
+		volatile boolean failSaves;
+
+		@Override
+		public void setRequest(NoteConsonanceRecordRequest request) {
+		}
+
+		@Override
+		public void configure(Void configParam) {
+		}
+
+		@Override
+		public void save(RatingModel<NoteConsonanceRecord,NoteConsonanceRecordRequest> model) throws PersistenceException {
+			firstSaveStarted.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new PersistenceException("interrupted", e);
+			}
+			if(failSaves) {
+				throw new PersistenceException("disk full");
+			}
+			savedModels.add(model);
+		}
+
+		@Override
+		public NoteConsonanceModel load() throws PersistenceException {
+			NoteConsonanceModel model = new NoteConsonanceModel();
+			model.addRatings(savedModels.get(savedModels.size() - 1).getRecords(NoteConsonanceRecordRequest.allPossibleRecords()));
+			return model;
+		}
+	}
+
+	BlockingPersister blockingPersister;
+	AsyncModelPersister<NoteConsonanceRecord, NoteConsonanceRecordRequest, NoteConsonanceModel> asyncPersister;
+	NoteConsonanceModel model;
+
+	@BeforeEach
+	void init() {
+		blockingPersister = new BlockingPersister();
+		asyncPersister = new AsyncModelPersister<>(blockingPersister);
+		model = new NoteConsonanceModel();
+	}
+
+	@AfterEach
+	void cleanup() {
+		blockingPersister.release.countDown();
+		asyncPersister.close();
+	}
+
+	private void rate(Interval interval, ConsonanceRating rating) {
+		model.addRating(new NoteConsonanceRecord(ChordSignature.firstSignature(), interval, rating));
+	}
+
+	@Test
+	void testSavesAreCoalesced() throws InterruptedException, ExecutionException, TimeoutException {
+		rate(Interval.MAJOR3, ConsonanceRating.GOOD);
+		CompletableFuture<Void> firstSave = asyncPersister.save(model);
+		assertTrue(blockingPersister.firstSaveStarted.await(10, TimeUnit.SECONDS));
+
+		//the first save is running, these wait and are written once
+		rate(Interval.MINOR3, ConsonanceRating.BAD);
+		CompletableFuture<Void> secondSave = asyncPersister.save(model);
+		rate(Interval.PERFECT4, ConsonanceRating.VERY_GOOD);
+		CompletableFuture<Void> thirdSave = asyncPersister.save(model);
+		assertNotSame(firstSave, secondSave);
+		assertSame(secondSave, thirdSave);
+		assertEquals(1, asyncPersister.getCoalescedSaves());
+
+		//not part of any snapshot
+		rate(Interval.MAJOR7, ConsonanceRating.VERY_BAD);
+
+		blockingPersister.release.countDown();
+		thirdSave.get(10, TimeUnit.SECONDS);
+		assertTrue(firstSave.isDone());
+
+		assertEquals(2, blockingPersister.savedModels.size());
+		assertEquals(1, blockingPersister.savedModels.get(0).getRecords(NoteConsonanceRecordRequest.allPossibleRecords()).size());
+		assertEquals(3, blockingPersister.savedModels.get(1).getRecords(NoteConsonanceRecordRequest.allPossibleRecords()).size());
+	}
+
+	@Test
+	void testLoadRunsAfterSaves() throws InterruptedException, ExecutionException, TimeoutException {
+		rate(Interval.MAJOR3, ConsonanceRating.GOOD);
+		asyncPersister.save(model);
+		CompletableFuture<NoteConsonanceModel> load = asyncPersister.load();
+
+		blockingPersister.release.countDown();
+		assertEquals(model, load.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testFailedSave() throws InterruptedException {
+		blockingPersister.failSaves = true;
+		blockingPersister.release.countDown();
+		CompletableFuture<Void> save = asyncPersister.save(model);
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> save.get(10, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof PersistenceException);
+	}
+
+	@Test
+	void testClosedPersister() throws InterruptedException, ExecutionException, TimeoutException {
+		CompletableFuture<Void> save = asyncPersister.save(model);
+		asyncPersister.close();
+		assertThrows(IllegalStateException.class, () -> asyncPersister.save(model));
+		assertThrows(IllegalStateException.class, () -> asyncPersister.load());
+
+		//saves requested before closing still run
+		blockingPersister.release.countDown();
+		save.get(10, TimeUnit.SECONDS);
+		assertThrows(NullPointerException.class, () -> new AsyncModelPersister<>(null));
+	}
+}
@@ -0,0 +1,184 @@
+package chord.relations.persist.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.ident.ChordSignature;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.ChordRequest;
+import chord.relations.request.IntervalRequest;
+import chord.relations.request.RatingRequest;
+import chord.relations.request.RequestInitializationException;
+
+public class ChordChangeConsonanceDatabasePersisterTest {
+
+	static final String TABLE = "CHORD_CHANGE_RATING";
+
+	FakeDatabase database;
+	ChordChangeConsonanceModel model;
+	ChordChangeConsonanceDatabasePersister persister;
+
+	@BeforeEach
+	void init() {
+		database = new FakeDatabase();
+		model = new ChordChangeConsonanceModel();
+		List<ChordChangeConsonanceRecord> records = new ArrayList<>();
+		for(int cell = 0; cell < ChordChangeCellLayout.NUMBER_OF_CELLS; cell++) {
+			if(ChordChangeCellLayout.isRateable(cell)) {
+				records.add(record(cell, ConsonanceRating.values()[cell % ConsonanceRating.values().length]));
+			}
+		}
+		model.addRatings(records);
+		persister = new ChordChangeConsonanceDatabasePersister(
+				new DatabaseStrategyConfig(database),
+				ChordChangeConsonanceRecordRequest.allPossibleRecords());
+	}
+
+	private static ChordChangeConsonanceRecord record(int cell, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell),
+				ChordChangeCellLayout.endChord(cell),
+				ChordChangeCellLayout.interval(cell),
+				rating);
+	}
+
+	@Test
+	void testSaveAndLoad() throws PersistenceException {
+		persister.save(model);
+
+		assertEquals(ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS, database.tables.get(TABLE).size());
+		assertEquals(ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS, persister.getChangedCellsOfLastSave());
+		assertTrue(database.batches > 1);
+		assertEquals(model, persister.load());
+		assertEquals(0, database.openConnections);
+	}
+
+	@Test
+	void testOnlyChangedCellsWritten() throws PersistenceException {
+		persister.save(model);
+		database.upserts = 0;
+
+		int changedCell = ChordChangeCellLayout.cellIndex(1, 2, 3);
+		int removedCell = ChordChangeCellLayout.cellIndex(4, 5, 6);
+		model.addRating(record(changedCell, ConsonanceRating.VERY_GOOD == model.getRating(record(changedCell, null)).rating() ?
+				ConsonanceRating.VERY_BAD : ConsonanceRating.VERY_GOOD));
+		model.removeRating(record(removedCell, null));
+		persister.save(model);
+
+		assertEquals(2, persister.getChangedCellsOfLastSave());
+		assertEquals(1, database.upserts);
+		assertEquals(1, database.deletes);
+		assertEquals(model, persister.load());
+
+		persister.save(model);
+		assertEquals(0, persister.getChangedCellsOfLastSave());
+	}
+
+	@Test
+	void testLoadRequested() throws PersistenceException, RequestInitializationException {
+		persister.save(model);
+		database.rowsRead = 0;
+
+		persister.setRequest(new ChordChangeConsonanceRecordRequest(
+				new ChordRequest(ChordSignature.MAJOR),
+				ChordRequest.allChordsRequest(),
+				IntervalRequest.allIntervalsRequest(),
+				RatingRequest.allRatingsRequest()));
+		ChordChangeConsonanceModel loaded = persister.loadRequested();
+
+		//only the rows of the reference chord were read
+		assertEquals(ChordChangeCellLayout.CELLS_PER_START_CHORD - 1, database.rowsRead);
+		assertEquals(
+				model.getRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords()).stream()
+					.filter(record -> record.startChordSignature() == ChordSignature.MAJOR)
+					.count(),
+				loaded.getRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords()).size());
+	}
+
+	@Test
+	void testSaveLeavesCellsNotRequested() throws PersistenceException, RequestInitializationException {
+		persister.save(model);
+
+		persister.setRequest(new ChordChangeConsonanceRecordRequest(
+				new ChordRequest(ChordSignature.MAJOR),
+				ChordRequest.allChordsRequest(),
+				IntervalRequest.allIntervalsRequest(),
+				RatingRequest.allRatingsRequest()));
+		persister.save(new ChordChangeConsonanceModel());
+
+		assertEquals(ChordChangeCellLayout.CELLS_PER_START_CHORD - 1, persister.getChangedCellsOfLastSave());
+		ChordChangeConsonanceModel loaded = persister.load();
+		int majorCell = ChordChangeCellLayout.cellIndex(ChordSignature.MAJOR.ordinal(), 0, 1);
+		int otherCell = ChordChangeCellLayout.cellIndex(ChordSignature.MAJOR.ordinal() + 1, 0, 1);
+		assertNull(loaded.getRating(record(majorCell, null)));
+		assertEquals(model.getRating(record(otherCell, null)), loaded.getRating(record(otherCell, null)));
+	}
+
+	@Test
+	void testSaveKeepsRatingsNotRequested() throws PersistenceException, RequestInitializationException {
+		persister.save(model);
+
+		persister.setRequest(new ChordChangeConsonanceRecordRequest(
+				ChordRequest.allChordsRequest(),
+				ChordRequest.allChordsRequest(),
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ConsonanceRating.GOOD, ConsonanceRating.VERY_GOOD)));
+		int changedCell = ChordChangeCellLayout.cellIndex(1, 2, 3);
+		int removedCell = ChordChangeCellLayout.cellIndex(4, 5, 6);
+		model.addRating(record(changedCell, ConsonanceRating.VERY_GOOD == model.getRating(record(changedCell, null)).rating() ?
+				ConsonanceRating.GOOD : ConsonanceRating.VERY_GOOD));
+		model.removeRating(record(removedCell, null));
+		persister.save(model);
+
+		//the cells rated VERY_BAD, BAD and MEDIOCRE are still in the table
+		assertEquals(2, persister.getChangedCellsOfLastSave());
+		assertEquals(1, database.deletes);
+		assertEquals(model, persister.load());
+	}
+
+	@Test
+	void testFailedSaveRolledBack() throws PersistenceException {
+		persister.save(model);
+		database.failBatches = true;
+
+		assertThrows(PersistenceException.class, () -> persister.save(new ChordChangeConsonanceModel()));
+		assertEquals(ChordChangeCellLayout.NUMBER_OF_RATEABLE_CELLS, database.tables.get(TABLE).size());
+		assertEquals(0, database.openConnections);
+	}
+
+	@Test
+	void testLoadMissingTable() {
+		assertThrows(PersistenceException.class, () -> persister.load());
+	}
+
+	@Test
+	void testInvalidStoredRows() throws PersistenceException {
+		persister.save(model);
+		database.tables.get(TABLE).put(List.of(0, 0, 0), 1);
+		assertThrows(PersistenceException.class, () -> persister.load());
+
+		database.tables.get(TABLE).remove(List.of(0, 0, 0));
+		database.tables.get(TABLE).put(List.of(0, 1, 0), ConsonanceRating.values().length + 1);
+		assertThrows(PersistenceException.class, () -> persister.load());
+	}
+
+	@Test
+	void testInvalidConfig() {
+		assertThrows(NullPointerException.class, () -> new DatabaseStrategyConfig((String)null));
+		assertThrows(IllegalArgumentException.class, () -> new DatabaseStrategyConfig(""));
+		assertThrows(NullPointerException.class, () -> new DatabaseStrategyConfig((DatabaseStrategyConfig.ConnectionSource)null));
+	}
+}
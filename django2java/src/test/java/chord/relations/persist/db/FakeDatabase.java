@@ -0,0 +1,188 @@
+package chord.relations.persist.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In memory stand in for a database, understanding only the statements
+ * the database persisters send. Rows are kept per table keyed by their
+ * key ordinals, and the statements run are counted.
+ */
+class FakeDatabase implements DatabaseStrategyConfig.ConnectionSource {
+
+	final Map<String, Map<List<Integer>, Integer>> tables = new HashMap<>();
+
+	int upserts;
+	int deletes;
+	int batches;
+	int rowsRead;
+	int openConnections;
+	boolean failBatches;
+
+	private Map<String, Map<List<Integer>, Integer>> snapshot;
+
+	@Override
+	public Connection getConnection() {
+		openConnections++;
+		return proxy(Connection.class, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "createStatement":
+				return createStatement();
+			case "prepareStatement":
+				return prepareStatement((String)args[0]);
+			case "getAutoCommit":
+				return snapshot == null;
+			case "setAutoCommit":
+				snapshot = (Boolean)args[0] ? null : copyTables();
+				return null;
+			case "commit":
+				snapshot = copyTables();
+				return null;
+			case "rollback":
+				tables.clear();
+				tables.putAll(snapshot);
+				return null;
+			case "close":
+				openConnections--;
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	private Map<String, Map<List<Integer>, Integer>> copyTables() {
+		Map<String, Map<List<Integer>, Integer>> copy = new HashMap<>();
+		tables.forEach((name, rows) -> {
+			Map<List<Integer>, Integer> rowsCopy = new TreeMap<>(FakeDatabase::compareKeys);
+			rowsCopy.putAll(rows);
+			copy.put(name, rowsCopy);
+		});
+		return copy;
+	}
+
+	private Statement createStatement() {
+		return proxy(Statement.class, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "execute":
+				String sql = (String)args[0];
+				if( !sql.startsWith("CREATE TABLE IF NOT EXISTS ")) {
+					throw new SQLException("unexpected statement:" + sql);
+				}
+				tables.computeIfAbsent(sql.split(" ")[5], name -> new TreeMap<>(FakeDatabase::compareKeys));
+				return false;
+			case "close":
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	private PreparedStatement prepareStatement(String sql) {
+		String[] words = sql.split(" ");
+		Map<Integer, Integer> parameters = new TreeMap<>();
+		List<List<Integer>> batch = new ArrayList<>();
+
+		return proxy(PreparedStatement.class, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "setInt":
+				parameters.put((Integer)args[0], (Integer)args[1]);
+				return null;
+			case "setFetchSize":
+				return null;
+			case "addBatch":
+				batch.add(new ArrayList<>(parameters.values()));
+				return null;
+			case "executeBatch":
+				if(failBatches) {
+					throw new SQLException("batch failed");
+				}
+				batches++;
+				int[] counts = new int[batch.size()];
+				for(List<Integer> values : batch) {
+					if(sql.startsWith("MERGE INTO ")) {
+						table(words[2]).put(new ArrayList<>(values.subList(0, values.size() - 1)), values.get(values.size() - 1));
+						upserts++;
+					} else if(sql.startsWith("DELETE FROM ")) {
+						table(words[2]).remove(values);
+						deletes++;
+					} else {
+						throw new SQLException("unexpected batch:" + sql);
+					}
+				}
+				batch.clear();
+				Arrays.fill(counts, 1);
+				return counts;
+			case "executeQuery":
+				return query(words, new HashSet<>(parameters.values()));
+			case "close":
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	private ResultSet query(String[] words, Set<Integer> referenceChords) throws SQLException {
+		int from = Arrays.asList(words).indexOf("FROM");
+		List<Map.Entry<List<Integer>, Integer>> rows = new ArrayList<>();
+		for(Map.Entry<List<Integer>, Integer> row : table(words[from + 1]).entrySet()) {
+			if(referenceChords.isEmpty() || referenceChords.contains(row.getKey().get(0))) {
+				rows.add(row);
+			}
+		}
+		rowsRead += rows.size();
+
+		int[] position = {-1};
+		return proxy(ResultSet.class, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "next":
+				return ++position[0] < rows.size();
+			case "getInt":
+				Map.Entry<List<Integer>, Integer> row = rows.get(position[0]);
+				int column = (Integer)args[0];
+				return column <= row.getKey().size() ? row.getKey().get(column - 1) : row.getValue();
+			case "close":
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	private Map<List<Integer>, Integer> table(String name) throws SQLException {
+		Map<List<Integer>, Integer> table = tables.get(name);
+		if(table == null) {
+			throw new SQLException("table not found:" + name);
+		}
+		return table;
+	}
+
+	private static int compareKeys(List<Integer> first, List<Integer> second) {
+		for(int i = 0; i < first.size(); i++) {
+			int comparison = Integer.compare(first.get(i), second.get(i));
+			if(comparison != 0) {
+				return comparison;
+			}
+		}
+		return 0;
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] {type}, handler));
+	}
+}
@@ -0,0 +1,156 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.NoteConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+public class ChordChangeConsonanceBinaryFilePersisterTest {
+
+	/**
+	 * Fill the first half of the start chords of the model, cycling through
+	 * every rating so that both halves of every byte in the file get used.
+	 * @param model to be filled....it is assumed that the model is empty.
+	 */
+	static void populateVariedTestModel(ChordChangeConsonanceModel model) {
+		ConsonanceRating[] ratings = ConsonanceRating.values();
+		int ratingIndex = 0;
+
+		for(int i=0; i<ChordSignature.values().length / 2; i++) {
+			ChordSignature startChordSig = ChordSignature.values()[i];
+
+			for(ChordSignature endChordSig : ChordSignature.values()) {
+				for(Interval interval : Interval.values()) {
+					if( !interval.inFirstOctave()) {
+						break;
+					}
+					if(startChordSig.equals(endChordSig) && interval.equals(Interval.UNISON)) {
+						continue;
+					}
+
+					model.addRating(new ChordChangeConsonanceRecord(
+							startChordSig,
+							endChordSig,
+							interval,
+							ratings[ratingIndex++ % ratings.length]));
+				}
+			}
+		}
+	}
+
+	File testFile;
+
+	ChordChangeConsonanceModel model,loadedModel;
+	ChordChangeConsonanceBinaryFilePersister filePersister;
+
+	ChordChangeConsonanceRecordRequest request;
+	FileStrategyConfig config;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+
+		testFile = new File("testFile.tmp");
+		request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new ChordChangeConsonanceBinaryFilePersister(config, request);
+	}
+
+	@AfterEach
+	void cleanup() {
+		testFile.delete();
+	}
+
+	@Test
+	void testSaveAndLoadFullModel() throws PersistenceException {
+		ChordChangeConsonanceFilePersisterTest.populateTestModel(true, model);
+
+		filePersister.save(model);
+
+		assertEquals(BinaryModelFormat.HEADER_SIZE + ChordChangeCellLayout.NUMBER_OF_CELLS / 2, testFile.length());
+
+		loadedModel = filePersister.load();
+
+		assertEquals(model,loadedModel);
+	}
+
+	@Test
+	void testSaveAndLoadPartialModel() throws PersistenceException {
+		populateVariedTestModel(model);
+
+		filePersister.save(model);
+		loadedModel = filePersister.load();
+
+		assertEquals(model,loadedModel);
+		assertEquals(model.getNextRecordToBeRated(), loadedModel.getNextRecordToBeRated());
+	}
+
+	@Test
+	void testSaveAndLoadEmptyModel() throws PersistenceException {
+		filePersister.save(model);
+		loadedModel = filePersister.load();
+
+		assertEquals(model,loadedModel);
+	}
+
+	@Test
+	void testCorruptFileRejected() throws PersistenceException, IOException {
+		populateVariedTestModel(model);
+		filePersister.save(model);
+
+		try(RandomAccessFile file = new RandomAccessFile(testFile, "rw")) {
+			file.seek(BinaryModelFormat.HEADER_SIZE + 100);
+			int original = file.read();
+			file.seek(BinaryModelFormat.HEADER_SIZE + 100);
+			file.write(original ^ 0x01);
+		}
+
+		assertThrows(PersistenceException.class, () -> filePersister.load());
+	}
+
+	@Test
+	void testTruncatedFileRejected() throws PersistenceException, IOException {
+		filePersister.save(model);
+
+		try(RandomAccessFile file = new RandomAccessFile(testFile, "rw")) {
+			file.setLength(file.length() - 1);
+		}
+
+		assertThrows(PersistenceException.class, () -> filePersister.load());
+	}
+
+	@Test
+	void testWrongModelTypeRejected() throws PersistenceException {
+		NoteConsonanceModel noteModel = new NoteConsonanceModel();
+		NoteConsonanceFilePersisterTest.populateTestModel(true, noteModel);
+		new NoteConsonanceBinaryFilePersister(config, NoteConsonanceRecordRequest.allPossibleRecords())
+			.save(noteModel);
+
+		assertThrows(PersistenceException.class, () -> filePersister.load());
+	}
+
+	@Test
+	void testTextFileRejected() throws PersistenceException {
+		ChordChangeConsonanceFilePersisterTest.populateTestModel(false, model);
+		new ChordChangeConsonanceFilePersister(config, request).save(model);
+
+		assertThrows(PersistenceException.class, () -> filePersister.load());
+	}
+}
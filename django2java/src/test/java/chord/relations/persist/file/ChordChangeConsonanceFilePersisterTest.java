@@ -1,8 +1,15 @@
 package chord.relations.persist.file;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,7 +19,9 @@ import chord.ConsonanceRating;
 import chord.Interval;
 import chord.ident.ChordSignature;
 import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.ChordChangeModelVersion;
 import chord.relations.NoteConsonanceModel;
+import chord.relations.VersionedChordChangeConsonanceModel;
 import chord.relations.persist.PersistenceException;
 import chord.relations.persist.file.ChordChangeConsonanceFilePersister;
 import chord.relations.persist.file.FileStrategyConfig;
@@ -94,4 +103,57 @@ public class ChordChangeConsonanceFilePersisterTest {
 		
 		assertEquals(model,loadedModel);
 	}
+
+	@Test
+	void testSavePinnedVersionWhileWriting() throws PersistenceException, InterruptedException {
+		request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new ChordChangeConsonanceFilePersister(config, request);
+
+		VersionedChordChangeConsonanceModel versionedModel = new VersionedChordChangeConsonanceModel();
+		ChordChangeConsonanceModel halfModel = new ChordChangeConsonanceModel();
+		populateTestModel(false, halfModel);
+		versionedModel.commit(halfModel.getRecords(request), List.of());
+
+		ChordChangeModelVersion pinnedVersion = versionedModel.pinVersion();
+
+		//keep rating while the pinned version is saved
+		Thread writer = new Thread(() -> {
+			for(ChordChangeConsonanceRecord record : model.getRecords(request)) {
+				versionedModel.addRating(new ChordChangeConsonanceRecord(
+						record.startChordSignature(),
+						record.endChordSignature(),
+						record.intervalBetweenRoots(),
+						ConsonanceRating.BAD));
+			}
+		});
+		writer.start();
+		filePersister.save(pinnedVersion);
+		writer.join();
+
+		loadedModel = filePersister.load();
+
+		assertEquals(halfModel, loadedModel);
+	}
+
+	@Test
+	void testSavedFileMatchesPersistenceStrings() throws PersistenceException, IOException {
+		request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new ChordChangeConsonanceFilePersister(config, request);
+
+		filePersister.save(model);
+
+		//the file written through a PrintWriter before TextModelWriter was used
+		StringWriter expected = new StringWriter();
+		try(PrintWriter expectedWriter = new PrintWriter(expected)) {
+			expectedWriter.println("ChordChangeConsonanceModelFile");
+			model.streamRecords(request)
+				.forEach(record -> expectedWriter.println(record.createPersistenceString()));
+		}
+
+		assertArrayEquals(
+				expected.toString().getBytes(Charset.defaultCharset()),
+				Files.readAllBytes(testFile.toPath()));
+	}
 }
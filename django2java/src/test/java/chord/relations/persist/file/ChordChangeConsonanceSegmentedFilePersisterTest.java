@@ -0,0 +1,113 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ident.ChordSignature;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.FileFormatException;
+import chord.relations.SegmentedChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+public class ChordChangeConsonanceSegmentedFilePersisterTest {
+
+	File testFile;
+	ChordChangeConsonanceModel model;
+	ChordChangeConsonanceSegmentedFilePersister persister;
+
+	@BeforeEach
+	void init() {
+		testFile = new File("testFile.tmp");
+		model = new ChordChangeConsonanceModel();
+		//half of the start chords are rated
+		ChordChangeConsonanceFilePersisterTest.populateTestModel(false, model);
+		persister = new ChordChangeConsonanceSegmentedFilePersister(
+				new FileStrategyConfig(testFile),
+				ChordChangeConsonanceRecordRequest.allPossibleRecords());
+	}
+
+	@AfterEach
+	void cleanup() {
+		testFile.delete();
+	}
+
+	@Test
+	void testSaveAndLoad() throws PersistenceException {
+		persister.save(model);
+
+		assertEquals(model, persister.load());
+	}
+
+	@Test
+	void testUnratedStartChordsHaveNoSegment() throws PersistenceException, IOException {
+		persister.save(model);
+		int ratedStartChords = ChordSignature.values().length / 2;
+
+		assertEquals(
+				SegmentedModelFormat.DIRECTORY_END + ratedStartChords * SegmentedModelFormat.SEGMENT_SIZE,
+				Files.size(testFile.toPath()));
+
+		persister.save(new ChordChangeConsonanceModel());
+		assertEquals(SegmentedModelFormat.DIRECTORY_END, Files.size(testFile.toPath()));
+		assertEquals(new ChordChangeConsonanceModel(), persister.load());
+	}
+
+	@Test
+	void testOpenReadsOnlyQueriedSegments() throws PersistenceException, IOException {
+		persister.save(model);
+
+		try(SegmentedChordChangeConsonanceModel opened = persister.open()) {
+			assertEquals(0, opened.getSegmentReads());
+			assertEquals(
+					model.getBestTransitionsFrom(ChordSignature.MAJOR, 20),
+					opened.getBestTransitionsFrom(ChordSignature.MAJOR, 20));
+			assertEquals(1, opened.getSegmentReads());
+
+			assertEquals(
+					model.getRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords()),
+					opened.getRecords(ChordChangeConsonanceRecordRequest.allPossibleRecords()));
+		}
+	}
+
+	@Test
+	void testCorruptSegment() throws PersistenceException, IOException {
+		persister.save(model);
+		try(RandomAccessFile file = new RandomAccessFile(testFile, "rw")) {
+			//first byte of the first segment
+			file.seek(SegmentedModelFormat.DIRECTORY_END);
+			file.write(file.read() ^ 0x11);
+		}
+
+		try(SegmentedChordChangeConsonanceModel opened = persister.open()) {
+			assertThrows(FileFormatException.class,
+					() -> opened.getBestTransitionsFrom(ChordSignature.values()[0], 1));
+		}
+		assertThrows(PersistenceException.class, () -> persister.load());
+	}
+
+	@Test
+	void testNotSegmentedFile() throws PersistenceException {
+		new ChordChangeConsonanceBinaryFilePersister(
+				new FileStrategyConfig(testFile),
+				ChordChangeConsonanceRecordRequest.allPossibleRecords()).save(model);
+
+		assertThrows(PersistenceException.class, () -> persister.load());
+		assertThrows(PersistenceException.class, () -> persister.open());
+	}
+
+	@Test
+	void testMissingFile() {
+		assertThrows(PersistenceException.class, () -> persister.load());
+		assertThrows(PersistenceException.class, () -> persister.open());
+	}
+}
@@ -0,0 +1,162 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.persist.file.ChordChangeModelMerger.MergedModel;
+import chord.relations.persist.file.ChordChangeModelMerger.Rule;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+public class ChordChangeModelMergerTest {
+
+	//rated GOOD, GOOD and VERY_BAD
+	static final int SPLIT_CELL = ChordChangeCellLayout.cellIndex(0, 5, 3);
+	//rated VERY_GOOD by the first rater only
+	static final int SINGLE_CELL = ChordChangeCellLayout.cellIndex(1, 6, 4);
+	//rated BAD and GOOD
+	static final int TIED_CELL = ChordChangeCellLayout.cellIndex(2, 7, 5);
+	//rated by nobody
+	static final int UNRATED_CELL = ChordChangeCellLayout.cellIndex(3, 8, 6);
+
+	List<File> raterFiles;
+
+	@BeforeEach
+	void init() throws PersistenceException {
+		raterFiles = new ArrayList<>();
+		writeRaterFile(
+				rating(SPLIT_CELL, ConsonanceRating.GOOD),
+				rating(SINGLE_CELL, ConsonanceRating.VERY_GOOD),
+				rating(TIED_CELL, ConsonanceRating.BAD));
+		writeRaterFile(
+				rating(SPLIT_CELL, ConsonanceRating.GOOD),
+				rating(TIED_CELL, ConsonanceRating.GOOD));
+		writeRaterFile(
+				rating(SPLIT_CELL, ConsonanceRating.VERY_BAD));
+	}
+
+	@AfterEach
+	void cleanup() {
+		for(File file : raterFiles) {
+			file.delete();
+		}
+	}
+
+	private void writeRaterFile(ChordChangeConsonanceRecord... records) throws PersistenceException {
+		File file = new File("testFile" + raterFiles.size() + ".tmp");
+		raterFiles.add(file);
+		ChordChangeConsonanceModel model = new ChordChangeConsonanceModel();
+		model.addRatings(List.of(records));
+		new ChordChangeConsonanceFilePersister(
+				new FileStrategyConfig(file),
+				ChordChangeConsonanceRecordRequest.allPossibleRecords()).save(model);
+	}
+
+	private static ChordChangeConsonanceRecord rating(int cell, ConsonanceRating rating) {
+		return new ChordChangeConsonanceRecord(
+				ChordChangeCellLayout.startChord(cell),
+				ChordChangeCellLayout.endChord(cell),
+				ChordChangeCellLayout.interval(cell),
+				rating);
+	}
+
+	@Test
+	void testMean() throws PersistenceException {
+		MergedModel merged = new ChordChangeModelMerger(Rule.MEAN).merge(raterFiles);
+
+		assertEquals(ConsonanceRating.MEDIOCRE, merged.getMergedRating(SPLIT_CELL));
+		assertEquals(ConsonanceRating.VERY_GOOD, merged.getMergedRating(SINGLE_CELL));
+		assertEquals(ConsonanceRating.MEDIOCRE, merged.getMergedRating(TIED_CELL));
+		assertNull(merged.getMergedRating(UNRATED_CELL));
+	}
+
+	@Test
+	void testMedian() throws PersistenceException {
+		MergedModel merged = new ChordChangeModelMerger(Rule.MEDIAN).merge(raterFiles);
+
+		assertEquals(ConsonanceRating.GOOD, merged.getMergedRating(SPLIT_CELL));
+		assertEquals(ConsonanceRating.VERY_GOOD, merged.getMergedRating(SINGLE_CELL));
+		assertEquals(ConsonanceRating.BAD, merged.getMergedRating(TIED_CELL));
+	}
+
+	@Test
+	void testMajority() throws PersistenceException {
+		MergedModel merged = new ChordChangeModelMerger(Rule.MAJORITY).merge(raterFiles);
+
+		assertEquals(ConsonanceRating.GOOD, merged.getMergedRating(SPLIT_CELL));
+		assertEquals(ConsonanceRating.BAD, merged.getMergedRating(TIED_CELL));
+	}
+
+	@Test
+	void testMergedModel() throws PersistenceException {
+		MergedModel merged = new ChordChangeModelMerger(Rule.MAJORITY).merge(raterFiles);
+
+		ChordChangeConsonanceModel model = merged.getModel();
+		assertEquals(rating(SPLIT_CELL, ConsonanceRating.GOOD), model.getRating(rating(SPLIT_CELL, null)));
+		assertEquals(rating(SINGLE_CELL, ConsonanceRating.VERY_GOOD), model.getRating(rating(SINGLE_CELL, null)));
+		assertEquals(rating(TIED_CELL, ConsonanceRating.BAD), model.getRating(rating(TIED_CELL, null)));
+		assertNull(model.getRating(rating(UNRATED_CELL, null)));
+	}
+
+	@Test
+	void testStatistics() throws PersistenceException {
+		MergedModel merged = new ChordChangeModelMerger(Rule.MAJORITY).merge(raterFiles);
+
+		assertEquals(3, merged.getNumberOfFiles());
+		assertEquals(3, merged.getNumberOfRatings(SPLIT_CELL));
+		assertEquals(2, merged.getNumberOfRatings(SPLIT_CELL, ConsonanceRating.GOOD));
+		assertEquals(1, merged.getNumberOfRatings(SPLIT_CELL, ConsonanceRating.VERY_BAD));
+		assertEquals(2.0 / 3, merged.getAgreement(SPLIT_CELL), 1e-9);
+		assertEquals(1, merged.getNumberOfRatings(SINGLE_CELL));
+		assertEquals(1.0, merged.getAgreement(SINGLE_CELL), 1e-9);
+		assertEquals(0.5, merged.getAgreement(TIED_CELL), 1e-9);
+		assertEquals(0, merged.getNumberOfRatings(UNRATED_CELL));
+		assertEquals(0.0, merged.getAgreement(UNRATED_CELL), 1e-9);
+	}
+
+	@Test
+	void testManyFiles() throws PersistenceException {
+		//enough files for the merge to be split over several tasks
+		List<File> files = new ArrayList<>();
+		files.addAll(Collections.nCopies(100, raterFiles.get(0)));
+		files.addAll(Collections.nCopies(60, raterFiles.get(2)));
+
+		MergedModel merged = new ChordChangeModelMerger(Rule.MAJORITY).merge(files);
+
+		assertEquals(160, merged.getNumberOfFiles());
+		assertEquals(100, merged.getNumberOfRatings(SPLIT_CELL, ConsonanceRating.GOOD));
+		assertEquals(60, merged.getNumberOfRatings(SPLIT_CELL, ConsonanceRating.VERY_BAD));
+		assertEquals(ConsonanceRating.GOOD, merged.getMergedRating(SPLIT_CELL));
+		assertEquals(100, merged.getNumberOfRatings(TIED_CELL));
+	}
+
+	@Test
+	void testMissingFile() {
+		List<File> files = new ArrayList<>(raterFiles);
+		files.add(new File("missingTestFile.tmp"));
+
+		assertThrows(PersistenceException.class, () -> new ChordChangeModelMerger(Rule.MEAN).merge(files));
+	}
+
+	@Test
+	void testInvalidArguments() {
+		assertThrows(NullPointerException.class, () -> new ChordChangeModelMerger(null));
+		ChordChangeModelMerger merger = new ChordChangeModelMerger(Rule.MEAN);
+		assertThrows(NullPointerException.class, () -> merger.merge(null));
+		assertThrows(IllegalArgumentException.class, () -> merger.merge(List.of()));
+	}
+}
@@ -0,0 +1,186 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+
+public class DeltaFilePersisterTest {
+
+	File testFile, deltaFile, savedDeltaFile;
+
+	ChordChangeConsonanceModel model;
+
+	ChordChangeConsonanceRecordRequest request;
+	FileStrategyConfig config;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+		ChordChangeConsonanceFilePersisterTest.populateTestModel(false, model);
+		testFile = new File("testFile.tmp");
+		deltaFile = new File(testFile.getPath() + DeltaFilePersister.DELTA_SUFFIX);
+		savedDeltaFile = new File("testFile.tmp.saved");
+		request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+	}
+
+	@AfterEach
+	void cleanup() {
+		testFile.delete();
+		deltaFile.delete();
+		savedDeltaFile.delete();
+	}
+
+	private DeltaFilePersister<ChordChangeConsonanceRecord, ChordChangeConsonanceRecordRequest, ChordChangeConsonanceModel>
+			createPersister(int consolidationThreshold) {
+		return new DeltaFilePersister<>(
+				new ChordChangeConsonanceBinaryFilePersister(config, request),
+				consolidationThreshold);
+	}
+
+	/**
+	 * Rate the given number of rateable cells starting at the last cell.
+	 */
+	private static void rateFromLastCell(ChordChangeConsonanceModel model, int numberOfRatings, ConsonanceRating rating) {
+		int ratingsAdded = 0;
+		for(int cell = ChordChangeCellLayout.NUMBER_OF_CELLS - 1; ratingsAdded < numberOfRatings; cell--) {
+			if( !ChordChangeCellLayout.isRateable(cell)) {
+				continue;
+			}
+			model.addRating(new ChordChangeConsonanceRecord(
+					ChordChangeCellLayout.startChord(cell),
+					ChordChangeCellLayout.endChord(cell),
+					ChordChangeCellLayout.interval(cell),
+					rating));
+			ratingsAdded++;
+		}
+	}
+
+	@Test
+	void testDeltaSaveOnlyWritesChanges() throws PersistenceException, IOException {
+		var persister = createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD);
+		persister.save(model);
+		assertTrue(testFile.exists());
+		assertFalse(deltaFile.exists());
+		byte[] snapshot = Files.readAllBytes(testFile.toPath());
+
+		rateFromLastCell(model, 3, ConsonanceRating.VERY_GOOD);
+		ChordChangeConsonanceRecord lastRecord = model.getLastRecordRated();
+		model.removeRating(lastRecord);
+		persister.save(model);
+
+		assertEquals(4, persister.getDeltaEntries());
+		assertEquals(DeltaFilePersister.DELTA_HEADER_SIZE + 5 * Integer.BYTES, deltaFile.length());
+		assertArrayEquals(snapshot, Files.readAllBytes(testFile.toPath()));
+		assertEquals(0, model.getNumberOfDirtyCells());
+
+		//the delta holds every change since the snapshot
+		rateFromLastCell(model, 1, ConsonanceRating.BAD);
+		persister.save(model);
+		assertEquals(4, persister.getDeltaEntries());
+
+		var reopenedPersister = createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD);
+		ChordChangeConsonanceModel loadedModel = reopenedPersister.load();
+		assertEquals(model, loadedModel);
+		assertEquals(4, reopenedPersister.getDeltaEntries());
+
+		//the loaded model is tracked so the next save is a delta again
+		loadedModel.addRating(lastRecord);
+		reopenedPersister.save(loadedModel);
+		assertArrayEquals(snapshot, Files.readAllBytes(testFile.toPath()));
+		model.addRating(lastRecord);
+		assertEquals(model, createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD).load());
+	}
+
+	@Test
+	void testConsolidation() throws PersistenceException {
+		var persister = createPersister(5);
+		persister.save(model);
+
+		rateFromLastCell(model, 5, ConsonanceRating.GOOD);
+		persister.save(model);
+		assertTrue(deltaFile.exists());
+
+		rateFromLastCell(model, 6, ConsonanceRating.BAD);
+		persister.save(model);
+		assertFalse(deltaFile.exists());
+		assertEquals(0, persister.getDeltaEntries());
+
+		assertEquals(model, new ChordChangeConsonanceBinaryFilePersister(config, request).load());
+		assertEquals(model, createPersister(5).load());
+	}
+
+	@Test
+	void testOtherModelsAreSavedInFull() throws PersistenceException {
+		var persister = createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD);
+		persister.save(model);
+		rateFromLastCell(model, 3, ConsonanceRating.GOOD);
+		persister.save(model);
+		assertTrue(deltaFile.exists());
+
+		//a frozen model doesn't track its changes
+		rateFromLastCell(model, 4, ConsonanceRating.BAD);
+		persister.save(model.freeze());
+		assertFalse(deltaFile.exists());
+		assertEquals(model, createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD).load());
+
+		//nor does a model that wasn't loaded or saved by the persister since
+		rateFromLastCell(model, 2, ConsonanceRating.MEDIOCRE);
+		persister.save(model);
+		assertFalse(deltaFile.exists());
+		assertEquals(model, createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD).load());
+	}
+
+	@Test
+	void testStaleDeltaIsDropped() throws PersistenceException, IOException {
+		var persister = createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD);
+		persister.save(model);
+		rateFromLastCell(model, 3, ConsonanceRating.GOOD);
+		persister.save(model);
+		Files.copy(deltaFile.toPath(), savedDeltaFile.toPath());
+
+		//stopped after the new snapshot was written, before the delta was deleted
+		model.removeRating(model.getLastRecordRated());
+		persister.save(model.freeze());
+		Files.move(savedDeltaFile.toPath(), deltaFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		assertEquals(model, createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD).load());
+		assertFalse(deltaFile.exists());
+	}
+
+	@Test
+	void testCorruptDelta() throws PersistenceException, IOException {
+		var persister = createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD);
+		persister.save(model);
+		rateFromLastCell(model, 3, ConsonanceRating.GOOD);
+		persister.save(model);
+
+		byte[] delta = Files.readAllBytes(deltaFile.toPath());
+		delta[DeltaFilePersister.DELTA_HEADER_SIZE] ^= 1;
+		Files.write(deltaFile.toPath(), delta);
+		assertThrows(PersistenceException.class, () -> createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD).load());
+
+		testFile.delete();
+		assertThrows(PersistenceException.class, () -> createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD).load());
+		deltaFile.delete();
+		assertTrue(createPersister(DeltaFilePersister.DEFAULT_CONSOLIDATION_THRESHOLD).load().isEmpty());
+	}
+}
@@ -0,0 +1,216 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.gui.controller.NoteConsonanceController;
+import chord.relations.ChordChangeCellLayout;
+import chord.relations.ChordChangeConsonanceModel;
+import chord.relations.NoteConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.record.ChordChangeConsonanceRecord;
+import chord.relations.request.ChordChangeConsonanceRecordRequest;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+public class JournalingFilePersisterTest {
+
+	File testFile, journalFile, compactingFile;
+
+	ChordChangeConsonanceModel model;
+
+	ChordChangeConsonanceRecordRequest request;
+	FileStrategyConfig config;
+
+	@BeforeEach
+	void init() {
+		model = new ChordChangeConsonanceModel();
+		testFile = new File("testFile.tmp");
+		journalFile = new File(testFile.getPath() + JournalingFilePersister.JOURNAL_SUFFIX);
+		compactingFile = new File(journalFile.getPath() + JournalingFilePersister.COMPACTING_SUFFIX);
+		request = ChordChangeConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+	}
+
+	@AfterEach
+	void cleanup() {
+		testFile.delete();
+		journalFile.delete();
+		compactingFile.delete();
+	}
+
+	private JournalingFilePersister<ChordChangeConsonanceRecord, ChordChangeConsonanceRecordRequest, ChordChangeConsonanceModel>
+			createPersister(int compactionThreshold) {
+		return new JournalingFilePersister<>(
+				new ChordChangeConsonanceBinaryFilePersister(config, request),
+				compactionThreshold);
+	}
+
+	/**
+	 * Rate the cells from the first cell up to the given number of ratings,
+	 * in the model and in the journal.
+	 */
+	private void rate(
+			JournalingFilePersister<ChordChangeConsonanceRecord, ChordChangeConsonanceRecordRequest, ChordChangeConsonanceModel> persister,
+			int numberOfRatings,
+			ConsonanceRating rating) throws PersistenceException {
+		int ratingsAdded = 0;
+		for(int cell = 0; ratingsAdded < numberOfRatings; cell++) {
+			if( !ChordChangeCellLayout.isRateable(cell)) {
+				continue;
+			}
+			ChordChangeConsonanceRecord record = new ChordChangeConsonanceRecord(
+					ChordChangeCellLayout.startChord(cell),
+					ChordChangeCellLayout.endChord(cell),
+					ChordChangeCellLayout.interval(cell),
+					rating);
+			model.addRating(record);
+			persister.ratingAdded(record);
+			ratingsAdded++;
+		}
+	}
+
+	@Test
+	void testJournaledRatingsAreLoaded() throws PersistenceException, IOException {
+		var persister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertTrue(persister.load().isEmpty());
+
+		rate(persister, 50, ConsonanceRating.GOOD);
+		rate(persister, 20, ConsonanceRating.BAD);
+		ChordChangeConsonanceRecord lastRecord = model.getLastRecordRated();
+		model.removeRating(lastRecord);
+		persister.ratingRemoved(lastRecord);
+
+		assertEquals(71, persister.getJournalEntries());
+		assertFalse(testFile.exists());
+		persister.close();
+
+		var reopenedPersister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertEquals(model, reopenedPersister.load());
+		reopenedPersister.close();
+	}
+
+	@Test
+	void testTornEntryIsDropped() throws PersistenceException, IOException {
+		var persister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		persister.load();
+		rate(persister, 30, ConsonanceRating.GOOD);
+		persister.close();
+
+		//half of an entry written when the program stopped
+		try(FileOutputStream journalStream = new FileOutputStream(journalFile, true)) {
+			journalStream.write(new byte[] {1, 2, 3, 4, 5});
+		}
+
+		var reopenedPersister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertEquals(model, reopenedPersister.load());
+		assertEquals(30, reopenedPersister.getJournalEntries());
+
+		//the torn entry is cut off so new entries are read after a reload
+		rate(reopenedPersister, 40, ConsonanceRating.VERY_GOOD);
+		reopenedPersister.close();
+
+		var thirdPersister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertEquals(model, thirdPersister.load());
+		thirdPersister.close();
+	}
+
+	@Test
+	void testCompaction() throws PersistenceException, IOException {
+		var persister = createPersister(10);
+		persister.load();
+
+		rate(persister, 35, ConsonanceRating.MEDIOCRE);
+		persister.awaitCompaction();
+
+		assertTrue(persister.getJournalEntries() < 10);
+		assertTrue(testFile.exists());
+		assertFalse(compactingFile.exists());
+		assertEquals(JournalingFilePersister.JOURNAL_HEADER_SIZE + persister.getJournalEntries() * JournalingFilePersister.ENTRY_SIZE,
+				journalFile.length());
+		persister.close();
+
+		var reopenedPersister = createPersister(10);
+		assertEquals(model, reopenedPersister.load());
+		reopenedPersister.close();
+	}
+
+	@Test
+	void testInterruptedCompactionIsFinishedOnLoad() throws PersistenceException, IOException {
+		var persister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		persister.save(model);
+		rate(persister, 25, ConsonanceRating.BAD);
+		persister.close();
+
+		//stopped after the journal was moved aside, before the snapshot was written
+		Files.move(journalFile.toPath(), compactingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		var reopenedPersister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertEquals(model, reopenedPersister.load());
+		assertFalse(compactingFile.exists());
+		assertEquals(0, reopenedPersister.getJournalEntries());
+		reopenedPersister.close();
+
+		assertEquals(model, new ChordChangeConsonanceBinaryFilePersister(config, request).load());
+	}
+
+	@Test
+	void testSaveReplacesJournal() throws PersistenceException, IOException {
+		var persister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		persister.load();
+		rate(persister, 25, ConsonanceRating.BAD);
+
+		ChordChangeConsonanceFilePersisterTest.populateTestModel(false, model);
+		persister.save(model);
+		assertEquals(0, persister.getJournalEntries());
+		persister.close();
+
+		var reopenedPersister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertEquals(model, reopenedPersister.load());
+		reopenedPersister.close();
+	}
+
+	@Test
+	void testJournalMustBeOpen() {
+		var persister = createPersister(JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertThrows(IllegalStateException.class, () -> rate(persister, 1, ConsonanceRating.GOOD));
+		assertThrows(IllegalArgumentException.class, () -> createPersister(0));
+	}
+
+	@Test
+	void testControllerJournalsRatings() throws PersistenceException, IOException {
+		FileStrategyConfig noteConfig = new FileStrategyConfig(testFile);
+		var persister = new JournalingFilePersister<>(
+				new NoteConsonanceBinaryFilePersister(noteConfig, NoteConsonanceRecordRequest.allPossibleRecords()),
+				JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+
+		NoteConsonanceModel noteModel = persister.load();
+		NoteConsonanceController controller = new NoteConsonanceController(noteModel);
+		controller.setRatingJournal(persister);
+
+		controller.saveRating(ConsonanceRating.GOOD);
+		controller.saveRating(ConsonanceRating.BAD);
+		controller.saveRating(ConsonanceRating.VERY_BAD);
+		controller.previousRating();
+		assertTrue(controller.isJournaling());
+		persister.close();
+
+		var reopenedPersister = new JournalingFilePersister<>(
+				new NoteConsonanceBinaryFilePersister(noteConfig, NoteConsonanceRecordRequest.allPossibleRecords()),
+				JournalingFilePersister.DEFAULT_COMPACTION_THRESHOLD);
+		assertEquals(noteModel, reopenedPersister.load());
+		reopenedPersister.close();
+	}
+}
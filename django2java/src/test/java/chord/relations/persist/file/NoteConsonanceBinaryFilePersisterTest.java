@@ -0,0 +1,59 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.relations.NoteConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.request.NoteConsonanceRecordRequest;
+
+public class NoteConsonanceBinaryFilePersisterTest {
+
+	File testFile;
+
+	NoteConsonanceModel model,loadedModel;
+	NoteConsonanceBinaryFilePersister filePersister;
+
+	NoteConsonanceRecordRequest request;
+	FileStrategyConfig config;
+
+	@BeforeEach
+	void init() {
+		model = new NoteConsonanceModel();
+
+		testFile = new File("testFile.tmp");
+		request = NoteConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new NoteConsonanceBinaryFilePersister(config, request);
+	}
+
+	@AfterEach
+	void cleanup() {
+		testFile.delete();
+	}
+
+	@Test
+	void testSaveAndLoad() throws PersistenceException {
+		NoteConsonanceFilePersisterTest.populateTestModel(true, model);
+
+		filePersister.save(model);
+		loadedModel = filePersister.load();
+
+		assertEquals(model,loadedModel);
+	}
+
+	@Test
+	void testSaveAndLoadHalfModel() throws PersistenceException {
+		NoteConsonanceFilePersisterTest.populateTestModel(false, model);
+
+		filePersister.save(model);
+		loadedModel = filePersister.load();
+
+		assertEquals(model,loadedModel);
+	}
+}
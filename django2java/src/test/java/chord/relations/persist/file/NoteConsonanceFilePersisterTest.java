@@ -1,8 +1,14 @@
 package chord.relations.persist.file;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -84,4 +90,25 @@ public class NoteConsonanceFilePersisterTest {
 		
 		assertEquals(model,loadedModel);
 	}
+
+	@Test
+	void testSavedFileMatchesPersistenceStrings() throws PersistenceException, IOException {
+		request = NoteConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new NoteConsonanceFilePersister(config, request);
+
+		filePersister.save(model);
+
+		//the file written through a PrintWriter before TextModelWriter was used
+		StringWriter expected = new StringWriter();
+		try(PrintWriter expectedWriter = new PrintWriter(expected)) {
+			expectedWriter.println("NoteConsonanceModelFile");
+			model.streamRecords(request)
+				.forEach(record -> expectedWriter.println(record.createPersistenceString()));
+		}
+
+		assertArrayEquals(
+				expected.toString().getBytes(Charset.defaultCharset()),
+				Files.readAllBytes(testFile.toPath()));
+	}
 }
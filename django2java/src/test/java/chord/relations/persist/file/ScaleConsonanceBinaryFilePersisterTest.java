@@ -0,0 +1,59 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chord.relations.ScaleConsonanceModel;
+import chord.relations.persist.PersistenceException;
+import chord.relations.request.ScaleConsonanceRecordRequest;
+
+public class ScaleConsonanceBinaryFilePersisterTest {
+
+	File testFile;
+
+	ScaleConsonanceModel model,loadedModel;
+	ScaleConsonanceBinaryFilePersister filePersister;
+
+	ScaleConsonanceRecordRequest request;
+	FileStrategyConfig config;
+
+	@BeforeEach
+	void init() {
+		model = new ScaleConsonanceModel();
+
+		testFile = new File("testFile.tmp");
+		request = ScaleConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new ScaleConsonanceBinaryFilePersister(config, request);
+	}
+
+	@AfterEach
+	void cleanup() {
+		testFile.delete();
+	}
+
+	@Test
+	void testSaveAndLoad() throws PersistenceException {
+		ScaleConsonanceFilePersisterTest.populateTestModel(true, model);
+
+		filePersister.save(model);
+		loadedModel = filePersister.load();
+
+		assertEquals(model,loadedModel);
+	}
+
+	@Test
+	void testSaveAndLoadHalfModel() throws PersistenceException {
+		ScaleConsonanceFilePersisterTest.populateTestModel(false, model);
+
+		filePersister.save(model);
+		loadedModel = filePersister.load();
+
+		assertEquals(model,loadedModel);
+	}
+}
@@ -1,8 +1,19 @@
 package chord.relations.persist.file;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -81,5 +92,43 @@ public class ScaleConsonanceFilePersisterTest {
 		
 		assertEquals(model,loadedModel);
 	}
-	
+
+	@Test
+	void testSavedFileMatchesPersistenceStrings() throws PersistenceException, IOException {
+		request = ScaleConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new ScaleConsonanceFilePersister(config, request);
+
+		filePersister.save(model);
+
+		//the file written through a PrintWriter before TextModelWriter was used
+		StringWriter expected = new StringWriter();
+		try(PrintWriter expectedWriter = new PrintWriter(expected)) {
+			expectedWriter.println("ScaleConsonanceModelFile");
+			model.streamRecords(request)
+				.forEach(record -> expectedWriter.println(record.createPersistenceString()));
+		}
+
+		assertArrayEquals(
+				expected.toString().getBytes(Charset.defaultCharset()),
+				Files.readAllBytes(testFile.toPath()));
+	}
+
+	@Test
+	void testSaveKeepsFilePermissions() throws PersistenceException, IOException {
+		assumeTrue(Files.getFileAttributeView(new File(".").toPath(), PosixFileAttributeView.class) != null);
+
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+		Files.createFile(testFile.toPath());
+		Files.setPosixFilePermissions(testFile.toPath(), permissions);
+
+		request = ScaleConsonanceRecordRequest.allPossibleRecords();
+		config = new FileStrategyConfig(testFile);
+		filePersister = new ScaleConsonanceFilePersister(config, request);
+		filePersister.save(model);
+
+		//the model was written to a temporary file that replaced the old one
+		assertEquals(model, filePersister.load());
+		assertEquals(permissions, Files.getPosixFilePermissions(testFile.toPath()));
+	}
 }
@@ -0,0 +1,112 @@
+package chord.relations.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.ident.ScaleSignature;
+import chord.relations.persist.PersistenceException;
+
+public class TextModelReaderTest {
+
+	private static final EnumNameTable<ChordSignature> CHORD_SIGNATURES = new EnumNameTable<>(ChordSignature.class);
+	private static final EnumNameTable<Interval> INTERVALS = new EnumNameTable<>(Interval.class);
+
+	private static TextModelReader readerFor(String text, int bufferSize) {
+		return new TextModelReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), bufferSize);
+	}
+
+	@Test
+	void testEnumNameTableFindsEveryConstant() {
+		EnumNameTable<ScaleSignature> table = new EnumNameTable<>(ScaleSignature.class);
+		for(ScaleSignature scaleSig : ScaleSignature.values()) {
+			byte[] name = ("x" + scaleSig.name() + "x").getBytes(StandardCharsets.US_ASCII);
+			assertEquals(scaleSig, table.lookup(name, 1, name.length - 1));
+		}
+		byte[] notAName = "NOT_A_SCALE".getBytes(StandardCharsets.US_ASCII);
+		assertNull(table.lookup(notAName, 0, notAName.length));
+		assertNull(table.lookup(notAName, 0, 0));
+	}
+
+	@Test
+	void testLineSeparators() throws IOException, PersistenceException {
+		String first = ChordSignature.firstSignature() + ":" + Interval.MAJOR3 + ":GOOD";
+		String second = ChordSignature.lastSignature() + ":" + Interval.UNISON + ":null";
+
+		for(String separator : new String[] {"\n", "\r\n", "\r"}) {
+			//small buffers so lines and "\r\n" are split between reads
+			for(int bufferSize = 1; bufferSize < 40; bufferSize += 3) {
+				try(TextModelReader reader = readerFor("signifier" + separator + first + separator + separator + second, bufferSize)) {
+					assertEquals("signifier", reader.readLine());
+
+					assertTrue(reader.nextRecord());
+					reader.checkNumberOfFields(3);
+					assertEquals(ChordSignature.firstSignature(), reader.enumField(0, CHORD_SIGNATURES));
+					assertEquals(Interval.MAJOR3, reader.enumField(1, INTERVALS));
+					assertEquals(ConsonanceRating.GOOD, reader.ratingField(2));
+
+					//the empty line is skipped
+					assertTrue(reader.nextRecord());
+					assertEquals(4, reader.getLineNumber());
+					assertEquals(ChordSignature.lastSignature(), reader.enumField(0, CHORD_SIGNATURES));
+					assertEquals(Interval.UNISON, reader.enumField(1, INTERVALS));
+					assertNull(reader.ratingField(2));
+
+					assertFalse(reader.nextRecord());
+					assertNull(reader.readLine());
+				}
+			}
+		}
+	}
+
+	@Test
+	void testInvalidRecords() throws IOException, PersistenceException {
+		try(TextModelReader reader = readerFor("NOT_A_CHORD:UNISON:GOOD\n" + ChordSignature.firstSignature() + ":UNISON\n", 16)) {
+			assertTrue(reader.nextRecord());
+			assertThrows(PersistenceException.class, () -> reader.enumField(0, CHORD_SIGNATURES));
+			assertThrows(PersistenceException.class, () -> reader.checkNumberOfFields(4));
+
+			assertTrue(reader.nextRecord());
+			assertThrows(PersistenceException.class, () -> reader.checkNumberOfFields(3));
+			assertThrows(PersistenceException.class, () -> reader.ratingField(1));
+		}
+		try(TextModelReader reader = readerFor("a:b:c:d:e:f:g:h:i\n", 16)) {
+			assertThrows(PersistenceException.class, () -> reader.nextRecord());
+		}
+	}
+
+	@Test
+	void testWriterOutput() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try(TextModelWriter writer = new TextModelWriter(out)) {
+			writer.writeLine("signifier");
+			for(int i = 0; i < 10000; i++) {
+				writer.writeName(ChordSignature.lastSignature(), CHORD_SIGNATURES);
+				writer.writeSeparator();
+				writer.writeRating(i % 2 == 0 ? null : ConsonanceRating.BAD);
+				writer.endLine();
+			}
+		}
+
+		StringBuilder expected = new StringBuilder("signifier").append(System.lineSeparator());
+		for(int i = 0; i < 10000; i++) {
+			expected.append(ChordSignature.lastSignature())
+				.append(':')
+				.append(i % 2 == 0 ? "null" : "BAD")
+				.append(System.lineSeparator());
+		}
+		assertEquals(expected.toString(), out.toString(StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,126 @@
+package chord.relations.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import chord.ConsonanceRating;
+import chord.Interval;
+import chord.ident.ChordSignature;
+import chord.ident.ScaleSignature;
+
+public class CompiledRecordRequestTest {
+
+	@Test
+	void testNextSetBit() {
+		long[] mask = new long[3];
+		mask[0] = 1L;
+		mask[1] = 1L << 63;
+		mask[2] = 1L << 5;
+
+		List<Integer> setBits = new ArrayList<>();
+		for(int bit = CompiledRecordRequest.nextSetBit(mask, 0); bit >= 0; bit = CompiledRecordRequest.nextSetBit(mask, bit + 1)) {
+			setBits.add(bit);
+		}
+		assertEquals(List.of(0, 127, 133), setBits);
+		assertEquals(-1, CompiledRecordRequest.nextSetBit(mask, 192));
+		assertEquals(-1, CompiledRecordRequest.nextSetBit(null, 0));
+	}
+
+	@Test
+	void testCompiledChordChangeRequestMatchesRequest() throws RequestInitializationException {
+		ChordChangeConsonanceRecordRequest request =
+				new ChordChangeConsonanceRecordRequest(
+						new ChordRequest(ChordSignature.MAJOR, ChordSignature.lastSignature()),
+						new ChordRequest(ChordSignature.MINOR),
+						new IntervalRequest(Interval.UNISON, Interval.MAJOR7),
+						new RatingRequest(ConsonanceRating.VERY_BAD, ConsonanceRating.GOOD));
+		CompiledRecordRequest compiledRequest = request.compile();
+
+		for(ChordSignature chordSig : ChordSignature.values()) {
+			assertEquals(request.containsReferenceChord(chordSig),
+					compiledRequest.containsReferenceChord(chordSig.ordinal()));
+			assertEquals(request.containsTargetChord(chordSig),
+					compiledRequest.containsTarget(chordSig.ordinal()));
+		}
+		for(Interval interval : Interval.valuesInFirstOctave()) {
+			assertEquals(request.containsIntervalBetweenRoots(interval),
+					compiledRequest.containsInterval(interval.ordinal()));
+		}
+		for(ConsonanceRating rating : ConsonanceRating.values()) {
+			assertEquals(request.contains(rating), compiledRequest.contains(rating));
+		}
+		assertFalse(compiledRequest.contains(null));
+		assertFalse(compiledRequest.containsRatingCode(0));
+
+		int numberOfReferenceChords = 0;
+		for(int ordinal = compiledRequest.nextReferenceChord(0); ordinal >= 0; ordinal = compiledRequest.nextReferenceChord(ordinal + 1)) {
+			numberOfReferenceChords++;
+		}
+		assertEquals(request.numReferenceChordsRequested(), numberOfReferenceChords);
+	}
+
+	@Test
+	void testCompiledNoteRequestHasNoTarget() {
+		CompiledRecordRequest compiledRequest = NoteConsonanceRecordRequest.allPossibleRecords().compile();
+
+		assertEquals(-1, compiledRequest.nextTarget(0));
+		for(Interval interval : Interval.valuesInFirstOctave()) {
+			assertTrue(compiledRequest.containsInterval(interval.ordinal()));
+		}
+	}
+
+	@Test
+	void testCompiledScaleRequest() throws RequestInitializationException {
+		ScaleRequest scaleRequest = new ScaleRequest();
+		scaleRequest.add(ScaleSignature.values()[ScaleSignature.values().length - 1]);
+		ScaleConsonanceRecordRequest request =
+				new ScaleConsonanceRecordRequest(
+						ChordRequest.allChordsRequest(),
+						scaleRequest,
+						RatingRequest.allRatingsRequest());
+		CompiledRecordRequest compiledRequest = request.compile();
+
+		assertEquals(ScaleSignature.values().length - 1, compiledRequest.nextTarget(0));
+		assertEquals(-1, compiledRequest.nextTarget(ScaleSignature.values().length));
+	}
+
+	@Test
+	void testCompileUninitializedRequest() {
+		assertThrows(IllegalStateException.class,
+				() -> new ChordChangeConsonanceRecordRequest().compile());
+	}
+
+	@Test
+	void testEqualWhenSameRecordsRequested() throws RequestInitializationException {
+		CompiledRecordRequest compiledRequest = new ChordChangeConsonanceRecordRequest(
+				new ChordRequest(ChordSignature.MAJOR, ChordSignature.MINOR),
+				new ChordRequest(ChordSignature.MINOR),
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ConsonanceRating.GOOD)).compile();
+		CompiledRecordRequest sameRecords = new ChordChangeConsonanceRecordRequest(
+				new ChordRequest(ChordSignature.MINOR, ChordSignature.MAJOR),
+				new ChordRequest(ChordSignature.MINOR),
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ConsonanceRating.GOOD)).compile();
+		CompiledRecordRequest otherRatings = new ChordChangeConsonanceRecordRequest(
+				new ChordRequest(ChordSignature.MAJOR, ChordSignature.MINOR),
+				new ChordRequest(ChordSignature.MINOR),
+				IntervalRequest.allIntervalsRequest(),
+				new RatingRequest(ConsonanceRating.VERY_GOOD)).compile();
+
+		assertEquals(compiledRequest, sameRecords);
+		assertEquals(compiledRequest.hashCode(), sameRecords.hashCode());
+		assertNotEquals(compiledRequest, otherRatings);
+		//a note request with the same reference chords and ratings has no target
+		assertNotEquals(NoteConsonanceRecordRequest.allPossibleRecords().compile(),
+				ChordChangeConsonanceRecordRequest.allPossibleRecords().compile());
+	}
+}